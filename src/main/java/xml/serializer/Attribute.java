@@ -53,4 +53,14 @@ public @interface Attribute {
     * @return true if the attribute is required, false otherwise
     */
    public boolean required() default true;   
+
+   /**
+    * Determines whether the value read for this field is interned. If
+    * the field is a string then equal values read from any document
+    * resolve to the same string instance, which is useful for values
+    * such as codes and names that are repeated across many objects.
+    * 
+    * @return true if string values for the field are interned
+    */
+   public boolean intern() default false;
 }
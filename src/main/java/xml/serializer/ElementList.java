@@ -41,7 +41,18 @@ import java.lang.annotation.RetentionPolicy;
  * If a <code>class</code> attribute is not provided and the type of
  * the field is abstract, a suitable match is searched for from the
  * collections available from the Java collections framework.
+ * <p>
+ * If the entry type is a primitive wrapper, a string, or an enum
+ * then no entry class is required. Each value is written as the
+ * text of an element named by the <code>entry</code> attribute, or
+ * if the list is <code>inline</code> the values are written as a
+ * single text value separated by spaces.
+ * <pre>
+ * 
+ *    &lt;list&gt;1 2 3 5 8 13&lt;/list&gt;
  * 
+ * </pre>
+ * Both forms are accepted when a list of primitives is read. 
  */
 @Retention(RetentionPolicy.RUNTIME)
 public @interface ElementList {
@@ -75,4 +86,33 @@ public @interface ElementList {
     * @return true if the element is required, false otherwise
     */        
    public boolean required() default true;
+
+   /**
+    * This is the name of the element written for each value when the
+    * entry type is a primitive, string, or enumerated type. It is not
+    * used for entries that are serialized as root elements.
+    * 
+    * @return the name of the element for each primitive value
+    */
+   public String entry() default "entry";
+
+   /**
+    * Determines whether a list of primitive values is written as the
+    * text of the list element rather than as an element per value. An
+    * inline list of strings can not contain a string that is empty or
+    * that contains whitespace, as whitespace separates the values.
+    * 
+    * @return true if primitive values are written as a single text
+    */
+   public boolean inline() default false;
+
+   /**
+    * Determines whether the values of a list of strings are interned.
+    * If this is true equal values read from any document resolve to
+    * the same string instance. This is used only if the entry type 
+    * is a string, as entries that are root elements are objects.
+    * 
+    * @return true if the string values in the list are interned
+    */
+   public boolean intern() default false;
 }
@@ -23,6 +23,16 @@ package xml.serializer;
 import org.w3c.dom.Document;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
 
 /**
  * The <code>Serializer</code> interface is used to represent objects
@@ -35,6 +45,13 @@ import java.io.*;
  * For convinience the DOM <code>Document</code> used to serialize an
  * object is returned from each write method. This allows other XML
  * based tools to make use of the serialized format of the object.
+ * <p>
+ * An implementation may write the entries of large element lists
+ * straight to the output rather than holding them in the document,
+ * as a persister with a parallel configuration does. As the complete
+ * document is never built, a method that writes to an output then
+ * returns null. The <code>write</code> method that takes only the
+ * object always returns the complete document.
  * 
  */
 public interface Serializer {
@@ -119,7 +136,51 @@ public interface Serializer {
     * @throws Exception if the object cannot be fully deserialized
     */   
    public Object read(Class type, Reader source) throws Exception;
-   
+
+   /**
+    * This <code>read</code> method will read the contents of the XML
+    * document from the provided channel and convert it into an object
+    * of the specified type. The channel is not closed once read. The
+    * default implementation reads the channel in to an array, while
+    * an implementation can give the bytes directly to the parser.
+    * 
+    * @param type this is the class type to be deserialized from XML
+    * @param source this provides the source of the XML document
+    * 
+    * @return the object deserialized from the XML document 
+    * 
+    * @throws Exception if the object cannot be fully deserialized
+    */
+   public default Object read(Class type, ReadableByteChannel source) throws Exception {
+      ByteArrayOutputStream data = new ByteArrayOutputStream();
+      InputStream input = Channels.newInputStream(source);
+
+      input.transferTo(data);
+      return read(type, new ByteArrayInputStream(data.toByteArray()));
+   }
+
+   /**
+    * This <code>read</code> method will read the contents of the XML
+    * document from the remaining bytes of the buffer and convert it
+    * into an object of the specified type. Both heap and direct
+    * buffers can be read, and the position of the buffer is not 
+    * changed by reading the document from it. The default 
+    * implementation copies the remaining bytes in to an array.
+    * 
+    * @param type this is the class type to be deserialized from XML
+    * @param source this provides the source of the XML document
+    * 
+    * @return the object deserialized from the XML document 
+    * 
+    * @throws Exception if the object cannot be fully deserialized
+    */
+   public default Object read(Class type, ByteBuffer source) throws Exception {
+      byte[] data = new byte[source.remaining()];
+
+      source.duplicate().get(data);
+      return read(type, new ByteArrayInputStream(data));
+   }
+
    /**
     * This <code>write</code> method will traverse the provided object
     * checking for field annotations in order to compose the XML data.
@@ -209,4 +270,134 @@ public interface Serializer {
     * @throws Exception if the schema for the object is not valid
     */   
    public Document write(Object source, Writer out) throws Exception;
+
+   /**
+    * This <code>write</code> method will traverse the provided object
+    * checking for field annotations in order to compose the XML data.
+    * The encoded XML is written directly to the channel provided, the
+    * channel is not closed once the object has been written. The
+    * default implementation writes the XML to an array first.
+    * 
+    * @param source this is the object that is to be serialized
+    * @param out this is where the serialized XML is written to
+    * 
+    * @return this returns the DOM containing the serialized XML
+    * 
+    * @throws Exception if the schema for the object is not valid
+    */
+   public default Document write(Object source, WritableByteChannel out) throws Exception {
+      ByteArrayOutputStream data = new ByteArrayOutputStream();
+      Document document = write(source, data);
+      OutputStream output = Channels.newOutputStream(out);
+
+      output.write(data.toByteArray());
+      return document;
+   }
+
+   /**
+    * This <code>write</code> method will traverse the provided object
+    * checking for field annotations in order to compose the XML data.
+    * The encoded XML is written in to the buffer from its position,
+    * which is advanced past the XML written. If the buffer does not
+    * have enough space remaining the write fails with an overflow.
+    * The default implementation writes the XML to an array first.
+    * 
+    * @param source this is the object that is to be serialized
+    * @param out this is where the serialized XML is written to
+    * 
+    * @return this returns the DOM containing the serialized XML
+    * 
+    * @throws Exception if the schema for the object is not valid
+    */
+   public default Document write(Object source, ByteBuffer out) throws Exception {
+      ByteArrayOutputStream data = new ByteArrayOutputStream();
+      Document document = write(source, data);
+
+      out.put(data.toByteArray());
+      return document;
+   }
+
+   /**
+    * This <code>readAsync</code> method will read the contents of the
+    * XML file at the given path without blocking the calling thread.
+    * The file is read using asynchronous I/O, once it has been read
+    * the object is deserialized on the common fork join pool. If the
+    * file can not be read or deserialized the future fails.
+    * 
+    * @param type this is the class type to be deserialized from XML
+    * @param source this is the path of the XML file to be read
+    * 
+    * @return a future for the object deserialized from the file
+    */
+   public default CompletableFuture<Object> readAsync(Class type, Path source) {
+      return readAsync(type, source, ForkJoinPool.commonPool());
+   }
+
+   /**
+    * This <code>readAsync</code> method will read the contents of the
+    * XML file at the given path without blocking the calling thread.
+    * The file is read using asynchronous I/O, once it has been read
+    * the object is deserialized using the executor provided. If the
+    * file can not be read or deserialized the future fails. The
+    * default implementation reads the file on the executor given.
+    * 
+    * @param type this is the class type to be deserialized from XML
+    * @param source this is the path of the XML file to be read
+    * @param executor this is used to deserialize the object
+    * 
+    * @return a future for the object deserialized from the file
+    */
+   public default CompletableFuture<Object> readAsync(final Class type, final Path source, Executor executor) {
+      return CompletableFuture.supplyAsync(new Supplier<Object>() {
+         public Object get() {
+            try {
+               return read(type, source.toFile());
+            } catch(Exception e) {
+               throw new CompletionException(e);
+            }
+         }
+      }, executor);
+   }
+
+   /**
+    * This <code>writeAsync</code> method will serialize the provided
+    * object and write it to the file at the given path without
+    * blocking the calling thread. The object is serialized on the
+    * common fork join pool and the XML is written to the file using
+    * asynchronous I/O. The future completes once the file is closed.
+    * 
+    * @param source this is the object that is to be serialized
+    * @param out this is the path of the file to write to
+    * 
+    * @return a future for the DOM containing the serialized XML
+    */
+   public default CompletableFuture<Document> writeAsync(Object source, Path out) {
+      return writeAsync(source, out, ForkJoinPool.commonPool());
+   }
+
+   /**
+    * This <code>writeAsync</code> method will serialize the provided
+    * object and write it to the file at the given path without
+    * blocking the calling thread. The object is serialized using the
+    * executor provided and the XML is written to the file using
+    * asynchronous I/O. The future completes once the file is closed.
+    * The default implementation writes the file on the executor given.
+    * 
+    * @param source this is the object that is to be serialized
+    * @param out this is the path of the file to write to
+    * @param executor this is used to serialize the object
+    * 
+    * @return a future for the DOM containing the serialized XML
+    */
+   public default CompletableFuture<Document> writeAsync(final Object source, final Path out, Executor executor) {
+      return CompletableFuture.supplyAsync(new Supplier<Document>() {
+         public Document get() {
+            try {
+               return write(source, out.toFile());
+            } catch(Exception e) {
+               throw new CompletionException(e);
+            }
+         }
+      }, executor);
+   }
 }
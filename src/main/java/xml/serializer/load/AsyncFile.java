@@ -0,0 +1,272 @@
+/*
+ * AsyncFile.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * The <code>AsyncFile</code> object is used to read and write files
+ * without blocking the calling thread. This uses an asynchronous file
+ * channel to transfer the entire contents of a file, the future that
+ * is returned completes once the transfer has finished and the file
+ * has been closed. No parsing or serialization is done by this, so
+ * the threads that complete the transfer do only file I/O.
+ * 
+ * @see Persister
+ */
+final class AsyncFile {
+
+   /**
+    * This is the path of the file that is read or written.
+    */
+   private Path path;
+
+   /**
+    * Constructor for the <code>AsyncFile</code> object. This is given
+    * the path of the file that is to be read or written. The file is
+    * not opened until a transfer is requested.
+    * 
+    * @param path this is the path of the file to be transferred
+    */
+   public AsyncFile(Path path) {
+      this.path = path;
+   }
+
+   /**
+    * This is used to read the entire contents of the file. The file
+    * is opened and its size determined, then a buffer of that size is
+    * filled from the channel. If the file can not be read the future
+    * returned completes exceptionally with the cause.
+    * 
+    * @return this returns a future for the contents of the file
+    */
+   public CompletableFuture<byte[]> read() {
+      CompletableFuture<byte[]> future = new CompletableFuture<byte[]>();
+
+      try {
+         AsynchronousFileChannel channel = AsynchronousFileChannel.open(path, READ);
+         long size = channel.size();
+
+         if(size > Integer.MAX_VALUE) {
+            channel.close();
+            throw new IOException("File " + path + " is too large");
+         }
+         ByteBuffer buffer = ByteBuffer.allocate((int) size);
+         ReadHandler handler = new ReadHandler(channel, future);
+
+         handler.completed(0, buffer);
+      } catch(Exception e) {
+         future.completeExceptionally(e);
+      }
+      return future;
+   }
+
+   /**
+    * This is used to write the provided data to the file. Any existing
+    * content is replaced by the data. Once every byte has been written
+    * and the file is closed the future completes with the value given,
+    * which allows the result of an operation to be passed on.
+    * 
+    * @param data this is the data that is to be written to the file
+    * @param value this is the value the future completes with
+    * 
+    * @return this returns a future that completes with the value
+    */
+   public <T> CompletableFuture<T> write(byte[] data, T value) {
+      CompletableFuture<T> future = new CompletableFuture<T>();
+
+      try {
+         AsynchronousFileChannel channel = AsynchronousFileChannel.open(path, WRITE, CREATE, TRUNCATE_EXISTING);
+         ByteBuffer buffer = ByteBuffer.wrap(data);
+         WriteHandler<T> handler = new WriteHandler<T>(channel, future, value);
+
+         handler.completed(0, buffer);
+      } catch(Exception e) {
+         future.completeExceptionally(e);
+      }
+      return future;
+   }
+
+   /**
+    * This is used to close the channel once a transfer has finished.
+    * If the channel can not be closed then the future is completed
+    * with the error, unless it has already been completed.
+    * 
+    * @param channel this is the channel that is to be closed
+    * @param future this is the future for the transfer
+    */
+   private static void close(AsynchronousFileChannel channel, CompletableFuture future) {
+      try {
+         channel.close();
+      } catch(Exception e) {
+         future.completeExceptionally(e);
+      }
+   }
+
+   /**
+    * The <code>ReadHandler</code> object is used to fill a buffer from the
+    * channel. Each time a read completes the next read is issued from
+    * the position after the bytes read, until the buffer is full or
+    * the end of the file has been reached.
+    */
+   private static class ReadHandler implements CompletionHandler<Integer, ByteBuffer> {
+
+      /**
+       * This is the future that is completed with the contents.
+       */
+      private CompletableFuture<byte[]> future;
+
+      /**
+       * This is the channel that the file is read from.
+       */
+      private AsynchronousFileChannel channel;
+
+      /**
+       * Constructor for the <code>ReadHandler</code> object. This is given
+       * the channel to read from and the future that is completed with
+       * the contents of the file once they have been read.
+       * 
+       * @param channel this is the channel the file is read from
+       * @param future this is completed with the file contents
+       */
+      public ReadHandler(AsynchronousFileChannel channel, CompletableFuture<byte[]> future) {
+         this.channel = channel;
+         this.future = future;
+      }
+
+      /**
+       * This is invoked when a read has completed. If there is space
+       * remaining in the buffer and the end of the file has not been
+       * reached then another read is issued. Otherwise the channel is
+       * closed and the future is completed with the bytes read.
+       * 
+       * @param count this is the number of bytes that were read
+       * @param buffer this is the buffer that is being filled
+       */
+      public void completed(Integer count, ByteBuffer buffer) {
+         if(count >= 0 && buffer.hasRemaining()) {
+            channel.read(buffer, buffer.position(), buffer, this);
+         } else {
+            byte[] data = buffer.array();
+            int length = buffer.position();
+
+            close(channel, future);
+
+            if(length < data.length) {
+               data = Arrays.copyOf(data, length);
+            }
+            future.complete(data);
+         }
+      }
+
+      /**
+       * This is invoked if a read fails. The channel is closed and
+       * the future is completed with the cause of the failure.
+       * 
+       * @param cause this is the cause of the failure
+       * @param buffer this is the buffer that was being filled
+       */
+      public void failed(Throwable cause, ByteBuffer buffer) {
+         close(channel, future);
+         future.completeExceptionally(cause);
+      }
+   }
+
+   /**
+    * The <code>WriteHandler</code> object is used to drain a buffer to the
+    * channel. Each time a write completes the next write is issued
+    * from the position after the bytes written, until the buffer has
+    * been completely written to the file.
+    */
+   private static class WriteHandler<T> implements CompletionHandler<Integer, ByteBuffer> {
+
+      /**
+       * This is the future that is completed once written.
+       */
+      private CompletableFuture<T> future;
+
+      /**
+       * This is the channel that the file is written to.
+       */
+      private AsynchronousFileChannel channel;
+
+      /**
+       * This is the value that the future is completed with.
+       */
+      private T value;
+
+      /**
+       * Constructor for the <code>WriteHandler</code> object. This is given
+       * the channel to write to and the future that is completed with
+       * the value provided once the data has been written.
+       * 
+       * @param channel this is the channel the file is written to
+       * @param future this is completed once the data is written
+       * @param value this is the value the future completes with
+       */
+      public WriteHandler(AsynchronousFileChannel channel, CompletableFuture<T> future, T value) {
+         this.channel = channel;
+         this.future = future;
+         this.value = value;
+      }
+
+      /**
+       * This is invoked when a write has completed. If there are bytes
+       * remaining in the buffer then another write is issued. Once all
+       * bytes have been written the channel is closed and the future
+       * is completed with the value for the operation.
+       * 
+       * @param count this is the number of bytes that were written
+       * @param buffer this is the buffer that is being drained
+       */
+      public void completed(Integer count, ByteBuffer buffer) {
+         if(buffer.hasRemaining()) {
+            channel.write(buffer, buffer.position(), buffer, this);
+         } else {
+            close(channel, future);
+            future.complete(value);
+         }
+      }
+
+      /**
+       * This is invoked if a write fails. The channel is closed and
+       * the future is completed with the cause of the failure.
+       * 
+       * @param cause this is the cause of the failure
+       * @param buffer this is the buffer that was being drained
+       */
+      public void failed(Throwable cause, ByteBuffer buffer) {
+         close(channel, future);
+         future.completeExceptionally(cause);
+      }
+   }
+}
@@ -71,7 +71,10 @@ final class AttributeLabel implements Label {
     * @param root this is source object used for serialization
     */
    public Converter getConverter(Source root) {
-      return new Primitive(root, type);
+      if(PrimitiveArray.isArray(type)) {
+         return new PrimitiveArray(root, type);
+      }
+      return new Primitive(root, type, label.intern());
    }
    
    /**
@@ -85,6 +88,17 @@ final class AttributeLabel implements Label {
       return type;
    }  
    
+   /**
+    * This is used to acquire the dependant class for the label. This
+    * is the class that the converter for the label will instantiate
+    * and populate. For this label it is the type of the field.
+    * 
+    * @return this returns the class the converter will populate
+    */
+   public Class getDependant() {
+      return type;
+   }
+   
    /**
     * This is used to acquire the name of the XML attribute as taken
     * from the field annotation. Every XML annotation must contain a
@@ -123,6 +137,17 @@ final class AttributeLabel implements Label {
       return label.required();
    }
    
+   /**
+    * This is used to determine whether string values read for the
+    * field are interned, as specified by the field annotation. If
+    * this is true equal values resolve to the same string instance.
+    * 
+    * @return true if the string values read are to be interned
+    */
+   public boolean isIntern() {
+      return label.intern();
+   }
+
    /**
     * This provides a string describing the XML annotation this is
     * used to represent. This is used when debugging an error as
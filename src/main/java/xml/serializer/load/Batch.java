@@ -0,0 +1,247 @@
+/*
+ * Batch.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The <code>Batch</code> object is used to process a number of
+ * independent documents concurrently. Each document is processed by
+ * its own task, and the number of tasks that run at once is bounded
+ * so that a large batch does not open every document at once. The
+ * outcome of each task is provided in the order the tasks are given.
+ * <p>
+ * Where the runtime supports virtual threads each task is run on a
+ * virtual thread, which allows a large number of documents that are
+ * waiting on I/O to be processed without a thread for each of them.
+ * On earlier runtimes a pool of daemon threads is used instead.
+ * 
+ * @see Outcome
+ */
+final class Batch {
+
+   /**
+    * This is used to create an executor using virtual threads.
+    */
+   private static final Method VIRTUAL = getVirtual();
+
+   /**
+    * This is the maximum number of tasks that can run at once.
+    */
+   private int limit;
+
+   /**
+    * Constructor for the <code>Batch</code> object. This is given the
+    * maximum number of tasks that can run at once. Once this number
+    * of tasks are running further tasks wait until one completes.
+    * 
+    * @param limit this is the number of tasks that can run at once
+    */
+   public Batch(int limit) {
+      if(limit < 1) {
+         throw new IllegalArgumentException("Limit must be positive");
+      }
+      this.limit = limit;
+   }
+
+   /**
+    * This is used to execute the tasks and collect their outcomes. A
+    * task that fails produces an outcome holding the error, which
+    * does not affect any of the other tasks within the batch. This
+    * will return once every task within the batch has completed.
+    * 
+    * @param tasks these are the tasks that are to be executed
+    * 
+    * @return this returns the outcome of each task in order
+    * 
+    * @throws Exception thrown if the batch is interrupted
+    */
+   public List<Outcome> execute(List<Callable> tasks) throws Exception {
+      List<Future> futures = new ArrayList<Future>(tasks.size());
+      Semaphore semaphore = new Semaphore(limit);
+      ExecutorService executor = getExecutor(tasks.size());
+
+      try {
+         for(Callable task : tasks) {
+            semaphore.acquire();
+            futures.add(executor.submit(new Task(task, semaphore)));
+         }
+         return getOutcomes(futures);
+      } finally {
+         executor.shutdownNow();
+      }
+   }
+
+   /**
+    * This is used to wait for each of the tasks to complete. If the
+    * task failed then the outcome holds the cause of the failure,
+    * otherwise the outcome holds the value produced by the task.
+    * 
+    * @param futures these are the futures for the submitted tasks
+    * 
+    * @return this returns the outcome of each task in order
+    * 
+    * @throws Exception thrown if the batch is interrupted
+    */
+   private List<Outcome> getOutcomes(List<Future> futures) throws Exception {
+      List<Outcome> list = new ArrayList<Outcome>(futures.size());
+
+      for(Future future : futures) {
+         try {
+            list.add(new Outcome(future.get()));
+         } catch(ExecutionException e) {
+            list.add(getOutcome(e.getCause()));
+         }
+      }
+      return list;
+   }
+
+   /**
+    * This is used to create an outcome for a task that has failed.
+    * Errors that are not exceptions, such as an out of memory error,
+    * are not isolated within the batch and are thrown to the caller.
+    * 
+    * @param cause this is the cause of the failure of the task
+    * 
+    * @return this returns an outcome that holds the failure
+    */
+   private Outcome getOutcome(Throwable cause) {
+      if(cause instanceof Error) {
+         throw (Error) cause;
+      }
+      return new Outcome((Exception) cause);
+   }
+
+   /**
+    * This is used to acquire the executor used to run the tasks. If
+    * virtual threads are available a virtual thread is used for each
+    * task, otherwise a pool of daemon threads no larger than the
+    * limit and the number of tasks within the batch is created.
+    * 
+    * @param size this is the number of tasks within the batch
+    * 
+    * @return this returns the executor used to run the tasks
+    */
+   private ExecutorService getExecutor(int size) throws Exception {
+      int count = Math.max(1, Math.min(limit, size));
+
+      if(VIRTUAL != null) {
+         return (ExecutorService) VIRTUAL.invoke(null);
+      }
+      return Executors.newFixedThreadPool(count, new Daemon());
+   }
+
+   /**
+    * This is used to acquire the factory method for an executor that
+    * creates a new virtual thread for each task. Virtual threads are
+    * not available on all runtimes so the method is acquired using
+    * reflection, if it is not available then this returns null.
+    * 
+    * @return this returns the method used to create the executor
+    */
+   private static Method getVirtual() {
+      try {
+         return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      } catch(Exception e) {
+         return null;
+      }
+   }
+
+   /**
+    * The <code>Task</code> object is used to run a task and release
+    * its permit once it has completed. Releasing the permit allows
+    * the next task within the batch to be submitted for execution.
+    */
+   private static class Task implements Callable {
+
+      /**
+       * This is used to bound the number of tasks that run at once.
+       */
+      private Semaphore semaphore;
+
+      /**
+       * This is the task that is to be executed by this task.
+       */
+      private Callable task;
+
+      /**
+       * Constructor for the <code>Task</code> object. This is given
+       * the task to execute as well as the semaphore that the permit
+       * for the task is released to once it has completed.
+       * 
+       * @param task this is the task that is to be executed
+       * @param semaphore this is the semaphore to release to
+       */
+      public Task(Callable task, Semaphore semaphore) {
+         this.semaphore = semaphore;
+         this.task = task;
+      }
+
+      /**
+       * This is used to execute the task. Regardless of whether the
+       * task completes or fails the permit is released so that the
+       * remaining tasks within the batch can continue to execute.
+       * 
+       * @return this returns the value produced by the task
+       * 
+       * @throws Exception thrown if the task fails
+       */
+      public Object call() throws Exception {
+         try {
+            return task.call();
+         } finally {
+            semaphore.release();
+         }
+      }
+   }
+
+   /**
+    * The <code>Daemon</code> object is used to create the threads
+    * used to execute tasks where virtual threads are not available.
+    * Daemon threads are used so that the threads do not prevent the
+    * runtime from exiting if the batch is abandoned.
+    */
+   private static class Daemon implements ThreadFactory {
+
+      /**
+       * This is used to create a daemon thread for the runnable.
+       * 
+       * @param task this is the runnable that the thread executes
+       * 
+       * @return this returns a daemon thread for the runnable
+       */
+      public Thread newThread(Runnable task) {
+         Thread thread = new Thread(task, "batch");
+
+         thread.setDaemon(true);
+         return thread;
+      }
+   }
+}
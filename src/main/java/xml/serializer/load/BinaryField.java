@@ -0,0 +1,799 @@
+/*
+ * BinaryField.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import xml.serializer.load.exceptions.AttributeException;
+import xml.serializer.load.exceptions.ElementException;
+
+import java.lang.reflect.Field;
+import java.util.Collection;
+
+/**
+ * The <code>BinaryField</code> object is used to read and write the
+ * value of a single annotated field in the binary format. Each field
+ * is identified by a small number assigned from its schema, which is
+ * written along with the wire kind of the value in place of the name
+ * used within XML. The wire kind describes how the value is laid out
+ * so that a value can be checked before it is read.
+ * <p>
+ * The way a value is encoded is determined once, when the schema for
+ * the class is built, so that reading and writing a value involves
+ * no more than a switch on the value type. Fields of primitive types
+ * are accessed without boxing the value.
+ * 
+ * @see xml.serializer.load.BinarySchema
+ */
+final class BinaryField {
+
+   /**
+    * This is the wire kind for variable length integers.
+    */
+   public static final int VARINT = 0;
+
+   /**
+    * This is the wire kind for eight byte values.
+    */
+   public static final int FIXED64 = 1;
+
+   /**
+    * This is the wire kind for values prefixed by their length.
+    */
+   public static final int BYTES = 2;
+
+   /**
+    * This is the wire kind for composite objects.
+    */
+   public static final int OBJECT = 3;
+
+   /**
+    * This is the wire kind for element lists.
+    */
+   public static final int LIST = 4;
+
+   /**
+    * This is the wire kind for four byte values.
+    */
+   public static final int FIXED32 = 5;
+
+   /**
+    * This is the wire kind for strings within the value table.
+    */
+   public static final int SHARED = 6;
+
+   /**
+    * This is the value type for booleans.
+    */
+   private static final int BOOLEAN = 0;
+
+   /**
+    * This is the value type for bytes.
+    */
+   private static final int BYTE = 1;
+
+   /**
+    * This is the value type for short integers.
+    */
+   private static final int SHORT = 2;
+
+   /**
+    * This is the value type for integers.
+    */
+   private static final int INT = 3;
+
+   /**
+    * This is the value type for long integers.
+    */
+   private static final int LONG = 4;
+
+   /**
+    * This is the value type for characters.
+    */
+   private static final int CHAR = 5;
+
+   /**
+    * This is the value type for single precision values.
+    */
+   private static final int FLOAT = 6;
+
+   /**
+    * This is the value type for double precision values.
+    */
+   private static final int DOUBLE = 7;
+
+   /**
+    * This is the value type for strings.
+    */
+   private static final int STRING = 8;
+
+   /**
+    * This is the value type for enumerations.
+    */
+   private static final int ENUM = 9;
+
+   /**
+    * This is the value type for values written as text.
+    */
+   private static final int TEXT = 10;
+
+   /**
+    * This is the value type for composite objects.
+    */
+   private static final int COMPOSITE = 11;
+
+   /**
+    * This is the value type for element lists.
+    */
+   private static final int COLLECTION = 12;
+
+   /**
+    * This is the value type for arrays of a primitive type.
+    */
+   private static final int ARRAY = 13;
+
+   /**
+    * This is the value type for element lists of primitives.
+    */
+   private static final int SERIES = 14;
+
+   /**
+    * This is used to convert values that are written as text.
+    */
+   private PrimitiveFactory factory;
+
+   /**
+    * These are the constants when the field is an enumeration.
+    */
+   private Object[] constants;
+
+   /**
+    * This is the schema for values of the declared field type.
+    */
+   private BinarySchema schema;
+
+   /**
+    * This is the collection created when no override is written.
+    */
+   private Class collection;
+
+   /**
+    * This is the label that describes the annotated field.
+    */
+   private Label label;
+
+   /**
+    * This is the field that is read and written.
+    */
+   private Field field;
+
+   /**
+    * This is the declared type of the field.
+    */
+   private Class type;
+
+   /**
+    * This is the entry type for element lists.
+    */
+   private Class entry;
+
+   /**
+    * Determines if the field is a primitive rather than a wrapper.
+    */
+   private boolean primitive;
+
+   /**
+    * This is the value type that is encoded by this field.
+    */
+   private int code;
+
+   /**
+    * This is the wire kind that the value is written as.
+    */
+   private int kind;
+
+   /**
+    * This is the identifier assigned to the field by its schema.
+    */
+   private int id;
+
+   /**
+    * Constructor for the <code>BinaryField</code> object. This is
+    * given the label for the annotated field and the identifier that
+    * has been assigned to the field. The value type and wire kind are
+    * determined from the declared type of the field.
+    * 
+    * @param label this is the label describing the field
+    * @param id this is the identifier assigned to the field
+    */
+   public BinaryField(Label label, int id) throws Exception {
+      this.factory = new PrimitiveFactory(label.getType());
+      this.constants = label.getType().getEnumConstants();
+      this.primitive = label.getType().isPrimitive();
+      this.entry = label.getDependant();
+      this.field = label.getField();
+      this.type = label.getType();
+      this.code = getCode(label);
+      this.kind = getKind(code);
+      this.label = label;
+      this.id = id;
+   }
+
+   /**
+    * This is used to determine the value type for the label. Element
+    * lists are collections and elements that are not primitive are
+    * composites, all other values are encoded by their type.
+    * 
+    * @param label this is the label describing the field
+    * 
+    * @return this returns the value type for the field
+    */
+   private int getCode(Label label) throws Exception {
+      if(label instanceof ElementListLabel) {
+         collection = getCollection(type);
+
+         if(PrimitiveList.isPrimitive(entry)) {
+            return SERIES;
+         }
+         return COLLECTION;
+      }
+      if(label instanceof ElementLabel) {
+         if(!ElementLabel.isPrimitive(type)) {
+            return COMPOSITE;
+         }
+      }
+      return getCode(type);
+   }
+
+   /**
+    * This is used to determine the value type for a primitive value.
+    * Both primitive types and their wrappers are encoded in the same
+    * way, types without a compact encoding are written as text.
+    * 
+    * @param type this is the declared type of the field
+    * 
+    * @return this returns the value type for the field
+    */
+   private int getCode(Class type) {
+      if(type == boolean.class || type == Boolean.class) {
+         return BOOLEAN;
+      }
+      if(type == byte.class || type == Byte.class) {
+         return BYTE;
+      }
+      if(type == short.class || type == Short.class) {
+         return SHORT;
+      }
+      if(type == int.class || type == Integer.class) {
+         return INT;
+      }
+      if(type == long.class || type == Long.class) {
+         return LONG;
+      }
+      if(type == char.class || type == Character.class) {
+         return CHAR;
+      }
+      if(type == float.class || type == Float.class) {
+         return FLOAT;
+      }
+      if(type == double.class || type == Double.class) {
+         return DOUBLE;
+      }
+      if(type == String.class) {
+         return STRING;
+      }
+      if(type.isEnum()) {
+         return ENUM;
+      }
+      if(PrimitiveArray.isArray(type)) {
+         return ARRAY;
+      }
+      return TEXT;
+   }
+
+   /**
+    * This is used to determine the wire kind for the value type. The
+    * wire kind is written with the identifier of the field so that a
+    * reader can verify the value is laid out as it expects.
+    * 
+    * @param code this is the value type for the field
+    * 
+    * @return this returns the wire kind for the value type
+    */
+   private int getKind(int code) {
+      switch(code) {
+      case FLOAT:
+         return FIXED32;
+      case DOUBLE:
+         return FIXED64;
+      case STRING:
+      case TEXT:
+      case ARRAY:
+      case SERIES:
+         return BYTES;
+      case COMPOSITE:
+         return OBJECT;
+      case COLLECTION:
+         return LIST;
+      default:
+         return VARINT;
+      }
+   }
+
+   /**
+    * This is used to determine the collection that is created when no
+    * override is written. This is the declared type if it can be 
+    * instantiated, otherwise it is the standard conversion.
+    * 
+    * @param type this is the declared type of the list field
+    * 
+    * @return this returns the default collection for the field
+    */
+   private Class getCollection(Class type) throws Exception {
+      CollectionFactory factory = new CollectionFactory(type);
+
+      if(!factory.isInstantiable(type)) {
+         return factory.getConversion(type);
+      }
+      return type;
+   }
+
+   /**
+    * This is used to write the value of the field from the source. A
+    * null value is not written at all, unless the field is required
+    * in which case an exception is thrown as it would be for XML.
+    * 
+    * @param out this is the output the value is written to
+    * @param source this is the object containing the field
+    * 
+    * @throws Exception thrown if the value can not be written
+    */
+   public void write(BinaryOutput out, Object source) throws Exception {
+      if(primitive) {
+         out.writeVarint(id << 3 | kind);
+         writePrimitive(out, source);
+      } else {
+         Object value = field.get(source);
+
+         if(value != null) {
+            out.writeVarint(id << 3 | getKind(out.getTable() != null));
+            writeValue(out, value);
+         } else if(label.isRequired()) {
+            if(label instanceof AttributeLabel) {
+               throw new AttributeException("Value for %s is null", label);
+            }
+            throw new ElementException("Value for %s is null", label);
+         }
+      }
+   }
+
+   /**
+    * This is used to write the value of a primitive field. The value
+    * is taken from the field without being boxed.
+    * 
+    * @param out this is the output the value is written to
+    * @param source this is the object containing the field
+    * 
+    * @throws Exception thrown if the value can not be written
+    */
+   private void writePrimitive(BinaryOutput out, Object source) throws Exception {
+      switch(code) {
+      case BOOLEAN:
+         out.write(field.getBoolean(source) ? 1 : 0);
+         break;
+      case BYTE:
+      case SHORT:
+      case INT:
+         out.writeSigned(field.getInt(source));
+         break;
+      case LONG:
+         out.writeSigned(field.getLong(source));
+         break;
+      case CHAR:
+         out.writeVarint(field.getChar(source));
+         break;
+      case FLOAT:
+         out.writeFixed(Float.floatToRawIntBits(field.getFloat(source)));
+         break;
+      default:
+         out.writeFixed(Double.doubleToRawLongBits(field.getDouble(source)));
+      }
+   }
+
+   /**
+    * This is used to write a value that has been taken from the field.
+    * Composites and collections are written by the schema, all other
+    * values are written in the encoding for their value type.
+    * 
+    * @param out this is the output the value is written to
+    * @param value this is the value that is to be written
+    * 
+    * @throws Exception thrown if the value can not be written
+    */
+   private void writeValue(BinaryOutput out, Object value) throws Exception {
+      switch(code) {
+      case BOOLEAN:
+         out.write(((Boolean) value) ? 1 : 0);
+         break;
+      case BYTE:
+      case SHORT:
+      case INT:
+      case LONG:
+         out.writeSigned(((Number) value).longValue());
+         break;
+      case CHAR:
+         out.writeVarint((Character) value);
+         break;
+      case FLOAT:
+         out.writeFixed(Float.floatToRawIntBits((Float) value));
+         break;
+      case DOUBLE:
+         out.writeFixed(Double.doubleToRawLongBits((Double) value));
+         break;
+      case STRING:
+         writeText(out, (String) value);
+         break;
+      case ENUM:
+         out.writeVarint(((Enum) value).ordinal());
+         break;
+      case COMPOSITE:
+         BinarySchema.write(out, value, type, getSchema());
+         break;
+      case COLLECTION:
+         BinarySchema.write(out, (Collection) value, collection, entry);
+         break;
+      case ARRAY:
+         out.writeArray(value);
+         break;
+      case SERIES:
+         writeSeries(out, (Collection) value);
+         break;
+      default:
+         writeText(out, value.toString());
+      }
+   }
+
+   /**
+    * This is used to write an element list of primitives. Numeric and
+    * boolean values are written as a primitive array. Other values 
+    * are written as text within a block prefixed by its length, so 
+    * that the list can be skipped as a single value.
+    * 
+    * @param out this is the output the value is written to
+    * @param list this is the list of values to be written
+    * 
+    * @throws Exception thrown if the list contains a null value
+    */
+   private void writeSeries(BinaryOutput out, Collection list) throws Exception {
+      Class primitive = PrimitiveList.getPrimitive(entry);
+
+      if(primitive != null) {
+         out.writeArray(PackedList.getArray(list, primitive));
+      } else {
+         BinaryOutput block = new BinaryOutput(new byte[64]);
+
+         block.writeVarint(list.size());
+
+         for(Object value : list) {
+            if(value == null) {
+               throw new ElementException("List %s contains a null value", label);
+            }
+            if(value instanceof Enum) {
+               block.writeString(((Enum) value).name());
+            } else {
+               block.writeString(value.toString());
+            }
+         }
+         out.writeVarint(block.size());
+         out.write(block.getBuffer(), 0, block.size());
+      }
+   }
+
+   /**
+    * This is used to write a string value. If the output has a value
+    * table then the string is written using the table, so a repeated
+    * value is written as a reference to its first occurrence.
+    * 
+    * @param out this is the output the value is written to
+    * @param text this is the string that is to be written
+    */
+   private void writeText(BinaryOutput out, String text) {
+      if(out.getTable() != null) {
+         out.writeShared(text);
+      } else {
+         out.writeString(text);
+      }
+   }
+
+   /**
+    * This is used to read the value of the field in to the object. A
+    * primitive field is set without boxing the value, all other values
+    * are read as objects and then set on the field.
+    * 
+    * @param in this is the input the value is read from
+    * @param source this is the object the value is set on
+    * 
+    * @throws Exception thrown if the value can not be read
+    */
+   public void read(BinaryInput in, Object source) throws Exception {
+      if(primitive) {
+         readPrimitive(in, source);
+      } else {
+         field.set(source, readValue(in));
+      }
+   }
+
+   /**
+    * This is used to read the value of a primitive field in to the 
+    * object. The value is set on the field without being boxed.
+    * 
+    * @param in this is the input the value is read from
+    * @param source this is the object the value is set on
+    * 
+    * @throws Exception thrown if the value can not be read
+    */
+   private void readPrimitive(BinaryInput in, Object source) throws Exception {
+      switch(code) {
+      case BOOLEAN:
+         field.setBoolean(source, in.read() != 0);
+         break;
+      case BYTE:
+         field.setByte(source, (byte) in.readSigned());
+         break;
+      case SHORT:
+         field.setShort(source, (short) in.readSigned());
+         break;
+      case INT:
+         field.setInt(source, (int) in.readSigned());
+         break;
+      case LONG:
+         field.setLong(source, in.readSigned());
+         break;
+      case CHAR:
+         field.setChar(source, (char) in.readVarint());
+         break;
+      case FLOAT:
+         field.setFloat(source, Float.intBitsToFloat(in.readInt()));
+         break;
+      default:
+         field.setDouble(source, Double.longBitsToDouble(in.readLong()));
+      }
+   }
+
+   /**
+    * This is used to read a value in the encoding for its value type.
+    * Composites and collections are read by the schema, enumerations
+    * are read by ordinal and text is converted as it is for XML.
+    * 
+    * @param in this is the input the value is read from
+    * 
+    * @return this returns the value that was read
+    * 
+    * @throws Exception thrown if the value can not be read
+    */
+   private Object readValue(BinaryInput in) throws Exception {
+      switch(code) {
+      case BOOLEAN:
+         return in.read() != 0;
+      case BYTE:
+         return (byte) in.readSigned();
+      case SHORT:
+         return (short) in.readSigned();
+      case INT:
+         return (int) in.readSigned();
+      case LONG:
+         return in.readSigned();
+      case CHAR:
+         return (char) in.readVarint();
+      case FLOAT:
+         return Float.intBitsToFloat(in.readInt());
+      case DOUBLE:
+         return Double.longBitsToDouble(in.readLong());
+      case STRING:
+         return readString(in);
+      case ENUM:
+         return getEnum(in.readVarint());
+      case COMPOSITE:
+         return BinarySchema.read(in, type, getSchema());
+      case COLLECTION:
+         return BinarySchema.read(in, type, collection, entry);
+      case ARRAY:
+         return in.readArray(type.getComponentType());
+      case SERIES:
+         return readSeries(in);
+      default:
+         return factory.getInstance(readText(in));
+      }
+   }
+
+   /**
+    * This is used to read an element list of primitives. If the field
+    * is declared with an abstract type then numeric values are held
+    * within a packed list, otherwise the values are added to the
+    * collection that is created for the field, and strings are
+    * resolved from the intern cache if one is used for the field.
+    * 
+    * @param in this is the input the value is read from
+    * 
+    * @return this returns the list of values that was read
+    * 
+    * @throws Exception thrown if the list can not be read
+    */
+   private Object readSeries(BinaryInput in) throws Exception {
+      Class primitive = PrimitiveList.getPrimitive(entry);
+
+      if(primitive != null) {
+         Object values = in.readArray(primitive);
+
+         if(collection != type && type.isAssignableFrom(PackedList.class)) {
+            return new PackedList(values);
+         }
+         Collection list = (Collection) collection.newInstance();
+
+         list.addAll(new PackedList(values));
+         return list;
+      }
+      PrimitiveFactory factory = new PrimitiveFactory(entry);
+      Collection list = (Collection) collection.newInstance();
+      Intern intern = getIntern(in);
+
+      in.readLength();
+      int count = in.readLength();
+
+      for(int i = 0; i < count; i++) {
+         if(entry == String.class) {
+            list.add(in.readString(intern));
+         } else {
+            list.add(factory.getInstance(in.readString()));
+         }
+      }
+      return list;
+   }
+
+   /**
+    * This is used to read the value of a string field. If the input 
+    * has an intern cache, or if the field requests interning, then 
+    * the string is resolved from the cache as it is read.
+    * 
+    * @param in this is the input the value is read from
+    * 
+    * @return this returns the string that was read
+    * 
+    * @throws Exception thrown if the string can not be read
+    */
+   private String readString(BinaryInput in) throws Exception {
+      Intern intern = getIntern(in);
+
+      if(in.getTable() != null) {
+         return in.readShared(intern);
+      }
+      return in.readString(intern);
+   }
+
+   /**
+    * This is used to acquire the cache used to resolve the strings
+    * read for the field. The cache of the input is used if it has
+    * one, otherwise the shared cache is used if the field requests
+    * interning. If neither is the case then this returns null.
+    * 
+    * @param in this is the input the value is read from
+    * 
+    * @return this returns the cache used to resolve strings
+    */
+   private Intern getIntern(BinaryInput in) {
+      Intern intern = in.getIntern();
+
+      if(intern == null && label.isIntern()) {
+         return Intern.getDefault();
+      }
+      return intern;
+   }
+
+   /**
+    * This is used to read a string value. If the input has a value
+    * table then the string was written using the table, and repeated
+    * values resolve to the same string instance.
+    * 
+    * @param in this is the input the value is read from
+    * 
+    * @return this returns the string that was read
+    * 
+    * @throws Exception thrown if the string can not be read
+    */
+   private String readText(BinaryInput in) throws Exception {
+      if(in.getTable() != null) {
+         return in.readShared();
+      }
+      return in.readString();
+   }
+
+   /**
+    * This is used to acquire the enumerated constant for an ordinal.
+    * If the ordinal is not valid for the enumeration then this will
+    * throw an exception rather than an index error.
+    * 
+    * @param ordinal this is the ordinal of the constant
+    * 
+    * @return this returns the constant for the ordinal
+    */
+   private Object getEnum(long ordinal) throws Exception {
+      if(ordinal < 0 || ordinal >= constants.length) {
+         throw new ElementException("Ordinal %s is not valid for %s", ordinal, label);
+      }
+      return constants[(int) ordinal];
+   }
+
+   /**
+    * This is used to acquire the schema for the declared field type.
+    * The schema is resolved when first required, as the schema for a
+    * class can refer to itself.
+    * 
+    * @return this returns the schema for the declared type
+    */
+   private BinarySchema getSchema() throws Exception {
+      if(schema == null) {
+         schema = BinarySchema.getInstance(type);
+      }
+      return schema;
+   }
+
+   /**
+    * This is used to acquire the label for the annotated field.
+    * 
+    * @return this returns the label for the field
+    */
+   public Label getLabel() {
+      return label;
+   }
+
+   /**
+    * This is used to acquire the wire kind for the field values.
+    * 
+    * @return this returns the wire kind for the field
+    */
+   public int getKind() {
+      return kind;
+   }
+
+   /**
+    * This is used to acquire the wire kind written for the values.
+    * Strings written using a value table have a wire kind of their
+    * own, as a reader must add them to its table even if skipped.
+    * Arrays and lists of primitives never use the value table.
+    * 
+    * @param shared this determines if a value table is used
+    * 
+    * @return this returns the wire kind written for the field
+    */
+   public int getKind(boolean shared) {
+      if(shared && (code == STRING || code == TEXT)) {
+         return SHARED;
+      }
+      return kind;
+   }
+
+   /**
+    * This is used to acquire the identifier for the field.
+    * 
+    * @return this returns the identifier for the field
+    */
+   public int getId() {
+      return id;
+   }
+}
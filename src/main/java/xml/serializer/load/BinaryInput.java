@@ -0,0 +1,476 @@
+/*
+ * BinaryInput.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import xml.serializer.load.exceptions.PersistenceException;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * The <code>BinaryInput</code> object is used to read the values of
+ * the binary format from an array. The array is read in place, so a
+ * document held in memory is decoded without being copied. Reading
+ * beyond the end of the document results in an exception rather than
+ * an index error so that truncated documents are reported clearly.
+ * 
+ * @see xml.serializer.load.BinaryOutput
+ */
+final class BinaryInput {
+
+   /**
+    * This is the character set used to decode strings.
+    */
+   private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+   /**
+    * This resolves the layout of an earlier version of the schema.
+    */
+   private BinaryResolver resolver;
+
+   /**
+    * This is the table of strings read, if strings are shared.
+    */
+   private Vocabulary table;
+
+   /**
+    * This is used to resolve repeated strings, this may be null.
+    */
+   private Intern intern;
+
+   /**
+    * This is the array containing the binary document.
+    */
+   private byte[] buffer;
+
+   /**
+    * This is the offset of the next byte to be read.
+    */
+   private int offset;
+
+   /**
+    * This is the offset after the last byte of the document.
+    */
+   private int limit;
+
+   /**
+    * Constructor for the <code>BinaryInput</code> object. This is
+    * given the region of the array that contains the document. The
+    * array must not be modified while the document is being read.
+    * 
+    * @param buffer this is the array containing the document
+    * @param off this is the offset of the document in the array
+    * @param len this is the length of the document in the array
+    */
+   public BinaryInput(byte[] buffer, int off, int len) {
+      this.limit = off + len;
+      this.buffer = buffer;
+      this.offset = off;
+   }
+
+   /**
+    * This is used to read a single unsigned byte from the document.
+    * 
+    * @return this returns the next byte within the document
+    * 
+    * @throws Exception thrown if the end of the document is reached
+    */
+   public int read() throws Exception {
+      if(offset >= limit) {
+         throw new PersistenceException("Unexpected end of binary document");
+      }
+      return buffer[offset++] & 0xff;
+   }
+
+   /**
+    * This is used to read an unsigned variable length integer. Each
+    * byte holds seven bits of the value, with the high bit set on all
+    * bytes but the last. A value longer than ten bytes is malformed.
+    * 
+    * @return this returns the value that was read
+    * 
+    * @throws Exception thrown if the value is not well formed
+    */
+   public long readVarint() throws Exception {
+      long value = 0;
+
+      for(int shift = 0; shift < 64; shift += 7) {
+         int next = read();
+
+         value |= (long) (next & 0x7f) << shift;
+
+         if(next < 0x80) {
+            return value;
+         }
+      }
+      throw new PersistenceException("Malformed variable length integer");
+   }
+
+   /**
+    * This is used to read a signed variable length integer. The value
+    * read is zig zag decoded so that small negative values, which are
+    * written in a small number of bytes, are restored.
+    * 
+    * @return this returns the value that was read
+    * 
+    * @throws Exception thrown if the value is not well formed
+    */
+   public long readSigned() throws Exception {
+      long value = readVarint();
+
+      return (value >>> 1) ^ -(value & 1);
+   }
+
+   /**
+    * This is used to read a length such as the size of a string or
+    * the number of entries in a list. The length must be no larger
+    * than the remaining bytes, which guards against allocating huge
+    * arrays when reading a corrupt document.
+    * 
+    * @return this returns the length that was read
+    * 
+    * @throws Exception thrown if the length is not valid
+    */
+   public int readLength() throws Exception {
+      long length = readVarint();
+
+      if(length > limit - offset) {
+         throw new PersistenceException("Length %s exceeds binary document", length);
+      }
+      return (int) length;
+   }
+
+   /**
+    * This is used to read a four byte integer in little endian order.
+    * 
+    * @return this returns the value that was read
+    * 
+    * @throws Exception thrown if the end of the document is reached
+    */
+   public int readInt() throws Exception {
+      if(offset + 4 > limit) {
+         throw new PersistenceException("Unexpected end of binary document");
+      }
+      int value = (buffer[offset] & 0xff) | (buffer[offset + 1] & 0xff) << 8 | 
+                  (buffer[offset + 2] & 0xff) << 16 | (buffer[offset + 3] & 0xff) << 24;
+
+      offset += 4;
+      return value;
+   }
+
+   /**
+    * This is used to read an eight byte integer in little endian order.
+    * 
+    * @return this returns the value that was read
+    * 
+    * @throws Exception thrown if the end of the document is reached
+    */
+   public long readLong() throws Exception {
+      long low = readInt() & 0xffffffffL;
+      long high = readInt();
+
+      return high << 32 | low;
+   }
+
+   /**
+    * This is used to read a string that is prefixed by its length in
+    * bytes. The string is decoded directly from the array, which for
+    * strings of ASCII characters is little more than a copy.
+    * 
+    * @return this returns the string that was read
+    * 
+    * @throws Exception thrown if the string is not well formed
+    */
+   public String readString() throws Exception {
+      int length = readLength();
+      int start = offset;
+
+      offset += length;
+      return new String(buffer, start, length, UTF_8);
+   }
+
+   /**
+    * This is used to read a string that is prefixed by its length in
+    * bytes, resolving it from the intern cache given. If the string 
+    * is within the cache then no string is allocated. If the cache
+    * is null this is the same as reading the string directly.
+    * 
+    * @param intern this is used to resolve repeated strings
+    * 
+    * @return this returns the string that was read
+    * 
+    * @throws Exception thrown if the string is not well formed
+    */
+   public String readString(Intern intern) throws Exception {
+      if(intern != null) {
+         int length = readLength();
+         int start = offset;
+         String text = intern.intern(buffer, start, length);
+
+         offset += length;
+
+         if(text == null) {
+            return intern.intern(new String(buffer, start, length, UTF_8));
+         }
+         return text;
+      }
+      return readString();
+   }
+
+   /**
+    * This is used to read the given number of bytes as a new array.
+    * 
+    * @param length this is the number of bytes to read
+    * 
+    * @return this returns a copy of the bytes that were read
+    * 
+    * @throws Exception thrown if the end of the document is reached
+    */
+   public byte[] readBytes(int length) throws Exception {
+      int start = offset;
+
+      skip(length);
+      return Arrays.copyOfRange(buffer, start, start + length);
+   }
+
+   /**
+    * This is used to read an array of the given primitive type. The
+    * number of values is read first so that the array is allocated
+    * at exactly the required size, and each value is read directly
+    * in to the array. If the values do not take exactly the length
+    * written for the array then the document is not valid.
+    * 
+    * @param type this is the component type of the array
+    * 
+    * @return this returns the primitive array that was read
+    * 
+    * @throws Exception thrown if the array is not well formed
+    */
+   public Object readArray(Class type) throws Exception {
+      int length = readLength();
+      int finish = offset + length;
+      int count = readLength();
+      Object array = readArray(type, count);
+
+      if(offset != finish) {
+         throw new PersistenceException("Array of %s values does not match its length", count);
+      }
+      return array;
+   }
+
+   /**
+    * This is used to read the given number of values in to an array
+    * of the given primitive type. Integral values are read as signed
+    * variable length integers and floating point values at a fixed
+    * width, as they would be for a field of the component type.
+    * 
+    * @param type this is the component type of the array
+    * @param count this is the number of values to be read
+    * 
+    * @return this returns the primitive array that was read
+    * 
+    * @throws Exception thrown if the end of the document is reached
+    */
+   private Object readArray(Class type, int count) throws Exception {
+      if(type == int.class) {
+         int[] list = new int[count];
+
+         for(int i = 0; i < count; i++) {
+            list[i] = (int) readSigned();
+         }
+         return list;
+      }
+      if(type == long.class) {
+         long[] list = new long[count];
+
+         for(int i = 0; i < count; i++) {
+            list[i] = readSigned();
+         }
+         return list;
+      }
+      if(type == short.class) {
+         short[] list = new short[count];
+
+         for(int i = 0; i < count; i++) {
+            list[i] = (short) readSigned();
+         }
+         return list;
+      }
+      if(type == double.class) {
+         double[] list = new double[count];
+
+         for(int i = 0; i < count; i++) {
+            list[i] = Double.longBitsToDouble(readLong());
+         }
+         return list;
+      }
+      if(type == float.class) {
+         float[] list = new float[count];
+
+         for(int i = 0; i < count; i++) {
+            list[i] = Float.intBitsToFloat(readInt());
+         }
+         return list;
+      }
+      if(type == byte.class) {
+         return readBytes(count);
+      }
+      boolean[] list = new boolean[count];
+
+      for(int i = 0; i < count; i++) {
+         list[i] = read() != 0;
+      }
+      return list;
+   }
+
+   /**
+    * This is used to read a string written using the value table. A
+    * string that is written in full is added to the table if it was
+    * added by the writer, and a string that is referenced resolves to
+    * the same instance every time it is read.
+    * 
+    * @return this returns the string that was read
+    * 
+    * @throws Exception thrown if the reference is not valid
+    */
+   public String readShared() throws Exception {
+      return readShared(null);
+   }
+
+   /**
+    * This is used to read a string written using the value table. A
+    * string that is written in full is resolved from the intern cache
+    * given, if any, before it is added to the table, so that strings
+    * repeated across documents also share the same instance.
+    * 
+    * @param intern this is used to resolve repeated strings
+    * 
+    * @return this returns the string that was read
+    * 
+    * @throws Exception thrown if the reference is not valid
+    */
+   public String readShared(Intern intern) throws Exception {
+      if(table == null) {
+         throw new PersistenceException("Shared string without a value table");
+      }
+      long index = readVarint();
+
+      if(index < 2) {
+         String text = readString(intern);
+
+         if(index == 0) {
+            table.add(text);
+         }
+         return text;
+      }
+      String text = table.get((int) Math.min(index - 2, Integer.MAX_VALUE));
+
+      if(text == null) {
+         throw new PersistenceException("Shared string %s is not defined", index - 2);
+      }
+      return text;
+   }
+
+   /**
+    * This is used to skip the given number of bytes within the input.
+    * 
+    * @param length this is the number of bytes to skip
+    * 
+    * @throws Exception thrown if the end of the document is reached
+    */
+   public void skip(int length) throws Exception {
+      if(length > limit - offset) {
+         throw new PersistenceException("Unexpected end of binary document");
+      }
+      offset += length;
+   }
+
+   /**
+    * This is used to acquire the resolver for the document. This is
+    * null if the document was written with the schema of the reader,
+    * in which case the fields are read in their own layout.
+    * 
+    * @return this returns the resolver for an earlier schema
+    */
+   public BinaryResolver getResolver() {
+      return resolver;
+   }
+
+   /**
+    * This is used to specify the resolver used for the document. It
+    * is set once the header has been read and before any object is.
+    * 
+    * @param resolver this resolves the layout of the writer schema
+    */
+   public void setResolver(BinaryResolver resolver) {
+      this.resolver = resolver;
+   }
+
+   /**
+    * This is used to acquire the cache used to resolve the strings
+    * read for every field. If this is null then only strings read for
+    * fields that request interning are resolved from a cache.
+    * 
+    * @return this returns the cache used to resolve strings
+    */
+   public Intern getIntern() {
+      return intern;
+   }
+
+   /**
+    * This is used to specify the cache used to resolve the strings
+    * read for every field, which may be null.
+    * 
+    * @param intern this is used to resolve repeated strings
+    */
+   public void setIntern(Intern intern) {
+      this.intern = intern;
+   }
+
+   /**
+    * This is used to acquire the table of strings that have been read.
+    * If this is null then strings were not shared by the writer.
+    * 
+    * @return this returns the table of strings read
+    */
+   public Vocabulary getTable() {
+      return table;
+   }
+
+   /**
+    * This is used to specify the table used to share strings. This
+    * is set once the header has been read, if strings are shared.
+    * 
+    * @param table this is the table used to share strings
+    */
+   public void setTable(Vocabulary table) {
+      this.table = table;
+   }
+
+   /**
+    * This is used to determine whether there are bytes remaining. 
+    * 
+    * @return this returns true if there are bytes remaining
+    */
+   public boolean isEmpty() {
+      return offset >= limit;
+   }
+}
@@ -0,0 +1,127 @@
+/*
+ * BinaryLayout.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+/**
+ * The <code>BinaryLayout</code> object maps the field identifiers of
+ * a class as written by one version of a schema to the fields of the
+ * class as it is read. A described field is matched to a local field
+ * with the same name, category and wire kind, so fields may be moved
+ * or added without affecting the others. A described field with no
+ * match has been removed, and its value is skipped when read.
+ * 
+ * @see xml.serializer.load.BinaryResolver
+ */
+final class BinaryLayout {
+
+   /**
+    * These are the local fields indexed by the writer identifiers.
+    */
+   private BinaryField[] fields;
+
+   /**
+    * Constructor for the <code>BinaryLayout</code> object. This is
+    * used when a class is laid out exactly as it is locally, such
+    * that each identifier refers to the local field of that number.
+    * 
+    * @param schema this is the local schema of the class
+    */
+   public BinaryLayout(BinarySchema schema) {
+      this.fields = schema.getFields();
+   }
+
+   /**
+    * Constructor for the <code>BinaryLayout</code> object. This will
+    * match each described field to a local field. Kinds are written
+    * with the wire kind shifted left by one and the low bit set for
+    * attributes, so attributes only match attributes.
+    * 
+    * @param schema this is the local schema of the class
+    * @param names these are the names of the described fields
+    * @param kinds these are the kinds of the described fields
+    */
+   public BinaryLayout(BinarySchema schema, String[] names, int[] kinds) {
+      this.fields = new BinaryField[names.length];
+
+      for(int i = 0; i < names.length; i++) {
+         fields[i] = getField(schema, names[i], kinds[i]);
+      }
+   }
+
+   /**
+    * This is used to find the local field matching a described field.
+    * If the field has been removed, or if it is now of a kind that
+    * can not be read from the described value, this returns null.
+    * 
+    * @param schema this is the local schema of the class
+    * @param name this is the name of the described field
+    * @param kind this is the kind of the described field
+    * 
+    * @return this returns the matching local field or null
+    */
+   private BinaryField getField(BinarySchema schema, String name, int kind) {
+      for(BinaryField field : schema.getFields()) {
+         Label label = field.getLabel();
+         int attribute = label instanceof AttributeLabel ? 1 : 0;
+
+         if(label.getName().equals(name)) {
+            if(field.getKind() == kind >> 1 && attribute == (kind & 1)) {
+               return field;
+            }
+         }
+      }
+      return null;
+   }
+
+   /**
+    * This is used to acquire the local field for an identifier that
+    * was written. If the field was removed, or if the identifier is
+    * not described at all, this will return null.
+    * 
+    * @param id this is the identifier that was written
+    * 
+    * @return this returns the local field for the identifier
+    */
+   public BinaryField getField(long id) {
+      if(id > fields.length) {
+         return null;
+      }
+      return fields[(int) id - 1];
+   }
+
+   /**
+    * This determines whether the local field provided can be read
+    * using this layout. A field that can not be read is one that has
+    * been added since the document was written.
+    * 
+    * @param field this is the local field to be evaluated
+    * 
+    * @return true if the field is described by this layout
+    */
+   public boolean contains(BinaryField field) {
+      for(BinaryField next : fields) {
+         if(next == field) {
+            return true;
+         }
+      }
+      return false;
+   }
+}
@@ -0,0 +1,446 @@
+/*
+ * BinaryOutput.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * The <code>BinaryOutput</code> object is used to collect the bytes
+ * of the binary format in a growable array. Integers are written as
+ * base 128 variable length integers, so that small values take a 
+ * single byte, while floating point values are written at a fixed
+ * width. Strings are written as UTF-8 prefixed by their length.
+ * <p>
+ * The array is taken from a pool and must be released once the bytes
+ * have been copied from it. Nothing is written to a stream until the
+ * output has been completed, so the encoding never blocks.
+ * 
+ * @see xml.serializer.load.BinaryInput
+ */
+final class BinaryOutput {
+
+   /**
+    * This is the longest string that is added to the value table.
+    */
+   public static final int LIMIT = 64;
+
+   /**
+    * This is the table of strings written, if strings are shared.
+    */
+   private Vocabulary table;
+
+   /**
+    * This is the array that the encoded bytes are written to.
+    */
+   private byte[] buffer;
+
+   /**
+    * This is the number of bytes that have been written.
+    */
+   private int count;
+
+   /**
+    * Constructor for the <code>BinaryOutput</code> object. This is
+    * given the array that the bytes are written to, which is replaced
+    * with a larger array if the bytes written do not fit within it.
+    * 
+    * @param buffer this is the array the bytes are written to
+    */
+   public BinaryOutput(byte[] buffer) {
+      this.buffer = buffer;
+   }
+
+   /**
+    * This is used to write a single byte to the output. Only the low
+    * eight bits of the value provided are written.
+    * 
+    * @param octet this is the byte that is to be written
+    */
+   public void write(int octet) {
+      if(count == buffer.length) {
+         grow(1);
+      }
+      buffer[count++] = (byte) octet;
+   }
+
+   /**
+    * This is used to write a region of the array provided as is. The
+    * bytes are copied without any length prefix being written.
+    * 
+    * @param data this is the array containing the bytes to write
+    * @param off this is the offset of the first byte to write
+    * @param len this is the number of bytes to write
+    */
+   public void write(byte[] data, int off, int len) {
+      if(count + len > buffer.length) {
+         grow(len);
+      }
+      System.arraycopy(data, off, buffer, count, len);
+      count += len;
+   }
+
+   /**
+    * This is used to write an unsigned variable length integer. Each
+    * byte holds seven bits of the value, with the high bit set on all
+    * bytes but the last, so values below 128 take a single byte.
+    * 
+    * @param value this is the value that is to be written
+    */
+   public void writeVarint(long value) {
+      if(count + 10 > buffer.length) {
+         grow(10);
+      }
+      while((value & ~0x7fL) != 0) {
+         buffer[count++] = (byte) ((value & 0x7f) | 0x80);
+         value >>>= 7;
+      }
+      buffer[count++] = (byte) value;
+   }
+
+   /**
+    * This is used to write a signed variable length integer. The value
+    * is zig zag encoded first so that small negative values are also
+    * written in a small number of bytes.
+    * 
+    * @param value this is the value that is to be written
+    */
+   public void writeSigned(long value) {
+      writeVarint((value << 1) ^ (value >> 63));
+   }
+
+   /**
+    * This is used to write a four byte integer in little endian order.
+    * This is used for single precision floating point values.
+    * 
+    * @param value this is the value that is to be written
+    */
+   public void writeFixed(int value) {
+      if(count + 4 > buffer.length) {
+         grow(4);
+      }
+      buffer[count++] = (byte) value;
+      buffer[count++] = (byte) (value >> 8);
+      buffer[count++] = (byte) (value >> 16);
+      buffer[count++] = (byte) (value >> 24);
+   }
+
+   /**
+    * This is used to write an eight byte integer in little endian order.
+    * This is used for double precision floating point values.
+    * 
+    * @param value this is the value that is to be written
+    */
+   public void writeFixed(long value) {
+      writeFixed((int) value);
+      writeFixed((int) (value >>> 32));
+   }
+
+   /**
+    * This is used to write a string as UTF-8 prefixed by its length in
+    * bytes. The length is determined first so that the characters can
+    * be encoded directly in to the array without an intermediate copy.
+    * Surrogate pairs are written as four bytes, while an unpaired
+    * surrogate is written as a question mark.
+    * 
+    * @param text this is the string that is to be written
+    */
+   public void writeString(String text) {
+      int length = text.length();
+      int size = length;
+
+      for(int i = 0; i < length; i++) {
+         char next = text.charAt(i);
+
+         if(next >= 0x80) {
+            if(isPair(text, i)) {
+               size += 2;
+               i++;
+            } else if(!Character.isSurrogate(next)) {
+               size += next < 0x800 ? 1 : 2;
+            }
+         }
+      }
+      writeVarint(size);
+
+      if(count + size > buffer.length) {
+         grow(size);
+      }
+      for(int i = 0; i < length; i++) {
+         char next = text.charAt(i);
+
+         if(next < 0x80) {
+            buffer[count++] = (byte) next;
+         } else if(next < 0x800) {
+            buffer[count++] = (byte) (0xc0 | (next >> 6));
+            buffer[count++] = (byte) (0x80 | (next & 0x3f));
+         } else if(isPair(text, i)) {
+            int code = Character.toCodePoint(next, text.charAt(++i));
+
+            buffer[count++] = (byte) (0xf0 | (code >> 18));
+            buffer[count++] = (byte) (0x80 | ((code >> 12) & 0x3f));
+            buffer[count++] = (byte) (0x80 | ((code >> 6) & 0x3f));
+            buffer[count++] = (byte) (0x80 | (code & 0x3f));
+         } else if(Character.isSurrogate(next)) {
+            buffer[count++] = '?';
+         } else {
+            buffer[count++] = (byte) (0xe0 | (next >> 12));
+            buffer[count++] = (byte) (0x80 | ((next >> 6) & 0x3f));
+            buffer[count++] = (byte) (0x80 | (next & 0x3f));
+         }
+      }
+   }
+
+   /**
+    * This is used to determine if the character at the given index is
+    * the start of a surrogate pair, that is a high surrogate followed
+    * by a low surrogate, which is written as a single code point.
+    * 
+    * @param text this is the string that is being written
+    * @param index this is the index of the character to examine
+    * 
+    * @return true if the character starts a surrogate pair
+    */
+   private boolean isPair(String text, int index) {
+      if(Character.isHighSurrogate(text.charAt(index))) {
+         if(index + 1 < text.length()) {
+            return Character.isLowSurrogate(text.charAt(index + 1));
+         }
+      }
+      return false;
+   }
+
+   /**
+    * This is used to write an array of a primitive type. The array is
+    * prefixed by the length in bytes of its encoding, so that it can
+    * be skipped like a string, followed by the number of values. The
+    * values are then written in the encoding used for a field of the
+    * component type, with integral values written as signed varints.
+    * 
+    * @param array this is the primitive array that is to be written
+    */
+   public void writeArray(Object array) {
+      if(array instanceof int[]) {
+         int[] list = (int[]) array;
+         int size = 0;
+
+         for(int value : list) {
+            size += getSigned(value);
+         }
+         writeHeader(size, list.length);
+
+         for(int value : list) {
+            writeSigned(value);
+         }
+      } else if(array instanceof long[]) {
+         long[] list = (long[]) array;
+         int size = 0;
+
+         for(long value : list) {
+            size += getSigned(value);
+         }
+         writeHeader(size, list.length);
+
+         for(long value : list) {
+            writeSigned(value);
+         }
+      } else if(array instanceof short[]) {
+         short[] list = (short[]) array;
+         int size = 0;
+
+         for(short value : list) {
+            size += getSigned(value);
+         }
+         writeHeader(size, list.length);
+
+         for(short value : list) {
+            writeSigned(value);
+         }
+      } else if(array instanceof double[]) {
+         double[] list = (double[]) array;
+
+         writeHeader(list.length * 8, list.length);
+
+         for(double value : list) {
+            writeFixed(Double.doubleToRawLongBits(value));
+         }
+      } else if(array instanceof float[]) {
+         float[] list = (float[]) array;
+
+         writeHeader(list.length * 4, list.length);
+
+         for(float value : list) {
+            writeFixed(Float.floatToRawIntBits(value));
+         }
+      } else if(array instanceof byte[]) {
+         byte[] list = (byte[]) array;
+
+         writeHeader(list.length, list.length);
+         write(list, 0, list.length);
+      } else {
+         boolean[] list = (boolean[]) array;
+
+         writeHeader(list.length, list.length);
+
+         for(boolean value : list) {
+            write(value ? 1 : 0);
+         }
+      }
+   }
+
+   /**
+    * This is used to write the prefix for an array. This is the total
+    * length in bytes, including the count, followed by the count of 
+    * values within the array.
+    * 
+    * @param size this is the number of bytes taken by the values
+    * @param length this is the number of values within the array
+    */
+   private void writeHeader(int size, int length) {
+      writeVarint(size + getSize(length));
+      writeVarint(length);
+   }
+
+   /**
+    * This is used to determine the number of bytes taken by a signed
+    * variable length integer once it has been zig zag encoded.
+    * 
+    * @param value this is the value that is to be measured
+    * 
+    * @return this returns the number of bytes the value takes
+    */
+   private static int getSigned(long value) {
+      return getSize((value << 1) ^ (value >> 63));
+   }
+
+   /**
+    * This is used to determine the number of bytes taken by an 
+    * unsigned variable length integer, which is one byte for each
+    * seven bits of the value.
+    * 
+    * @param value this is the value that is to be measured
+    * 
+    * @return this returns the number of bytes the value takes
+    */
+   private static int getSize(long value) {
+      return (70 - Long.numberOfLeadingZeros(value | 1)) / 7;
+   }
+
+   /**
+    * This is used to write a string using the value table. If the
+    * string is within the table its index is written offset by two.
+    * If not then a zero is written if the string is short enough to
+    * be added to the table, or a one if it is not, and the string is
+    * then written prefixed by its length.
+    * 
+    * @param text this is the string that is to be written
+    */
+   public void writeShared(String text) {
+      int index = table.getIndex(text);
+
+      if(index >= 0) {
+         writeVarint(index + 2);
+      } else if(text.length() > LIMIT) {
+         writeVarint(1);
+         writeString(text);
+      } else {
+         writeVarint(0);
+         writeString(text);
+         table.add(text);
+      }
+   }
+
+   /**
+    * This is used to acquire the table of strings that have been
+    * written. If this is null then strings are not shared and each
+    * string is written in full.
+    * 
+    * @return this returns the table of strings written
+    */
+   public Vocabulary getTable() {
+      return table;
+   }
+
+   /**
+    * This is used to specify the table used to share strings. This
+    * must be set before any string values have been written.
+    * 
+    * @param table this is the table used to share strings
+    */
+   public void setTable(Vocabulary table) {
+      this.table = table;
+   }
+
+   /**
+    * This is used to grow the array so that it can hold at least the
+    * number of bytes given in addition to those already written. The
+    * array is at least doubled so that growth is amortized.
+    * 
+    * @param require this is the number of bytes to be written
+    */
+   private void grow(int require) {
+      int size = Math.max(buffer.length * 2, count + require);
+
+      buffer = Arrays.copyOf(buffer, size);
+   }
+
+   /**
+    * This is used to acquire the array the bytes were written to. The
+    * array may be larger than the number of bytes written, and can be
+    * returned to the pool once the bytes have been copied from it.
+    * 
+    * @return this returns the array the bytes were written to
+    */
+   public byte[] getBuffer() {
+      return buffer;
+   }
+
+   /**
+    * This is used to acquire a copy of the bytes that were written. 
+    * The array returned is exactly the size of the bytes written.
+    * 
+    * @return this returns a copy of the bytes that were written
+    */
+   public byte[] toByteArray() {
+      return Arrays.copyOf(buffer, count);
+   }
+
+   /**
+    * This is used to write the bytes that have been written to the
+    * stream provided. The stream is flushed but is not closed.
+    * 
+    * @param out this is the stream the bytes are written to
+    */
+   public void writeTo(OutputStream out) throws IOException {
+      out.write(buffer, 0, count);
+      out.flush();
+   }
+
+   /**
+    * This is used to determine the number of bytes written so far.
+    * 
+    * @return this returns the number of bytes that were written
+    */
+   public int size() {
+      return count;
+   }
+}
@@ -0,0 +1,326 @@
+/*
+ * BinaryPersister.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import xml.serializer.Root;
+import xml.serializer.load.exceptions.PersistenceException;
+import xml.serializer.load.exceptions.RootException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The <code>BinaryPersister</code> object is used to serialize objects
+ * in a compact binary format rather than XML. The format is driven by
+ * the same annotations as XML, so any class that can be written by a
+ * <code>Persister</code> can also be written by this. Instead of the
+ * names of elements and attributes each field is identified by a 
+ * small number assigned from the schema for its class.
+ * <p>
+ * Integers are written as variable length integers, floating point
+ * values are written at a fixed width, strings are prefixed by their
+ * length and element lists are prefixed by the number of entries.
+ * Reading requires no parsing of text and no DOM document is built,
+ * so objects are read and written several times faster than XML.
+ * <p>
+ * Each document carries a description of the schema classes it was
+ * written with, identified by a fingerprint. A reader with the same
+ * schema skips the description, while a reader with another version
+ * of the schema maps the fields by name, so optional fields can be
+ * added and fields can be removed or reordered. Like XML, a required
+ * field that is missing results in an exception.
+ * <p>
+ * Documents that repeat the same strings many times can be written
+ * with a value table. The first occurrence of a short string is
+ * written in full and each repeat is written as a small index, and
+ * when read every repeat resolves to the same string instance, so
+ * both the document and the objects read from it are smaller. An
+ * <code>Intern</code> cache can also be given, so that strings read
+ * are resolved directly from the bytes of the document and equal
+ * strings read from different documents share the same instance.
+ * 
+ * @see xml.serializer.load.BinaryVersion
+ * @see xml.serializer.load.Persister
+ */
+public class BinaryPersister {
+
+   /**
+    * These are the bytes that begin every binary document.
+    */
+   private static final byte[] MAGIC = {'S', 'X', 'B', 3};
+
+   /**
+    * This is the flag set in the header if strings are shared.
+    */
+   private static final int SHARED = 1;
+
+   /**
+    * This is the largest number of strings in the value table.
+    */
+   private static final int CAPACITY = 65536;
+
+   /**
+    * This is used to recycle the arrays the documents are built in.
+    */
+   private static BufferPool buffers;
+
+   /**
+    * This is used to predict the size of the document for a class.
+    */
+   private static Estimate estimate;
+
+   static {
+      buffers = new BufferPool(4096, 1 << 20, 8 << 20);
+      estimate = new Estimate();
+   }
+
+   /**
+    * This is used to resolve repeated strings, this may be null.
+    */
+   private Intern intern;
+
+   /**
+    * Determines if strings are written using a value table.
+    */
+   private boolean shared;
+
+   /**
+    * Constructor for the <code>BinaryPersister</code> object. The
+    * persister holds no state between operations, so an instance can
+    * be shared by any number of threads reading and writing at once.
+    */
+   public BinaryPersister() {
+      this(false);
+   }
+
+   /**
+    * Constructor for the <code>BinaryPersister</code> object. If the
+    * strings are to be shared then documents are written with a table
+    * of values, so that repeated strings are written only once. Any
+    * persister can read documents written with or without the table.
+    * 
+    * @param shared determines if strings are written with a table
+    */
+   public BinaryPersister(boolean shared) {
+      this(shared, null);
+   }
+
+   /**
+    * Constructor for the <code>BinaryPersister</code> object. This is
+    * given the cache used to intern the strings read, so that strings
+    * repeated across documents share an instance. A string within the
+    * cache is resolved from the bytes read without being allocated.
+    * 
+    * @param shared determines if strings are written with a table
+    * @param intern this is used to resolve repeated strings
+    */
+   public BinaryPersister(boolean shared, Intern intern) {
+      this.intern = intern;
+      this.shared = shared;
+   }
+
+   /**
+    * This is used to read an object of the specified type from the
+    * array provided. The array is read in place without being copied.
+    * 
+    * @param type this is the class type to be deserialized
+    * @param source this is the array containing the document
+    * 
+    * @return this returns the object that was deserialized
+    * 
+    * @throws Exception if the object cannot be fully deserialized
+    */
+   public Object read(Class type, byte[] source) throws Exception {
+      return read(type, source, 0, source.length);
+   }
+
+   /**
+    * This is used to read an object of the specified type from the
+    * region of the array provided. The document must begin with the
+    * bytes that identify the binary format, and the root class must
+    * have a <code>Root</code> annotation just as it must for XML.
+    * 
+    * @param type this is the class type to be deserialized
+    * @param source this is the array containing the document
+    * @param off this is the offset of the document in the array
+    * @param len this is the length of the document in the array
+    * 
+    * @return this returns the object that was deserialized
+    * 
+    * @throws Exception if the object cannot be fully deserialized
+    */
+   public Object read(Class type, byte[] source, int off, int len) throws Exception {
+      BinaryInput in = new BinaryInput(source, off, len);
+      BinarySchema schema = getSchema(type);
+
+      for(int i = 0; i < MAGIC.length; i++) {
+         if(in.isEmpty() || in.read() != MAGIC[i]) {
+            throw new PersistenceException("Document is not in the binary format");
+         }
+      }
+      if((in.read() & SHARED) != 0) {
+         in.setTable(new Vocabulary(CAPACITY));
+      }
+      in.setIntern(intern);
+      in.setResolver(BinaryVersion.read(in, type));
+      return BinarySchema.read(in, type, schema);
+   }
+
+   /**
+    * This is used to read an object of the specified type from the
+    * stream provided. The stream is read to its end before the object
+    * is read, the stream is not closed once it has been read.
+    * 
+    * @param type this is the class type to be deserialized
+    * @param source this is the stream containing the document
+    * 
+    * @return this returns the object that was deserialized
+    * 
+    * @throws Exception if the object cannot be fully deserialized
+    */
+   public Object read(Class type, InputStream source) throws Exception {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int count;
+
+      while((count = source.read(buffer)) != -1) {
+         out.write(buffer, 0, count);
+      }
+      return read(type, out.toByteArray());
+   }
+
+   /**
+    * This is used to write the object provided to an array. The object
+    * is written to a pooled array sized from the documents previously
+    * written for the same class, and the array returned is exactly the
+    * size of the document that was written.
+    * 
+    * @param source this is the object that is to be serialized
+    * 
+    * @return this returns the document for the object
+    * 
+    * @throws Exception if the object cannot be serialized
+    */
+   public byte[] write(Object source) throws Exception {
+      BinaryOutput out = write(source, getOutput(source));
+
+      try {
+         return out.toByteArray();
+      } finally {
+         buffers.offer(out.getBuffer());
+      }
+   }
+
+   /**
+    * This is used to write the object provided to the stream. The 
+    * document is built in full before it is written, so the stream
+    * receives the document in a single write and is then flushed.
+    * 
+    * @param source this is the object that is to be serialized
+    * @param out this is the stream the document is written to
+    * 
+    * @throws Exception if the object cannot be serialized
+    */
+   public void write(Object source, OutputStream out) throws Exception {
+      BinaryOutput output = write(source, getOutput(source));
+
+      try {
+         output.writeTo(out);
+      } finally {
+         buffers.offer(output.getBuffer());
+      }
+   }
+
+   /**
+    * This is used to write the object to the output provided. Once 
+    * the object has been written the size of the document is recorded
+    * so that the next object of the class is given a large enough
+    * array. If the object can not be written the array is released.
+    * 
+    * @param source this is the object that is to be serialized
+    * @param out this is the output the document is written to
+    * 
+    * @return this returns the output containing the document
+    * 
+    * @throws Exception if the object cannot be serialized
+    */
+   private BinaryOutput write(Object source, BinaryOutput out) throws Exception {
+      Class type = source.getClass();
+
+      try {
+         BinarySchema schema = getSchema(type);
+         BinaryVersion version = BinaryVersion.getInstance(type);
+
+         out.write(MAGIC, 0, MAGIC.length);
+
+         if(shared) {
+            out.setTable(new Vocabulary(CAPACITY));
+            out.write(SHARED);
+         } else {
+            out.write(0);
+         }
+         version.write(out);
+         BinarySchema.write(out, source, type, schema);
+      } catch(Exception e) {
+         buffers.offer(out.getBuffer());
+         throw e;
+      }
+      estimate.update(type, out.size());
+      return out;
+   }
+
+   /**
+    * This is used to acquire an output for the object provided. The
+    * array for the output is taken from the pool, and is at least as
+    * large as the estimated size of the document for the class.
+    * 
+    * @param source this is the object that is to be serialized
+    * 
+    * @return this returns an output sized for the object
+    */
+   private BinaryOutput getOutput(Object source) throws Exception {
+      Class type = source.getClass();
+      int size = estimate.getSize(type);
+
+      return new BinaryOutput(buffers.take(size));
+   }
+
+   /**
+    * This is used to acquire the schema for a root class. The class
+    * must have a <code>Root</code> annotation, which ensures that the
+    * same classes can be serialized as binary and as XML.
+    * 
+    * @param type this is the root class to acquire the schema for
+    * 
+    * @return this returns the binary schema for the class
+    * 
+    * @throws Exception thrown if there is no root annotation
+    */
+   private BinarySchema getSchema(Class type) throws Exception {
+      Root label = Traverser.getRoot(type);
+
+      if(label == null) {
+         throw new RootException("No root annotation defined for %s", type.getName());
+      }
+      return BinarySchema.getInstance(type);
+   }
+}
@@ -0,0 +1,118 @@
+/*
+ * BinaryResolver.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The <code>BinaryResolver</code> object is used to map the classes
+ * described by a <code>BinaryVersion</code> on to the local classes
+ * being read. The root class of the description is mapped to the
+ * root class of the reader, and the classes of composite and list
+ * fields are then mapped to the classes of the matching local fields.
+ * This means classes need not have the same names in both versions.
+ * <p>
+ * A class that is named within the document, rather than reached by
+ * its declared field, is matched to a described class of the same
+ * name. If no class of the name was described the class is assumed
+ * to be laid out as it is locally.
+ * 
+ * @see xml.serializer.load.BinaryLayout
+ */
+final class BinaryResolver {
+
+   /**
+    * This contains the layouts resolved for each local class.
+    */
+   private ConcurrentHashMap<Class, BinaryLayout> layouts;
+
+   /**
+    * This is the version that describes the writer schema.
+    */
+   private BinaryVersion version;
+
+   /**
+    * Constructor for the <code>BinaryResolver</code> object. This is
+    * given the version describing the schema of the writer and will
+    * immediately resolve every class reachable from the root class.
+    * 
+    * @param version this describes the schema of the writer
+    * @param type this is the local root class to be read
+    */
+   public BinaryResolver(BinaryVersion version, Class type) throws Exception {
+      this.layouts = new ConcurrentHashMap<Class, BinaryLayout>();
+      this.version = version;
+      this.resolve(0, type);
+   }
+
+   /**
+    * This is used to acquire the layout for the schema provided. The
+    * layout maps the identifiers of the writer to the local fields.
+    * 
+    * @param schema this is the local schema to acquire a layout for
+    * 
+    * @return this returns the layout of the writer for the schema
+    */
+   public BinaryLayout getLayout(BinarySchema schema) throws Exception {
+      Class type = schema.getType();
+      BinaryLayout layout = layouts.get(type);
+
+      if(layout == null) {
+         int index = version.getIndex(type.getName());
+
+         if(index < 0) {
+            layout = new BinaryLayout(schema);
+            layouts.put(type, layout);
+         } else {
+            resolve(index, type);
+         }
+         return layouts.get(type);
+      }
+      return layout;
+   }
+
+   /**
+    * This is used to resolve a described class against a local class.
+    * Once the layout of the class is resolved the classes of its
+    * composite and list fields are resolved against the classes of
+    * the local fields they were matched to.
+    * 
+    * @param index this is the index of the described class
+    * @param type this is the local class that it is read as
+    */
+   private void resolve(int index, Class type) throws Exception {
+      if(!layouts.containsKey(type)) {
+         BinarySchema schema = BinarySchema.getInstance(type);
+         BinaryLayout layout = new BinaryLayout(schema, version.getNames(index), version.getKinds(index));
+         int[] references = version.getReferences(index);
+
+         layouts.put(type, layout);
+
+         for(int i = 0; i < references.length; i++) {
+            BinaryField field = layout.getField(i + 1);
+
+            if(field != null && references[i] >= 0) {
+               resolve(references[i], field.getLabel().getDependant());
+            }
+         }
+      }
+   }
+}
@@ -0,0 +1,566 @@
+/*
+ * BinarySchema.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import xml.serializer.load.exceptions.ElementException;
+import xml.serializer.load.exceptions.FieldRequiredException;
+import xml.serializer.load.exceptions.InstantiationException;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The <code>BinarySchema</code> object describes how objects of a
+ * class are laid out in the binary format. It is built from the same
+ * <code>Schema</code> that is used for XML, with each annotated field
+ * given an identifier. Attributes are numbered first and elements
+ * after them, each in the order of their names, so identifiers are
+ * the same for a given class regardless of how its fields are found.
+ * <p>
+ * An object is written as a sequence of fields, each prefixed by its
+ * identifier and wire kind, and terminated by a zero. Fields are
+ * written in the order of their identifiers, which allows a reader
+ * to check for missing required fields as it goes. If a value is of
+ * a different class than declared the class name precedes it, just
+ * as a class attribute is written for XML.
+ * 
+ * @see xml.serializer.load.BinaryField
+ */
+final class BinarySchema {
+
+   /**
+    * This contains the binary schemas that have been built.
+    */
+   private static ConcurrentHashMap<Class, BinarySchema> cache;
+
+   static {
+      cache = new ConcurrentHashMap<Class, BinarySchema>();
+   }
+
+   /**
+    * This is used to instantiate objects of the schema class.
+    */
+   private Constructor factory;
+
+   /**
+    * These are the fields of the schema ordered by identifier.
+    */
+   private BinaryField[] fields;
+
+   /**
+    * This is the class that this schema has been built for.
+    */
+   private Class type;
+
+   /**
+    * This is the number of fields that are required to be read.
+    */
+   private int required;
+
+   /**
+    * Constructor for the <code>BinarySchema</code> object. This will
+    * assign an identifier to each of the labels within the schema of
+    * the class provided. Identifiers start at one, as zero is used to
+    * terminate the fields of an object.
+    * 
+    * @param type this is the class the schema is built for
+    */
+   private BinarySchema(Class type) throws Exception {
+      Schema schema = Source.getSchema(type);
+      List<Label> list = new ArrayList<Label>();
+
+      add(list, schema.getAttributes());
+      add(list, schema.getElements());
+
+      this.fields = new BinaryField[list.size()];
+      this.type = type;
+
+      for(int i = 0; i < fields.length; i++) {
+         fields[i] = new BinaryField(list.get(i), i + 1);
+
+         if(fields[i].getLabel().isRequired()) {
+            required++;
+         }
+      }
+   }
+
+   /**
+    * This is used to add the labels from the map in the order of their
+    * names. Ordering by name ensures that identifiers do not depend
+    * on the order the fields of the class are reported in.
+    * 
+    * @param list this is the list the labels are added to
+    * @param map this is the map containing the labels
+    */
+   private void add(List<Label> list, LabelMap map) {
+      List<Label> labels = new ArrayList<Label>();
+
+      for(Label label : map) {
+         labels.add(label);
+      }
+      Collections.sort(labels, new NameComparator());
+      list.addAll(labels);
+   }
+
+   /**
+    * This is used to acquire the binary schema for the class provided.
+    * Schemas are built once for each class and are then shared by all
+    * threads, as a schema holds no state once it has been built.
+    * 
+    * @param type this is the class to acquire the schema for
+    * 
+    * @return this returns the binary schema for the class
+    */
+   public static BinarySchema getInstance(Class type) throws Exception {
+      BinarySchema schema = cache.get(type);
+
+      if(schema == null) {
+         schema = new BinarySchema(type);
+         cache.put(type, schema);
+      }
+      return schema;
+   }
+
+   /**
+    * This is used to write an object preceded by its class name. If
+    * the class is the declared class then an empty name is written,
+    * which takes a single byte. The fields of the object are written
+    * using the schema for its class.
+    * 
+    * @param out this is the output the object is written to
+    * @param value this is the object that is to be written
+    * @param declared this is the class the reader will expect
+    * @param schema this is the schema for the declared class
+    * 
+    * @throws Exception thrown if the object can not be written
+    */
+   public static void write(BinaryOutput out, Object value, Class declared, BinarySchema schema) throws Exception {
+      Class type = value.getClass();
+
+      if(type != declared) {
+         out.writeString(type.getName());
+         schema = getInstance(type);
+      } else {
+         out.write(0);
+      }
+      schema.write(out, value);
+   }
+
+   /**
+    * This is used to write the entries of an element list. The class
+    * of the collection is written if it is not the class a reader
+    * would create, followed by the number of entries and then each 
+    * entry as an object of the entry type.
+    * 
+    * @param out this is the output the list is written to
+    * @param list this is the collection that is to be written
+    * @param collection this is the class a reader would create
+    * @param entry this is the declared class of the entries
+    * 
+    * @throws Exception thrown if the list can not be written
+    */
+   public static void write(BinaryOutput out, Collection list, Class collection, Class entry) throws Exception {
+      Class type = list.getClass();
+      BinarySchema schema = getInstance(entry);
+
+      if(type != collection) {
+         out.writeString(type.getName());
+      } else {
+         out.write(0);
+      }
+      out.writeVarint(list.size());
+
+      for(Object item : list) {
+         if(!entry.isInstance(item)) {
+            throw new ElementException("Entry %s is not an instance of %s", item, entry);
+         }
+         write(out, item, entry, schema);
+      }
+   }
+
+   /**
+    * This is used to write the fields of the object. Each field writes
+    * its own identifier and value, and the fields are then terminated
+    * with a zero so that the reader knows the object is complete.
+    * 
+    * @param out this is the output the object is written to
+    * @param source this is the object that is to be written
+    * 
+    * @throws Exception thrown if the object can not be written
+    */
+   private void write(BinaryOutput out, Object source) throws Exception {
+      for(BinaryField field : fields) {
+         field.write(out, source);
+      }
+      out.write(0);
+   }
+
+   /**
+    * This is used to read an object that is preceded by its class name.
+    * If no name was written the object is of the declared class, else
+    * the named class must be compatible with the declared class. The
+    * object is instantiated and its fields are read by its schema.
+    * 
+    * @param in this is the input the object is read from
+    * @param declared this is the class that was declared
+    * @param schema this is the schema for the declared class
+    * 
+    * @return this returns the object that was read
+    * 
+    * @throws Exception thrown if the object can not be read
+    */
+   public static Object read(BinaryInput in, Class declared, BinarySchema schema) throws Exception {
+      String name = in.readString();
+
+      if(name.length() > 0) {
+         Class type = getType(name, declared);
+
+         schema = getInstance(type);
+      }
+      return schema.read(in);
+   }
+
+   /**
+    * This is used to read the entries of an element list. If a class
+    * was written for the collection it is instantiated, provided it 
+    * is compatible with the field, otherwise the default collection 
+    * for the field is created. Each entry is then read as an object 
+    * of the entry type.
+    * 
+    * @param in this is the input the list is read from
+    * @param field this is the declared class of the field
+    * @param collection this is the default collection class
+    * @param entry this is the declared class of the entries
+    * 
+    * @return this returns the collection that was read
+    * 
+    * @throws Exception thrown if the list can not be read
+    */
+   public static Collection read(BinaryInput in, Class field, Class collection, Class entry) throws Exception {
+      CollectionFactory factory = new CollectionFactory(collection);
+      BinarySchema schema = getInstance(entry);
+      String name = in.readString();
+      Class type = collection;
+
+      if(name.length() > 0) {
+         type = getType(name, field);
+      }
+      Collection list = factory.getInstance(type);
+      int size = in.readLength();
+
+      for(int i = 0; i < size; i++) {
+         list.add(read(in, entry, schema));
+      }
+      return list;
+   }
+
+   /**
+    * This is used to load a class named within the document. The class
+    * is loaded without being initialized, so that no static code from
+    * a class named within the document is run unless the class is 
+    * compatible with the declared class, in which case it is returned.
+    * 
+    * @param name this is the name of the class that was written
+    * @param declared this is the class that was declared
+    * 
+    * @return this returns the class that was named in the document
+    * 
+    * @throws Exception thrown if the class is not compatible
+    */
+   private static Class getType(String name, Class declared) throws Exception {
+      ClassLoader loader = Thread.currentThread().getContextClassLoader();
+
+      if(loader == null) {
+         loader = BinarySchema.class.getClassLoader();
+      }
+      Class type = Class.forName(name, false, loader);
+
+      if(!declared.isAssignableFrom(type)) {
+         throw new InstantiationException("Type %s is not compatible with %s", type, declared);
+      }
+      return type;
+   }
+
+   /**
+    * This is used to instantiate an object and read its fields. The
+    * identifiers of the fields must be ascending, and any required
+    * field whose identifier is skipped causes an exception, exactly
+    * as a missing element or attribute would for XML.
+    * 
+    * @param in this is the input the object is read from
+    * 
+    * @return this returns the object that was read
+    * 
+    * @throws Exception thrown if the object can not be read
+    */
+   private Object read(BinaryInput in) throws Exception {
+      BinaryResolver resolver = in.getResolver();
+
+      if(resolver != null) {
+         return read(in, resolver.getLayout(this));
+      }
+      Object source = getInstance();
+      int last = 0;
+
+      while(true) {
+         long key = in.readVarint();
+         long id = key >>> 3;
+
+         if(key == 0) {
+            break;
+         }
+         if(id <= last || id > fields.length) {
+            throw new ElementException("Field %s does not exist for %s", id, type);
+         }
+         BinaryField field = fields[(int) id - 1];
+
+         if(field.getKind(in.getTable() != null) != (key & 7)) {
+            throw new ElementException("Field %s has the wrong kind for %s", id, type);
+         }
+         readCheck(last, field.getId());
+         field.read(in, source);
+         last = field.getId();
+      }
+      readCheck(last, fields.length + 1);
+      return source;
+   }
+
+   /**
+    * This is used to read an object written with a different version
+    * of the schema. Each identifier is mapped to a local field by the
+    * layout provided, and values of fields that no longer exist are
+    * skipped using their wire kind. The required fields read are
+    * counted so that a missing required field is still reported.
+    * 
+    * @param in this is the input the object is read from
+    * @param layout this maps the writer identifiers to fields
+    * 
+    * @return this returns the object that was read
+    * 
+    * @throws Exception thrown if the object can not be read
+    */
+   private Object read(BinaryInput in, BinaryLayout layout) throws Exception {
+      Object source = getInstance();
+      int count = 0;
+      long last = 0;
+
+      while(true) {
+         long key = in.readVarint();
+         long id = key >>> 3;
+         int kind = (int) (key & 7);
+
+         if(key == 0) {
+            break;
+         }
+         if(id <= last) {
+            throw new ElementException("Field %s is out of order for %s", id, type);
+         }
+         BinaryField field = layout.getField(id);
+
+         if(field == null) {
+            skip(in, kind);
+         } else {
+            if(field.getKind(in.getTable() != null) != kind) {
+               throw new ElementException("Field %s has the wrong kind for %s", id, type);
+            }
+            if(field.getLabel().isRequired()) {
+               count++;
+            }
+            field.read(in, source);
+         }
+         last = id;
+      }
+      if(count < required) {
+         readCheck(layout);
+      }
+      return source;
+   }
+
+   /**
+    * This is used to report a required field that was not read using
+    * the layout of a different version. If a required field was added
+    * since the document was written it is reported, otherwise a field
+    * the writer considered optional was not written.
+    * 
+    * @param layout this maps the writer identifiers to fields
+    * 
+    * @throws Exception thrown to report the missing field
+    */
+   private void readCheck(BinaryLayout layout) throws Exception {
+      for(BinaryField field : fields) {
+         Label label = field.getLabel();
+
+         if(label.isRequired() && !layout.contains(field)) {
+            throw new FieldRequiredException("Unable to satisfy %s for %s", label, type.getName());
+         }
+      }
+      throw new FieldRequiredException("Unable to satisfy required fields for %s", type.getName());
+   }
+
+   /**
+    * This is used to skip a value of the given wire kind. Composite
+    * objects and lists are skipped field by field, which is possible
+    * as every field is written with its wire kind.
+    * 
+    * @param in this is the input the value is skipped within
+    * @param kind this is the wire kind of the value to skip
+    * 
+    * @throws Exception thrown if the value is not well formed
+    */
+   private static void skip(BinaryInput in, int kind) throws Exception {
+      switch(kind) {
+      case BinaryField.VARINT:
+         in.readVarint();
+         break;
+      case BinaryField.FIXED64:
+         in.skip(8);
+         break;
+      case BinaryField.FIXED32:
+         in.skip(4);
+         break;
+      case BinaryField.BYTES:
+         in.skip(in.readLength());
+         break;
+      case BinaryField.SHARED:
+         in.readShared();
+         break;
+      case BinaryField.OBJECT:
+         in.skip(in.readLength());
+         skip(in);
+         break;
+      case BinaryField.LIST:
+         in.skip(in.readLength());
+         
+         for(int size = in.readLength(); size > 0; size--) {
+            in.skip(in.readLength());
+            skip(in);
+         }
+         break;
+      default:
+         throw new ElementException("Wire kind %s is not known", kind);
+      }
+   }
+
+   /**
+    * This is used to skip the fields of an object up to and including
+    * the zero that terminates them. 
+    * 
+    * @param in this is the input the fields are skipped within
+    * 
+    * @throws Exception thrown if a field is not well formed
+    */
+   private static void skip(BinaryInput in) throws Exception {
+      for(long key = in.readVarint(); key != 0; key = in.readVarint()) {
+         skip(in, (int) (key & 7));
+      }
+   }
+
+   /**
+    * This is used to check that none of the fields between the given
+    * identifiers are required. The identifiers given are exclusive,
+    * as they are the fields either side of the fields not written.
+    * 
+    * @param from this is the identifier of the last field read
+    * @param to this is the identifier of the next field read
+    * 
+    * @throws Exception thrown if a field skipped is required
+    */
+   private void readCheck(int from, int to) throws Exception {
+      for(int i = from; i < to - 1; i++) {
+         Label label = fields[i].getLabel();
+
+         if(label.isRequired()) {
+            throw new FieldRequiredException("Unable to satisfy %s for %s", label, type.getName());
+         }
+      }
+   }
+
+   /**
+    * This is used to instantiate an object of the schema class. The
+    * constructor is resolved the first time it is needed, and made
+    * accessible so that classes need not be public to be read.
+    * 
+    * @return this returns a new instance of the schema class
+    * 
+    * @throws Exception thrown if the class can not be instantiated
+    */
+   private Object getInstance() throws Exception {
+      if(factory == null) {
+         if(Modifier.isAbstract(type.getModifiers())) {
+            throw new InstantiationException("Cannot instantiate %s", type);
+         }
+         try {
+            Constructor constructor = type.getDeclaredConstructor();
+
+            constructor.setAccessible(true);
+            factory = constructor;
+         } catch(NoSuchMethodException e) {
+            throw new InstantiationException(e, "Cannot instantiate %s", type);
+         }
+      }
+      return factory.newInstance();
+   }
+
+   /**
+    * This is used to acquire the class the schema was built for.
+    * 
+    * @return this returns the class the schema was built for
+    */
+   public Class getType() {
+      return type;
+   }
+
+   /**
+    * This is used to acquire the fields in order of identifier. The
+    * array returned is shared and so must not be modified.
+    * 
+    * @return this returns the fields of the schema
+    */
+   public BinaryField[] getFields() {
+      return fields;
+   }
+
+   /**
+    * The <code>NameComparator</code> is used to order labels by their
+    * names. This ensures identifiers are assigned in the same order
+    * regardless of the order the labels are held within the schema.
+    */
+   private static class NameComparator implements Comparator<Label> {
+
+      /**
+       * This is used to compare the labels by name.
+       * 
+       * @param left this is the first label to compare
+       * @param right this is the second label to compare
+       * 
+       * @return the comparison of the names of the labels
+       */
+      public int compare(Label left, Label right) {
+         return left.getName().compareTo(right.getName());
+      }
+   }
+}
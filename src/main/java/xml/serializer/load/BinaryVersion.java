@@ -0,0 +1,417 @@
+/*
+ * BinaryVersion.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import xml.serializer.load.exceptions.PersistenceException;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The <code>BinaryVersion</code> object describes the layout of the
+ * schema classes used to write a binary document. Each class that can
+ * be reached from the root class is described by its name and by the
+ * name, wire kind and category of each of its fields in the order of
+ * their identifiers. Fields of composites and lists also refer to the
+ * description of the class they contain.
+ * <p>
+ * The description is written after the bytes that identify the format
+ * along with a fingerprint of the description. If a reader finds the
+ * fingerprint is that of its own schema the description is skipped
+ * and the document is read exactly as it was before. Otherwise the
+ * description is resolved against the classes of the reader, which
+ * allows fields to be added, removed and reordered between versions.
+ * Both descriptions and resolutions are cached by fingerprint, so the
+ * description is parsed only once for each version encountered.
+ * 
+ * @see xml.serializer.load.BinaryResolver
+ */
+final class BinaryVersion {
+
+   /**
+    * This is the largest number of foreign versions that are cached.
+    */
+   private static final int LIMIT = 256;
+
+   /**
+    * This contains the versions built for the local root classes.
+    */
+   private static ConcurrentHashMap<Class, BinaryVersion> local;
+
+   /**
+    * This contains the versions read from documents by fingerprint.
+    */
+   private static ConcurrentHashMap<Long, BinaryVersion> remote;
+
+   static {
+      local = new ConcurrentHashMap<Class, BinaryVersion>();
+      remote = new ConcurrentHashMap<Long, BinaryVersion>();
+   }
+
+   /**
+    * This contains the resolutions of this version by root class.
+    */
+   private ConcurrentHashMap<Class, BinaryResolver> resolvers;
+
+   /**
+    * This contains the fingerprint and description as written.
+    */
+   private byte[] header;
+
+   /**
+    * These are the names of the described fields for each class.
+    */
+   private String[][] names;
+
+   /**
+    * These are the names of each of the described classes.
+    */
+   private String[] types;
+
+   /**
+    * These are the wire kinds and categories of the fields.
+    */
+   private int[][] kinds;
+
+   /**
+    * These are the classes referred to by composites and lists.
+    */
+   private int[][] references;
+
+   /**
+    * This is the fingerprint calculated from the description.
+    */
+   private long fingerprint;
+
+   /**
+    * Constructor for the <code>BinaryVersion</code> object. This will
+    * parse the description provided and calculate its fingerprint.
+    * Any reference to a class that has not been described results in
+    * an exception, so a resolved version is always consistent.
+    * 
+    * @param data this is the description of the schema classes
+    */
+   private BinaryVersion(byte[] data) throws Exception {
+      BinaryInput in = new BinaryInput(data, 0, data.length);
+      BinaryOutput out = new BinaryOutput(new byte[data.length + 16]);
+      int count = in.readLength();
+
+      this.resolvers = new ConcurrentHashMap<Class, BinaryResolver>();
+      this.references = new int[count][];
+      this.names = new String[count][];
+      this.kinds = new int[count][];
+      this.types = new String[count];
+      this.fingerprint = getFingerprint(data);
+
+      for(int i = 0; i < count; i++) {
+         read(in, i);
+      }
+      if(!in.isEmpty()) {
+         throw new PersistenceException("Schema description has trailing bytes");
+      }
+      out.writeFixed(fingerprint);
+      out.writeVarint(data.length);
+      out.write(data, 0, data.length);
+      header = out.toByteArray();
+   }
+
+   /**
+    * This is used to read the description of a single class. Fields
+    * of composites and lists are followed by the index of the class
+    * they contain, all other fields refer to no class at all.
+    * 
+    * @param in this is the input the description is read from
+    * @param index this is the index of the class being described
+    */
+   private void read(BinaryInput in, int index) throws Exception {
+      String type = in.readString();
+      int count = in.readLength();
+
+      types[index] = type;
+      names[index] = new String[count];
+      kinds[index] = new int[count];
+      references[index] = new int[count];
+
+      for(int i = 0; i < count; i++) {
+         int kind = (int) in.readVarint();
+         int reference = -1;
+
+         names[index][i] = in.readString();
+
+         if(isComposite(kind >> 1)) {
+            reference = (int) in.readVarint();
+
+            if(reference < 0 || reference >= types.length) {
+               throw new PersistenceException("Schema description for %s is not valid", type);
+            }
+         }
+         kinds[index][i] = kind;
+         references[index][i] = reference;
+      }
+   }
+
+   /**
+    * This is used to acquire the version for the local root class. The
+    * description is built from the binary schemas of every class that
+    * can be reached from the root, and is built only once per class.
+    * 
+    * @param type this is the root class to acquire the version for
+    * 
+    * @return this returns the version of the local schema classes
+    */
+   public static BinaryVersion getInstance(Class type) throws Exception {
+      BinaryVersion version = local.get(type);
+
+      if(version == null) {
+         version = new BinaryVersion(getDescription(type));
+         local.put(type, version);
+      }
+      return version;
+   }
+
+   /**
+    * This is used to read the fingerprint and description from the
+    * header of a document. If the fingerprint is that of the schema
+    * of the reader then null is returned and the fields are read in
+    * their own layout, otherwise a resolver for the writer schema is
+    * returned. A description is only parsed if it has not been seen.
+    * 
+    * @param in this is the input the header is read from
+    * @param type this is the root class that is to be read
+    * 
+    * @return this returns a resolver for a different schema
+    * 
+    * @throws Exception thrown if the description is not valid
+    */
+   public static BinaryResolver read(BinaryInput in, Class type) throws Exception {
+      BinaryVersion version = getInstance(type);
+      long fingerprint = in.readLong();
+      int length = in.readLength();
+
+      if(fingerprint == version.fingerprint) {
+         in.skip(length);
+         return null;
+      }
+      version = remote.get(fingerprint);
+
+      if(version == null) {
+         version = new BinaryVersion(in.readBytes(length));
+
+         if(version.fingerprint != fingerprint) {
+            throw new PersistenceException("Schema description does not match fingerprint");
+         }
+         if(remote.size() < LIMIT) {
+            remote.put(fingerprint, version);
+         }
+      } else {
+         in.skip(length);
+      }
+      return version.getResolver(type);
+   }
+
+   /**
+    * This is used to write the fingerprint and description of this
+    * version to the output. The header is built once, so writing it
+    * involves nothing more than a copy.
+    * 
+    * @param out this is the output the header is written to
+    */
+   public void write(BinaryOutput out) {
+      out.write(header, 0, header.length);
+   }
+
+   /**
+    * This is used to acquire a resolver for the root class provided.
+    * The resolver maps the described classes on to the local classes
+    * and is created only once for each root class.
+    * 
+    * @param type this is the local root class that is to be read
+    * 
+    * @return this returns the resolver for the root class
+    */
+   private BinaryResolver getResolver(Class type) throws Exception {
+      BinaryResolver resolver = resolvers.get(type);
+
+      if(resolver == null) {
+         resolver = new BinaryResolver(this, type);
+         resolvers.put(type, resolver);
+      }
+      return resolver;
+   }
+
+   /**
+    * This is used to find the index of the class with the given name.
+    * This is used for classes that are named within the document as
+    * they are not the declared class of a field.
+    * 
+    * @param type this is the name of the class to be found
+    * 
+    * @return this returns the index of the class or minus one
+    */
+   public int getIndex(String type) {
+      for(int i = 0; i < types.length; i++) {
+         if(types[i].equals(type)) {
+            return i;
+         }
+      }
+      return -1;
+   }
+
+   /**
+    * This is used to acquire the names of the fields of a class. The
+    * names are in the order of the identifiers for the class.
+    * 
+    * @param index this is the index of the described class
+    * 
+    * @return this returns the names of the fields of the class
+    */
+   public String[] getNames(int index) {
+      return names[index];
+   }
+
+   /**
+    * This is used to acquire the kinds of the fields of a class. Each
+    * value is the wire kind shifted left by one, with the low bit set
+    * if the field is an attribute.
+    * 
+    * @param index this is the index of the described class
+    * 
+    * @return this returns the kinds of the fields of the class
+    */
+   public int[] getKinds(int index) {
+      return kinds[index];
+   }
+
+   /**
+    * This is used to acquire the classes referred to by the fields of
+    * a class. Fields that are not composites or lists refer to no
+    * class and are given an index of minus one.
+    * 
+    * @param index this is the index of the described class
+    * 
+    * @return this returns the classes referred to by the fields
+    */
+   public int[] getReferences(int index) {
+      return references[index];
+   }
+
+   /**
+    * This is used to build the description of the schema classes that
+    * can be reached from the root class. Classes are numbered in the
+    * order they are reached, with the root class first, and each is
+    * described once regardless of how many fields refer to it.
+    * 
+    * @param type this is the root class to build a description for
+    * 
+    * @return this returns the description of the schema classes
+    */
+   private static byte[] getDescription(Class type) throws Exception {
+      Map<Class, Integer> index = new IdentityHashMap<Class, Integer>();
+      BinaryOutput out = new BinaryOutput(new byte[256]);
+      BinarySchema[] list = new BinarySchema[getCount(type, index)];
+
+      for(Map.Entry<Class, Integer> entry : index.entrySet()) {
+         list[entry.getValue()] = BinarySchema.getInstance(entry.getKey());
+      }
+      out.writeVarint(list.length);
+
+      for(BinarySchema schema : list) {
+         BinaryField[] fields = schema.getFields();
+
+         out.writeString(schema.getType().getName());
+         out.writeVarint(fields.length);
+
+         for(BinaryField field : fields) {
+            Label label = field.getLabel();
+            int kind = field.getKind() << 1;
+
+            if(label instanceof AttributeLabel) {
+               kind |= 1;
+            }
+            out.writeVarint(kind);
+            out.writeString(label.getName());
+
+            if(isComposite(field.getKind())) {
+               out.writeVarint(index.get(label.getDependant()));
+            }
+         }
+      }
+      return out.toByteArray();
+   }
+
+   /**
+    * This is used to number the classes that can be reached from the
+    * class provided. Each class is numbered before the classes of
+    * its fields, so self referencing schemas are numbered once.
+    * 
+    * @param type this is the class that is to be numbered
+    * @param index this contains the numbers assigned so far
+    * 
+    * @return this returns the number of classes numbered
+    */
+   private static int getCount(Class type, Map<Class, Integer> index) throws Exception {
+      if(!index.containsKey(type)) {
+         BinarySchema schema = BinarySchema.getInstance(type);
+
+         index.put(type, index.size());
+
+         for(BinaryField field : schema.getFields()) {
+            if(isComposite(field.getKind())) {
+               getCount(field.getLabel().getDependant(), index);
+            }
+         }
+      }
+      return index.size();
+   }
+
+   /**
+    * This determines whether the wire kind provided is for values that
+    * are described by a schema class, which is true of composites and
+    * element lists as their entries are composites.
+    * 
+    * @param kind this is the wire kind to be evaluated
+    * 
+    * @return true if the values of the kind have a schema class
+    */
+   private static boolean isComposite(int kind) {
+      return kind == BinaryField.OBJECT || kind == BinaryField.LIST;
+   }
+
+   /**
+    * This is used to calculate the fingerprint of a description. This
+    * is a 64 bit FNV-1a hash, which is sufficient to distinguish the
+    * versions of a schema that a reader is likely to encounter.
+    * 
+    * @param data this is the description to calculate a hash of
+    * 
+    * @return this returns the fingerprint of the description
+    */
+   private static long getFingerprint(byte[] data) {
+      long hash = 0xcbf29ce484222325L;
+
+      for(byte octet : data) {
+         hash ^= octet & 0xff;
+         hash *= 0x100000001b3L;
+      }
+      return hash;
+   }
+}
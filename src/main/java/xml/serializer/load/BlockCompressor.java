@@ -0,0 +1,364 @@
+/*
+ * BlockCompressor.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * The <code>BlockCompressor</code> is used to write a gzip stream by
+ * compressing independent blocks on multiple threads. The data
+ * written is collected in blocks, once a block is full it is given
+ * to the executor to compress and a new block is started. Compressed
+ * blocks are written to the output in the order they were started.
+ * <p>
+ * Each block, apart from the last, is ended with a sync flush so
+ * that it finishes on a byte boundary and the blocks can simply be
+ * concatenated. To retain the compression ratio of a single stream,
+ * each block is primed with the last 32 kilobytes of the block that
+ * came before it, which is the technique used by the pigz tool. The
+ * checksum is computed as the data is written, so the trailer is
+ * written once the last block has been compressed.
+ * 
+ * @see xml.serializer.load.Compression
+ */
+final class BlockCompressor extends OutputStream {
+
+   /**
+    * This is the header for a gzip member with no optional fields.
+    */
+   private static final byte[] HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+   /**
+    * This is the size of the window used by the deflate format.
+    */
+   private static final int WINDOW = 32768;
+
+   /**
+    * This contains the blocks that are being compressed.
+    */
+   private LinkedList<Future<byte[]>> queue;
+
+   /**
+    * This is the executor used to compress the blocks.
+    */
+   private Executor executor;
+
+   /**
+    * This is used to compute the checksum of the data written.
+    */
+   private CRC32 checksum;
+
+   /**
+    * This is the stream that the compressed data is written to.
+    */
+   private OutputStream out;
+
+   /**
+    * This is the block of data that is currently being filled.
+    */
+   private byte[] block;
+
+   /**
+    * This is the tail of the block that was last submitted.
+    */
+   private byte[] window;
+
+   /**
+    * This is the number of bytes within the current block.
+    */
+   private int count;
+
+   /**
+    * This is the number of blocks that can be queued at once.
+    */
+   private int limit;
+
+   /**
+    * This is the compression level used for each block.
+    */
+   private int level;
+
+   /**
+    * This is the total number of bytes that have been written.
+    */
+   private long length;
+
+   /**
+    * Determines whether the gzip header has been written.
+    */
+   private boolean started;
+
+   /**
+    * Determines whether the stream has been finished.
+    */
+   private boolean finished;
+
+   /**
+    * Constructor for the <code>BlockCompressor</code> object. This is
+    * given the stream that the gzip stream is written to as well as
+    * the configuration describing how the blocks are compressed.
+    * 
+    * @param out this is the stream the compressed data is written to
+    * @param compression this describes how blocks are compressed
+    */
+   public BlockCompressor(OutputStream out, Compression compression) {
+      this.limit = Runtime.getRuntime().availableProcessors() * 2;
+      this.queue = new LinkedList<Future<byte[]>>();
+      this.block = new byte[compression.getBlock()];
+      this.executor = compression.getExecutor();
+      this.level = compression.getLevel();
+      this.checksum = new CRC32();
+      this.out = out;
+   }
+
+   /**
+    * This is used to write a single byte to the current block. If the
+    * block is full then it is submitted for compression first.
+    * 
+    * @param octet this is the byte that is to be written
+    */
+   public void write(int octet) throws IOException {
+      checksum.update(octet);
+      block[count++] = (byte) octet;
+      length++;
+
+      if(count == block.length) {
+         submit();
+      }
+   }
+
+   /**
+    * This is used to write the bytes to the current block. Each time
+    * the block is filled it is submitted for compression and a new 
+    * block is started, the checksum is updated as bytes are written.
+    * 
+    * @param data this is the array the bytes are copied from
+    * @param off this is the offset within the array to copy from
+    * @param len this is the number of bytes that are to be copied
+    */
+   public void write(byte[] data, int off, int len) throws IOException {
+      checksum.update(data, off, len);
+      length += len;
+
+      while(len > 0) {
+         int size = Math.min(len, block.length - count);
+
+         System.arraycopy(data, off, block, count, size);
+         count += size;
+         off += size;
+         len -= size;
+
+         if(count == block.length) {
+            submit();
+         }
+      }
+   }
+
+   /**
+    * This is used to submit the current block for compression. If the
+    * maximum number of blocks are already queued then the oldest
+    * block is written first, which bounds the memory used. The tail of
+    * the block is retained so that it can prime the next block.
+    */
+   private void submit() throws IOException {
+      byte[] data = Arrays.copyOf(block, count);
+      Callable<byte[]> task = new Block(data, window, false);
+      FutureTask<byte[]> future = new FutureTask<byte[]>(task);
+
+      if(queue.size() >= limit) {
+         drain(1);
+      }
+      if(!started) {
+         out.write(HEADER);
+         started = true;
+      }
+      window = Arrays.copyOfRange(data, Math.max(0, count - WINDOW), count);
+      executor.execute(future);
+      queue.add(future);
+      count = 0;
+   }
+
+   /**
+    * This is used to write the compressed blocks at the head of the
+    * queue. This will wait for each block to be compressed, and will
+    * propagate the cause if the compression of a block failed.
+    * 
+    * @param size this is the number of blocks that are to be written
+    */
+   private void drain(int size) throws IOException {
+      for(int i = 0; i < size && !queue.isEmpty(); i++) {
+         Future<byte[]> future = queue.removeFirst();
+
+         try {
+            out.write(future.get());
+         } catch(InterruptedException e) {
+            throw new InterruptedIOException("Compression interrupted");
+         } catch(ExecutionException e) {
+            throw new IOException("Compression failed", e.getCause());
+         }
+      }
+   }
+
+   /**
+    * This is used to complete the gzip stream. The last block is 
+    * compressed on the calling thread, as all remaining blocks must
+    * be written before it anyway. Once every block is written the
+    * trailer is written. The underlying stream is not closed.
+    */
+   public void finish() throws IOException {
+      if(!finished) {
+         byte[] data = Arrays.copyOf(block, count);
+         Block task = new Block(data, window, true);
+
+         if(!started) {
+            out.write(HEADER);
+            started = true;
+         }
+         drain(queue.size());
+         out.write(task.call());
+         writeInt((int) checksum.getValue());
+         writeInt((int) length);
+         out.flush();
+         finished = true;
+      }
+   }
+
+   /**
+    * This is used to write an integer in little endian byte order as
+    * required by the gzip trailer for the checksum and the length.
+    * 
+    * @param value this is the value that is to be written
+    */
+   private void writeInt(int value) throws IOException {
+      out.write(value & 0xff);
+      out.write((value >> 8) & 0xff);
+      out.write((value >> 16) & 0xff);
+      out.write((value >> 24) & 0xff);
+   }
+
+   /**
+    * This is used to flush the stream. Flushing does not force the
+    * current block to be compressed, as that would reduce the ratio,
+    * it only flushes the compressed data that has been written.
+    */
+   public void flush() throws IOException {
+      out.flush();
+   }
+
+   /**
+    * This is used to finish the gzip stream and then close the stream
+    * that it was written to. 
+    */
+   public void close() throws IOException {
+      finish();
+      out.close();
+   }
+
+   /**
+    * The <code>Block</code> object is used to compress a single block
+    * of data. A new raw deflater is used for each block, primed with
+    * the tail of the previous block. The last block is finished while
+    * all others are ended with a sync flush on a byte boundary.
+    */
+   private class Block implements Callable<byte[]> {
+
+      /**
+       * This is the tail of the block that came before this one.
+       */
+      private byte[] window;
+
+      /**
+       * This is the data that is to be compressed.
+       */
+      private byte[] data;
+
+      /**
+       * Determines whether this is the final block of the stream.
+       */
+      private boolean last;
+
+      /**
+       * Constructor for the <code>Block</code> object. This is given
+       * the data to compress and the tail of the previous block that
+       * is used as the dictionary for the deflater.
+       * 
+       * @param data this is the data that is to be compressed
+       * @param window this is the tail of the previous block
+       * @param last determines if this is the final block
+       */
+      public Block(byte[] data, byte[] window, boolean last) {
+         this.window = window;
+         this.data = data;
+         this.last = last;
+      }
+
+      /**
+       * This is used to compress the block. The compressed data is
+       * collected in an array that grows as required, the output is
+       * typically much smaller than the input so it rarely grows.
+       * 
+       * @return this returns the compressed data for the block
+       */
+      public byte[] call() {
+         Deflater deflater = new Deflater(level, true);
+         byte[] buffer = new byte[Math.max(64, data.length / 2)];
+         int size = 0;
+
+         try {
+            if(window != null) {
+               deflater.setDictionary(window);
+            }
+            deflater.setInput(data);
+
+            if(last) {
+               deflater.finish();
+            }
+            while(true) {
+               if(size == buffer.length) {
+                  buffer = Arrays.copyOf(buffer, buffer.length * 2);
+               }
+               int mode = last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH;
+               int done = deflater.deflate(buffer, size, buffer.length - size, mode);
+
+               size += done;
+
+               if(last ? deflater.finished() : size < buffer.length) {
+                  break;
+               }
+            }
+         } finally {
+            deflater.end();
+         }
+         return Arrays.copyOf(buffer, size);
+      }
+   }
+}
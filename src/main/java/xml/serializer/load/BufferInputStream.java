@@ -0,0 +1,101 @@
+/*
+ * BufferInputStream.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * The <code>BufferInputStream</code> is used to read the remaining
+ * bytes of a <code>ByteBuffer</code> as a stream. Bytes are copied
+ * from the buffer directly in to the array provided by the parser,
+ * so both heap and direct buffers are read without first copying the
+ * content in to an intermediate array. The buffer given is not
+ * modified, reads are performed on a duplicate of the buffer.
+ * 
+ * @see xml.serializer.load.Persister
+ */
+final class BufferInputStream extends InputStream {
+
+   /**
+    * This is the duplicate of the buffer that bytes are read from.
+    */
+   private ByteBuffer buffer;
+
+   /**
+    * Constructor for the <code>BufferInputStream</code> object. This
+    * is given the buffer that is to be read. Only the bytes between
+    * the position and the limit of the buffer are read.
+    * 
+    * @param buffer this is the buffer that is to be read from
+    */
+   public BufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer.duplicate();
+   }
+
+   /**
+    * This is used to read a single byte from the buffer. If there are
+    * no bytes remaining within the buffer then this returns minus one
+    * to indicate that the end of the stream has been reached.
+    * 
+    * @return this returns the next byte or minus one at the end
+    */
+   public int read() {
+      if(!buffer.hasRemaining()) {
+         return -1;
+      }
+      return buffer.get() & 0xff;
+   }
+
+   /**
+    * This is used to read bytes from the buffer in to the array given.
+    * The bytes are transferred with a single bulk copy, which for a
+    * direct buffer copies straight from native memory.
+    * 
+    * @param data this is the array the bytes are copied in to
+    * @param off this is the offset within the array to copy to
+    * @param len this is the maximum number of bytes to copy
+    * 
+    * @return this returns the number of bytes that were copied
+    */
+   public int read(byte[] data, int off, int len) {
+      int count = Math.min(len, buffer.remaining());
+
+      if(len == 0) {
+         return 0;
+      }
+      if(count == 0) {
+         return -1;
+      }
+      buffer.get(data, off, count);
+      return count;
+   }
+
+   /**
+    * This is used to determine the number of bytes that can be read
+    * from the stream, which is the number remaining in the buffer.
+    * 
+    * @return this returns the number of bytes that are remaining
+    */
+   public int available() {
+      return buffer.remaining();
+   }
+}
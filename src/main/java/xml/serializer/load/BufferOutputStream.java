@@ -0,0 +1,76 @@
+/*
+ * BufferOutputStream.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * The <code>BufferOutputStream</code> is used to write XML directly
+ * in to a <code>ByteBuffer</code>. Bytes are copied from the encoder
+ * straight in to the buffer, so no intermediate array is filled and
+ * then copied. The position of the buffer is advanced by the number
+ * of bytes written. If the buffer does not have enough space then a
+ * <code>BufferOverflowException</code> is thrown.
+ * 
+ * @see xml.serializer.load.Persister
+ */
+final class BufferOutputStream extends OutputStream {
+
+   /**
+    * This is the buffer that the bytes are written to.
+    */
+   private ByteBuffer buffer;
+
+   /**
+    * Constructor for the <code>BufferOutputStream</code> object. This
+    * is given the buffer that is to be written to. Bytes are written
+    * from the current position of the buffer up to its limit.
+    * 
+    * @param buffer this is the buffer that is to be written to
+    */
+   public BufferOutputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+   }
+
+   /**
+    * This is used to write a single byte to the buffer. If there is
+    * no space remaining then a buffer overflow exception is thrown.
+    * 
+    * @param octet this is the byte that is to be written
+    */
+   public void write(int octet) {
+      buffer.put((byte) octet);
+   }
+
+   /**
+    * This is used to write the bytes from the array to the buffer.
+    * The bytes are transferred with a single bulk copy, which for a
+    * direct buffer copies straight in to native memory.
+    * 
+    * @param data this is the array the bytes are copied from
+    * @param off this is the offset within the array to copy from
+    * @param len this is the number of bytes that are to be copied
+    */
+   public void write(byte[] data, int off, int len) {
+      buffer.put(data, off, len);
+   }
+}
@@ -0,0 +1,238 @@
+/*
+ * BufferPool.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+/**
+ * The <code>BufferPool</code> object is used to recycle the byte
+ * arrays used to encode and collect serialized XML. Allocating large
+ * arrays for every write puts pressure on the garbage collector, so
+ * arrays are returned to this pool once a write has completed. Only
+ * arrays no larger than the limit are retained by the pool, so that
+ * an occasional very large document does not pin its buffer.
+ * <p>
+ * Arrays are kept in size classes, each class holding arrays of at
+ * least double the size of the class below it. An array offered is
+ * kept in the largest class it can satisfy, so an array taken for a
+ * required size always comes from a class whose arrays are large
+ * enough, and a small request never takes a large array from a
+ * caller that needs it.
+ * <p>
+ * The total size of the arrays retained is bounded by a budget. The
+ * budget is shared equally between the classes, and each class only
+ * retains as many arrays as its share can hold. A class whose share
+ * can not hold a single array creates its arrays without pooling,
+ * so the largest classes are typically allocated on demand.
+ *
+ * @see xml.serializer.load.Encoder
+ */
+final class BufferPool {
+
+   /**
+    * These are the pools for each size class, null if not pooled.
+    */
+   private SizePool[] pools;
+
+   /**
+    * This is the size of the arrays created by the pool.
+    */
+   private int size;
+
+   /**
+    * This is the size of the largest array the pool will retain.
+    */
+   private int limit;
+
+   /**
+    * Constructor for the <code>BufferPool</code> object. This is given
+    * the size of the arrays that are created when the pool is empty,
+    * the largest array that is retained by the pool and the budget
+    * for the total size of the arrays retained by the pool.
+    *
+    * @param size this is the size of the arrays that are created
+    * @param limit this is the size of the largest array retained
+    * @param budget this is the most bytes retained by the pool
+    */
+   public BufferPool(int size, int limit, long budget) {
+      this.pools = new SizePool[getClass(size, limit) + 1];
+      this.limit = limit;
+      this.size = size;
+      this.init(budget / pools.length);
+   }
+
+   /**
+    * This is used to create the pools for each of the size classes.
+    * Each class retains as many arrays as its share of the budget
+    * can hold, assuming every array is as large as the class allows.
+    * If the share can not hold a single array no pool is created.
+    *
+    * @param share this is the number of bytes each class may retain
+    */
+   private void init(long share) {
+      int most = Runtime.getRuntime().availableProcessors() * 2;
+
+      for(int i = 0; i < pools.length; i++) {
+         long largest = Math.min(limit, (long) size << (i + 1));
+         long capacity = Math.min(most, share / largest);
+
+         if(capacity > 0) {
+            pools[i] = new SizePool(size << i, (int) capacity);
+         }
+      }
+   }
+
+   /**
+    * This is used to acquire an array of at least the default size
+    * of the pool. If there are no idle arrays within the smallest
+    * class then a new array of the default size is created.
+    *
+    * @return this returns an array of at least the default size
+    */
+   public byte[] take() throws Exception {
+      return take(0, size);
+   }
+
+   /**
+    * This is used to acquire an array that is at least the size given.
+    * The array is taken from the smallest class whose arrays are all
+    * large enough, if the size required is larger than the limit then
+    * an array of exactly the required size is created.
+    *
+    * @param require this is the minimum size of the array required
+    *
+    * @return this returns an array of at least the required size
+    */
+   public byte[] take(int require) throws Exception {
+      for(int i = 0; i < pools.length; i++) {
+         if((size << i) >= require) {
+            return take(i, size << i);
+         }
+      }
+      return new byte[require];
+   }
+
+   /**
+    * This is used to acquire an array from the given size class. If
+    * the class has no pool, as its share of the budget could not
+    * hold an array, then a new array of the class size is created.
+    *
+    * @param index this is the index of the size class to take from
+    * @param length this is the size of the arrays in the class
+    *
+    * @return this returns an array of at least the class size
+    */
+   private byte[] take(int index, int length) throws Exception {
+      SizePool pool = pools[index];
+
+      if(pool == null) {
+         return new byte[length];
+      }
+      return pool.take();
+   }
+
+   /**
+    * This is used to offer an array back to the pool once it has been
+    * used. The array is kept in the largest class whose size it is no
+    * smaller than, arrays smaller than the default size or larger than
+    * the limit are discarded, as are arrays of a class with no pool.
+    * There is no need to clear the array as its content is overwritten
+    * when it is next used.
+    *
+    * @param buffer this is the array that is to be returned
+    */
+   public void offer(byte[] buffer) {
+      if(buffer.length >= size && buffer.length <= limit) {
+         int index = getClass(size, buffer.length);
+
+         if(pools[index] != null) {
+            pools[index].offer(buffer);
+         }
+      }
+   }
+
+   /**
+    * This is used to determine the size class for an array of the
+    * given length. This is the number of times the default size can
+    * be doubled without exceeding the length of the array.
+    *
+    * @param size this is the size of the smallest class
+    * @param length this is the length of the array to classify
+    *
+    * @return this returns the index of the class for the length
+    */
+   private static int getClass(int size, int length) {
+      int index = 0;
+
+      while((long) size << (index + 1) <= length) {
+         index++;
+      }
+      return index;
+   }
+
+   /**
+    * The <code>SizePool</code> object is used to hold the arrays of a
+    * single size class. Every array within the pool is at least the
+    * size of the class, and arrays created by it are exactly that size.
+    */
+   private static final class SizePool extends Pool<byte[]> {
+
+      /**
+       * This is the size of the arrays created by this pool.
+       */
+      private int size;
+
+      /**
+       * Constructor for the <code>SizePool</code> object. This is given
+       * the size of the class, which is the smallest array it holds,
+       * and the number of arrays it can retain within the budget.
+       *
+       * @param size this is the size of the arrays that are created
+       * @param capacity this is the number of arrays retained
+       */
+      public SizePool(int size, int capacity) {
+         super(capacity);
+         this.size = size;
+      }
+
+      /**
+       * This is used to create a new array when the pool is empty. The
+       * arrays created are the size of the class, arrays that are
+       * offered to the class may be larger than this.
+       *
+       * @return this returns a new array of the class size
+       */
+      protected byte[] create() {
+         return new byte[size];
+      }
+
+      /**
+       * This is used to determine whether an array should be retained
+       * by the pool. The size class of an array is determined before
+       * it is offered, so every array offered is retained.
+       *
+       * @param buffer this is the array that is to be returned
+       *
+       * @return true if the array is to be retained by the pool
+       */
+      protected boolean reset(byte[] buffer) {
+         return true;
+      }
+   }
+}
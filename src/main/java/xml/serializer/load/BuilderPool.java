@@ -0,0 +1,86 @@
+/*
+ * BuilderPool.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+/**
+ * The <code>BuilderPool</code> object is used to recycle the DOM
+ * document builders used to parse XML sources and to create the
+ * documents that objects are serialized to. A document builder is
+ * not safe for use by multiple threads, so each read and write will
+ * take a builder from this pool for the duration of the operation.
+ *
+ * @see javax.xml.parsers.DocumentBuilder
+ */
+final class BuilderPool extends Pool<DocumentBuilder> {
+
+   /**
+    * This is the factory used to create the document builders.
+    */
+   private DocumentBuilderFactory factory;
+
+   /**
+    * Constructor for the <code>BuilderPool</code> object. This is
+    * given the factory that will be used to create the builders. The
+    * factory should be fully configured before the pool is created.
+    *
+    * @param factory this is the factory used to create builders
+    */
+   public BuilderPool(DocumentBuilderFactory factory) {
+      this.factory = factory;
+   }
+
+   /**
+    * This is used to create a new document builder when the pool is
+    * empty. The factory is not safe for use by multiple threads so
+    * access to it is serialized, this only occurs while the pool is
+    * growing to meet the number of concurrent operations.
+    *
+    * @return this returns a new document builder from the factory
+    *
+    * @throws Exception thrown if the builder could not be created
+    */
+   protected DocumentBuilder create() throws Exception {
+      synchronized(factory) {
+         return factory.newDocumentBuilder();
+      }
+   }
+
+   /**
+    * This is used to reset the document builder before it is used by
+    * another thread. Resetting the builder ensures that no state from
+    * a previous parse, such as an error handler, can leak.
+    *
+    * @param builder this is the builder that is to be reset
+    *
+    * @return true if the builder was reset and can be reused
+    */
+   protected boolean reset(DocumentBuilder builder) {
+      try {
+         builder.reset();
+      } catch(UnsupportedOperationException e) {
+         return false;
+      }
+      return true;
+   }
+}
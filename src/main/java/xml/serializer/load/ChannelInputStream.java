@@ -0,0 +1,134 @@
+/*
+ * ChannelInputStream.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+
+/**
+ * The <code>ChannelInputStream</code> is used to read XML from a
+ * readable channel. Each read wraps the array provided by the parser
+ * in a buffer so that the channel transfers bytes directly in to the
+ * array of the parser, no intermediate buffer is used. The channel is
+ * not closed when the stream is closed as it belongs to the caller.
+ * 
+ * @see xml.serializer.load.Persister
+ */
+final class ChannelInputStream extends InputStream {
+
+   /**
+    * This is the channel that the bytes are read from.
+    */
+   private ReadableByteChannel channel;
+
+   /**
+    * This is the buffer last used to wrap an array for reading.
+    */
+   private ByteBuffer buffer;
+
+   /**
+    * This is the array that was last wrapped by the buffer.
+    */
+   private byte[] array;
+
+   /**
+    * Constructor for the <code>ChannelInputStream</code> object. This
+    * is given the channel that is to be read. The channel must be a
+    * blocking channel, a selectable channel that is not blocking is
+    * rejected when it is read rather than polled until data arrives.
+    * 
+    * @param channel this is the channel that is to be read from
+    */
+   public ChannelInputStream(ReadableByteChannel channel) {
+      this.channel = channel;
+   }
+
+   /**
+    * This is used to read a single byte from the channel. If the end
+    * of the channel has been reached then this returns minus one.
+    * 
+    * @return this returns the next byte or minus one at the end
+    */
+   public int read() throws IOException {
+      byte[] data = new byte[1];
+      int count = read(data, 0, 1);
+
+      if(count < 0) {
+         return -1;
+      }
+      return data[0] & 0xff;
+   }
+
+   /**
+    * This is used to read bytes from the channel in to the array. The
+    * array is wrapped in a buffer so the channel writes in to it
+    * directly, the wrapping buffer is reused while the parser keeps
+    * providing the same array, which it typically does.
+    * 
+    * @param data this is the array the bytes are read in to
+    * @param off this is the offset within the array to read to
+    * @param len this is the maximum number of bytes to read
+    * 
+    * @return this returns the number of bytes that were read
+    * 
+    * @throws IllegalBlockingModeException if the channel is not blocking
+    */
+   public int read(byte[] data, int off, int len) throws IOException {
+      if(len == 0) {
+         return 0;
+      }
+      if(channel instanceof SelectableChannel) {
+         SelectableChannel selectable = (SelectableChannel) channel;
+
+         if(!selectable.isBlocking()) {
+            throw new IllegalBlockingModeException();
+         }
+      }
+      if(array != data) {
+         buffer = ByteBuffer.wrap(data);
+         array = data;
+      }
+      buffer.limit(off + len);
+      buffer.position(off);
+
+      while(true) {
+         int count = channel.read(buffer);
+
+         if(count != 0) {
+            return count;
+         }
+      }
+   }
+
+   /**
+    * This is used to close the stream. The channel is not closed, as
+    * the channel was provided by the caller it is left open so that
+    * the caller can decide what to do with it.
+    */
+   public void close() {
+      buffer = null;
+      array = null;
+   }
+}
@@ -0,0 +1,120 @@
+/*
+ * ChannelOutputStream.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * The <code>ChannelOutputStream</code> is used to write XML to a
+ * writable channel. Each write wraps the array provided by the
+ * encoder in a buffer so that the channel transfers bytes directly
+ * from the array, no intermediate buffer is used. The channel is not
+ * closed when the stream is closed as it belongs to the caller.
+ * 
+ * @see xml.serializer.load.Persister
+ */
+final class ChannelOutputStream extends OutputStream {
+
+   /**
+    * This is the channel that the bytes are written to.
+    */
+   private WritableByteChannel channel;
+
+   /**
+    * This is the buffer last used to wrap an array for writing.
+    */
+   private ByteBuffer buffer;
+
+   /**
+    * This is the array that was last wrapped by the buffer.
+    */
+   private byte[] array;
+
+   /**
+    * Constructor for the <code>ChannelOutputStream</code> object. This
+    * is given the channel that is to be written to. The channel must
+    * be a blocking channel, a selectable channel that is not blocking
+    * is rejected when it is written rather than polled until it can
+    * take more bytes.
+    * 
+    * @param channel this is the channel that is to be written to
+    */
+   public ChannelOutputStream(WritableByteChannel channel) {
+      this.channel = channel;
+   }
+
+   /**
+    * This is used to write a single byte to the channel. Single bytes
+    * are rarely written as the encoder writes its buffer in bulk.
+    * 
+    * @param octet this is the byte that is to be written
+    */
+   public void write(int octet) throws IOException {
+      write(new byte[] {(byte) octet}, 0, 1);
+   }
+
+   /**
+    * This is used to write bytes from the array to the channel. The
+    * array is wrapped in a buffer so the channel reads from it
+    * directly, the wrapping buffer is reused while the encoder keeps
+    * providing the same array, which it typically does.
+    * 
+    * @param data this is the array the bytes are written from
+    * @param off this is the offset within the array to write from
+    * @param len this is the number of bytes that are to be written
+    * 
+    * @throws IllegalBlockingModeException if the channel is not blocking
+    */
+   public void write(byte[] data, int off, int len) throws IOException {
+      if(channel instanceof SelectableChannel) {
+         SelectableChannel selectable = (SelectableChannel) channel;
+
+         if(!selectable.isBlocking()) {
+            throw new IllegalBlockingModeException();
+         }
+      }
+      if(array != data) {
+         buffer = ByteBuffer.wrap(data);
+         array = data;
+      }
+      buffer.limit(off + len);
+      buffer.position(off);
+
+      while(buffer.hasRemaining()) {
+         channel.write(buffer);
+      }
+   }
+
+   /**
+    * This is used to close the stream. The channel is not closed, as
+    * the channel was provided by the caller it is left open so that
+    * the caller can decide what to do with it.
+    */
+   public void close() {
+      buffer = null;
+      array = null;
+   }
+}
@@ -109,8 +109,10 @@ final class CollectionFactory extends Factory {
     * @param type this is the type that is to be converted
     *
     * @return a collection that is assignable to the provided type
+    *
+    * @throws InstantiationException if there is no suitable match
     */
-   private Class getConversion(Class type) throws Exception {
+   public Class getConversion(Class type) throws InstantiationException {
       if(type.isAssignableFrom(ArrayList.class)) {
          return ArrayList.class;
       }
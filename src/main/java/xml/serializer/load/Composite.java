@@ -23,7 +23,6 @@ package xml.serializer.load;
 import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 import xml.serializer.load.exceptions.AttributeException;
 import xml.serializer.load.exceptions.ElementException;
 import xml.serializer.load.exceptions.FieldRequiredException;
@@ -101,11 +100,43 @@ final class Composite implements Converter {
     * @return this returns the fully deserialized object graph
     */
    public Object read(Node node) throws Exception {
+      Graph graph = root.getGraph();
+      
+      if(graph != null) {
+         return read(node, graph);
+      }
       Object source = factory.getInstance(node);      
       read(node, source);
       return source;
    }
    
+   /**
+    * This <code>read</code> method is used when composites can refer 
+    * to each other. If the element refers to a composite that has
+    * already been read then that composite is returned, otherwise the
+    * composite is registered before its fields are read, so that any
+    * cycle back to the composite will resolve to the same instance.
+    * 
+    * @param node the DOM element field values are deserialized from
+    * @param graph this tracks the composites that have been read
+    * 
+    * @return this returns the fully deserialized object graph
+    */
+   private Object read(Node node, Graph graph) throws Exception {
+      Object value = graph.read((Element) node);
+      
+      if(value != null) {
+         return value;
+      }
+      Object source = factory.getInstance(node);
+      Visitor visitor = root.getVisitor(source);
+      
+      graph.validate(visitor.getAttributes());
+      graph.read((Element) node, source);
+      read(node, source, visitor);
+      return source;
+   }
+   
    /**
     * This <code>read</code> method performs deserialization of the XML
     * schema class type by traversing the fields and instantiating them
@@ -155,6 +186,8 @@ final class Composite implements Converter {
     * the <code>Visitor</code> is checked to ensure that there are no
     * required fields annotated with the <code>Attribute</code> that
     * remain. If any required attribute remains an exception is thrown. 
+    * The attribute holding the identifier of a composite that can be
+    * referred to is skipped, as it is not a field of the schema.
     * 
     * @param node this is the DOM element to be evaluated
     * @param source the source object which will be deserialized
@@ -165,9 +198,14 @@ final class Composite implements Converter {
    private void readAttributes(Node node, Object source, Visitor visitor) throws Exception {
       NamedNodeMap list = node.getAttributes();
       LabelMap map = visitor.getAttributes();
+      Graph graph = root.getGraph();
 
       for(int i = 0; i < list.getLength(); i++) {
-         readAttribute(list.item(i), source, map);
+         Node next = list.item(i);
+         
+         if(graph == null || !graph.isMark(next.getNodeName())) {
+            readAttribute(next, source, map);
+         }
       }  
       readCheck(map, source);
    }
@@ -190,12 +228,9 @@ final class Composite implements Converter {
     * @throws Exception thrown if any required elements remain
     */
    private void readElements(Node node, Object source, Visitor visitor) throws Exception {
-      NodeList list = node.getChildNodes();
       LabelMap map = visitor.getElements();
       
-      for(int i = 0; i < list.getLength(); i++) {
-         Node next = list.item(i);
-         
+      for(Node next = node.getFirstChild(); next != null; next = next.getNextSibling()) {
          if(next instanceof Element)
             readElement(next, source, map);
       } 
@@ -311,7 +346,16 @@ final class Composite implements Converter {
     * @throws Exception thrown if there is a serialization problem
     */
    public void write(Object source, Element node) throws Exception {
-      Visitor visitor = root.getVisitor(source);           
+      Visitor visitor = root.getVisitor(source);
+      Graph graph = root.getGraph();
+      
+      if(graph != null) {
+         graph.validate(visitor.getAttributes());
+         
+         if(graph.write(source, node)) {
+            return;
+         }
+      }
       write(source, node, visitor);
    }
    
@@ -340,7 +384,8 @@ final class Composite implements Converter {
     * the fields marked with the <code>Attribute</code> annotation in
     * the source object. All annotated fields are written as attributes
     * to the DOM element. This will throw an exception if a required
-    * field within the source object is null. 
+    * field within the source object is null. Primitive fields are 
+    * converted directly from the field so that they are not boxed.
     * 
     * @param source this is the source object to be serialized
     * @param node this is the DOM element to write attributes to
@@ -353,6 +398,12 @@ final class Composite implements Converter {
 
       for(Label label : attributes) {
          Field field = label.getField();
+         Class type = field.getType();
+
+         if(type.isPrimitive()) {
+            node.setAttribute(label.getName(), Digits.getText(field, source));
+            continue;
+         }
          Object value = field.get(source);
          
          if(label.isRequired() && value == null) {
@@ -393,9 +444,10 @@ final class Composite implements Converter {
    /**
     * This write method is used to set the value of the provided object
     * as an attribute to the DOM element. This will acquire the string
-    * value of the object using <code>toString</code> only if the
+    * value of the object using <code>Digits</code> only if the
     * object provided is not an enumerated type. If the object is an
-    * enumerated type then the <code>Enum.name</code> method is used.
+    * enumerated type then the <code>Enum.name</code> method is used,
+    * and arrays of primitives are written as a list of values.
     * 
     * @param value this is the value to be set as an attribute
     * @param node this is the DOM element to write the attribute to
@@ -406,12 +458,15 @@ final class Composite implements Converter {
    private void writeAttribute(Object value, Element node, Label label) throws Exception {
       if(value != null) {
          String name = label.getName();
-         String text = value.toString();
+         String text = Digits.getText(value);
          
          if(value instanceof Enum) {
             Enum type = (Enum) value;
             text = type.name();
          }
+         if(PrimitiveArray.isArray(value.getClass())) {
+            text = PrimitiveArray.getText(value);
+         }
          node.setAttribute(name, text);
       }
    }
@@ -22,10 +22,13 @@ package xml.serializer.load;
 
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 import xml.serializer.ElementList;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * The <code>CompositeList</code> object is used to convert an element
@@ -53,7 +56,14 @@ import java.util.Collection;
  * reverse is done, each element taken from the collection is written
  * as a root element to the owning element to create the list. 
  * Entry objects do not need to be of the same type.
- * 
+ * <p>
+ * Because each entry is an independent subtree of the list element,
+ * large lists can be deserialized using multiple threads. If the
+ * source has a <code>Parallel</code> configuration and the list is
+ * larger than its threshold then the entries are split in to chunks
+ * that are bound on a fork join pool and added in document order.
+ * When the XML is printed directly to a stream large lists are also
+ * serialized in parallel, see the <code>Segment</code> object.
  *
  * @see xml.serializer.load.Traverser
  * @see ElementList
@@ -75,6 +85,16 @@ final class CompositeList implements Converter {
     */   
    private Class entry;
 
+   /**
+    * This describes how large lists are processed, this may be null.
+    */
+   private Parallel parallel;
+
+   /**
+    * This is used to defer large lists until the XML is printed.
+    */
+   private Source source;
+
    /**
     * Constructor for the <code>CompositeList</code> object. This is
     * given the list type and entry type to be used. The list type is
@@ -87,7 +107,9 @@ final class CompositeList implements Converter {
     */    
    public CompositeList(Source root, Class type, Class entry) {
       this.factory = new CollectionFactory(type); 
+      this.parallel = root.getParallel();
       this.root = new Traverser(root);      
+      this.source = root;
       this.entry = entry;
    }
 
@@ -104,11 +126,15 @@ final class CompositeList implements Converter {
     */ 
    public Object read(Node node) throws Exception{
       Collection list = factory.getInstance(node);
-      NodeList nodes = node.getChildNodes();
       
-      for(int i = 0; i < nodes.getLength(); i++) {
-         Node next = nodes.item(i);
+      if(parallel != null) {
+         Node[] entries = getEntries(node);
          
+         if(parallel.isParallel(entries.length)) {
+            return read(entries, list);
+         }
+      }
+      for(Node next = node.getFirstChild(); next != null; next = next.getNextSibling()) {
          if(next instanceof Element) {
             list.add(root.read(next, entry));
          }        
@@ -116,6 +142,64 @@ final class CompositeList implements Converter {
       return list;
    }      
 
+   /**
+    * This <code>read</code> method will deserialize the provided list
+    * entries using multiple threads. The entries are split in to a
+    * number of chunks which are bound on the fork join pool, once all
+    * chunks have completed the entries are added to the collection
+    * in document order. If any entry fails the first error is thrown.
+    * 
+    * @param entries these are the DOM elements for each list entry
+    * @param list this is the collection to add the entries to
+    * 
+    * @return this returns the item to attach to the object field
+    */
+   private Object read(Node[] entries, Collection list) throws Exception {
+      AtomicReference<Exception> error = new AtomicReference<Exception>();
+      Object[] items = new Object[entries.length];
+      Chunk chunk = new Chunk(entries, items, error, 0, entries.length);
+      
+      if(ForkJoinTask.inForkJoinPool()) {
+         chunk.invoke();
+      } else {
+         parallel.getPool().invoke(chunk);
+      }
+      if(error.get() != null) {
+         throw error.get();
+      }
+      list.addAll(Arrays.asList(items));
+      return list;
+   }
+
+   /**
+    * This is used to acquire the element children of the list node.
+    * Each element child is an entry within the list, all other nodes
+    * such as the whitespace between entries are ignored. The entries
+    * are collected using the sibling references of each node.
+    * 
+    * @param node this is the DOM element representing the list
+    * 
+    * @return this returns the entry elements in document order
+    */
+   private Node[] getEntries(Node node) {
+      int count = 0;
+      
+      for(Node next = node.getFirstChild(); next != null; next = next.getNextSibling()) {
+         if(next instanceof Element) {
+            count++;
+         }
+      }
+      Node[] entries = new Node[count];
+      int index = 0;
+      
+      for(Node next = node.getFirstChild(); next != null; next = next.getNextSibling()) {
+         if(next instanceof Element) {
+            entries[index++] = next;
+         }
+      }
+      return entries;
+   }
+
    /**
     * This <code>write</code> method will write the specified object
     * to the given DOM element as as list entries. Each entry within
@@ -130,6 +214,12 @@ final class CompositeList implements Converter {
    public void write(Object source, Element node) throws Exception {
       Collection list = (Collection) source;                
       
+      if(parallel != null && this.source.isSegmented()) {
+         if(parallel.isParallel(list.size())) {
+            write(list, node);
+            return;
+         }
+      }
       for(Object item : list) {
          Class type = item.getClass();
 
@@ -140,4 +230,121 @@ final class CompositeList implements Converter {
          node.appendChild(next);
       }
    }
+
+   /**
+    * This <code>write</code> method will defer the serialization of
+    * the list entries until the XML is printed. The type of each
+    * entry is checked immediately, the entries are then held by a
+    * <code>Segment</code> which serializes them in parallel chunks
+    * when the list element is reached by the printer.
+    * 
+    * @param list this is the collection that is to be serialized
+    * @param node this is the DOM element container to be populated
+    */
+   private void write(Collection list, Element node) throws Exception {
+      Object[] items = list.toArray();
+      
+      for(Object item : items) {
+         Class type = item.getClass();
+
+         if(!type.isAssignableFrom(entry)) {
+            throw new RuntimeException("Type does not match list entry");                     
+         }
+      }
+      Segment segment = new Segment(node.getOwnerDocument(), parallel, items);
+      Node marker = source.getSegment(segment);
+      
+      node.appendChild(marker);
+   }
+
+   /**
+    * The <code>Chunk</code> object is used to bind a range of list
+    * entries on a fork join pool. If the range is larger than the
+    * chunk size it is split in half and both halves are forked, so
+    * that idle threads can steal work. Each entry is stored at its
+    * index within the results so the document order is preserved.
+    */
+   private class Chunk extends RecursiveAction {
+
+      /**
+       * This is used to record the first error that has occurred.
+       */
+      private AtomicReference<Exception> error;
+
+      /**
+       * These are the DOM elements for each of the list entries.
+       */
+      private Node[] entries;
+
+      /**
+       * This is used to store the deserialized entry objects.
+       */
+      private Object[] items;
+
+      /**
+       * This is the index of the first entry within this chunk.
+       */
+      private int start;
+
+      /**
+       * This is the index after the last entry within this chunk.
+       */
+      private int finish;
+
+      /**
+       * Constructor for the <code>Chunk</code> object. This is given
+       * the range of entries that is to be deserialized as well as
+       * the array the resulting entry objects are to be stored in.
+       * 
+       * @param entries these are the DOM elements for the entries
+       * @param items this is where the entry objects are stored
+       * @param error this is used to record the first error
+       * @param start this is the index of the first entry
+       * @param finish this is the index after the last entry
+       */
+      public Chunk(Node[] entries, Object[] items, AtomicReference<Exception> error, int start, int finish) {
+         this.entries = entries;
+         this.finish = finish;
+         this.items = items;
+         this.error = error;
+         this.start = start;
+      }
+
+      /**
+       * This is used to deserialize the range of entries. If the range
+       * is larger than the configured chunk size then it is split and
+       * both halves are processed by the pool. If an error occurs the
+       * remaining entries are skipped and the error is recorded.
+       */
+      protected void compute() {
+         int size = finish - start;
+
+         if(size > parallel.getChunk()) {
+            int middle = start + size / 2;
+
+            invokeAll(new Chunk(entries, items, error, start, middle),
+                      new Chunk(entries, items, error, middle, finish));
+         } else {
+            compute(start, finish);
+         }
+      }
+
+      /**
+       * This is used to deserialize the entries within the range on
+       * the current thread. Each entry is deserialized as a root type
+       * and stored at the same index that the entry element has.
+       * 
+       * @param from this is the index of the first entry to bind
+       * @param to this is the index after the last entry to bind
+       */
+      private void compute(int from, int to) {
+         try {
+            for(int i = from; i < to && error.get() == null; i++) {
+               items[i] = root.read(entries[i], entry);
+            }
+         } catch(Exception e) {
+            error.compareAndSet(null, e);
+         }
+      }
+   }
 }
@@ -0,0 +1,210 @@
+/*
+ * Compression.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Deflater;
+
+/**
+ * The <code>Compression</code> object is used to describe how the XML
+ * written by a <code>Persister</code> is to be compressed. When a
+ * persister has a compression configuration every document written
+ * to a stream, file or channel is written as a gzip stream. Reading
+ * does not require any configuration, compressed documents are
+ * detected from their leading bytes and decompressed transparently.
+ * <p>
+ * Large documents are compressed in independent blocks using the
+ * threads of an executor, in the same way as the pigz tool. Each
+ * block is primed with the tail of the previous block so that the
+ * compression ratio is close to that of a single deflater, and the
+ * result is a single valid gzip stream. Documents no larger than a
+ * single block are compressed on the calling thread.
+ * <p>
+ * Small documents are better served by a preset dictionary built
+ * from the schema. When a <code>Dictionary</code> is given documents
+ * are written as a zlib stream primed with the dictionary, and are
+ * compressed on the calling thread with a pooled deflater. 
+ * 
+ * @see Persister
+ */
+public class Compression {
+
+   /**
+    * This is used to recycle deflaters primed with the dictionary.
+    */
+   private DeflaterPool pool;
+
+   /**
+    * This is the dictionary used to prime the deflaters, if any.
+    */
+   private Dictionary dictionary;
+
+   /**
+    * This is the executor that is used to compress the blocks.
+    */
+   private Executor executor;
+
+   /**
+    * This is the compression level used by each deflater.
+    */
+   private int level;
+
+   /**
+    * This is the number of bytes compressed within each block.
+    */
+   private int block;
+
+   /**
+    * Constructor for the <code>Compression</code> object. This creates
+    * a configuration that uses the default compression level with
+    * blocks of 128 kilobytes that are compressed on the common pool.
+    */
+   public Compression() {
+      this(Deflater.DEFAULT_COMPRESSION);
+   }
+
+   /**
+    * Constructor for the <code>Compression</code> object. This creates
+    * a configuration that uses the given compression level with blocks
+    * of 128 kilobytes that are compressed on the common pool.
+    * 
+    * @param level this is the compression level from zero to nine
+    */
+   public Compression(int level) {
+      this(level, 131072);
+   }
+
+   /**
+    * Constructor for the <code>Compression</code> object. This creates
+    * a configuration that uses the given compression level with blocks
+    * of the given size that are compressed on the common pool.
+    * 
+    * @param level this is the compression level from zero to nine
+    * @param block this is the number of bytes within each block
+    */
+   public Compression(int level, int block) {
+      this(level, block, ForkJoinPool.commonPool());
+   }
+
+   /**
+    * Constructor for the <code>Compression</code> object. This creates
+    * a configuration that writes each document as a zlib stream that
+    * is primed with the dictionary, using the default level.
+    * 
+    * @param dictionary this is used to prime each deflater
+    */
+   public Compression(Dictionary dictionary) {
+      this(Deflater.DEFAULT_COMPRESSION, dictionary);
+   }
+
+   /**
+    * Constructor for the <code>Compression</code> object. This creates
+    * a configuration that writes each document as a zlib stream that
+    * is primed with the dictionary, using the given level. The 
+    * dictionary is registered so that documents compressed with it
+    * can be read, a different dictionary with the same identifier
+    * can not be used as documents would not say which was used.
+    * 
+    * @param level this is the compression level from zero to nine
+    * @param dictionary this is used to prime each deflater
+    * 
+    * @throws IllegalArgumentException if the identifier is already used
+    */
+   public Compression(int level, Dictionary dictionary) {
+      this(level);
+      Dictionary.register(dictionary);
+      this.pool = new DeflaterPool(dictionary, level);
+      this.dictionary = dictionary;
+   }
+
+   /**
+    * Constructor for the <code>Compression</code> object. This creates
+    * a configuration that uses the given compression level with blocks
+    * of the given size that are compressed by the executor provided.
+    * 
+    * @param level this is the compression level from zero to nine
+    * @param block this is the number of bytes within each block
+    * @param executor this is used to compress the blocks
+    */
+   public Compression(int level, int block, Executor executor) {
+      if(block < 1024) {
+         throw new IllegalArgumentException("Block must be at least 1024 bytes");
+      }
+      this.executor = executor;
+      this.level = level;
+      this.block = block;
+   }
+
+   /**
+    * This is used to acquire the executor that is used to compress
+    * the blocks of a document. Blocks are submitted in order and the
+    * compressed blocks are written in the same order.
+    * 
+    * @return this returns the executor used to compress blocks
+    */
+   public Executor getExecutor() {
+      return executor;
+   }
+
+   /**
+    * This is used to acquire the dictionary used to prime deflaters.
+    * If this is null then documents are written as gzip streams that
+    * are compressed in blocks rather than as primed zlib streams.
+    * 
+    * @return this returns the dictionary used to prime deflaters
+    */
+   public Dictionary getDictionary() {
+      return dictionary;
+   }
+
+   /**
+    * This is used to acquire the pool of primed deflaters. This will
+    * be null if there is no dictionary for the compression.
+    * 
+    * @return this returns the pool of primed deflaters
+    */
+   DeflaterPool getPool() {
+      return pool;
+   }
+
+   /**
+    * This is used to acquire the compression level that is used by
+    * the deflaters. This is a value from zero, which stores the data
+    * without compression, to nine which is the best compression.
+    * 
+    * @return this returns the compression level for deflaters
+    */
+   public int getLevel() {
+      return level;
+   }
+
+   /**
+    * This is used to acquire the size of the blocks that a document
+    * is split in to. Larger blocks compress slightly better while 
+    * smaller blocks allow smaller documents to use more threads.
+    * 
+    * @return this returns the number of bytes within each block
+    */
+   public int getBlock() {
+      return block;
+   }
+}
@@ -0,0 +1,101 @@
+/*
+ * Cycle.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+/**
+ * The <code>Cycle</code> object is used to enable the serialization
+ * of object graphs in which objects are shared or refer to each other
+ * in cycles. By default each composite is written by value wherever
+ * it is referenced, so a shared object is written many times and a
+ * cycle can not be written at all. When a <code>Persister</code> is
+ * given a cycle configuration each composite is written only once.
+ * <pre>
+ * 
+ *    &lt;order id="1"&gt;
+ *       &lt;customer id="2" name="example"/&gt;
+ *       &lt;billing reference="2"/&gt;
+ *    &lt;/order&gt;
+ * 
+ * </pre>
+ * The first time a composite is written it is given an identifier
+ * attribute, and every later occurrence of the same instance is an
+ * element with only a reference attribute. When read the reference
+ * resolves to the very same instance, so the graph read has exactly
+ * the same shape as the graph written. The names of the attributes
+ * can be specified so that they do not clash with the schema, and
+ * a class that declares an attribute of either name is rejected.
+ * 
+ * @see Persister
+ */
+public class Cycle {
+
+   /**
+    * This is the name of the attribute holding the identifier.
+    */
+   private String mark;
+
+   /**
+    * This is the name of the attribute holding the reference.
+    */
+   private String refer;
+
+   /**
+    * Constructor for the <code>Cycle</code> object. This creates a
+    * configuration that uses an attribute named "id" to identify a
+    * composite and an attribute named "reference" to refer to it.
+    */
+   public Cycle() {
+      this("id", "reference");
+   }
+
+   /**
+    * Constructor for the <code>Cycle</code> object. This creates a
+    * configuration that uses the attributes named to identify and
+    * refer to composites, these must not be used by the schema.
+    * 
+    * @param mark this is the name of the identifier attribute
+    * @param refer this is the name of the reference attribute
+    */
+   public Cycle(String mark, String refer) {
+      this.mark = mark;
+      this.refer = refer;
+   }
+
+   /**
+    * This is used to acquire the name of the attribute that is used
+    * to identify a composite the first time it is written.
+    * 
+    * @return this returns the name of the identifier attribute
+    */
+   public String getMark() {
+      return mark;
+   }
+
+   /**
+    * This is used to acquire the name of the attribute that is used
+    * to refer to a composite that has already been written.
+    * 
+    * @return this returns the name of the reference attribute
+    */
+   public String getRefer() {
+      return refer;
+   }
+}
@@ -0,0 +1,238 @@
+/*
+ * Decompressor.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * The <code>Decompressor</code> is used to detect compressed XML and
+ * decompress it transparently. The first two bytes of the stream are
+ * examined, if these are the gzip magic bytes or a valid zlib header
+ * then the stream is decompressed. A well formed XML document can not
+ * begin with either of these sequences, so plain XML is never taken
+ * for compressed data, it is simply passed through unchanged.
+ * <p>
+ * If a zlib header states that a preset dictionary was used then
+ * the identifier that follows the header is used to find the
+ * <code>Dictionary</code> the stream was compressed with, which must
+ * have been created within this JVM before the stream is read.
+ * 
+ * @see xml.serializer.load.Compression
+ */
+final class Decompressor {
+
+   /**
+    * This is the first byte of every gzip member.
+    */
+   private static final int GZIP_FIRST = 0x1f;
+
+   /**
+    * This is the second byte of every gzip member.
+    */
+   private static final int GZIP_SECOND = 0x8b;
+
+   /**
+    * This is the compression method for a zlib stream.
+    */
+   private static final int DEFLATED = 8;
+
+   /**
+    * This is the zlib flag stating a preset dictionary is used.
+    */
+   private static final int PRESET = 0x20;
+
+   /**
+    * This is used to acquire a stream that provides the XML within the
+    * source stream. If the source is compressed then a decompressing
+    * stream is returned, otherwise a stream that provides the bytes
+    * of the source without any change is returned.
+    * 
+    * @param source this is the stream that is to be examined
+    * 
+    * @return this returns a stream providing the XML document
+    * 
+    * @throws IOException thrown if the stream can not be read
+    */
+   public static InputStream open(InputStream source) throws IOException {
+      PushbackInputStream stream = new PushbackInputStream(source, 2);
+      byte[] header = new byte[2];
+      int count = 0;
+
+      while(count < 2) {
+         int size = stream.read(header, count, 2 - count);
+
+         if(size < 0) {
+            break;
+         }
+         count += size;
+      }
+      stream.unread(header, 0, count);
+
+      if(count == 2) {
+         int first = header[0] & 0xff;
+         int second = header[1] & 0xff;
+
+         if(first == GZIP_FIRST && second == GZIP_SECOND) {
+            return new GZIPInputStream(stream, 8192);
+         }
+         if(isDeflate(first, second)) {
+            if((second & PRESET) != 0) {
+               return getPreset(stream);
+            }
+            return new InflaterInputStream(stream);
+         }
+      }
+      return stream;
+   }
+
+   /**
+    * This is used to determine if the array contains compressed data.
+    * This allows documents held in memory to be given directly to the
+    * parser when they are not compressed, without a stream that is
+    * able to push back the bytes that have been examined.
+    * 
+    * @param data this is the array that is to be examined
+    * @param off this is the offset of the data within the array
+    * @param len this is the length of the data within the array
+    * 
+    * @return true if the array begins with a gzip or zlib header
+    */
+   public static boolean isCompressed(byte[] data, int off, int len) {
+      if(len >= 2) {
+         int first = data[off] & 0xff;
+         int second = data[off + 1] & 0xff;
+
+         if(first == GZIP_FIRST && second == GZIP_SECOND) {
+            return true;
+         }
+         return isDeflate(first, second);
+      }
+      return false;
+   }
+
+   /**
+    * This is used to determine if the bytes are a zlib header. The
+    * compression method must be deflate with a valid window size and
+    * the two bytes taken together must be a multiple of thirty one.
+    * 
+    * @param first this is the compression method and flags byte
+    * @param second this is the flags byte for the stream
+    * 
+    * @return true if the bytes form a valid zlib header
+    */
+   private static boolean isDeflate(int first, int second) {
+      int method = first & 0x0f;
+      int window = first >> 4;
+
+      if(method != DEFLATED || window > 7) {
+         return false;
+      }
+      return (first * 256 + second) % 31 == 0;
+   }
+
+   /**
+    * This is used to open a zlib stream that was compressed with a
+    * preset dictionary. The header and the dictionary identifier are
+    * given to an inflater, which then requests the dictionary. Once
+    * the dictionary has been set the remainder of the stream can be
+    * inflated as normal. The inflater is ended when the stream that
+    * is returned is closed, or at once if it can not be primed.
+    * 
+    * @param stream this is the stream positioned at the zlib header
+    * 
+    * @return this returns a stream providing the XML document
+    * 
+    * @throws IOException thrown if the dictionary is not known
+    */
+   private static InputStream getPreset(InputStream stream) throws IOException {
+      byte[] data = new byte[6];
+      int count = 0;
+
+      while(count < data.length) {
+         int size = stream.read(data, count, data.length - count);
+
+         if(size < 0) {
+            throw new ZipException("Unexpected end of zlib header");
+         }
+         count += size;
+      }
+      int id = (data[2] & 0xff) << 24 | (data[3] & 0xff) << 16 | (data[4] & 0xff) << 8 | (data[5] & 0xff);
+      Dictionary dictionary = Dictionary.getDictionary(id);
+
+      if(dictionary == null) {
+         throw new ZipException("No dictionary with identifier " + Integer.toHexString(id));
+      }
+      Inflater inflater = new Inflater();
+
+      try {
+         inflater.setInput(data);
+         inflater.inflate(new byte[1]);
+         inflater.setDictionary(dictionary.getData());
+      } catch(DataFormatException e) {
+         inflater.end();
+         throw new ZipException(e.getMessage());
+      }
+      return new PresetInputStream(stream, inflater);
+   }
+
+   /**
+    * The <code>PresetInputStream</code> is used to inflate a stream 
+    * with an inflater that has been primed with a dictionary. As the
+    * inflater is not created by the stream itself, it would not be
+    * ended when the stream is closed, so this ends it on close.
+    */
+   private static final class PresetInputStream extends InflaterInputStream {
+
+      /**
+       * Constructor for the <code>PresetInputStream</code> object. This
+       * is given the stream positioned after the zlib header and the
+       * inflater that has already been primed with the dictionary.
+       *
+       * @param stream this is the stream containing the deflated data
+       * @param inflater this is the inflater primed with a dictionary
+       */
+      public PresetInputStream(InputStream stream, Inflater inflater) {
+         super(stream, inflater, 8192);
+      }
+
+      /**
+       * This is used to close the stream and end the inflater. Ending
+       * the inflater releases its native memory immediately, rather 
+       * than when the inflater is garbage collected.
+       *
+       * @throws IOException thrown if the stream could not be closed
+       */
+      public void close() throws IOException {
+         try {
+            super.close();
+         } finally {
+            inf.end();
+         }
+      }
+   }
+}
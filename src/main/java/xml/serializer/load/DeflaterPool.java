@@ -0,0 +1,100 @@
+/*
+ * DeflaterPool.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import java.util.zip.Deflater;
+
+/**
+ * The <code>DeflaterPool</code> object is used to recycle deflaters
+ * that have been primed with a preset dictionary. Creating a deflater
+ * allocates a considerable amount of native memory, which for small
+ * documents costs more than compressing the document itself. Each
+ * deflater is reset and primed again when it is offered back, and
+ * a deflater that the pool does not retain is ended at once so its
+ * native memory is not left for the garbage collector to release.
+ *
+ * @see xml.serializer.load.Dictionary
+ */
+final class DeflaterPool extends Pool<Deflater> {
+
+   /**
+    * This is the dictionary used to prime each deflater.
+    */
+   private Dictionary dictionary;
+
+   /**
+    * This is the compression level used by each deflater.
+    */
+   private int level;
+
+   /**
+    * Constructor for the <code>DeflaterPool</code> object. This is
+    * given the compression level for the deflaters created and the
+    * dictionary that each deflater is to be primed with.
+    *
+    * @param dictionary this is used to prime each deflater
+    * @param level this is the compression level to be used
+    */
+   public DeflaterPool(Dictionary dictionary, int level) {
+      this.dictionary = dictionary;
+      this.level = level;
+   }
+
+   /**
+    * This is used to create a new deflater when the pool is empty. The
+    * deflater writes a zlib header, which will contain the identifier
+    * of the dictionary as the deflater is primed before it is used.
+    *
+    * @return this returns a new deflater primed with the dictionary
+    */
+   protected Deflater create() {
+      Deflater deflater = new Deflater(level);
+
+      deflater.setDictionary(dictionary.getData());
+      return deflater;
+   }
+
+   /**
+    * This is used to reset the deflater so that it can compress the
+    * next document. Once reset the deflater is primed again, as the
+    * dictionary is discarded when the deflater is reset.
+    *
+    * @param deflater this is the deflater that is to be reset
+    *
+    * @return this returns true as deflaters can always be reused
+    */
+   protected boolean reset(Deflater deflater) {
+      deflater.reset();
+      deflater.setDictionary(dictionary.getData());
+      return true;
+   }
+
+   /**
+    * This is used to end a deflater that the pool does not retain.
+    * Ending the deflater releases its native memory immediately, 
+    * rather than when the deflater is garbage collected.
+    *
+    * @param deflater this is the deflater that is being discarded
+    */
+   protected void discard(Deflater deflater) {
+      deflater.end();
+   }
+}
@@ -0,0 +1,889 @@
+/*
+ * Delta.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import xml.serializer.Root;
+import xml.serializer.load.exceptions.AttributeException;
+import xml.serializer.load.exceptions.ElementException;
+import xml.serializer.load.exceptions.FieldRequiredException;
+import xml.serializer.load.exceptions.PersistenceException;
+import xml.serializer.load.exceptions.RootException;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The <code>Delta</code> object is used to describe the differences
+ * between two objects of the same XML schema class as XML. Only the
+ * attributes, elements and list entries that differ are written, so
+ * the size of the XML is proportional to what has changed and not to
+ * the size of the object. The schema is used to compare the objects
+ * exactly as it is used to serialize them.
+ * <pre>
+ * 
+ *    &lt;order xmlns:delta="urn:xml-serializer:delta" status="closed" delta:remove="note"&gt;
+ *       &lt;customer delta:merge="true" level="3"/&gt;
+ *       &lt;lines delta:merge="true" delta:size="4"&gt;
+ *          &lt;line delta:merge="true" delta:index="1" quantity="2"/&gt;
+ *          &lt;line sku="new" quantity="1"/&gt;
+ *       &lt;/lines&gt;
+ *    &lt;/order&gt;
+ * 
+ * </pre>
+ * A changed value is written as it would be for the object itself,
+ * and replaces the value of the baseline when the delta is applied.
+ * Composites and lists of the same class are instead merged, which
+ * is indicated by the "delta:merge" attribute. List entries that are
+ * merged or replaced give their index, while entries without an index
+ * are appended, and the list is truncated to "delta:size" entries if
+ * it is given. Fields that have become null are listed by name in 
+ * the "delta:remove" attribute.
+ * <p>
+ * Applying a delta does not modify the baseline. Each object that is
+ * merged is copied and the copy is modified, while values that have
+ * not changed are shared between the baseline and the result.
+ * <p>
+ * If the persister has a <code>Cycle</code> configuration then each
+ * composite that is merged is given an identifier, and every later
+ * occurrence of the same composite is written as a reference to it.
+ * This ensures that a cycle is compared only once, and that a shared
+ * composite is merged in to a single copy when the delta is applied.
+ * 
+ * @see xml.serializer.load.Composite
+ */
+final class Delta {
+
+   /**
+    * This is the name of the attribute declaring the delta prefix.
+    */
+   public static final String NAMESPACE = "xmlns:delta";
+
+   /**
+    * This is the namespace that the delta attributes belong to.
+    */
+   public static final String URI = "urn:xml-serializer:delta";
+
+   /**
+    * This is the prefix used by all of the delta attributes.
+    */
+   private static final String PREFIX = "delta:";
+
+   /**
+    * This attribute identifies an element that is to be merged.
+    */
+   private static final String MERGE = "delta:merge";
+
+   /**
+    * This attribute provides the index of a list entry.
+    */
+   private static final String INDEX = "delta:index";
+
+   /**
+    * This attribute provides the size a list is truncated to.
+    */
+   private static final String SIZE = "delta:size";
+
+   /**
+    * This attribute lists the fields that have become null.
+    */
+   private static final String REMOVE = "delta:remove";
+
+   /**
+    * This is used to write and read complete list entries.
+    */
+   private Traverser traverser;
+
+   /**
+    * This contains the element each composite was merged in to.
+    */
+   private Map<Object, Element> merges;
+
+   /**
+    * This contains the baseline each merge element was merged with.
+    */
+   private Map<Element, Object> origins;
+
+   /**
+    * This contains the merge element each reference refers to.
+    */
+   private Map<Element, Element> targets;
+
+   /**
+    * This contains the baseline at the position of each reference.
+    */
+   private Map<Element, Object> bases;
+
+   /**
+    * This is the source used to create elements and converters.
+    */
+   private Source root;
+
+   /**
+    * Constructor for the <code>Delta</code> object. This is given the
+    * source that is used to create the elements of the delta, and to
+    * create the converters that read and write complete values.
+    * 
+    * @param root this is the source used for the delta
+    */
+   public Delta(Source root) {
+      this.merges = new IdentityHashMap<Object, Element>();
+      this.origins = new IdentityHashMap<Element, Object>();
+      this.targets = new IdentityHashMap<Element, Element>();
+      this.bases = new IdentityHashMap<Element, Object>();
+      this.traverser = new Traverser(root);
+      this.root = root;
+   }
+
+   /**
+    * This is used to write the differences between the objects to a
+    * root element. Both objects must be of the same class, which must
+    * have a <code>Root</code> annotation. If the objects do not differ
+    * the root element is empty.
+    * 
+    * @param baseline this is the object the delta is applied to
+    * @param current this is the object the delta produces
+    * 
+    * @return this returns the root element of the delta
+    * 
+    * @throws Exception thrown if the objects can not be compared
+    */
+   public Element write(Object baseline, Object current) throws Exception {
+      Class type = current.getClass();
+      Root label = Traverser.getRoot(type);
+
+      if(label == null) {
+         throw new RootException("No root annotation defined for %s", type.getName());
+      }
+      if(baseline.getClass() != type) {
+         throw new PersistenceException("Baseline %s is not of %s", baseline, type);
+      }
+      Element node = root.getElement(label.name());
+      Graph graph = root.getGraph();
+
+      node.setAttribute(NAMESPACE, URI);
+
+      if(graph != null) {
+         graph.write(current, node);
+         merges.put(current, node);
+         origins.put(node, baseline);
+         write(baseline, current, node);
+         prune(node);
+      } else {
+         write(baseline, current, node);
+      }
+      return node;
+   }
+
+   /**
+    * This is used to write the differences between two objects of the
+    * same class to the element provided. Attributes are compared first
+    * and then elements, and the names of any that have become null
+    * are written once all fields have been compared.
+    * 
+    * @param baseline this is the object the delta is applied to
+    * @param current this is the object the delta produces
+    * @param node this is the element the differences are written to
+    * 
+    * @return true if any difference was written to the element
+    * 
+    * @throws Exception thrown if the objects can not be compared
+    */
+   private boolean write(Object baseline, Object current, Element node) throws Exception {
+      Schema schema = Source.getSchema(current.getClass());
+      StringBuilder removed = new StringBuilder();
+      Graph graph = root.getGraph();
+      boolean changed = false;
+
+      if(graph != null) {
+         graph.validate(schema.getAttributes());
+      }
+
+      for(Label label : schema.getAttributes()) {
+         Field field = label.getField();
+         Object before = field.get(baseline);
+         Object after = field.get(current);
+
+         if(!isEqual(before, after)) {
+            if(after != null) {
+               writeAttribute(after, node, label);
+            } else {
+               writeRemove(removed, label);
+            }
+            changed = true;
+         }
+      }
+      for(Label label : schema.getElements()) {
+         Field field = label.getField();
+         Object before = field.get(baseline);
+         Object after = field.get(current);
+
+         if(before != after) {
+            if(after != null) {
+               changed |= writeElement(before, after, node, label);
+            } else {
+               writeRemove(removed, label);
+               changed = true;
+            }
+         }
+      }
+      if(removed.length() > 0) {
+         node.setAttribute(REMOVE, removed.toString());
+      }
+      return changed;
+   }
+
+   /**
+    * This is used to add the name of a field that has become null to
+    * the names of removed fields. A required field can not be null, 
+    * so this throws an exception just as serializing the object would.
+    * 
+    * @param removed this contains the names of the removed fields
+    * @param label this is the label for the field that is null
+    * 
+    * @throws Exception thrown if the field is required
+    */
+   private void writeRemove(StringBuilder removed, Label label) throws Exception {
+      if(label.isRequired()) {
+         if(label instanceof AttributeLabel) {
+            throw new AttributeException("Value for %s is null", label);
+         }
+         throw new ElementException("Value for %s is null", label);
+      }
+      if(removed.length() > 0) {
+         removed.append(' ');
+      }
+      removed.append(label.getName());
+   }
+
+   /**
+    * This is used to determine whether two field values are equal. The
+    * values are equal if they are the same or are both null, or if
+    * the baseline value considers the current value equal to it.
+    * Arrays of primitives are equal if they contain the same values.
+    * 
+    * @param before this is the value within the baseline
+    * @param after this is the value within the current object
+    * 
+    * @return true if the values are considered to be equal
+    */
+   private boolean isEqual(Object before, Object after) {
+      if(before == after) {
+         return true;
+      }
+      return Objects.deepEquals(before, after);
+   }
+
+   /**
+    * This is used to write a changed attribute value. The value is
+    * written exactly as the <code>Composite</code> would write it, so
+    * enumerations are written by name and other values as text.
+    * 
+    * @param value this is the value of the attribute to write
+    * @param node this is the element the attribute is written to
+    * @param label this is the label for the attribute field
+    */
+   private void writeAttribute(Object value, Element node, Label label) {
+      String text = Digits.getText(value);
+
+      if(value instanceof Enum) {
+         text = ((Enum) value).name();
+      }
+      if(PrimitiveArray.isArray(value.getClass())) {
+         text = PrimitiveArray.getText(value);
+      }
+      node.setAttribute(label.getName(), text);
+   }
+
+   /**
+    * This is used to write a changed element value. If both values are
+    * lists or composites of the same class then only their differences
+    * are written, otherwise the complete value is written if it is not
+    * equal to the value of the baseline. Lists of primitives have no
+    * entries to merge, and other collections such as sets have no 
+    * index, so they are compared and written as a whole.
+    * 
+    * @param before this is the value within the baseline
+    * @param after this is the value within the current object
+    * @param node this is the element the value is written to
+    * @param label this is the label for the element field
+    * 
+    * @return true if the value was written to the element
+    * 
+    * @throws Exception thrown if the value can not be written
+    */
+   private boolean writeElement(Object before, Object after, Element node, Label label) throws Exception {
+      if(before != null && before.getClass() == after.getClass()) {
+         if(label instanceof ElementListLabel) {
+            if(!PrimitiveList.isPrimitive(label.getDependant()) && before instanceof List) {
+               return writeList((List) before, (List) after, node, label);
+            }
+         } else if(!ElementLabel.isPrimitive(label.getType())) {
+            return writeMerge(before, after, node, label.getName());
+         }
+         if(Objects.deepEquals(before, after)) {
+            return false;
+         }
+      }
+      Element next = root.getElement(label.getName());
+      Class type = after.getClass();
+
+      if(type != label.getType()) {
+         new ObjectFactory(label.getType()).setOverride(type, next);
+      }
+      label.getConverter(root).write(after, next);
+      node.appendChild(next);
+      return true;
+   }
+
+   /**
+    * This is used to write the differences between two composites of
+    * the same class as an element that is to be merged. The element is
+    * only added if the composites differ. If references are enabled
+    * then the element is always added, as a later reference may refer
+    * to it, and if the composite has already been written then only a
+    * reference is written. Elements not needed are pruned once the
+    * delta is complete.
+    * 
+    * @param before this is the composite within the baseline
+    * @param after this is the composite within the current object
+    * @param node this is the element the composite is written to
+    * @param name this is the name of the element to be written
+    * 
+    * @return true if the element was written as they differ
+    * 
+    * @throws Exception thrown if the value can not be written
+    */
+   private boolean writeMerge(Object before, Object after, Element node, String name) throws Exception {
+      Element next = root.getElement(name);
+      Graph graph = root.getGraph();
+
+      next.setAttribute(MERGE, "true");
+
+      if(graph != null) {
+         Element target = merges.get(after);
+
+         if(target != null) {
+            graph.refer(target, next);
+            targets.put(next, target);
+            bases.put(next, before);
+         } else if(!graph.write(after, next)) {
+            merges.put(after, next);
+            origins.put(next, before);
+            write(before, after, next);
+         }
+         node.appendChild(next);
+         return true;
+      }
+      if(write(before, after, next)) {
+         node.appendChild(next);
+         return true;
+      }
+      return false;
+   }
+
+   /**
+    * This is used to remove the merge elements that hold no changes.
+    * When references are enabled every composite that is merged is
+    * written, so once the delta is complete the elements that hold no
+    * changes are removed along with the references to them. As a 
+    * reference may be to a composite that is changed further on, the
+    * changed elements are determined by repeating until none are added.
+    * 
+    * @param node this is the root element of the delta
+    */
+   private void prune(Element node) {
+      Set<Element> changed = Collections.newSetFromMap(new IdentityHashMap<Element, Boolean>());
+      Set<Element> referred = Collections.newSetFromMap(new IdentityHashMap<Element, Boolean>());
+      Graph graph = root.getGraph();
+      int size = -1;
+
+      while(size < changed.size()) {
+         size = changed.size();
+         update(node, changed);
+      }
+      prune(node, changed, referred);
+
+      for(Element merge : merges.values()) {
+         if(!referred.contains(merge)) {
+            graph.clear(merge);
+         }
+      }
+   }
+
+   /**
+    * This is used to remove the elements within the element given that
+    * hold no changes, as well as the references that are not needed.
+    * The elements that the remaining references refer to are collected
+    * so that the identifiers of all other elements can be removed.
+    * 
+    * @param node this is the element that is to be pruned
+    * @param changed this contains the elements that hold changes
+    * @param referred this collects the elements that are referred to
+    */
+   private void prune(Element node, Set<Element> changed, Set<Element> referred) {
+      Node next = node.getFirstChild();
+
+      while(next != null) {
+         Node sibling = next.getNextSibling();
+
+         if(next instanceof Element) {
+            Element child = (Element) next;
+            Element target = targets.get(child);
+
+            if(target != null) {
+               if(isNeeded(child, changed)) {
+                  referred.add(target);
+               } else {
+                  node.removeChild(child);
+               }
+            } else if(child.hasAttribute(MERGE)) {
+               if(changed.contains(child)) {
+                  prune(child, changed, referred);
+               } else {
+                  node.removeChild(child);
+               }
+            }
+         }
+         next = sibling;
+      }
+   }
+
+   /**
+    * This is used to determine which merge elements hold changes. An
+    * element holds a change if it has an attribute or value of its
+    * own, if it holds an element that changes, or if it holds a needed
+    * reference. The element a needed reference refers to is changed,
+    * as it must be kept for the reference to be resolved.
+    * 
+    * @param node this is the merge element that is to be examined
+    * @param changed this contains the elements that hold changes
+    * 
+    * @return true if the element given holds a change
+    */
+   private boolean update(Element node, Set<Element> changed) {
+      boolean change = changed.contains(node) || isChanged(node);
+
+      for(Node next = node.getFirstChild(); next != null; next = next.getNextSibling()) {
+         if(next instanceof Element) {
+            Element child = (Element) next;
+            Element target = targets.get(child);
+
+            if(target != null) {
+               if(isNeeded(child, changed)) {
+                  changed.add(target);
+                  change = true;
+               }
+            } else if(child.hasAttribute(MERGE)) {
+               change |= update(child, changed);
+            } else {
+               change = true;
+            }
+         }
+      }
+      if(change) {
+         changed.add(node);
+      }
+      return change;
+   }
+
+   /**
+    * This is used to determine if a merge element has a change of its
+    * own. This is the case if it has an attribute that is not used to
+    * describe the delta, or if a complete value refers to it.
+    * 
+    * @param node this is the merge element that is to be examined
+    * 
+    * @return true if the element has a change of its own
+    */
+   private boolean isChanged(Element node) {
+      NamedNodeMap list = node.getAttributes();
+      Graph graph = root.getGraph();
+
+      for(int i = 0; i < list.getLength(); i++) {
+         String name = list.item(i).getNodeName();
+
+         if(!name.equals(MERGE) && !name.equals(INDEX) && !name.equals(NAMESPACE)) {
+            if(!graph.isMark(name)) {
+               return true;
+            }
+         }
+      }
+      return graph.isReferenced(node);
+   }
+
+   /**
+    * This is used to determine if a reference is needed. If the element
+    * it refers to is unchanged and was merged with the same baseline
+    * as is at the position of the reference, then the reference can be
+    * removed as the baseline already has the value it would resolve to.
+    * 
+    * @param node this is the reference that is to be examined
+    * @param changed this contains the elements that hold changes
+    * 
+    * @return true if the reference is required
+    */
+   private boolean isNeeded(Element node, Set<Element> changed) {
+      Element target = targets.get(node);
+
+      if(changed.contains(target)) {
+         return true;
+      }
+      return origins.get(target) != bases.get(node);
+   }
+
+   /**
+    * This is used to write the differences between two lists of the
+    * same class. Entries are compared by index, where entries of the
+    * same class are merged and others are replaced. Entries beyond the
+    * end of the baseline list are appended, and if the lists differ
+    * in size the size of the current list is given. A null entry can
+    * not be written within a list, so a list containing a changed null
+    * entry is rejected, while a null baseline entry is replaced.
+    * 
+    * @param before this is the list within the baseline
+    * @param after this is the list within the current object
+    * @param node this is the element the list is written to
+    * @param label this is the label for the list field
+    * 
+    * @return true if the list was written as they differ
+    * 
+    * @throws Exception thrown if the list can not be written
+    */
+   private boolean writeList(List before, List after, Element node, Label label) throws Exception {
+      Element next = root.getElement(label.getName());
+      Object[] previous = before.toArray();
+      Object[] list = after.toArray();
+      int size = Math.min(previous.length, list.length);
+
+      for(int i = 0; i < size; i++) {
+         Object entry = list[i];
+
+         if(entry != previous[i]) {
+            if(entry == null) {
+               throw new ElementException("Null entry at index %s can not be written for %s", i, label);
+            }
+            if(previous[i] != null && entry.getClass() == previous[i].getClass()) {
+               String name = Traverser.getRoot(entry.getClass()).name();
+
+               if(writeMerge(previous[i], entry, next, name)) {
+                  Element last = (Element) next.getLastChild();
+                  last.setAttribute(INDEX, String.valueOf(i));
+               }
+            } else {
+               Element last = traverser.write(entry);
+
+               last.setAttribute(INDEX, String.valueOf(i));
+               next.appendChild(last);
+            }
+         }
+      }
+      for(int i = size; i < list.length; i++) {
+         if(list[i] == null) {
+            throw new ElementException("Null entry at index %s can not be written for %s", i, label);
+         }
+         next.appendChild(traverser.write(list[i]));
+      }
+      if(previous.length != list.length) {
+         next.setAttribute(SIZE, String.valueOf(list.length));
+      }
+      if(next.hasChildNodes() || next.hasAttributes()) {
+         next.setAttribute(MERGE, "true");
+         node.appendChild(next);
+         return true;
+      }
+      return false;
+   }
+
+   /**
+    * This is used to apply the delta within the root element to the
+    * baseline provided. The name of the root element must match the
+    * <code>Root</code> annotation of the baseline class. The object
+    * returned is a copy of the baseline with the changes applied.
+    * 
+    * @param baseline this is the object the delta is applied to
+    * @param node this is the root element of the delta
+    * 
+    * @return this returns the object produced by the delta
+    * 
+    * @throws Exception thrown if the delta can not be applied
+    */
+   public Object read(Object baseline, Element node) throws Exception {
+      Class type = baseline.getClass();
+      Root label = Traverser.getRoot(type);
+      String name = node.getNodeName();
+
+      if(label == null) {
+         throw new RootException("No root annotation defined for %s", type.getName());
+      }
+      if(!label.name().equals(name)) {
+         throw new RootException("Annotation %s does not match XML element %s", label, name);
+      }
+      return read(baseline, node, type);
+   }
+
+   /**
+    * This is used to apply the delta within the element to a copy of
+    * the baseline. Attributes replace the values of their fields and
+    * elements either replace or are merged with the values of their
+    * fields, while any removed fields are set to null. If references 
+    * are enabled the copy is registered before its fields are read, 
+    * and an element that refers to a copy resolves to that copy.
+    * 
+    * @param baseline this is the object the delta is applied to
+    * @param node this is the element containing the delta
+    * @param type this is the class of the baseline object
+    * 
+    * @return this returns a modified copy of the baseline
+    * 
+    * @throws Exception thrown if the delta can not be applied
+    */
+   private Object read(Object baseline, Element node, Class type) throws Exception {
+      Schema schema = Source.getSchema(type);
+      Graph graph = root.getGraph();
+
+      if(graph != null) {
+         Object value = graph.read(node);
+
+         if(value != null) {
+            return value;
+         }
+      }
+      Object source = getCopy(baseline, node, schema);
+      NamedNodeMap list = node.getAttributes();
+
+      if(graph != null) {
+         graph.read(node, source);
+      }
+
+      for(int i = 0; i < list.getLength(); i++) {
+         Node next = list.item(i);
+         String name = next.getNodeName();
+
+         if(name.equals(REMOVE)) {
+            readRemove(next.getNodeValue(), source, schema);
+         } else if(!name.startsWith(PREFIX) && !name.equals(NAMESPACE) && (graph == null || !graph.isMark(name))) {
+            readAttribute(next, source, schema.getAttributes());
+         }
+      }
+      for(Node next = node.getFirstChild(); next != null; next = next.getNextSibling()) {
+         if(next instanceof Element) {
+            readElement((Element) next, source, schema.getElements());
+         }
+      }
+      return source;
+   }
+
+   /**
+    * This is used to create a copy of the baseline. The copy is given
+    * the values of every annotated field of the baseline, the values
+    * themselves are not copied and so are shared with the baseline.
+    * 
+    * @param baseline this is the object that is to be copied
+    * @param node this is the element the delta is read from
+    * @param schema this is the schema of the baseline class
+    * 
+    * @return this returns a copy of the baseline object
+    * 
+    * @throws Exception thrown if the class can not be instantiated
+    */
+   private Object getCopy(Object baseline, Element node, Schema schema) throws Exception {
+      ObjectFactory factory = new ObjectFactory(baseline.getClass());
+      Object copy = factory.getInstance(node);
+
+      for(Label label : schema.getAttributes()) {
+         Field field = label.getField();
+         field.set(copy, field.get(baseline));
+      }
+      for(Label label : schema.getElements()) {
+         Field field = label.getField();
+         field.set(copy, field.get(baseline));
+      }
+      return copy;
+   }
+
+   /**
+    * This is used to set each of the named fields to null. The names
+    * may be of attributes or elements, and none may be required.
+    * 
+    * @param names these are the names of the removed fields
+    * @param source this is the object the fields are removed from
+    * @param schema this is the schema of the object class
+    * 
+    * @throws Exception thrown if a field does not exist
+    */
+   private void readRemove(String names, Object source, Schema schema) throws Exception {
+      for(String name : names.trim().split("\\s+")) {
+         Label label = schema.getAttributes().get(name);
+
+         if(label == null) {
+            label = schema.getElements().get(name);
+         }
+         if(label == null) {
+            throw new ElementException("Field '%s' does not exist", name);
+         }
+         if(label.isRequired()) {
+            throw new FieldRequiredException("Unable to satisfy %s for %s", label, source.getClass().getName());
+         }
+         label.getField().set(source, null);
+      }
+   }
+
+   /**
+    * This is used to read an attribute that replaces the value of its
+    * field. The attribute is converted exactly as it would be when
+    * the object is deserialized.
+    * 
+    * @param node this is the attribute that is to be read
+    * @param source this is the object the value is set on
+    * @param map this contains the attribute labels of the object
+    * 
+    * @throws Exception thrown if the attribute does not exist
+    */
+   private void readAttribute(Node node, Object source, LabelMap map) throws Exception {
+      String name = node.getNodeName();
+      Label label = map.get(name);
+
+      if(label == null) {
+         throw new AttributeException("Attribute '%s' does not exist", name);
+      }
+      label.getField().set(source, label.getConverter(root).read(node));
+   }
+
+   /**
+    * This is used to read an element that either replaces or is to be
+    * merged with the value of its field. Only composites and lists of
+    * the baseline can be merged, all other values are replaced.
+    * 
+    * @param node this is the element that is to be read
+    * @param source this is the object the value is set on
+    * @param map this contains the element labels of the object
+    * 
+    * @throws Exception thrown if the element does not exist
+    */
+   private void readElement(Element node, Object source, LabelMap map) throws Exception {
+      String name = node.getNodeName();
+      Label label = map.get(name);
+
+      if(label == null) {
+         throw new ElementException("Element '%s' does not exist", name);
+      }
+      Field field = label.getField();
+      Object value = field.get(source);
+
+      if(node.hasAttribute(MERGE)) {
+         if(value == null) {
+            throw new ElementException("No value for %s to merge with", label);
+         }
+         if(label instanceof ElementListLabel) {
+            if(!(value instanceof List)) {
+               throw new ElementException("Entries of %s can not be merged by index", label);
+            }
+            field.set(source, readList((List) value, node, label));
+         } else {
+            field.set(source, read(value, node, value.getClass()));
+         }
+      } else {
+         field.set(source, label.getConverter(root).read(node));
+      }
+   }
+
+   /**
+    * This is used to merge the entries of a list with the baseline
+    * list. A new list of the same class as the baseline is returned,
+    * so that the baseline list is not modified. Entries with an index
+    * are merged or replaced, and all other entries are appended.
+    * 
+    * @param list this is the list within the baseline
+    * @param node this is the element containing the list delta
+    * @param label this is the label for the list field
+    * 
+    * @return this returns a new list with the delta applied
+    * 
+    * @throws Exception thrown if the list can not be merged
+    */
+   private Collection readList(List list, Element node, Label label) throws Exception {
+      CollectionFactory factory = new CollectionFactory(label.getType());
+      List<Object> items = new ArrayList<Object>(list);
+      Class entry = label.getDependant();
+
+      if(node.hasAttribute(SIZE)) {
+         int size = Integer.parseInt(node.getAttribute(SIZE));
+
+         if(size < items.size()) {
+            items.subList(size, items.size()).clear();
+         }
+      }
+      for(Node next = node.getFirstChild(); next != null; next = next.getNextSibling()) {
+         if(next instanceof Element) {
+            readEntry((Element) next, items, entry);
+         }
+      }
+      Collection result = factory.getInstance(list.getClass());
+
+      result.addAll(items);
+      return result;
+   }
+
+   /**
+    * This is used to read a single entry of a list delta. An entry with
+    * an index must refer to an entry within the list, and is either
+    * merged with that entry or replaces it. A replacement is read from
+    * a copy of the element without the index, so that the delta given
+    * is left unchanged and can be applied again.
+    * 
+    * @param node this is the element for the list entry
+    * @param items these are the entries of the list
+    * @param entry this is the declared class of the entries
+    * 
+    * @throws Exception thrown if the entry can not be read
+    */
+   private void readEntry(Element node, List<Object> items, Class entry) throws Exception {
+      if(node.hasAttribute(INDEX)) {
+         int index = Integer.parseInt(node.getAttribute(INDEX));
+
+         if(index < 0 || index >= items.size()) {
+            throw new ElementException("Index %s is not within list of %s", index, entry);
+         }
+         Object value = items.get(index);
+
+         if(node.hasAttribute(MERGE)) {
+            items.set(index, read(value, node, value.getClass()));
+         } else {
+            Element copy = (Element) node.cloneNode(true);
+
+            copy.removeAttribute(INDEX);
+            items.set(index, traverser.read(copy, entry));
+         }
+      } else {
+         items.add(traverser.read(node, entry));
+      }
+   }
+}
@@ -0,0 +1,310 @@
+/*
+ * Detector.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import org.xml.sax.InputSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+
+/**
+ * The <code>Detector</code> is used to determine the character set of
+ * an XML document from its leading bytes. A byte order mark is used
+ * if one is present, otherwise the encoding named by the declaration
+ * is used, and if there is neither the document is taken to be UTF-8
+ * as required by the XML specification.
+ * <p>
+ * Documents in UTF-8 or US-ASCII are given to the parser as bytes
+ * with the encoding stated, so that the parser decodes the bytes as
+ * it scans them rather than reading characters through a reader and
+ * charset decoder. A reader is created only for other encodings. 
+ * 
+ * @see xml.serializer.load.Decompressor
+ */
+final class Detector {
+
+   /**
+    * This is the number of bytes examined for the declaration.
+    */
+   private static final int LIMIT = 512;
+
+   /**
+    * This is the canonical name of the UTF-8 character set.
+    */
+   private static final String UTF_8 = "UTF-8";
+
+   /**
+    * This is the canonical name of the US-ASCII character set.
+    */
+   private static final String US_ASCII = "US-ASCII";
+
+   /**
+    * This is used to read the declaration as single byte characters.
+    */
+   private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+   /**
+    * This is used to acquire an input source for the XML within the
+    * stream. The character set of the document is detected from the
+    * leading bytes of the stream, which are not consumed other than
+    * the byte order mark for UTF-8 documents.
+    * 
+    * @param source this is the stream the XML document is read from
+    * 
+    * @return this returns an input source for the XML document
+    * 
+    * @throws IOException thrown if the stream can not be read
+    */
+   public static InputSource open(InputStream source) throws IOException {
+      PushbackInputStream stream = new PushbackInputStream(source, LIMIT);
+      byte[] header = new byte[LIMIT];
+      int count = fill(stream, header);
+      int skip = 0;
+      String charset = getMark(header, 0, count);
+
+      if(charset == null) {
+         charset = getDeclaration(header, 0, count);
+      } else if(charset.equals(UTF_8)) {
+         skip = 3;
+      }
+      stream.unread(header, skip, count - skip);
+      return open(stream, charset);
+   }
+
+   /**
+    * This is used to acquire an input source for the XML within the
+    * array. The character set is detected from the bytes within the
+    * array, which is then read directly by an unsynchronized stream
+    * so that no bytes are copied before they are given to the parser.
+    * 
+    * @param data this is the array containing the XML document
+    * @param off this is the offset of the document within the array
+    * @param len this is the length of the document within the array
+    * 
+    * @return this returns an input source for the XML document
+    */
+   public static InputSource open(byte[] data, int off, int len) {
+      int count = Math.min(len, LIMIT);
+      int skip = 0;
+      String charset = getMark(data, off, count);
+
+      if(charset == null) {
+         charset = getDeclaration(data, off, count);
+      } else if(charset.equals(UTF_8)) {
+         skip = 3;
+      }
+      ByteBuffer buffer = ByteBuffer.wrap(data, off + skip, len - skip);
+      
+      return open(new BufferInputStream(buffer), charset);
+   }
+
+   /**
+    * This is used to acquire an input source that reads the stream in
+    * the character set provided. UTF-8 and US-ASCII streams are given
+    * to the parser directly, for all other character sets the stream
+    * is decoded by a reader. If the character set is not supported
+    * the stream is given to the parser to report the problem.
+    * 
+    * @param stream this is the stream the XML document is read from
+    * @param charset this is the character set of the document
+    * 
+    * @return this returns an input source for the XML document
+    */
+   public static InputSource open(InputStream stream, String charset) {
+      InputSource source = new InputSource();
+      String name = getCanonical(charset);
+
+      if(name == null) {
+         source.setByteStream(stream);
+      } else if(name.equals(UTF_8) || name.equals(US_ASCII)) {
+         source.setByteStream(stream);
+         source.setEncoding(name);
+      } else {
+         source.setCharacterStream(new InputStreamReader(stream, Charset.forName(name)));
+      }
+      return source;
+   }
+
+   /**
+    * This is used to read the leading bytes of the stream. Bytes are
+    * read until the end of the declaration has been read, the limit
+    * has been reached or there are no more bytes within the stream.
+    * 
+    * @param stream this is the stream to read the bytes from
+    * @param header this is the array the bytes are read in to
+    * 
+    * @return this returns the number of bytes that were read
+    */
+   private static int fill(InputStream stream, byte[] header) throws IOException {
+      int count = 0;
+
+      while(count < header.length) {
+         int size = stream.read(header, count, header.length - count);
+
+         if(size < 0) {
+            break;
+         }
+         for(int i = count; i < count + size; i++) {
+            if(header[i] == '>') {
+               return count + size;
+            }
+         }
+         count += size;
+      }
+      return count;
+   }
+
+   /**
+    * This is used to determine the character set from the byte order
+    * mark at the start of the document. The UTF-32 marks must be
+    * checked before the UTF-16 marks as they share a prefix. Other
+    * than for UTF-8 the mark is left for the decoder to consume. If
+    * there is no byte order mark then this will return null.
+    * 
+    * @param header this contains the leading bytes of the stream
+    * @param off this is the offset of the first byte of the stream
+    * @param count this is the number of leading bytes available
+    * 
+    * @return this returns the character set for the byte order mark
+    */
+   private static String getMark(byte[] header, int off, int count) {
+      int first = count > 0 ? header[off] & 0xff : -1;
+      int second = count > 1 ? header[off + 1] & 0xff : -1;
+      int third = count > 2 ? header[off + 2] & 0xff : -1;
+      int fourth = count > 3 ? header[off + 3] & 0xff : -1;
+
+      if(first == 0xef && second == 0xbb && third == 0xbf) {
+         return UTF_8;
+      }
+      if(first == 0x00 && second == 0x00 && third == 0xfe && fourth == 0xff) {
+         return "UTF-32";
+      }
+      if(first == 0xff && second == 0xfe && third == 0x00 && fourth == 0x00) {
+         return "UTF-32";
+      }
+      if(first == 0xfe && second == 0xff) {
+         return "UTF-16";
+      }
+      if(first == 0xff && second == 0xfe) {
+         return "UTF-16";
+      }
+      return null;
+   }
+
+   /**
+    * This is used to determine the character set from the bytes that
+    * start the document when there is no byte order mark. A document
+    * in UTF-16 is recognized by the zero bytes of the opening angle
+    * bracket, otherwise the encoding from the declaration is used.
+    * Only the bytes before the first closing angle bracket are read.
+    * 
+    * @param header this contains the leading bytes of the stream
+    * @param off this is the offset of the first byte of the stream
+    * @param count this is the number of leading bytes available
+    * 
+    * @return this returns the character set of the document
+    */
+   private static String getDeclaration(byte[] header, int off, int count) {
+      int end = 0;
+      
+      if(count >= 2) {
+         if(header[off] == 0 && header[off + 1] == '<') {
+            return "UTF-16BE";
+         }
+         if(header[off] == '<' && header[off + 1] == 0) {
+            return "UTF-16LE";
+         }
+      }
+      while(end < count && header[off + end] != '>') {
+         end++;
+      }
+      String text = new String(header, off, end, ISO_8859_1);
+
+      if(end < count && text.startsWith("<?xml")) {
+         String encoding = getEncoding(text);
+
+         if(encoding != null) {
+            return encoding;
+         }
+      }
+      return UTF_8;
+   }
+
+   /**
+    * This is used to extract the value of the encoding declaration.
+    * Whitespace is permitted either side of the equals sign, and the
+    * value may be quoted with either single or double quotes.
+    * 
+    * @param text this is the XML declaration without its terminator
+    * 
+    * @return this returns the declared encoding or null if none
+    */
+   private static String getEncoding(String text) {
+      int index = text.indexOf("encoding");
+
+      if(index > 0) {
+         int start = index + 8;
+
+         while(start < text.length() && text.charAt(start) <= ' ') {
+            start++;
+         }
+         if(start < text.length() && text.charAt(start++) == '=') {
+            while(start < text.length() && text.charAt(start) <= ' ') {
+               start++;
+            }
+            if(start < text.length()) {
+               char quote = text.charAt(start);
+               int end = text.indexOf(quote, start + 1);
+
+               if((quote == '"' || quote == '\'') && end > 0) {
+                  return text.substring(start + 1, end);
+               }
+            }
+         }
+      }
+      return null;
+   }
+
+   /**
+    * This is used to acquire the canonical name for the character set.
+    * This allows aliases such as "utf8" and "ascii" to be recognized.
+    * If the character set is not supported this returns null.
+    * 
+    * @param charset this is the name of the character set
+    * 
+    * @return this returns the canonical name of the character set
+    */
+   private static String getCanonical(String charset) {
+      try {
+         if(Charset.isSupported(charset)) {
+            return Charset.forName(charset).name();
+         }
+      } catch(IllegalCharsetNameException e) {
+         return null;
+      }
+      return null;
+   }
+}
@@ -0,0 +1,215 @@
+/*
+ * Dictionary.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import xml.serializer.Root;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Adler32;
+
+/**
+ * The <code>Dictionary</code> object is used to provide a preset 
+ * dictionary for the deflate compression of small documents. Small
+ * documents compress poorly as the compressor has seen nothing that
+ * it can refer back to, however documents for a schema repeat the
+ * same element and attribute names. Priming the compressor with
+ * these names allows even the first occurrence to be a reference.
+ * <p>
+ * The dictionary is built from the label names of every class that
+ * is reachable from the root classes given, and may be completed by
+ * sample documents, which typically improve the ratio further. As
+ * deflate can refer back at most 32 kilobytes, and references to
+ * recent text are cheaper, the samples are placed after the names
+ * and only the last 32 kilobytes of the dictionary are retained.
+ * <p>
+ * Each dictionary is identified by the Adler-32 checksum of its data,
+ * which is written to the zlib header of every compressed document.
+ * A dictionary is registered by this identifier when it is given to
+ * a <code>Compression</code>, so a document can be decompressed by
+ * any persister within a JVM that has created a compression with an
+ * identical dictionary. Dictionaries that are only ever created, for
+ * example to inspect their identifier, are never retained.
+ * 
+ * @see xml.serializer.load.Compression
+ */
+public class Dictionary {
+
+   /**
+    * This contains the dictionaries registered by their identifier.
+    */
+   private static Map<Integer, Dictionary> registry;
+
+   /**
+    * This is the largest dictionary that deflate can make use of.
+    */
+   private static final int WINDOW = 32768;
+
+   static {
+      registry = new ConcurrentHashMap<Integer, Dictionary>();
+   }
+
+   /**
+    * This is the data that is used to prime the compressor.
+    */
+   private byte[] data;
+
+   /**
+    * This is the Adler-32 checksum that identifies the dictionary.
+    */
+   private int id;
+
+   /**
+    * Constructor for the <code>Dictionary</code> object. This builds
+    * a dictionary from the names of the labels for every class that
+    * is reachable from the root classes provided.
+    * 
+    * @param types these are the root classes for the dictionary
+    */
+   public Dictionary(Class... types) throws Exception {
+      this(Arrays.asList(types), Collections.<byte[]>emptyList());
+   }
+
+   /**
+    * Constructor for the <code>Dictionary</code> object. This builds
+    * a dictionary from the names of the labels for every class that
+    * is reachable from the root classes, followed by the samples. The
+    * samples should be representative XML documents for the classes.
+    * 
+    * @param types these are the root classes for the dictionary
+    * @param samples these are sample documents for the classes
+    */
+   public Dictionary(Collection<Class> types, Collection<byte[]> samples) throws Exception {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      Adler32 checksum = new Adler32();
+      
+      build(types, out);
+      
+      for(byte[] sample : samples) {
+         out.write(sample);
+      }
+      byte[] text = out.toByteArray();
+      int start = Math.max(0, text.length - WINDOW);
+      
+      this.data = Arrays.copyOfRange(text, start, text.length);
+      checksum.update(data);
+      this.id = (int) checksum.getValue();
+   }
+
+   /**
+    * This is used to write the names for the classes to the stream.
+    * Names are written in the form they appear within the XML, so
+    * elements are written as start and end tags and attributes are
+    * written with the assignment that follows them. Root names are
+    * written last as the root element is the first to be written.
+    * 
+    * @param types these are the root classes for the dictionary
+    * @param out this is the stream the names are written to
+    */
+   private void build(Collection<Class> types, ByteArrayOutputStream out) throws Exception {
+      SchemaGraph graph = new SchemaGraph();
+      StringBuilder text = new StringBuilder();
+
+      for(Class type : types) {
+         graph.add(type);
+      }
+      text.append(" class=\"java.util.ArrayList\"");
+      
+      for(Class type : graph) {
+         for(Label label : graph.getLabels(type)) {
+            String name = label.getName();
+            
+            if(label instanceof AttributeLabel) {
+               text.append(' ').append(name).append("=\"");
+            } else {
+               text.append('<').append(name).append('>');
+               text.append("</").append(name).append('>');
+            }
+         }
+      }
+      for(Class type : types) {
+         Root root = Traverser.getRoot(type);
+         
+         if(root != null) {
+            text.append('<').append(root.name());
+         }
+      }
+      text.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+      out.write(text.toString().getBytes("UTF-8"));
+   }
+
+   /**
+    * This is used to register a dictionary so that documents that are
+    * compressed with it can be decompressed. A dictionary with the same
+    * data as one already registered is not retained a second time, and
+    * as a document only identifies its dictionary by the checksum, a 
+    * different dictionary with the same checksum is rejected.
+    * 
+    * @param dictionary this is the dictionary that is to be registered
+    * 
+    * @throws IllegalArgumentException if the identifier is already used
+    */
+   static void register(Dictionary dictionary) {
+      Dictionary existing = registry.putIfAbsent(dictionary.id, dictionary);
+
+      if(existing != null && !Arrays.equals(existing.data, dictionary.data)) {
+         throw new IllegalArgumentException(String.format("Dictionary %08x has the identifier of a different dictionary", dictionary.id));
+      }
+   }
+
+   /**
+    * This is used to acquire a registered dictionary by the identifier
+    * written to the header of a compressed document. If no dictionary
+    * with the identifier has been registered this will return null.
+    * 
+    * @param id this is the Adler-32 checksum of the dictionary data
+    * 
+    * @return this returns the dictionary with the given identifier
+    */
+   static Dictionary getDictionary(int id) {
+      return registry.get(id);
+   }
+
+   /**
+    * This is used to acquire the data that primes the compressor. The
+    * array is shared and so must not be modified by the caller.
+    * 
+    * @return this returns the data for the dictionary
+    */
+   byte[] getData() {
+      return data;
+   }
+
+   /**
+    * This is used to acquire the identifier for the dictionary. This
+    * is the Adler-32 checksum of the dictionary data, which is how
+    * zlib identifies the dictionary a document was compressed with.
+    * 
+    * @return this returns the identifier for the dictionary
+    */
+   public int getId() {
+      return id;
+   }
+}
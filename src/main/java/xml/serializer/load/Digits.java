@@ -0,0 +1,336 @@
+/*
+ * Digits.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import java.lang.reflect.Field;
+
+/**
+ * The <code>Digits</code> object is used to convert primitive values
+ * to text without creating a wrapper or an intermediate string. Small
+ * integers and booleans are taken from a table of constant strings,
+ * so writing them creates nothing at all, while larger integers are
+ * written with the digit pair tables used by <code>Long</code>.
+ * <p>
+ * Floating point values are written in the shortest form that reads
+ * back as the same value. For values in the range that is written
+ * without an exponent the shortest number of fractional digits is
+ * found by scaling the value with an exact power of ten and checking
+ * that the scaled integer divides back to the value. Other values are
+ * written in the same form as <code>Double.toString</code>.
+ * 
+ * @see xml.serializer.load.Primitive
+ */
+final class Digits {
+
+   /**
+    * This is the smallest integer that is taken from the table.
+    */
+   private static final int MINIMUM = -128;
+
+   /**
+    * This is the largest integer that is taken from the table.
+    */
+   private static final int MAXIMUM = 1023;
+
+   /**
+    * This is the largest integer a double can represent exactly.
+    */
+   private static final double LIMIT = 9007199254740992.0;
+
+   /**
+    * This is the smallest value that is written without an exponent.
+    */
+   private static final double LOWER = 1e-3;
+
+   /**
+    * This is the value at which values are written with an exponent.
+    */
+   private static final double UPPER = 1e7;
+
+   /**
+    * This is the table of strings for the small integer values.
+    */
+   private static final String[] TABLE;
+
+   /**
+    * This is the table of powers of ten that are exact doubles.
+    */
+   private static final double[] POWERS;
+
+   static {
+      TABLE = new String[MAXIMUM - MINIMUM + 1];
+      POWERS = new double[19];
+
+      for(int i = 0; i < TABLE.length; i++) {
+         TABLE[i] = Integer.toString(i + MINIMUM);
+      }
+      POWERS[0] = 1.0;
+
+      for(int i = 1; i < POWERS.length; i++) {
+         POWERS[i] = POWERS[i - 1] * 10.0;
+      }
+   }
+
+   /**
+    * This is used to convert a primitive value to text. Integers and
+    * floating point values are converted without creating a string
+    * that is thrown away, and booleans are written using the string
+    * constants. Any other value is converted with its string value.
+    * 
+    * @param value this is the value that is to be converted
+    * 
+    * @return this returns the text representing the value
+    */
+   public static String getText(Object value) {
+      if(value instanceof Integer || value instanceof Long) {
+         return getText(((Number) value).longValue());
+      }
+      if(value instanceof Short || value instanceof Byte) {
+         return getText(((Number) value).longValue());
+      }
+      if(value instanceof Double) {
+         return getText(((Double) value).doubleValue());
+      }
+      if(value instanceof Float) {
+         return getText(((Float) value).floatValue());
+      }
+      if(value instanceof Boolean) {
+         return getText(((Boolean) value).booleanValue());
+      }
+      return String.valueOf(value);
+   }
+
+   /**
+    * This is used to convert the value of a primitive field to text.
+    * The value is taken from the field using the accessor for its
+    * type, so the value is never boxed before it is converted.
+    * 
+    * @param field this is the primitive field to take the value from
+    * @param source this is the object that contains the field
+    * 
+    * @return this returns the text representing the field value
+    */
+   public static String getText(Field field, Object source) throws Exception {
+      Class type = field.getType();
+
+      if(type == int.class) {
+         return getText(field.getInt(source));
+      }
+      if(type == long.class) {
+         return getText(field.getLong(source));
+      }
+      if(type == double.class) {
+         return getText(field.getDouble(source));
+      }
+      if(type == boolean.class) {
+         return getText(field.getBoolean(source));
+      }
+      if(type == float.class) {
+         return getText(field.getFloat(source));
+      }
+      if(type == short.class) {
+         return getText(field.getShort(source));
+      }
+      if(type == byte.class) {
+         return getText(field.getByte(source));
+      }
+      return String.valueOf(field.getChar(source));
+   }
+
+   /**
+    * This is used to convert a boolean to text. This returns one of
+    * the string constants so that nothing is created or copied.
+    * 
+    * @param value this is the value that is to be converted
+    * 
+    * @return this returns the text representing the value
+    */
+   public static String getText(boolean value) {
+      return value ? "true" : "false";
+   }
+
+   /**
+    * This is used to convert an integer to text. Small values are
+    * taken from the table of strings, larger values are written using
+    * the digit pair tables of <code>Long</code> directly in to the
+    * array used by the resulting string.
+    * 
+    * @param value this is the value that is to be converted
+    * 
+    * @return this returns the text representing the value
+    */
+   public static String getText(long value) {
+      if(value >= MINIMUM && value <= MAXIMUM) {
+         return TABLE[(int) value - MINIMUM];
+      }
+      return Long.toString(value);
+   }
+
+   /**
+    * This is used to convert a double to text. The text is the
+    * shortest decimal that reads back as the same double, and it is
+    * written in the same notation as <code>Double.toString</code>.
+    * 
+    * @param value this is the value that is to be converted
+    * 
+    * @return this returns the text representing the value
+    */
+   public static String getText(double value) {
+      if(value == 0) {
+         return Double.toString(value);
+      }
+      StringBuilder text = new StringBuilder(24);
+      return append(text, value).toString();
+   }
+
+   /**
+    * This is used to convert a float to text. The text is the
+    * shortest decimal that reads back as the same float, and it is
+    * written in the same notation as <code>Float.toString</code>.
+    * 
+    * @param value this is the value that is to be converted
+    * 
+    * @return this returns the text representing the value
+    */
+   public static String getText(float value) {
+      if(value == 0) {
+         return Float.toString(value);
+      }
+      StringBuilder text = new StringBuilder(16);
+      return append(text, value).toString();
+   }
+
+   /**
+    * This is used to append a double to the text provided. If the 
+    * value is written without an exponent then this finds the fewest
+    * fractional digits for which the scaled value divides back to 
+    * exactly the same double, otherwise the value is appended in the
+    * form used by <code>Double.toString</code>.
+    * 
+    * @param text this is the text that the value is appended to
+    * @param value this is the value that is to be appended
+    * 
+    * @return this returns the text that was provided
+    */
+   public static StringBuilder append(StringBuilder text, double value) {
+      double size = Math.abs(value);
+
+      if(size >= LOWER && size < UPPER) {
+         for(int scale = 0; scale < POWERS.length; scale++) {
+            double shift = size * POWERS[scale];
+
+            if(shift >= LIMIT) {
+               break;
+            }
+            double digits = Math.rint(shift);
+
+            if(digits / POWERS[scale] == size) {
+               return append(text, value < 0, (long) digits, scale);
+            }
+         }
+      }
+      return text.append(value);
+   }
+
+   /**
+    * This is used to append a float to the text provided. This is 
+    * the same as for a double, however the scaled value is checked 
+    * to be sure that it does not fall exactly between two floats, in
+    * which case rounding twice could produce a different float.
+    * 
+    * @param text this is the text that the value is appended to
+    * @param value this is the value that is to be appended
+    * 
+    * @return this returns the text that was provided
+    */
+   public static StringBuilder append(StringBuilder text, float value) {
+      float size = Math.abs(value);
+
+      if(size >= LOWER && size < UPPER) {
+         for(int scale = 0; scale < POWERS.length; scale++) {
+            double shift = size * POWERS[scale];
+
+            if(shift >= LIMIT) {
+               break;
+            }
+            double digits = Math.rint(shift);
+            double result = digits / POWERS[scale];
+
+            if((float) result == size && !isHalf(result, size)) {
+               return append(text, value < 0, (long) digits, scale);
+            }
+         }
+      }
+      return text.append(value);
+   }
+
+   /**
+    * This is used to append a decimal given as an integer and the
+    * number of digits that are after the decimal point. At least one
+    * digit is written after the point, and the leading zeros of the
+    * fractional digits are written before the fractional value.
+    * 
+    * @param text this is the text that the value is appended to
+    * @param negative this determines if a minus sign is written
+    * @param digits this is the integer holding all of the digits
+    * @param scale this is the number of fractional digits
+    * 
+    * @return this returns the text that was provided
+    */
+   private static StringBuilder append(StringBuilder text, boolean negative, long digits, int scale) {
+      long factor = (long) POWERS[scale];
+      long fraction = digits % factor;
+
+      if(negative) {
+         text.append('-');
+      }
+      text.append(digits / factor);
+      text.append('.');
+
+      if(scale == 0) {
+         return text.append('0');
+      }
+      for(long next = fraction * 10; next < factor; next *= 10) {
+         text.append('0');
+      }
+      return text.append(fraction);
+   }
+
+   /**
+    * This is used to determine if the double provided is exactly half
+    * way between the float provided and the float next to it. If so 
+    * the decimal it was divided from may round to either float.
+    * 
+    * @param result this is the double that was rounded to the float
+    * @param value this is the positive float it was rounded to
+    * 
+    * @return true if the double is half way between two floats
+    */
+   private static boolean isHalf(double result, float value) {
+      if(result > value) {
+         return result == ((double) value + Math.nextUp(value)) / 2;
+      }
+      if(result < value) {
+         return result == ((double) value + Math.nextDown(value)) / 2;
+      }
+      return false;
+   }
+}
@@ -74,8 +74,11 @@ final class ElementLabel implements Label {
     * @return this returns a converter for serializing XML elements
     */
    public Converter getConverter(Source source) {
+      if(PrimitiveArray.isArray(type)) {
+         return new PrimitiveArray(source, type);
+      }
       if(isPrimitive(type)) {
-         return new Primitive(source, type);
+         return new Primitive(source, type, label.intern());
       }
       return new Composite(source, type);
    }
@@ -93,6 +96,17 @@ final class ElementLabel implements Label {
       return field;
    }
    
+   /**
+    * This is used to acquire the dependant class for the label. This
+    * is the class that the converter for the label will instantiate
+    * and populate. For this label it is the type of the field.
+    * 
+    * @return this returns the class the converter will populate
+    */
+   public Class getDependant() {
+      return type;
+   }
+   
    /**
     * This is used to acquire the name of the XML element as taken
     * from the field annotation. Every XML annotation must contain a
@@ -136,13 +150,14 @@ final class ElementLabel implements Label {
     * This method is used to determine whether the field type is a
     * primitive or enumerated type. If it is either of these then it
     * must be a leaf element, that is, an element without any other
-    * elements. If this is true a primitive converter is used.
+    * elements. If this is true a primitive converter is used. Arrays
+    * of primitives are also leaf elements, as the values are text.
     * 
     * @param type the type checked to determine if it is primitive
     * 
     * @return true if the type is primitive, false otherwise
     */
-   private boolean isPrimitive(Class type) {
+   static boolean isPrimitive(Class type) {
       if(type.equals(Boolean.class)) {
 	      return true;              
 	   }
@@ -160,10 +175,24 @@ final class ElementLabel implements Label {
 	   }
       if(type.isPrimitive()) {
          return true;                 
+      }
+      if(PrimitiveArray.isArray(type)) {
+         return true;
       }
 	   return type.isEnum();
    }
    
+   /**
+    * This is used to determine whether string values read for the
+    * field are interned, as specified by the field annotation. If
+    * this is true equal values resolve to the same string instance.
+    * 
+    * @return true if the string values read are to be interned
+    */
+   public boolean isIntern() {
+      return label.intern();
+   }
+
    /**
     * This provides a string describing the XML annotation this is
     * used to represent. This is used when debugging an error as
@@ -75,13 +75,17 @@ final class ElementListLabel implements Label {
     * This will create a <code>Converter</code> for transforming a DOM
     * element into a collection of XML serializable objects. The XML
     * schema class for these objects must be present the element list
-    * annotation. 
+    * annotation. If the entries are primitives then no schema class
+    * is required and the values are written as text.
     * 
     * @param root this is the source object used for serialization
     * 
     * @return this returns the converter for creating a collection 
     */
    public Converter getConverter(Source root) {
+      if(PrimitiveList.isPrimitive(item)) {
+         return new PrimitiveList(root, type, item, label);
+      }
       return new CompositeList(root, type, item);      
    }
 
@@ -112,6 +116,17 @@ final class ElementListLabel implements Label {
       return field;
    }
    
+   /**
+    * This is used to acquire the dependant class for the label. This
+    * is the class that the converter for the label will instantiate
+    * and populate. For element lists this is the entry type.
+    * 
+    * @return this returns the class the converter will populate
+    */
+   public Class getDependant() {
+      return item;
+   }
+   
    /**
     * This is used to acquire the name of the XML element as taken
     * from the field annotation. Every XML annotation must contain a
@@ -137,6 +152,17 @@ final class ElementListLabel implements Label {
       return label.required();
    }
    
+   /**
+    * This is used to determine whether string values read for the
+    * field are interned, as specified by the field annotation. If
+    * this is true equal values resolve to the same string instance.
+    * 
+    * @return true if the string values read are to be interned
+    */
+   public boolean isIntern() {
+      return label.intern();
+   }
+
    /**
     * This provides a string describing the XML annotation this is
     * used to represent. This is used when debugging an error as
@@ -0,0 +1,578 @@
+/*
+ * Encoder.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import xml.serializer.load.exceptions.PersistenceException;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * The <code>Encoder</code> object is used to encode XML text directly
+ * in to a byte buffer. Markup characters are escaped in the same pass
+ * that encodes the text, so the text is examined only once. When the
+ * buffer is full it is written to the output stream in a single block,
+ * which keeps the number of writes to the stream small. The buffers
+ * are recycled, so repeated writes do not allocate new buffers.
+ * <p>
+ * The UTF-8, ISO-8859-1 and US-ASCII character sets are encoded by
+ * hand, without the use of a charset encoder. For the single byte
+ * character sets any character that can not be represented is written
+ * as a numeric character reference. All other character sets are
+ * encoded with a <code>CharsetEncoder</code>, in which case the text
+ * is staged in a character buffer and encoded in blocks.
+ * <p>
+ * References can only be used within text and attribute values, so
+ * markup such as an element or attribute name that can not be 
+ * represented in the character set is rejected with an exception.
+ * 
+ * @see xml.serializer.load.Printer
+ */
+final class Encoder {
+
+   /**
+    * This is the mode used for the UTF-8 character set.
+    */
+   private static final int UTF_8 = 0;
+
+   /**
+    * This is the mode used for the single byte character sets.
+    */
+   private static final int SINGLE = 1;
+
+   /**
+    * This is the mode used for all other character sets.
+    */
+   private static final int GENERIC = 2;
+
+   /**
+    * This is the default size of the buffer used for encoding.
+    */
+   private static final int SIZE = 32768;
+
+   /**
+    * This is used to recycle the buffers used for encoding.
+    */
+   private static BufferPool pool;
+
+   static {
+      pool = new BufferPool(SIZE, SIZE, 4 << 20);
+   }
+
+   /**
+    * This is used to determine if characters can be encoded.
+    */
+   private CharsetEncoder checker;
+
+   /**
+    * This is used to encode text for generic character sets.
+    */
+   private CharsetEncoder encoder;
+
+   /**
+    * This is used to stage text for generic character sets.
+    */
+   private CharBuffer stage;
+
+   /**
+    * This is the stream the encoded bytes are written to.
+    */
+   private OutputStream out;
+
+   /**
+    * This is the buffer that the text is encoded in to.
+    */
+   private byte[] buffer;
+
+   /**
+    * This is the canonical name of the character set used.
+    */
+   private String charset;
+
+   /**
+    * This is the number of bytes that have been encoded.
+    */
+   private int count;
+
+   /**
+    * This is the lowest character not in a single byte charset.
+    */
+   private int limit;
+
+   /**
+    * This determines how the characters are to be encoded.
+    */
+   private int mode;
+
+   /**
+    * Constructor for the <code>Encoder</code> object. This is given
+    * the stream that the encoded bytes are written to and the name
+    * of the character set used to encode the text written to it. The
+    * buffer used is taken from a pool and returned once finished.
+    * 
+    * @param out this is the stream the bytes are written to
+    * @param charset this is the name of the character set to use
+    */
+   public Encoder(OutputStream out, String charset) throws Exception {
+      this(out, Charset.forName(charset));
+   }
+
+   /**
+    * Constructor for the <code>Encoder</code> object. This is given
+    * the stream that the encoded bytes are written to and the 
+    * character set used to encode the text written to it. The buffer
+    * used is taken from a pool and returned once finished.
+    * 
+    * @param out this is the stream the bytes are written to
+    * @param charset this is the character set to use
+    */
+   private Encoder(OutputStream out, Charset charset) throws Exception {
+      this.charset = charset.name();
+      this.buffer = pool.take();
+      this.out = out;
+      this.init(charset);
+   }
+
+   /**
+    * This is used to determine how the character set is encoded. The
+    * UTF-8 and single byte character sets have a dedicated mode, the
+    * remaining character sets require a charset encoder.
+    * 
+    * @param value this is the character set that is to be used
+    */
+   private void init(Charset value) {
+      if(charset.equals("UTF-8")) {
+         mode = UTF_8;
+      } else if(charset.equals("ISO-8859-1")) {
+         mode = SINGLE;
+         limit = 0x100;
+      } else if(charset.equals("US-ASCII")) {
+         mode = SINGLE;
+         limit = 0x80;
+      } else {
+         encoder = value.newEncoder();
+         encoder.onMalformedInput(CodingErrorAction.REPLACE);
+         encoder.onUnmappableCharacter(CodingErrorAction.REPLACE);
+         checker = value.newEncoder();
+         stage = CharBuffer.allocate(buffer.length / 2);
+         mode = GENERIC;
+      }
+   }
+
+   /**
+    * This is used to acquire the canonical name of the character set
+    * used by this encoder. This is the name that is to be written in
+    * the XML declaration for the document.
+    * 
+    * @return this returns the name of the character set used
+    */
+   public String getCharset() {
+      return charset;
+   }
+
+   /**
+    * This is used to acquire the name of a character set that encodes
+    * text exactly as this encoder does, but without a byte order mark.
+    * Text that continues the output of this encoder, such as a segment
+    * printed to a buffer of its own, must not start with another mark
+    * so the byte order this encoder uses is named explicitly.
+    * 
+    * @return this returns the character set without a byte order mark
+    */
+   public String getContinuation() {
+      if(charset.equals("UTF-16")) {
+         return "UTF-16BE";
+      }
+      if(charset.equals("x-UTF-16LE-BOM")) {
+         return "UTF-16LE";
+      }
+      if(charset.equals("X-UTF-32BE-BOM")) {
+         return "UTF-32BE";
+      }
+      if(charset.equals("X-UTF-32LE-BOM")) {
+         return "UTF-32LE";
+      }
+      return charset;
+   }
+
+   /**
+    * This is used to write a single markup character. Markup is not
+    * escaped, so this should only be used for the characters that 
+    * make up tags and the indent between elements.
+    * 
+    * @param next this is the character that is to be written
+    */
+   public void write(char next) throws Exception {
+      if(next < 0x80 && mode != GENERIC) {
+         if(count == buffer.length) {
+            flush();
+         }
+         buffer[count++] = (byte) next;
+      } else {
+         write(String.valueOf(next));
+      }
+   }
+
+   /**
+    * This is used to write markup such as the name of an element or
+    * an attribute. Markup is written without any escaping, however
+    * it is encoded in the same way as the text of the document. If
+    * the markup can not be encoded in the character set used then
+    * an exception is thrown, as references are not valid in markup.
+    * 
+    * @param text this is the markup that is to be written
+    */
+   public void write(String text) throws Exception {
+      append(text, false, false);
+   }
+
+   /**
+    * This is used to write the provided text with all of the XML
+    * markup characters escaped. Attribute values also have quotes
+    * and whitespace characters escaped so that they are preserved
+    * when the attribute is read back in. 
+    * 
+    * @param text this is the text that is to be escaped
+    * @param attribute determines if this is an attribute value
+    */
+   public void escape(String text, boolean attribute) throws Exception {
+      append(text, true, attribute);
+   }
+
+   /**
+    * This is used to encode the provided text in to the buffer. Runs
+    * of ASCII characters are copied in a tight loop, only characters
+    * that need escaping or that are beyond the ASCII range leave the
+    * loop. Generic character sets are staged and encoded in blocks.
+    * 
+    * @param text this is the text that is to be encoded
+    * @param escape determines if markup characters are escaped
+    * @param attribute determines if this is an attribute value
+    */
+   private void append(String text, boolean escape, boolean attribute) throws Exception {
+      int length = text.length();
+
+      if(mode == GENERIC) {
+         stage(text, escape, attribute);
+      } else {
+         for(int i = 0; i < length; i++) {
+            char next = text.charAt(i);
+
+            if(next < 0x80) {
+               String entity = escape ? getEntity(next, attribute) : null;
+
+               if(entity != null) {
+                  ascii(entity);
+               } else {
+                  if(count == buffer.length) {
+                     flush();
+                  }
+                  buffer[count++] = (byte) next;
+               }
+            } else {
+               i = encode(text, i, escape);
+            }
+         }
+      }
+   }
+
+   /**
+    * This is used to encode a character that is beyond the ASCII
+    * range. For UTF-8 this writes the multi byte sequence, including
+    * the four byte sequence for surrogate pairs. For the single byte
+    * character sets a reference is written if it can not be encoded,
+    * unless the character is within markup, which is rejected.
+    * 
+    * @param text this is the text containing the character
+    * @param index this is the index of the character to encode
+    * @param escape determines if the text is escaped or is markup
+    * 
+    * @return this returns the index of the last character used
+    */
+   private int encode(String text, int index, boolean escape) throws Exception {
+      int next = text.charAt(index);
+      int size = 1;
+
+      if(Character.isHighSurrogate((char) next) && index + 1 < text.length()) {
+         char low = text.charAt(index + 1);
+
+         if(Character.isLowSurrogate(low)) {
+            next = Character.toCodePoint((char) next, low);
+            size = 2;
+         }
+      }
+      if(mode == SINGLE) {
+         if(next < limit) {
+            if(count == buffer.length) {
+               flush();
+            }
+            buffer[count++] = (byte) next;
+         } else if(escape) {
+            reference(next);
+         } else {
+            throw new PersistenceException("Markup '%s' can not be encoded in %s", text, charset);
+         }
+      } else {
+         utf8(next);
+      }
+      return index + size - 1;
+   }
+
+   /**
+    * This is used to write the UTF-8 sequence for a code point. Lone
+    * surrogates can not be represented in UTF-8, so these are written
+    * as a question mark in the same way that the JDK encoder would.
+    * 
+    * @param next this is the code point that is to be written
+    */
+   private void utf8(int next) throws Exception {
+      if(count + 4 > buffer.length) {
+         flush();
+      }
+      if(next < 0x800) {
+         buffer[count++] = (byte) (0xc0 | (next >> 6));
+         buffer[count++] = (byte) (0x80 | (next & 0x3f));
+      } else if(next >= 0x10000) {
+         buffer[count++] = (byte) (0xf0 | (next >> 18));
+         buffer[count++] = (byte) (0x80 | ((next >> 12) & 0x3f));
+         buffer[count++] = (byte) (0x80 | ((next >> 6) & 0x3f));
+         buffer[count++] = (byte) (0x80 | (next & 0x3f));
+      } else if(Character.isSurrogate((char) next)) {
+         buffer[count++] = (byte) '?';
+      } else {
+         buffer[count++] = (byte) (0xe0 | (next >> 12));
+         buffer[count++] = (byte) (0x80 | ((next >> 6) & 0x3f));
+         buffer[count++] = (byte) (0x80 | (next & 0x3f));
+      }
+   }
+
+   /**
+    * This is used to write a numeric character reference for a code
+    * point that can not be encoded in the character set used. The
+    * reference is written in decimal as it is composed of ASCII.
+    * 
+    * @param next this is the code point that is to be referenced
+    */
+   private void reference(int next) throws Exception {
+      ascii("&#");
+      ascii(String.valueOf(next));
+      ascii(";");
+   }
+
+   /**
+    * This is used to write text that is known to be ASCII. Every
+    * character is written as a single byte without any escaping, 
+    * this is used to write entities and character references.
+    * 
+    * @param text this is the ASCII text that is to be written
+    */
+   private void ascii(String text) throws Exception {
+      int length = text.length();
+
+      if(mode == GENERIC) {
+         stage(text, false, false);
+      } else {
+         if(count + length > buffer.length) {
+            flush();
+         }
+         for(int i = 0; i < length; i++) {
+            buffer[count++] = (byte) text.charAt(i);
+         }
+      }
+   }
+
+   /**
+    * This is used to stage text for a generic character set. Escaped
+    * characters are replaced with their entities, and characters the
+    * charset can not encode are replaced with character references.
+    * If such a character is within markup an exception is thrown.
+    * The staged text is encoded once the stage is full.
+    * 
+    * @param text this is the text that is to be staged
+    * @param escape determines if markup characters are escaped
+    * @param attribute determines if this is an attribute value
+    */
+   private void stage(String text, boolean escape, boolean attribute) throws Exception {
+      int length = text.length();
+
+      for(int i = 0; i < length; i++) {
+         char next = text.charAt(i);
+         String entity = escape ? getEntity(next, attribute) : null;
+
+         if(entity == null && next >= 0x80) {
+            int end = i + 1;
+            
+            if(Character.isHighSurrogate(next) && end < length) {
+               if(Character.isLowSurrogate(text.charAt(end))) {
+                  end++;
+               }
+            }
+            String value = text.substring(i, end);
+            
+            if(checker.canEncode(value)) {
+               entity = value;
+            } else if(!escape) {
+               throw new PersistenceException("Markup '%s' can not be encoded in %s", text, charset);
+            } else {
+               entity = "&#" + value.codePointAt(0) + ";";
+            }
+            i = end - 1;
+         }
+         if(entity != null) {
+            for(int j = 0; j < entity.length(); j++) {
+               stage(entity.charAt(j));
+            }
+         } else {
+            stage(next);
+         }
+      }
+   }
+
+   /**
+    * This is used to stage a single character for a generic charset.
+    * If the stage is full then it is encoded before the character is
+    * added to it.
+    * 
+    * @param next this is the character that is to be staged
+    */
+   private void stage(char next) throws Exception {
+      if(!stage.hasRemaining()) {
+         encode(false);
+      }
+      stage.put(next);
+   }
+
+   /**
+    * This is used to encode the staged text for a generic character
+    * set in to the buffer. A surrogate pair split between two blocks
+    * is retained by the encoder until the next block is encoded.
+    * 
+    * @param end determines if this is the end of the text
+    */
+   private void encode(boolean end) throws Exception {
+      ByteBuffer bytes = ByteBuffer.wrap(buffer, count, buffer.length - count);
+
+      stage.flip();
+
+      while(true) {
+         CoderResult result = encoder.encode(stage, bytes, end);
+
+         if(end && !result.isOverflow()) {
+            result = encoder.flush(bytes);
+         }
+         if(!result.isOverflow()) {
+            break;
+         }
+         count = bytes.position();
+         drain();
+         bytes = ByteBuffer.wrap(buffer);
+      }
+      count = bytes.position();
+      stage.compact();
+   }
+
+   /**
+    * This is used to acquire the escape sequence for the character.
+    * If the character does not need to be escaped this returns null.
+    * 
+    * @param next this is the character to acquire the escape for
+    * @param attribute determines if this is an attribute value
+    * 
+    * @return this returns the escape sequence for the character
+    */
+   private String getEntity(char next, boolean attribute) {
+      switch(next) {
+      case '&':
+         return "&amp;";
+      case '<':
+         return "&lt;";
+      case '>':
+         return "&gt;";
+      case '"':
+         return attribute ? "&quot;" : null;
+      case '\n':
+         return attribute ? "&#10;" : null;
+      case '\r':
+         return "&#13;";
+      case '\t':
+         return attribute ? "&#9;" : null;
+      }
+      return null;
+   }
+
+   /**
+    * This is used to write the encoded bytes to the output stream.
+    * Any text staged for a generic character set is encoded first.
+    * The output stream itself is not flushed by this method.
+    */
+   public void flush() throws Exception {
+      if(mode == GENERIC && stage.position() > 0) {
+         encode(false);
+      }
+      drain();
+   }
+
+   /**
+    * This is used to write the bytes within the buffer to the stream.
+    * Once written the buffer is empty and can be reused, the bytes are
+    * always written to the stream as a single block.
+    */
+   private void drain() throws Exception {
+      if(count > 0) {
+         out.write(buffer, 0, count);
+         count = 0;
+      }
+   }
+
+   /**
+    * This is used to complete the encoding of the text. This ensures
+    * that any state held by a charset encoder is written, then the
+    * encoded bytes are written and the output stream is flushed. The
+    * buffer is returned to the pool, so the encoder can not be used
+    * once it has been finished.
+    */
+   public void finish() throws Exception {
+      if(mode == GENERIC) {
+         encode(true);
+         encoder.reset();
+      }
+      flush();
+      out.flush();
+      release();
+   }
+
+   /**
+    * This is used to return the buffer to the pool. This should be 
+    * done once the encoder is no longer required, if the encoding
+    * fails the buffer can be released without finishing.
+    */
+   public void release() {
+      if(buffer != null) {
+         pool.offer(buffer);
+      }
+      buffer = null;
+   }
+}
@@ -0,0 +1,562 @@
+/*
+ * EntryPublisher.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import xml.serializer.Root;
+import xml.serializer.load.exceptions.ElementException;
+import xml.serializer.load.exceptions.RootException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow.Publisher;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.concurrent.Flow.Subscription;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static javax.xml.stream.XMLStreamConstants.CDATA;
+import static javax.xml.stream.XMLStreamConstants.CHARACTERS;
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static javax.xml.stream.XMLStreamConstants.SPACE;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+
+/**
+ * The <code>EntryPublisher</code> is used to publish the entries of
+ * an element list as they are parsed from an XML document. Rather
+ * than building the entire document, the document is parsed as a
+ * stream and the entries of the list are bound one at a time. Each
+ * entry is built as a small DOM element and bound with a traverser,
+ * so each entry is bound exactly as a <code>CompositeList</code>
+ * would bind it.
+ * <p>
+ * Parsing is driven by the demand of the subscriber, an entry is only
+ * parsed once the subscriber has requested it. This means that a slow
+ * subscriber holds back the parser, and no more than a single entry
+ * is held in memory regardless of the size of the document. Parsing
+ * is performed on the executor given rather than the requesting
+ * thread. A publisher can only be subscribed to once.
+ * <p>
+ * Strings are interned and references are resolved exactly as they
+ * are by the persister that created the publisher. As the entries
+ * are bound in document order a reference may refer to an earlier
+ * entry, however elements outside of the list are never bound, so
+ * a reference to a composite outside of the list can not resolve.
+ * 
+ * @see xml.serializer.load.CompositeList
+ */
+final class EntryPublisher implements Publisher<Object> {
+
+   /**
+    * This is used to create the streaming parsers for documents.
+    */
+   private static XMLInputFactory factory;
+
+   static {
+      factory = XMLInputFactory.newInstance();
+      factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+   }
+
+   /**
+    * This is used to ensure that only one subscription is made.
+    */
+   private AtomicBoolean subscribed;
+
+   /**
+    * This is the executor that is used to parse the entries.
+    */
+   private Executor executor;
+
+   /**
+    * This is the document the entries are built within.
+    */
+   private Document document;
+
+   /**
+    * This is the stream that the XML document is read from.
+    */
+   private InputStream source;
+
+   /**
+    * This enables references between entries, if it is not null.
+    */
+   private Cycle cycle;
+
+   /**
+    * This is used to resolve repeated strings, if it is not null.
+    */
+   private Intern intern;
+
+   /**
+    * This is the XML schema class for the root element.
+    */
+   private Class type;
+
+   /**
+    * This is the name of the element list to be published.
+    */
+   private String list;
+
+   /**
+    * Constructor for the <code>EntryPublisher</code> object. This is
+    * given the schema class for the root element of the document and
+    * the name of the element list whose entries are published. The
+    * list must be declared by an <code>ElementList</code> annotation
+    * within the root schema class. The cycle configuration and the
+    * intern cache are those of the persister, either can be null.
+    * 
+    * @param type this is the XML schema class for the root element
+    * @param list this is the name of the list to be published
+    * @param source this is the stream the XML document is read from
+    * @param document this is used to build each of the entries
+    * @param cycle this enables references between the entries
+    * @param intern this is used to resolve repeated strings
+    * @param executor this is the executor used to parse entries
+    */
+   public EntryPublisher(Class type, String list, InputStream source, Document document, Cycle cycle, Intern intern, Executor executor) {
+      this.subscribed = new AtomicBoolean();
+      this.executor = executor;
+      this.document = document;
+      this.source = source;
+      this.intern = intern;
+      this.cycle = cycle;
+      this.type = type;
+      this.list = list;
+   }
+
+   /**
+    * This is used to subscribe to the entries of the element list. If
+    * the publisher has already been subscribed to then the subscriber
+    * is given an error, as the XML stream can only be read once.
+    * 
+    * @param subscriber this is the subscriber to the entries
+    */
+   public void subscribe(Subscriber<? super Object> subscriber) {
+      Cursor cursor = new Cursor(subscriber);
+
+      if(subscribed.compareAndSet(false, true)) {
+         cursor.owner = true;
+      } else {
+         cursor.error = new IllegalStateException("Publisher already has a subscriber");
+      }
+      subscriber.onSubscribe(cursor);
+      cursor.schedule();
+   }
+
+   /**
+    * This is used to acquire the entry type for the element list that
+    * is to be published. The list is taken from the schema of the root
+    * class, so if the list is not declared by the root class then an
+    * exception is thrown as the entries can not be bound.
+    * 
+    * @return this returns the entry type for the element list
+    * 
+    * @throws Exception thrown if the list is not within the schema
+    */
+   private Class getEntry() throws Exception {
+      Schema schema = Source.getSchema(type);
+      Label label = schema.getElements().get(list);
+
+      if(!(label instanceof ElementListLabel)) {
+         throw new ElementException("Element list %s not declared by %s", list, type);
+      }
+      return label.getDependant();
+   }
+
+   /**
+    * The <code>Cursor</code> object represents the subscription of a
+    * subscriber to the entries. It maintains the outstanding demand
+    * as well as the position of the parser within the document. All
+    * parsing happens within a drain loop that runs on the executor,
+    * and only a single drain loop is ever active at a time.
+    */
+   private class Cursor implements Subscription, Runnable {
+
+      /**
+       * This is the subscriber that the entries are delivered to.
+       */
+      private Subscriber<? super Object> subscriber;
+
+      /**
+       * This is used to ensure only a single drain loop is active.
+       */
+      private AtomicInteger active;
+
+      /**
+       * This is the number of entries requested but not delivered.
+       */
+      private AtomicLong demand;
+
+      /**
+       * This is set when the subscription has been cancelled.
+       */
+      private volatile boolean cancelled;
+
+      /**
+       * This is the error that the subscription has failed with.
+       */
+      private volatile Throwable error;
+
+      /**
+       * This is set once the subscriber has been completed.
+       */
+      private boolean done;
+
+      /**
+       * This is set if this subscription is the one reading the stream.
+       */
+      private volatile boolean owner;
+
+      /**
+       * This is the streaming parser used to read the document.
+       */
+      private XMLStreamReader reader;
+
+      /**
+       * This is used to bind each of the entry elements.
+       */
+      private Traverser traverser;
+
+      /**
+       * This is the entry type for elements within the list.
+       */
+      private Class entry;
+
+      /**
+       * Constructor for the <code>Cursor</code> object. This creates
+       * a subscription for the given subscriber. The parser is not
+       * created until the subscriber first requests an entry. Each
+       * subscription binds with its own source, so the references 
+       * resolved are only those within the entries it delivers.
+       * 
+       * @param subscriber this is the subscriber to the entries
+       */
+      public Cursor(Subscriber<? super Object> subscriber) {
+         this.traverser = new Traverser(new Source(document, null, false, cycle, intern));
+         this.active = new AtomicInteger();
+         this.demand = new AtomicLong();
+         this.subscriber = subscriber;
+      }
+
+      /**
+       * This is used to request a number of entries. The demand is
+       * added to the outstanding demand, and if no drain loop is active
+       * then one is started on the executor. A request that is not
+       * positive fails the subscription as required by the contract.
+       * 
+       * @param count this is the number of entries requested
+       */
+      public void request(long count) {
+         if(count <= 0) {
+            fail(new IllegalArgumentException("Request must be positive"));
+         } else {
+            long value;
+            long next;
+            
+            do {
+               value = demand.get();
+               next = value + count;
+               
+               if(next < 0) {
+                  next = Long.MAX_VALUE;
+               }
+            } while(!demand.compareAndSet(value, next));
+            
+            schedule();
+         }
+      }
+
+      /**
+       * This is used to cancel the subscription. No further entries are
+       * delivered, and the parser is closed by the drain loop the next
+       * time it runs, which releases the stream being read.
+       */
+      public void cancel() {
+         cancelled = true;
+         schedule();
+      }
+
+      /**
+       * This is used to fail the subscription with the given error. 
+       * The error is delivered to the subscriber by the drain loop so
+       * that the subscriber is never signalled by two threads at once.
+       * 
+       * @param cause this is the error the subscription failed with
+       */
+      public void fail(Throwable cause) {
+         if(error == null) {
+            error = cause;
+            schedule();
+         }
+      }
+
+      /**
+       * This is used to start a drain loop if one is not active. If a
+       * drain loop is active it is told to run again, which ensures
+       * any demand added while it was completing is not missed.
+       */
+      private void schedule() {
+         if(active.getAndIncrement() == 0) {
+            executor.execute(this);
+         }
+      }
+
+      /**
+       * This is the drain loop that parses and delivers the entries. It
+       * delivers entries while there is outstanding demand, and exits
+       * only once no further requests have been made since it began.
+       */
+      public void run() {
+         int missed = 1;
+
+         do {
+            drain();
+            missed = active.addAndGet(-missed);
+         } while(missed != 0);
+      }
+
+      /**
+       * This is used to deliver entries while there is demand for them.
+       * If the end of the list is reached the subscriber is completed
+       * and if an entry can not be parsed or bound the subscriber is
+       * given the error. In both cases the parser is closed. Errors
+       * raised by the subscription itself are also delivered here.
+       * <p>
+       * A subscriber must not throw from its signals. If it does the
+       * subscription is cancelled and the exception is dropped, as it
+       * can not be given back to the subscriber that raised it.
+       */
+      private void drain() {
+         while(!cancelled && !done && error == null && demand.get() > 0) {
+            Object value;
+
+            try {
+               value = next();
+            } catch(Exception e) {
+               error = e;
+               break;
+            }
+            if(value == null) {
+               done = true;
+               close();
+               
+               try {
+                  subscriber.onComplete();
+               } catch(RuntimeException e) {
+                  cancelled = true;
+               }
+            } else {
+               demand.decrementAndGet();
+               
+               try {
+                  subscriber.onNext(value);
+               } catch(RuntimeException e) {
+                  cancelled = true;
+               }
+            }
+         }
+         if(error != null && !done && !cancelled) {
+            done = true;
+            close();
+            
+            try {
+               subscriber.onError(error);
+            } catch(RuntimeException e) {
+               cancelled = true;
+            }
+         }
+         if(cancelled) {
+            close();
+         }
+      }
+
+      /**
+       * This is used to parse and bind the next entry within the list.
+       * If the parser has not yet been created then it is created and
+       * positioned at the start of the list. If there are no further
+       * entries within the list then this returns null.
+       * 
+       * @return this returns the next entry or null if there is none
+       * 
+       * @throws Exception thrown if the entry could not be bound
+       */
+      private Object next() throws Exception {
+         if(reader == null) {
+            start();
+         }
+         while(reader.hasNext()) {
+            int event = reader.next();
+
+            if(event == START_ELEMENT) {
+               Element node = build();
+               return traverser.read(node, entry);
+            }
+            if(event == END_ELEMENT) {
+               return null;
+            }
+         }
+         return null;
+      }
+
+      /**
+       * This is used to create the parser and position it at the start
+       * of the element list. The root element must match the root
+       * annotation of the schema class, and the list must be a child
+       * of the root element. If the list does not exist then there is
+       * nothing to publish, so the subscriber is given an error rather
+       * than being completed as if the list were empty.
+       * 
+       * @throws Exception thrown if the root or list does not match
+       */
+      private void start() throws Exception {
+         Root label = Traverser.getRoot(type);
+
+         if(label == null) {
+            throw new RootException("No root annotation defined for %s", type.getName());
+         }
+         entry = getEntry();
+         reader = factory.createXMLStreamReader(source);
+         reader.nextTag();
+
+         if(!label.name().equals(getName())) {
+            throw new RootException("Annotation %s does not match XML element %s", label, getName());
+         }
+         while(reader.hasNext()) {
+            int event = reader.next();
+
+            if(event == START_ELEMENT) {
+               if(list.equals(getName())) {
+                  return;
+               }
+               skip();
+            } else if(event == END_ELEMENT) {
+               break;
+            }
+         }
+         throw new ElementException("Element list %s not found within %s", list, label);
+      }
+
+      /**
+       * This is used to build a DOM element for the current element of
+       * the parser. The element is built with all of its attributes,
+       * text and child elements, once built the parser is positioned
+       * on the end tag of the element that was built.
+       * 
+       * @return this returns the DOM element that has been built
+       * 
+       * @throws Exception thrown if the element could not be parsed
+       */
+      private Element build() throws Exception {
+         Element node = document.createElement(getName());
+         int count = reader.getAttributeCount();
+
+         for(int i = 0; i < count; i++) {
+            String prefix = reader.getAttributePrefix(i);
+            String name = reader.getAttributeLocalName(i);
+
+            if(prefix != null && prefix.length() > 0) {
+               name = prefix + ":" + name;
+            }
+            node.setAttribute(name, reader.getAttributeValue(i));
+         }
+         while(reader.hasNext()) {
+            int event = reader.next();
+
+            if(event == START_ELEMENT) {
+               node.appendChild(build());
+            } else if(event == CHARACTERS || event == CDATA || event == SPACE) {
+               node.appendChild(document.createTextNode(reader.getText()));
+            } else if(event == END_ELEMENT) {
+               break;
+            }
+         }
+         return node;
+      }
+
+      /**
+       * This is used to skip the current element of the parser. This is
+       * used to pass over elements that precede the element list within
+       * the root element, which are not required to publish entries.
+       * 
+       * @throws Exception thrown if the element could not be parsed
+       */
+      private void skip() throws Exception {
+         int depth = 1;
+
+         while(depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+
+            if(event == START_ELEMENT) {
+               depth++;
+            } else if(event == END_ELEMENT) {
+               depth--;
+            }
+         }
+      }
+
+      /**
+       * This is used to acquire the qualified name of the current
+       * element of the parser. Names are matched without regard to
+       * namespaces, which is consistent with the DOM documents built
+       * by the persister when reading a whole document.
+       * 
+       * @return this returns the qualified name of the element
+       */
+      private String getName() {
+         String prefix = reader.getPrefix();
+         String name = reader.getLocalName();
+
+         if(prefix != null && prefix.length() > 0) {
+            return prefix + ":" + name;
+         }
+         return name;
+      }
+
+      /**
+       * This is used to close the parser once the subscription has
+       * completed, failed or been cancelled. Closing the parser does
+       * not close the stream, the stream is closed here too so that
+       * the source is released as soon as it is no longer required.
+       * The stream is closed even if parsing never started, unless it
+       * is being read by another subscription to the publisher.
+       */
+      private void close() {
+         try {
+            if(reader != null) {
+               reader.close();
+            }
+            if(owner) {
+               source.close();
+            }
+         } catch(Exception e) {
+            return;
+         } finally {
+            reader = null;
+            owner = false;
+         }
+      }
+   }
+}
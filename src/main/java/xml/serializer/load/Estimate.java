@@ -0,0 +1,98 @@
+/*
+ * Estimate.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The <code>Estimate</code> object is used to predict the size of the
+ * XML generated for an object. A moving average of the size of the 
+ * XML is maintained for each root class written, this is then used
+ * to size the array the XML is collected in so that it rarely needs
+ * to grow. The average favours recent sizes, so it adapts quickly if
+ * the objects written for a class change in size.
+ *
+ * @see xml.serializer.load.Output
+ */
+final class Estimate {
+
+   /**
+    * This is the smallest estimate that will be provided.
+    */
+   private static final int MINIMUM = 256;
+
+   /**
+    * This is the weight given to each new size, as a shift.
+    */
+   private static final int WEIGHT = 3;
+
+   /**
+    * This contains the moving average of the size for each class.
+    */
+   private ConcurrentMap<Class, Integer> sizes;
+
+   /**
+    * Constructor for the <code>Estimate</code> object. This creates
+    * an estimate with no history, the first estimate for any class 
+    * will be the minimum size until a size has been recorded.
+    */
+   public Estimate() {
+      this.sizes = new ConcurrentHashMap<Class, Integer>();
+   }
+
+   /**
+    * This is used to acquire the estimated size of the XML for the
+    * class provided. This is a quarter larger than the average, so
+    * that most objects written fit without growing the array.
+    *
+    * @param type this is the class of the object to be written
+    *
+    * @return this returns the estimated size of the XML in bytes
+    */
+   public int getSize(Class type) {
+      Integer size = sizes.get(type);
+
+      if(size == null) {
+         return MINIMUM;
+      }
+      return Math.max(MINIMUM, size + (size >> 2));
+   }
+
+   /**
+    * This is used to record the size of the XML written for an object
+    * of the given class. The size is folded in to the moving average,
+    * if two threads record at once one of the sizes may be lost, which
+    * is acceptable as the average is only an estimate.
+    *
+    * @param type this is the class of the object that was written
+    * @param size this is the size of the XML that was written
+    */
+   public void update(Class type, int size) {
+      Integer value = sizes.get(type);
+
+      if(value == null) {
+         sizes.put(type, size);
+      } else {
+         sizes.put(type, value + ((size - value) >> WEIGHT));
+      }
+   }
+}
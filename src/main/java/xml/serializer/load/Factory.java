@@ -113,6 +113,17 @@ abstract class Factory {
       node.setAttribute(TYPE, type.getName());
    }
 
+   /**
+    * This method is used to remove the override class from an element.
+    * This is used when the type of the value serialized differs from
+    * the field type but is the type that would be created anyway.
+    * 
+    * @param node the DOM element that is to have the details removed
+    */
+   public void clearOverride(Element node) throws Exception {
+      node.removeAttribute(TYPE);
+   }
+
    /**
     * This performs the conversion from the element node to a type. If
     * there is a <code>class</code> attribute present in the element
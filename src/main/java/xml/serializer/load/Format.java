@@ -0,0 +1,163 @@
+/*
+ * Format.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+/**
+ * The <code>Format</code> object is used to describe how the XML
+ * generated by a <code>Persister</code> is to be laid out. A format
+ * specifies whether the XML is compact or indented, and whether the
+ * XML declaration is written at the start of the document. 
+ * <pre>
+ * 
+ *    &lt;?xml version="1.0" encoding="UTF-8"?&gt;
+ *    &lt;example&gt;
+ *       &lt;text&gt;example text&lt;/text&gt;
+ *    &lt;/example&gt;
+ * 
+ * </pre>
+ * For example, the above XML was generated using an indent of three
+ * with the declaration enabled. A format is an immutable value, the
+ * output configuration compiled for it is created once and shared by
+ * every format with the same settings, so a format is cheap to create
+ * and can be used by any number of threads at once.
+ * 
+ * @see Persister
+ */
+public class Format {
+
+   /**
+    * This is the number of spaces used to indent each element.
+    */
+   private final int indent;
+
+   /**
+    * Determines whether the XML declaration should be written.
+    */
+   private final boolean prolog;
+
+   /**
+    * Constructor for the <code>Format</code> object. This creates a
+    * format that generates compact XML, that is, no indenting or
+    * line breaks are added between elements. The XML declaration is
+    * written at the start of the generated document. 
+    */
+   public Format() {
+      this(0);
+   }
+
+   /**
+    * Constructor for the <code>Format</code> object. This creates a
+    * format that indents each element by the specified number of
+    * spaces. If the indent is zero the generated XML is compact. The
+    * XML declaration is written at the start of the document.
+    * 
+    * @param indent this is the number of spaces to indent with
+    */
+   public Format(int indent) {
+      this(indent, true);
+   }
+
+   /**
+    * Constructor for the <code>Format</code> object. This creates a
+    * format that indents each element by the specified number of
+    * spaces. If the indent is zero the generated XML is compact. The
+    * XML declaration is written only if the prolog is enabled.
+    * 
+    * @param indent this is the number of spaces to indent with
+    * @param prolog determines if the XML declaration is written
+    */
+   public Format(int indent, boolean prolog) {
+      this.indent = indent;
+      this.prolog = prolog;
+   }
+
+   /**
+    * This is used to acquire the number of spaces each element is 
+    * indented by. If this is zero then the generated XML is compact,
+    * that is, no indenting or line breaks are added to the XML.
+    * 
+    * @return this returns the number of spaces to indent with
+    */
+   public int getIndent() {
+      return indent;
+   }
+
+   /**
+    * This is used to determine whether the XML declaration will be
+    * written at the start of the generated XML. Omitting it is useful
+    * when the XML is to be embedded within another document.
+    * 
+    * @return true if the XML declaration is to be written
+    */
+   public boolean isProlog() {
+      return prolog;
+   }
+
+   /**
+    * This is used to determine whether the generated XML is to be
+    * indented. If the indent is zero then the XML is compact, which
+    * is the most efficient form to generate and transfer.
+    * 
+    * @return true if the elements in the XML are to be indented
+    */
+   public boolean isIndent() {
+      return indent > 0;
+   }
+
+   /**
+    * This is used to generate a hash code for the format. Formats
+    * with the same settings share the same compiled configuration,
+    * so they must be usable as keys within a hash map.
+    * 
+    * @return this returns a hash code for the format settings
+    */
+   public int hashCode() {
+      return prolog ? indent * 2 + 1 : indent * 2;
+   }
+
+   /**
+    * This is used to determine if two formats have the same settings.
+    * Formats with the same settings produce identical XML and so can
+    * share the same compiled output configuration.
+    * 
+    * @param value this is the object that is to be compared
+    * 
+    * @return true if the object is a format with the same settings
+    */
+   public boolean equals(Object value) {
+      if(value instanceof Format) {
+         Format format = (Format) value;
+
+         return format.indent == indent && format.prolog == prolog;
+      }
+      return false;
+   }
+
+   /**
+    * This provides a string describing the format settings. This is
+    * used when debugging as it can be used within error messages.
+    * 
+    * @return this returns a description of the format settings
+    */
+   public String toString() {
+      return String.format("indent=%s prolog=%s", indent, prolog);
+   }
+}
@@ -1,5 +1,5 @@
 /*
- * Generator.java July 2006
+ * Formatter.java July 2006
  *
  * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
  *
@@ -25,6 +25,9 @@ import org.w3c.dom.Document;
 import javax.xml.transform.Source;
 import javax.xml.transform.*;
 import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamSource;
+import java.io.StringReader;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The <code>Formatter</code> object is used generate the XML from a
@@ -32,33 +35,50 @@ import javax.xml.transform.dom.DOMSource;
  * <code>Result</code> object, which in turn may transfer the content
  * to an output stream or file. This is used to write the serialized
  * object to text based XML from the DOM object level representation. 
+ * <p>
+ * The layout of the XML generated is described by a <code>Format</code>
+ * which is compiled in to <code>Templates</code> the first time that
+ * it is used. The compiled templates are shared by every formatter
+ * that uses an equal format, so each write only needs to take one
+ * of the pooled transformers created from the templates.
  * 
  */
 final class Formatter {
 
    /**
-    * The transformer factory that is used to create transformers.
+    * This is the stylesheet used to copy the DOM to the result.
+    */
+   private static final String STYLESHEET =
+   "<xsl:stylesheet version='1.0' xmlns:xsl='http://www.w3.org/1999/XSL/Transform' "+
+   "xmlns:xalan='http://xml.apache.org/xalan'>"+
+   "<xsl:output method='xml' indent='%s' omit-xml-declaration='%s' xalan:indent-amount='%s'/>"+
+   "<xsl:template match='/'><xsl:copy-of select='.'/></xsl:template>"+
+   "</xsl:stylesheet>";
+
+   /**
+    * This contains the transformer pools for each compiled format.
+    */
+   private static ConcurrentHashMap<Format, TransformerPool> cache;
+
+   /**
+    * The transformer factory that is used to compile templates.
     */
    private static TransformerFactory factory;
   
    static {
+      cache = new ConcurrentHashMap<Format, TransformerPool>();
       factory = TransformerFactory.newInstance(); 
    }
 
-   /**
-    * This is the transformer used to generate the result tree. 
-    */
-	private Transformer transformer;
-
    /**
     * This is the result object the XML tree is generated in to.
     */
    private Result result;
 
    /**
-    * Determines whether the resulting XML should be formatted.
+    * This describes how the resulting XML should be formatted.
     */
-   private boolean format;
+   private Format format;
 
    /**
     * Constructor for the the <code>Formatter</code> object. This is
@@ -66,28 +86,23 @@ final class Formatter {
     * The instance created constructor generates unformatted XML.
     * 
     * @param result the result to generate the XML source to
-    * 
-    * @throws Exception thrown if a transformer could not be created
     */
-   public Formatter(Result result) throws Exception {
-      this(result, false);
+   public Formatter(Result result) {
+      this(result, new Format());
    }
    
    /**
     * Constructor for the the <code>Formatter</code> object. This is
     * given the result object that is used to generate the XML source.
-    * A boolean parameter can be provided to specify whether this
-    * formatter will format the resulting XML source.
+    * A format can be provided to specify how this formatter will lay
+    * out the resulting XML source.
     * 
     * @param result the result to generate the XML source to
-    * @param format if true the resulting XML source is formatted
-    * 
-    * @throws Exception thrown if a transformer could not be created
+    * @param format this describes how the XML is to be formatted
     */
-   public Formatter(Result result, boolean format) throws Exception {
-      this.transformer = factory.newTransformer();
+   public Formatter(Result result, Format format) {
       this.result = result;
-           
+      this.format = format;
    }
    
    /**
@@ -106,16 +121,72 @@ final class Formatter {
    /**
     * This <code>write</code> method will transfer the provided DOM
     * document to the result object. If formatting is turned on this
-    * will indent the resulting XML source text generated. 
+    * will indent the resulting XML source text generated. The
+    * transformer used is taken from the pool for the format.
     * 
     * @param source this is the DOM source for the XML 
     * 
     * @throws Exception thrown if the XML could not be generated
     */
    private void write(Source source) throws Exception {
-      if(format) {
-         transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+      TransformerPool pool = getPool(format);
+      Transformer transformer = pool.take();
+
+      try {
+         transformer.transform(source, result);
+      } finally {
+         pool.offer(transformer);
+      }
+   }
+
+   /**
+    * This is used to acquire the transformer pool for the format. If
+    * the format has not been used before then its templates are
+    * compiled and a pool is cached for it. If two threads compile
+    * the same format at once only the first pool cached is used, so
+    * every formatter using the format shares a single pool.
+    * 
+    * @param format this is the format to acquire the pool for
+    * 
+    * @return this returns the transformer pool for the format
+    * 
+    * @throws Exception thrown if the templates could not be compiled
+    */
+   private static TransformerPool getPool(Format format) throws Exception {
+      TransformerPool pool = cache.get(format);
+
+      if(pool == null) {
+         TransformerPool created = new TransformerPool(getTemplates(format));
+         TransformerPool existing = cache.putIfAbsent(format, created);
+
+         if(existing != null) {
+            return existing;
+         }
+         return created;
+      }
+      return pool;
+   }
+
+   /**
+    * This is used to compile the templates for the provided format.
+    * The templates are compiled from an identity stylesheet that has
+    * its output settings taken from the format. The factory used is
+    * not thread safe so access to it is serialized.
+    * 
+    * @param format this is the format to compile the templates for
+    * 
+    * @return this returns the compiled templates for the format
+    * 
+    * @throws Exception thrown if the templates could not be compiled
+    */
+   private static Templates getTemplates(Format format) throws Exception {
+      String indent = format.isIndent() ? "yes" : "no";
+      String prolog = format.isProlog() ? "no" : "yes";
+      String text = String.format(STYLESHEET, indent, prolog, format.getIndent());
+      Source source = new StreamSource(new StringReader(text));
+      
+      synchronized(factory) {
+         return factory.newTemplates(source);
       }
-      transformer.transform(source, result);
    }
 }
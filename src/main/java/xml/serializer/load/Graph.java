@@ -0,0 +1,254 @@
+/*
+ * Graph.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import org.w3c.dom.Element;
+import xml.serializer.load.exceptions.AttributeException;
+import xml.serializer.load.exceptions.ElementException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The <code>Graph</code> object is used to track the composites that
+ * have been written or read during a single serialization when the
+ * persister has a <code>Cycle</code> configuration. Composites that
+ * have been written are tracked by identity, so objects that are
+ * equal but distinct are still written separately.
+ * <p>
+ * An identifier is written to each composite as it is written, as
+ * it is not known until the write is complete which of them will be
+ * referred to. Once complete the identifiers that are not referred
+ * to are removed with <code>clear</code>. When read the identifiers
+ * are left on the elements, so converters must skip the attributes
+ * that <code>isMark</code> reports rather than read them as fields.
+ * 
+ * @see xml.serializer.load.Cycle
+ */
+final class Graph {
+
+   /**
+    * This contains the identifiers of the composites written.
+    */
+   private Map<Object, String> written;
+
+   /**
+    * This contains the composites read by their identifiers.
+    */
+   private Map<String, Object> read;
+
+   /**
+    * This contains the identifiers that references were written to.
+    */
+   private Set<String> referenced;
+
+   /**
+    * This contains the elements that identifiers were written to.
+    */
+   private List<Element> marked;
+
+   /**
+    * This is the name of the attribute holding the identifier.
+    */
+   private String mark;
+
+   /**
+    * This is the name of the attribute holding the reference.
+    */
+   private String refer;
+
+   /**
+    * Constructor for the <code>Graph</code> object. This is given the
+    * cycle configuration that provides the names of the attributes
+    * used to identify and refer to composites.
+    * 
+    * @param cycle this is the configuration for the references
+    */
+   public Graph(Cycle cycle) {
+      this.written = new IdentityHashMap<Object, String>();
+      this.read = new HashMap<String, Object>();
+      this.referenced = new HashSet<String>();
+      this.marked = new ArrayList<Element>();
+      this.refer = cycle.getRefer();
+      this.mark = cycle.getMark();
+   }
+
+   /**
+    * This is used to write either an identifier or a reference to the
+    * element for a composite. If the composite has already been written
+    * then a reference is written and this returns true, in which case
+    * the fields of the composite must not be written again.
+    * 
+    * @param source this is the composite that is to be written
+    * @param node this is the element the composite is written to
+    * 
+    * @return true if the composite has already been written
+    */
+   public boolean write(Object source, Element node) {
+      String id = written.get(source);
+
+      if(id != null) {
+         node.setAttribute(refer, id);
+         referenced.add(id);
+         return true;
+      }
+      id = String.valueOf(written.size() + 1);
+      written.put(source, id);
+      marked.add(node);
+      node.setAttribute(mark, id);
+      return false;
+   }
+
+   /**
+    * This is used to write a reference to the element provided. This
+    * is used when a delta refers to a composite that it has merged,
+    * and unlike references written by <code>write</code> this is not
+    * recorded, as the delta decides whether the reference is kept.
+    * 
+    * @param target this is the element that has an identifier
+    * @param node this is the element the reference is written to
+    */
+   public void refer(Element target, Element node) {
+      node.setAttribute(refer, target.getAttribute(mark));
+   }
+
+   /**
+    * This is used to determine if a reference has been written to the
+    * element provided by the <code>write</code> method. If so then the
+    * element must be kept, as the reference can not be resolved
+    * without the identifier on the element.
+    * 
+    * @param node this is the element that may have an identifier
+    * 
+    * @return true if a reference has been written to the element
+    */
+   public boolean isReferenced(Element node) {
+      String id = node.getAttribute(mark);
+
+      if(id.length() > 0) {
+         return referenced.contains(id);
+      }
+      return false;
+   }
+
+   /**
+    * This is used to determine if the attribute name provided is the
+    * name of the attribute used to hold the identifier.
+    * 
+    * @param name this is the name of the attribute to check
+    * 
+    * @return true if the name is that of the identifier attribute
+    */
+   public boolean isMark(String name) {
+      return mark.equals(name);
+   }
+
+   /**
+    * This is used to remove the identifiers from all the elements
+    * that the <code>write</code> method has written them to, provided
+    * no reference to them has been written. This is used once a write
+    * is complete so only the composites referred to are identified.
+    */
+   public void clear() {
+      for(Element node : marked) {
+         clear(node);
+      }
+      marked.clear();
+   }
+
+   /**
+    * This is used to remove the identifier from an element, provided
+    * no reference to it has been written. This is used once a delta
+    * is complete for the elements that no reference is kept to.
+    * 
+    * @param node this is the element to remove the identifier from
+    */
+   public void clear(Element node) {
+      if(!isReferenced(node)) {
+         node.removeAttribute(mark);
+      }
+   }
+
+   /**
+    * This is used to acquire the composite that an element refers to.
+    * If the element has no reference then this returns null and the
+    * composite must be read from the element.
+    * 
+    * @param node this is the element that is to be read
+    * 
+    * @return this returns the composite referred to or null
+    * 
+    * @throws Exception thrown if the reference is not known
+    */
+   public Object read(Element node) throws Exception {
+      String id = node.getAttribute(refer);
+
+      if(id.length() > 0) {
+         Object value = read.get(id);
+
+         if(value == null) {
+            throw new ElementException("Reference '%s' has not been defined", id);
+         }
+         return value;
+      }
+      return null;
+   }
+
+   /**
+    * This is used to register a composite that is being read. The
+    * composite must be registered before its fields are read so that
+    * a cycle back to the composite resolves to the same instance.
+    * 
+    * @param node this is the element the composite is read from
+    * @param source this is the composite that has been created
+    * 
+    * @throws Exception thrown if the identifier is already used
+    */
+   public void read(Element node, Object source) throws Exception {
+      String id = node.getAttribute(mark);
+
+      if(id.length() > 0) {
+         if(read.put(id, source) != null) {
+            throw new ElementException("Identifier '%s' is defined twice", id);
+         }
+      }
+   }
+
+   /**
+    * This is used to ensure the schema does not declare attributes
+    * with the names used for identifiers and references. If it does
+    * then the attributes could not be told apart when read.
+    * 
+    * @param map this contains the attribute labels of the schema
+    * 
+    * @throws Exception thrown if an attribute name is reserved
+    */
+   public void validate(LabelMap map) throws Exception {
+      if(map.containsKey(mark) || map.containsKey(refer)) {
+         throw new AttributeException("Attributes '%s' and '%s' are reserved for references", mark, refer);
+      }
+   }
+}
@@ -0,0 +1,219 @@
+/*
+ * Infoset.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import org.w3c.dom.Document;
+import xml.serializer.load.exceptions.PersistenceException;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The <code>Infoset</code> object is used to convert DOM documents to
+ * and from a binary encoding of the XML infoset. Unlike the format
+ * of the <code>BinaryPersister</code> this retains everything about
+ * the XML, including the names of elements and attributes and any
+ * class attributes, so any document can be converted to the binary
+ * encoding and back without loss.
+ * <p>
+ * Each element name, attribute name and short value is written once
+ * and is then referred to by its index within a vocabulary table that
+ * the reader rebuilds as it reads. Decoding involves no parsing of
+ * text at all, the DOM nodes are created directly, and the document
+ * produced can be bound with the same logic used for textual XML.
+ * 
+ * @see xml.serializer.load.Persister
+ */
+public class Infoset {
+
+   /**
+    * These are the bytes that begin every binary infoset.
+    */
+   private static final byte[] MAGIC = {'S', 'X', 'I', 1};
+
+   /**
+    * This is used to recycle the builders used to create documents.
+    */
+   private static BuilderPool pool;
+
+   /**
+    * This is used to recycle the arrays that infosets are built in.
+    */
+   private static BufferPool buffers;
+
+   static {
+      pool = new BuilderPool(DocumentBuilderFactory.newInstance());
+      buffers = new BufferPool(4096, 1 << 20, 8 << 20);
+   }
+
+   /**
+    * Constructor for the <code>Infoset</code> object. An infoset holds
+    * no state between conversions, so a single instance can be shared
+    * by any number of threads converting documents at once.
+    */
+   public Infoset() {
+      super();
+   }
+
+   /**
+    * This is used to encode the document provided as a binary infoset.
+    * The array returned is exactly the size of the encoded document.
+    * 
+    * @param document this is the document that is to be encoded
+    * 
+    * @return this returns the binary infoset for the document
+    * 
+    * @throws Exception thrown if the document can not be encoded
+    */
+   public byte[] encode(Document document) throws Exception {
+      BinaryOutput out = encode(document, new BinaryOutput(buffers.take()));
+
+      try {
+         return out.toByteArray();
+      } finally {
+         buffers.offer(out.getBuffer());
+      }
+   }
+
+   /**
+    * This is used to encode the document provided as a binary infoset
+    * and write it to the stream. The infoset is written in a single
+    * write and the stream is flushed but not closed.
+    * 
+    * @param document this is the document that is to be encoded
+    * @param out this is the stream the infoset is written to
+    * 
+    * @throws Exception thrown if the document can not be encoded
+    */
+   public void encode(Document document, OutputStream out) throws Exception {
+      BinaryOutput output = encode(document, new BinaryOutput(buffers.take()));
+
+      try {
+         output.writeTo(out);
+      } finally {
+         buffers.offer(output.getBuffer());
+      }
+   }
+
+   /**
+    * This is used to encode the document to the output provided. The
+    * output begins with the bytes that identify a binary infoset. If
+    * the document can not be encoded the array is released.
+    * 
+    * @param document this is the document that is to be encoded
+    * @param out this is the output the infoset is written to
+    * 
+    * @return this returns the output containing the infoset
+    */
+   private BinaryOutput encode(Document document, BinaryOutput out) throws Exception {
+      InfosetWriter writer = new InfosetWriter(out);
+
+      try {
+         for(byte octet : MAGIC) {
+            out.write(octet);
+         }
+         writer.write(document);
+      } catch(Exception e) {
+         buffers.offer(out.getBuffer());
+         throw e;
+      }
+      return out;
+   }
+
+   /**
+    * This is used to decode a binary infoset in to a new document. The
+    * array is read in place without being copied.
+    * 
+    * @param source this is the array containing the infoset
+    * 
+    * @return this returns the document that was decoded
+    * 
+    * @throws Exception thrown if the infoset is not valid
+    */
+   public Document decode(byte[] source) throws Exception {
+      return decode(source, 0, source.length);
+   }
+
+   /**
+    * This is used to decode a binary infoset in to a new document. The
+    * region of the array is read in place without being copied.
+    * 
+    * @param source this is the array containing the infoset
+    * @param off this is the offset of the infoset in the array
+    * @param len this is the length of the infoset in the array
+    * 
+    * @return this returns the document that was decoded
+    * 
+    * @throws Exception thrown if the infoset is not valid
+    */
+   public Document decode(byte[] source, int off, int len) throws Exception {
+      BinaryInput in = new BinaryInput(source, off, len);
+      InfosetReader reader = new InfosetReader(in);
+
+      for(int i = 0; i < MAGIC.length; i++) {
+         if(in.isEmpty() || in.read() != MAGIC[i]) {
+            throw new PersistenceException("Document is not a binary infoset");
+         }
+      }
+      return reader.read(getDocument());
+   }
+
+   /**
+    * This is used to decode a binary infoset from the stream provided.
+    * The stream is read to its end, it is not closed once read.
+    * 
+    * @param source this is the stream containing the infoset
+    * 
+    * @return this returns the document that was decoded
+    * 
+    * @throws Exception thrown if the infoset is not valid
+    */
+   public Document decode(InputStream source) throws Exception {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int count;
+
+      while((count = source.read(buffer)) != -1) {
+         out.write(buffer, 0, count);
+      }
+      return decode(out.toByteArray());
+   }
+
+   /**
+    * This is used to create an empty document that the infoset is to
+    * be decoded in to. The builder is taken from a pool so that one
+    * is not created for every document decoded.
+    * 
+    * @return this returns an empty document
+    */
+   private Document getDocument() throws Exception {
+      DocumentBuilder builder = pool.take();
+
+      try {
+         return builder.newDocument();
+      } finally {
+         pool.offer(builder);
+      }
+   }
+}
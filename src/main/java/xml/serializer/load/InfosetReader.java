@@ -0,0 +1,218 @@
+/*
+ * InfosetReader.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import xml.serializer.load.exceptions.PersistenceException;
+
+/**
+ * The <code>InfosetReader</code> is used to decode a binary infoset
+ * in to a DOM document. The vocabulary tables are rebuilt as the
+ * tokens are read, in exactly the order they were built when the
+ * document was written, so each reference resolves to the string the
+ * writer saw. Names and values that are referenced are shared by the
+ * nodes created rather than being copied.
+ * 
+ * @see xml.serializer.load.InfosetWriter
+ */
+final class InfosetReader {
+
+   /**
+    * This is the table of element names that have been read.
+    */
+   private Vocabulary elements;
+
+   /**
+    * This is the table of attribute names that have been read.
+    */
+   private Vocabulary attributes;
+
+   /**
+    * This is the table of values that have been read.
+    */
+   private Vocabulary values;
+
+   /**
+    * This is the input that the tokens are read from.
+    */
+   private BinaryInput in;
+
+   /**
+    * Constructor for the <code>InfosetReader</code> object. This is
+    * given the input that the document is decoded from. The tables
+    * start empty, so each reader is used for a single document.
+    * 
+    * @param in this is the input the document is read from
+    */
+   public InfosetReader(BinaryInput in) {
+      this.attributes = new Vocabulary(InfosetWriter.CAPACITY);
+      this.elements = new Vocabulary(InfosetWriter.CAPACITY);
+      this.values = new Vocabulary(InfosetWriter.CAPACITY);
+      this.in = in;
+   }
+
+   /**
+    * This is used to read the document in to the empty document given.
+    * The children of the document are read up to the end token, and
+    * the document is returned once it is complete.
+    * 
+    * @param document this is the empty document to be populated
+    * 
+    * @return this returns the document that was read
+    */
+   public Document read(Document document) throws Exception {
+      readChildren(document, document);
+      return document;
+   }
+
+   /**
+    * This is used to read the children of the node provided. Each
+    * token is read and the node it represents is appended until the
+    * end token is reached. An unknown token means the document is
+    * corrupt, in which case an exception is thrown.
+    * 
+    * @param document this is the document nodes are created with
+    * @param parent this is the node the children are added to
+    */
+   private void readChildren(Document document, Node parent) throws Exception {
+      while(true) {
+         int token = in.read();
+
+         if(token == InfosetWriter.END) {
+            break;
+         }
+         parent.appendChild(readNode(document, token));
+      }
+   }
+
+   /**
+    * This is used to read the node for the token provided. Elements
+    * are read with their attributes and children, all other nodes are
+    * created from the strings that follow the token.
+    * 
+    * @param document this is the document nodes are created with
+    * @param token this is the token that was read
+    * 
+    * @return this returns the node that was read
+    */
+   private Node readNode(Document document, int token) throws Exception {
+      switch(token) {
+      case InfosetWriter.ELEMENT:
+         return readElement(document);
+      case InfosetWriter.TEXT:
+         return document.createTextNode(readValue());
+      case InfosetWriter.CDATA:
+         return document.createCDATASection(in.readString());
+      case InfosetWriter.COMMENT:
+         return document.createComment(in.readString());
+      case InfosetWriter.INSTRUCTION:
+         return document.createProcessingInstruction(readName(elements), in.readString());
+      default:
+         throw new PersistenceException("Unknown infoset token %s", token);
+      }
+   }
+
+   /**
+    * This is used to read an element. The name is read followed by 
+    * the attributes and then the children of the element.
+    * 
+    * @param document this is the document nodes are created with
+    * 
+    * @return this returns the element that was read
+    */
+   private Element readElement(Document document) throws Exception {
+      Element node = document.createElement(readName(elements));
+      int length = in.readLength();
+
+      for(int i = 0; i < length; i++) {
+         String name = readName(attributes);
+         String value = readValue();
+
+         node.setAttribute(name, value);
+      }
+      readChildren(document, node);
+      return node;
+   }
+
+   /**
+    * This is used to read a name using the table provided. A zero 
+    * means the name follows and is added to the table, otherwise the
+    * value is the index of the name offset by one.
+    * 
+    * @param table this is the table the name is read from
+    * 
+    * @return this returns the name that was read
+    */
+   private String readName(Vocabulary table) throws Exception {
+      int index = (int) in.readVarint();
+
+      if(index == 0) {
+         String name = in.readString();
+
+         table.add(name);
+         return name;
+      }
+      return resolve(table, index - 1);
+   }
+
+   /**
+    * This is used to read a value using the value table. A zero means
+    * the value follows and is added to the table, a one means the
+    * value follows but is not added, and otherwise the value is the
+    * index of the value offset by two.
+    * 
+    * @return this returns the value that was read
+    */
+   private String readValue() throws Exception {
+      int index = (int) in.readVarint();
+
+      if(index == 0) {
+         String value = in.readString();
+
+         values.add(value);
+         return value;
+      }
+      if(index == 1) {
+         return in.readString();
+      }
+      return resolve(values, index - 2);
+   }
+
+   /**
+    * This is used to resolve a reference to a string within a table.
+    * If the index is not within the table the document is corrupt.
+    * 
+    * @param table this is the table the string is taken from
+    * @param index this is the index of the string in the table
+    * 
+    * @return this returns the string at the index
+    */
+   private String resolve(Vocabulary table, int index) throws Exception {
+      String text = table.get(index);
+
+      if(text == null) {
+         throw new PersistenceException("Infoset reference %s is not valid", index);
+      }
+      return text;
+   }
+}
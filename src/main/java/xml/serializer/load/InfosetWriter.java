@@ -0,0 +1,228 @@
+/*
+ * InfosetWriter.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.ProcessingInstruction;
+
+/**
+ * The <code>InfosetWriter</code> is used to encode a DOM document in
+ * a binary form of the XML infoset. Rather than writing the names of
+ * elements and attributes each time they appear, each name is written
+ * once and then referred to by its index within a vocabulary table.
+ * Short values, such as attribute values and element text, are also
+ * entered in to a table so that repeated values are written once.
+ * <p>
+ * The document is written as a sequence of tokens. An element token
+ * is followed by its name, its attributes and then its children up
+ * to an end token. Text, sections, comments and instructions are all
+ * written so the document read back is identical to the original.
+ * 
+ * @see xml.serializer.load.InfosetReader
+ */
+final class InfosetWriter {
+
+   /**
+    * This token ends the children of an element or the document.
+    */
+   public static final int END = 0;
+
+   /**
+    * This token starts an element.
+    */
+   public static final int ELEMENT = 1;
+
+   /**
+    * This token represents a text node.
+    */
+   public static final int TEXT = 2;
+
+   /**
+    * This token represents a character data section.
+    */
+   public static final int CDATA = 3;
+
+   /**
+    * This token represents a comment.
+    */
+   public static final int COMMENT = 4;
+
+   /**
+    * This token represents a processing instruction.
+    */
+   public static final int INSTRUCTION = 5;
+
+   /**
+    * This is the longest value that will be added to the table.
+    */
+   public static final int LIMIT = 64;
+
+   /**
+    * This is the largest number of entries within each table.
+    */
+   public static final int CAPACITY = 65536;
+
+   /**
+    * This is the table of element names that have been written.
+    */
+   private Vocabulary elements;
+
+   /**
+    * This is the table of attribute names that have been written.
+    */
+   private Vocabulary attributes;
+
+   /**
+    * This is the table of values that have been written.
+    */
+   private Vocabulary values;
+
+   /**
+    * This is the output that the tokens are written to.
+    */
+   private BinaryOutput out;
+
+   /**
+    * Constructor for the <code>InfosetWriter</code> object. This is
+    * given the output that the document is encoded to. The tables
+    * start empty, so each writer is used for a single document.
+    * 
+    * @param out this is the output the document is written to
+    */
+   public InfosetWriter(BinaryOutput out) {
+      this.attributes = new Vocabulary(CAPACITY);
+      this.elements = new Vocabulary(CAPACITY);
+      this.values = new Vocabulary(CAPACITY);
+      this.out = out;
+   }
+
+   /**
+    * This is used to write the document provided. Each child of the
+    * document is written, which includes any comments and processing
+    * instructions that precede or follow the root element.
+    * 
+    * @param document this is the document that is to be written
+    */
+   public void write(Document document) throws Exception {
+      writeChildren(document);
+   }
+
+   /**
+    * This is used to write the children of the node provided followed
+    * by an end token. Node types without a token, such as document
+    * type declarations, are not part of the infoset and are skipped.
+    * 
+    * @param node this is the node to write the children of
+    */
+   private void writeChildren(Node node) throws Exception {
+      for(Node next = node.getFirstChild(); next != null; next = next.getNextSibling()) {
+         short type = next.getNodeType();
+
+         if(type == Node.ELEMENT_NODE) {
+            writeElement((Element) next);
+         } else if(type == Node.TEXT_NODE) {
+            out.write(TEXT);
+            writeValue(next.getNodeValue());
+         } else if(type == Node.CDATA_SECTION_NODE) {
+            out.write(CDATA);
+            out.writeString(next.getNodeValue());
+         } else if(type == Node.COMMENT_NODE) {
+            out.write(COMMENT);
+            out.writeString(next.getNodeValue());
+         } else if(type == Node.PROCESSING_INSTRUCTION_NODE) {
+            out.write(INSTRUCTION);
+            writeName(((ProcessingInstruction) next).getTarget(), elements);
+            out.writeString(next.getNodeValue());
+         }
+      }
+      out.write(END);
+   }
+
+   /**
+    * This is used to write an element. The name is written followed
+    * by the number of attributes, each attribute name and value, and
+    * finally the children of the element.
+    * 
+    * @param node this is the element that is to be written
+    */
+   private void writeElement(Element node) throws Exception {
+      NamedNodeMap list = node.getAttributes();
+      int length = list.getLength();
+
+      out.write(ELEMENT);
+      writeName(node.getNodeName(), elements);
+      out.writeVarint(length);
+
+      for(int i = 0; i < length; i++) {
+         Node attribute = list.item(i);
+
+         writeName(attribute.getNodeName(), attributes);
+         writeValue(attribute.getNodeValue());
+      }
+      writeChildren(node);
+   }
+
+   /**
+    * This is used to write a name using the table provided. If the 
+    * name is within the table its index is written offset by one,
+    * otherwise a zero is written followed by the name itself.
+    * 
+    * @param name this is the name that is to be written
+    * @param table this is the table the name is written from
+    */
+   private void writeName(String name, Vocabulary table) {
+      int index = table.getIndex(name);
+
+      if(index < 0) {
+         out.writeVarint(0);
+         out.writeString(name);
+         table.add(name);
+      } else {
+         out.writeVarint(index + 1);
+      }
+   }
+
+   /**
+    * This is used to write a value using the value table. If the value
+    * is within the table its index is written offset by two. If not
+    * then a zero is written if the value is short enough to be added
+    * to the table, or a one if it is not, followed by the value.
+    * 
+    * @param value this is the value that is to be written
+    */
+   private void writeValue(String value) {
+      int index = values.getIndex(value);
+
+      if(index >= 0) {
+         out.writeVarint(index + 2);
+      } else if(value.length() > LIMIT) {
+         out.writeVarint(1);
+         out.writeString(value);
+      } else {
+         out.writeVarint(0);
+         out.writeString(value);
+         values.add(value);
+      }
+   }
+}
@@ -0,0 +1,215 @@
+/*
+ * Intern.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The <code>Intern</code> object is a bounded cache of strings that is
+ * used to resolve repeated text to a single string instance when a
+ * document is read. Objects that are read from many documents and are
+ * held for a long time often contain the same names, codes and other
+ * short values, and without interning each of them is a copy.
+ * <p>
+ * The cache is a fixed size table in which each string is stored at
+ * the slot given by its hash, replacing any string already there. So
+ * the memory used is bounded and no locking is required, at the cost
+ * of an occasional duplicate when two common values share a slot. An
+ * intern cache can be shared by any number of persisters and threads.
+ * <p>
+ * When reading the binary format strings are resolved directly from
+ * the bytes of the document, so a string that is already within the
+ * cache is never allocated. Strings that are longer than sixty four
+ * characters are rarely repeated and are never interned.
+ * 
+ * @see Persister
+ */
+public class Intern {
+
+   /**
+    * This is the cache used for fields that request interning.
+    */
+   private static final Intern DEFAULT = new Intern();
+
+   /**
+    * This is the character set used for strings of ASCII bytes.
+    */
+   private static final Charset ASCII = Charset.forName("US-ASCII");
+
+   /**
+    * This is the longest string that will be interned.
+    */
+   private static final int LIMIT = 64;
+
+   /**
+    * This is the largest number of strings the cache can hold.
+    */
+   private static final int MAXIMUM = 1 << 30;
+
+   /**
+    * This is the table of strings indexed by their hash.
+    */
+   private AtomicReferenceArray<String> table;
+
+   /**
+    * This is used to reduce a hash to an index within the table.
+    */
+   private int mask;
+
+   /**
+    * Constructor for the <code>Intern</code> object. This creates a
+    * cache that can hold up to four thousand and ninety six strings,
+    * which is enough for the distinct values of most schemas.
+    */
+   public Intern() {
+      this(4096);
+   }
+
+   /**
+    * Constructor for the <code>Intern</code> object. This creates a
+    * cache that can hold up to the given number of strings, which is
+    * rounded up to a power of two so that slots are found by masking.
+    * The capacity must be positive and no more than two to the power
+    * of thirty, as that is the largest power of two an array can hold.
+    * 
+    * @param capacity this is the number of strings that can be held
+    */
+   public Intern(int capacity) {
+      int size = 1;
+
+      if(capacity < 1 || capacity > MAXIMUM) {
+         throw new IllegalArgumentException("Capacity must be between 1 and " + MAXIMUM);
+      }
+
+      while(size < capacity) {
+         size <<= 1;
+      }
+      this.table = new AtomicReferenceArray<String>(size);
+      this.mask = size - 1;
+   }
+
+   /**
+    * This is used to acquire the cache that is used for fields that
+    * request interning when the persister has no cache of its own.
+    * 
+    * @return this returns the cache shared by interned fields
+    */
+   static Intern getDefault() {
+      return DEFAULT;
+   }
+
+   /**
+    * This is used to resolve the string given to the instance held
+    * within the cache. If an equal string is not held then the string
+    * given is added to the cache and returned.
+    * 
+    * @param text this is the string that is to be resolved
+    * 
+    * @return this returns the cached string equal to the one given
+    */
+   public String intern(String text) {
+      if(text.length() <= LIMIT) {
+         int index = getIndex(text.hashCode());
+         String value = table.get(index);
+
+         if(text.equals(value)) {
+            return value;
+         }
+         table.set(index, text);
+      }
+      return text;
+   }
+
+   /**
+    * This is used to resolve a string from a region of UTF-8 bytes. If
+    * the bytes are ASCII the hash of the string is computed from them
+    * directly, so if the string is within the cache it is returned
+    * without any string being created. If the bytes are not ASCII or
+    * the region is too long then null is returned.
+    * 
+    * @param buffer this is the array containing the bytes
+    * @param off this is the offset of the first byte
+    * @param len this is the number of bytes in the string
+    * 
+    * @return this returns the cached string or null
+    */
+   String intern(byte[] buffer, int off, int len) {
+      int hash = 0;
+
+      if(len > LIMIT) {
+         return null;
+      }
+      for(int i = 0; i < len; i++) {
+         byte next = buffer[off + i];
+
+         if(next < 0) {
+            return null;
+         }
+         hash = 31 * hash + next;
+      }
+      int index = getIndex(hash);
+      String value = table.get(index);
+
+      if(!isEqual(value, buffer, off, len)) {
+         value = new String(buffer, off, len, ASCII);
+         table.set(index, value);
+      }
+      return value;
+   }
+
+   /**
+    * This is used to determine if the string is equal to the region
+    * of ASCII bytes given. Each character is compared with the byte
+    * at the same position, so no string is created.
+    * 
+    * @param value this is the cached string, which may be null
+    * @param buffer this is the array containing the bytes
+    * @param off this is the offset of the first byte
+    * @param len this is the number of bytes in the string
+    * 
+    * @return true if the string contains the characters given
+    */
+   private boolean isEqual(String value, byte[] buffer, int off, int len) {
+      if(value == null || value.length() != len) {
+         return false;
+      }
+      for(int i = 0; i < len; i++) {
+         if(value.charAt(i) != buffer[off + i]) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * This is used to determine the slot within the table for a hash.
+    * The high bits are mixed in to the low bits, so that strings whose
+    * hashes differ only in their high bits use different slots.
+    * 
+    * @param hash this is the hash of the string
+    * 
+    * @return this returns the index of the slot for the string
+    */
+   private int getIndex(int hash) {
+      return (hash ^ (hash >>> 16)) & mask;
+   }
+}
@@ -72,6 +72,16 @@ interface Label {
     * @return this returns the type of the field class
     */
    public Class getType();
+
+   /**
+    * This is used to acquire the dependant class for the label. This
+    * is the class that the converter for the label will instantiate
+    * and populate, for an element list this is the list entry type
+    * and for all other labels it is simply the type of the field.
+    * 
+    * @return this returns the class the converter will populate
+    */
+   public Class getDependant();
    
    /**
     * This is used to acquire the name of the XML attribute as taken
@@ -93,4 +103,13 @@ interface Label {
     * @return true if the label represents a some required data
     */
    public boolean isRequired();
+
+   /**
+    * Determines whether string values read for the field are to be
+    * interned. If this is true then equal values resolve to the same
+    * string instance regardless of the document they are read from.
+    * 
+    * @return true if the string values read are to be interned
+    */
+   public boolean isIntern();
 }
@@ -0,0 +1,464 @@
+/*
+ * NativeConfig.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import xml.serializer.Attribute;
+import xml.serializer.Element;
+import xml.serializer.ElementList;
+import xml.serializer.Root;
+import xml.serializer.load.exceptions.InstantiationException;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The <code>NativeConfig</code> object is used to generate the
+ * reflection configuration required to run the serializer within a
+ * native executable. Native images can only reflectively access the
+ * classes, fields and constructors that were registered at build
+ * time, so every XML schema class must be described in a file named
+ * <code>reflect-config.json</code>, which is generated by this.
+ * <p>
+ * The classes registered are discovered using the same scanning
+ * that is used during serialization. Starting from each root class
+ * every annotated field is registered along with the classes that
+ * are instantiated to populate it, this includes composite element
+ * types, <code>ElementList</code> entry types, the collections that
+ * abstract list fields are converted to, and the primitive types
+ * that are created from a string. Types that only ever appear in a
+ * <code>class</code> override attribute cannot be discovered from
+ * the annotations and so must be added with <code>include</code>.
+ * <pre>
+ *
+ *    java xml.serializer.load.NativeConfig reflect-config.json demo.Example
+ *
+ * </pre>
+ * The above command could be executed as part of a build to write
+ * the configuration for the <code>demo.Example</code> schema class.
+ */
+public class NativeConfig {
+
+   /**
+    * This is the name used for constructors within the configuration.
+    */
+   private static final String CONSTRUCTOR = "<init>";
+
+   /**
+    * This contains all of the schema classes reachable from the roots.
+    */
+   private SchemaGraph graph;
+
+   /**
+    * This contains the entries to be written ordered by class name.
+    */
+   private Map<String, Entry> entries;
+
+   /**
+    * Constructor for the <code>NativeConfig</code> object. This will
+    * create an empty configuration to which root schema classes are
+    * added. Once all of the classes have been added the resulting
+    * configuration can be written to a file or writer.
+    */
+   public NativeConfig() {
+      this.entries = new TreeMap<String, Entry>();
+      this.graph = new SchemaGraph();
+   }
+
+   /**
+    * This is used to add a root schema class to the configuration.
+    * All classes reachable through the annotated fields of the root
+    * class are also added, including the types of element lists.
+    *
+    * @param type this is the root schema class to be registered
+    */
+   public void add(Class type) {
+      graph.add(type);
+   }
+
+   /**
+    * This is used to include a type that can not be discovered from
+    * the schema annotations. Typically this is a type that is named
+    * within a <code>class</code> attribute in the XML source, which
+    * is loaded by name and instantiated during deserialization.
+    *
+    * @param type this is the override type that is to be included
+    */
+   public void include(Class type) {
+      graph.add(type);
+      register(type);
+   }
+
+   /**
+    * This is used to write the reflection configuration to the file
+    * provided. If the parent directory of the file does not exist
+    * then it is created before the configuration is written.
+    *
+    * @param file this is the file to write the configuration to
+    *
+    * @throws Exception thrown if the configuration can not be written
+    */
+   public void write(File file) throws Exception {
+      File parent = file.getAbsoluteFile().getParentFile();
+
+      if(parent != null) {
+         parent.mkdirs();
+      }
+      Writer out = new OutputStreamWriter(new FileOutputStream(file), "utf-8");
+
+      try {
+         write(out);
+      } finally {
+         out.close();
+      }
+   }
+
+   /**
+    * This is used to write the reflection configuration as JSON to
+    * the provided writer. The entries are written in class name order
+    * and each member list is sorted, so that the output is identical
+    * each time it is generated for the same set of root classes. The
+    * annotations are registered so their attributes can be queried.
+    *
+    * @param out this is the writer the configuration is written to
+    *
+    * @throws Exception thrown if the configuration can not be written
+    */
+   public void write(Writer out) throws Exception {
+      String delimiter = "";
+
+      for(Class type : graph) {
+         scan(type);
+      }
+      getEntry(Root.class).annotation = true;
+      getEntry(Element.class).annotation = true;
+      getEntry(ElementList.class).annotation = true;
+      getEntry(Attribute.class).annotation = true;
+      out.write("[");
+
+      for(Entry entry : entries.values()) {
+         out.write(delimiter);
+         entry.write(out);
+         delimiter = ",";
+      }
+      out.write("\n]\n");
+      out.flush();
+   }
+
+   /**
+    * This is used to scan the schema class for members that need to
+    * be registered. The schema class and each of its super classes
+    * are registered so that their declared fields can be scanned, and
+    * every field annotated is registered so it can be read and set.
+    *
+    * @param type this is the schema class that is to be scanned
+    */
+   private void scan(Class type) {
+      for(Class base = type; base != null && base != Object.class; base = base.getSuperclass()) {
+         getEntry(base);
+      }
+      for(Label label : graph.getLabels(type)) {
+         scan(label);
+      }
+      register(type);
+   }
+
+   /**
+    * This is used to register the field that the label represents as
+    * well as the type that is created when the field is deserialized.
+    * Primitive types and enumerations are created from text, so the
+    * members used to perform the conversion must also be registered.
+    *
+    * @param label this is the label that is to be registered
+    */
+   private void scan(Label label) {
+      Field field = label.getField();
+      Class owner = field.getDeclaringClass();
+      Class type = label.getDependant();
+
+      getEntry(owner).fields.add(field.getName());
+
+      if(label instanceof ElementListLabel) {
+         register(label.getType(), new CollectionFactory(label.getType()));
+      }
+      if(!graph.isComposite(label)) {
+         register(type, new PrimitiveFactory(type));
+      }
+   }
+
+   /**
+    * This is used to register the collection type that will be used
+    * for an element list. If the field type is abstract then the type
+    * from the Java collections framework that it is converted to is
+    * registered, as it is the type that is instantiated.
+    * <p>
+    * An abstract type that no collection within the framework can be
+    * assigned to has no conversion, so nothing is registered for it.
+    * This is safe to skip, as the persister can not create a default
+    * collection for such a field either, so every document must name
+    * the class with the <code>class</code> attribute, and that class
+    * is only known when the document is read.
+    *
+    * @param type this is the type of the element list field
+    * @param factory this is the factory used to convert the type
+    */
+   private void register(Class type, CollectionFactory factory) {
+      if(factory.isInstantiable(type)) {
+         register(type);
+      } else {
+         try {
+            register(factory.getConversion(type));
+         } catch(InstantiationException e) {
+            return;
+         }
+      }
+   }
+
+   /**
+    * This is used to register the primitive type that will be used
+    * for an attribute or element. Enumerations are created using the
+    * <code>Enum.valueOf</code> method, all other primitives are
+    * created using a single argument constructor taking a string.
+    *
+    * @param type this is the type of the primitive field
+    * @param factory this is the factory used to convert the type
+    */
+   private void register(Class type, PrimitiveFactory factory) {
+      Class real = factory.getConversion(type);
+
+      if(!real.isPrimitive()) {
+         register(real, getEntry(real));
+      }
+   }
+
+   /**
+    * This is used to register the members used to create a primitive
+    * from text. Enumerations require the static method used to list
+    * the constants and all other types require a string constructor.
+    *
+    * @param real this is the primitive object type to be created
+    * @param entry this is the entry the members are registered with
+    */
+   private void register(Class real, Entry entry) {
+      if(real.isEnum()) {
+         entry.values = true;
+      } else {
+         entry.text = true;
+      }
+   }
+
+   /**
+    * This is used to register the default constructor of the type.
+    * The default constructor is registered only if the type can be
+    * instantiated, abstract types and interfaces are registered so
+    * that they can be loaded by name but they can not be created.
+    *
+    * @param type this is the type that is to be registered
+    */
+   private void register(Class type) {
+      Entry entry = getEntry(type);
+      int modifiers = type.getModifiers();
+
+      if(!Modifier.isAbstract(modifiers) && !type.isInterface()) {
+         entry.constructor = true;
+      }
+   }
+
+   /**
+    * This is used to acquire the configuration entry for the class.
+    * If no entry exists for the class then one is created, an empty
+    * entry will allow the class to be loaded and its declared fields
+    * to be queried, which is required when a schema is scanned.
+    *
+    * @param type this is the class to acquire the entry for
+    *
+    * @return this returns the entry used to describe the class
+    */
+   private Entry getEntry(Class type) {
+      String name = type.getName();
+      Entry entry = entries.get(name);
+
+      if(entry == null) {
+         entry = new Entry(name);
+         entries.put(name, entry);
+      }
+      return entry;
+   }
+
+   /**
+    * This is used to generate the reflection configuration from the
+    * command line. The first argument is the file to be written and
+    * all remaining arguments are the names of root schema classes.
+    * This allows the configuration to be generated during a build.
+    *
+    * @param list the output file followed by the root class names
+    *
+    * @throws Exception thrown if the configuration can not be written
+    */
+   public static void main(String[] list) throws Exception {
+      ClassLoader loader = Thread.currentThread().getContextClassLoader();
+      NativeConfig config = new NativeConfig();
+
+      if(list.length < 2) {
+         throw new IllegalArgumentException("Usage: NativeConfig <file> <class>...");
+      }
+      for(int i = 1; i < list.length; i++) {
+         config.add(Class.forName(list[i], false, loader));
+      }
+      config.write(new File(list[0]));
+   }
+
+   /**
+    * The <code>Entry</code> object is used to describe the members of
+    * a single class that are to be registered for reflection. Each
+    * entry is written as a JSON object within the configuration, the
+    * members are kept in sorted sets so the output is deterministic.
+    */
+   private static class Entry {
+
+      /**
+       * This contains the names of the fields to be registered.
+       */
+      public Set<String> fields;
+
+      /**
+       * This is the fully qualified name of the registered class.
+       */
+      public String name;
+
+      /**
+       * Determines if the annotation methods are to be registered.
+       */
+      public boolean annotation;
+
+      /**
+       * Determines if the default constructor is to be registered.
+       */
+      public boolean constructor;
+
+      /**
+       * Determines if the string constructor is to be registered.
+       */
+      public boolean text;
+
+      /**
+       * Determines if the enumeration values are to be registered.
+       */
+      public boolean values;
+
+      /**
+       * Constructor for the <code>Entry</code> object. This is used
+       * to create an entry for the named class. By default no members
+       * are registered, which allows the class to be loaded by name.
+       *
+       * @param name this is the fully qualified name of the class
+       */
+      public Entry(String name) {
+         this.fields = new TreeSet<String>();
+         this.name = name;
+      }
+
+      /**
+       * This is used to write the entry as a JSON object. Only the
+       * members that have been registered for the class are written,
+       * so an entry without members simply contains the class name.
+       *
+       * @param out this is the writer the entry is written to
+       *
+       * @throws IOException thrown if the entry can not be written
+       */
+      public void write(Writer out) throws IOException {
+         out.write("\n  {\n    \"name\" : \"" + name + "\"");
+
+         if(annotation) {
+            out.write(",\n    \"allDeclaredMethods\" : true");
+         }
+         if(!fields.isEmpty()) {
+            writeFields(out);
+         }
+         if(constructor || text || values) {
+            writeMethods(out);
+         }
+         out.write("\n  }");
+      }
+
+      /**
+       * This is used to write the registered fields of the class. Each
+       * field is written as an object containing the field name, the
+       * fields are both read and written during serialization.
+       *
+       * @param out this is the writer the fields are written to
+       *
+       * @throws IOException thrown if the fields can not be written
+       */
+      private void writeFields(Writer out) throws IOException {
+         String delimiter = "";
+
+         out.write(",\n    \"fields\" : [");
+
+         for(String field : fields) {
+            out.write(delimiter);
+            out.write("\n      { \"name\" : \"" + field + "\", \"allowWrite\" : true }");
+            delimiter = ",";
+         }
+         out.write("\n    ]");
+      }
+
+      /**
+       * This is used to write the registered methods of the class. The
+       * constructors are those used to instantiate composite objects,
+       * collections and primitives, enumerations register the static
+       * method used by <code>Enum.valueOf</code> to find constants.
+       *
+       * @param out this is the writer the methods are written to
+       *
+       * @throws IOException thrown if the methods can not be written
+       */
+      private void writeMethods(Writer out) throws IOException {
+         String delimiter = "";
+
+         out.write(",\n    \"methods\" : [");
+
+         if(constructor) {
+            out.write("\n      { \"name\" : \"" + CONSTRUCTOR + "\", \"parameterTypes\" : [] }");
+            delimiter = ",";
+         }
+         if(text) {
+            out.write(delimiter);
+            out.write("\n      { \"name\" : \"" + CONSTRUCTOR + "\", \"parameterTypes\" : [\"java.lang.String\"] }");
+            delimiter = ",";
+         }
+         if(values) {
+            out.write(delimiter);
+            out.write("\n      { \"name\" : \"values\", \"parameterTypes\" : [] }");
+         }
+         out.write("\n    ]");
+      }
+   }
+}
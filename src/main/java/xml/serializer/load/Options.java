@@ -0,0 +1,163 @@
+/*
+ * Options.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+/**
+ * The <code>Options</code> object is used to collect the optional
+ * configurations used by a <code>Persister</code>. Each of the
+ * configurations is null unless it has been set, and a persister
+ * given the options takes a copy of them when it is created, so the
+ * options can be changed and used again for another persister.
+ * <pre>
+ * 
+ *    Options options = new Options();
+ *    options.setCompression(new Compression());
+ *    options.setIntern(new Intern());
+ *    Persister persister = new Persister(new Format(), options);
+ * 
+ * </pre>
+ * Not every combination can be used. References depend on the order
+ * in which composites are visited, so a <code>Cycle</code> can not
+ * be used with a <code>Parallel</code> configuration, a persister
+ * given both will throw an <code>IllegalArgumentException</code>.
+ * 
+ * @see Persister
+ */
+public class Options {
+
+   /**
+    * This describes how XML written to streams is compressed.
+    */
+   private Compression compression;
+
+   /**
+    * This describes how large element lists are to be processed.
+    */
+   private Parallel parallel;
+
+   /**
+    * This enables references between composites, if it is not null.
+    */
+   private Cycle cycle;
+
+   /**
+    * This is used to resolve repeated strings, if it is not null.
+    */
+   private Intern intern;
+
+   /**
+    * Constructor for the <code>Options</code> object. This creates
+    * options with none of the configurations set, a persister given
+    * these options processes lists on the calling thread, writes
+    * uncompressed XML and writes every composite by value.
+    */
+   public Options() {
+      super();
+   }
+
+   /**
+    * This is used to acquire the configuration used to process large
+    * element lists with multiple threads. If this returns null then
+    * lists are always processed on the calling thread.
+    * 
+    * @return this returns the parallel configuration to be used
+    */
+   public Parallel getParallel() {
+      return parallel;
+   }
+
+   /**
+    * This is used to specify the configuration used to process large
+    * element lists with multiple threads. Lists larger than the
+    * threshold are split in to chunks and processed in parallel.
+    * 
+    * @param parallel this describes how large lists are processed
+    */
+   public void setParallel(Parallel parallel) {
+      this.parallel = parallel;
+   }
+
+   /**
+    * This is used to acquire the compression used for the XML that
+    * is written to output streams. If this returns null then the
+    * XML is written to streams without being compressed.
+    * 
+    * @return this returns the compression configuration to be used
+    */
+   public Compression getCompression() {
+      return compression;
+   }
+
+   /**
+    * This is used to specify the compression used for the XML that
+    * is written to output streams. The XML is written as a gzip
+    * stream which is compressed in blocks by multiple threads.
+    * 
+    * @param compression this describes how the XML is compressed
+    */
+   public void setCompression(Compression compression) {
+      this.compression = compression;
+   }
+
+   /**
+    * This is used to acquire the configuration that enables references
+    * between composites. If this returns null then every composite is
+    * written by value wherever it is referenced.
+    * 
+    * @return this returns the cycle configuration to be used
+    */
+   public Cycle getCycle() {
+      return cycle;
+   }
+
+   /**
+    * This is used to specify the configuration that enables references
+    * between composites, so that shared composites are written once 
+    * and cycles can be serialized. This can not be used in parallel.
+    * 
+    * @param cycle this enables references between composites
+    */
+   public void setCycle(Cycle cycle) {
+      this.cycle = cycle;
+   }
+
+   /**
+    * This is used to acquire the cache used to intern the strings that
+    * are read. If this returns null then each string read is a new
+    * instance, even if the same value has been read before.
+    * 
+    * @return this returns the cache used to intern strings
+    */
+   public Intern getIntern() {
+      return intern;
+   }
+
+   /**
+    * This is used to specify the cache used to intern the strings that
+    * are read, so that values repeated across the objects read share
+    * a single instance rather than each being a new string.
+    * 
+    * @param intern this is used to resolve repeated strings
+    */
+   public void setIntern(Intern intern) {
+      this.intern = intern;
+   }
+}
@@ -0,0 +1,122 @@
+/*
+ * Outcome.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+/**
+ * The <code>Outcome</code> object represents the result of a single
+ * document within a batch read or write. Each document in a batch is
+ * processed independently, so a document that can not be processed
+ * does not prevent the remaining documents from being processed. The
+ * outcome holds either the value produced or the error that occurred.
+ * <p>
+ * Outcomes are provided in the same order as the documents given to
+ * the batch, so the outcome at a given index always corresponds to
+ * the document at the same index in the batch.
+ * 
+ * @see Persister
+ */
+public class Outcome {
+
+   /**
+    * This is the error that occurred processing the document.
+    */
+   private Exception error;
+
+   /**
+    * This is the value that was produced for the document.
+    */
+   private Object value;
+
+   /**
+    * Constructor for the <code>Outcome</code> object. This is used
+    * to create an outcome for a document that was processed. The
+    * value is the object read or the document that was written.
+    * 
+    * @param value this is the value produced for the document
+    */
+   public Outcome(Object value) {
+      this.value = value;
+   }
+
+   /**
+    * Constructor for the <code>Outcome</code> object. This is used
+    * to create an outcome for a document that could not be processed.
+    * The error is the exception thrown while processing the document.
+    * 
+    * @param error this is the error that occurred for the document
+    */
+   public Outcome(Exception error) {
+      this.error = error;
+   }
+
+   /**
+    * This is used to determine whether the document was processed.
+    * If this returns false then the error that occurred can be taken
+    * from the outcome using the <code>getError</code> method.
+    * 
+    * @return true if the document was processed without an error
+    */
+   public boolean isSuccess() {
+      return error == null;
+   }
+
+   /**
+    * This is used to acquire the error that occurred while processing
+    * the document. If the document was processed successfully then
+    * this will return null.
+    * 
+    * @return this returns the error that occurred, if any
+    */
+   public Exception getError() {
+      return error;
+   }
+
+   /**
+    * This is used to acquire the value produced for the document. For
+    * a batch read this is the deserialized object and for a batch
+    * write this is the DOM document written. If an error occurred
+    * while processing the document then that error is thrown.
+    * 
+    * @return this returns the value produced for the document
+    * 
+    * @throws Exception thrown if the document was not processed
+    */
+   public Object getValue() throws Exception {
+      if(error != null) {
+         throw error;
+      }
+      return value;
+   }
+
+   /**
+    * This provides a description of the outcome, which is either the
+    * value produced or the error that occurred. This is useful when
+    * reporting the documents within a batch that failed.
+    * 
+    * @return this returns a description of the outcome
+    */
+   public String toString() {
+      if(error != null) {
+         return String.format("failure %s", error);
+      }
+      return String.format("success %s", value);
+   }
+}
@@ -0,0 +1,143 @@
+/*
+ * Output.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * The <code>Output</code> object is used to collect serialized XML
+ * in memory. Unlike a byte array stream the array used is provided
+ * to the output, which allows it to be taken from a pool and sized
+ * using an estimate of the size of the XML for the object written.
+ * If the XML is larger than the array then the array is grown.
+ *
+ * @see xml.serializer.load.Estimate
+ */
+final class Output extends OutputStream {
+
+   /**
+    * This is the array that the XML is collected in.
+    */
+   private byte[] buffer;
+
+   /**
+    * This is the number of bytes that have been written.
+    */
+   private int count;
+
+   /**
+    * Constructor for the <code>Output</code> object. This is given
+    * the array that the XML is to be collected in. The array is used
+    * until the XML written exceeds its size.
+    *
+    * @param buffer this is the array to collect the XML in
+    */
+   public Output(byte[] buffer) {
+      this.buffer = buffer;
+   }
+
+   /**
+    * This is used to write a single byte to the output. If there is
+    * no space remaining in the array then the array is grown.
+    *
+    * @param octet this is the byte that is to be written
+    */
+   public void write(int octet) {
+      if(count == buffer.length) {
+         grow(count + 1);
+      }
+      buffer[count++] = (byte) octet;
+   }
+
+   /**
+    * This is used to write bytes from the provided array. If there is
+    * not enough space remaining in the array then it is grown to at
+    * least twice its size before the bytes are copied.
+    *
+    * @param data this is the array the bytes are copied from
+    * @param off this is the offset within the array to copy from
+    * @param len this is the number of bytes that are to be copied
+    */
+   public void write(byte[] data, int off, int len) {
+      if(count + len > buffer.length) {
+         grow(count + len);
+      }
+      System.arraycopy(data, off, buffer, count, len);
+      count += len;
+   }
+
+   /**
+    * This is used to grow the array so that it can hold at least the
+    * number of bytes required. The array at least doubles in size so
+    * that the cost of copying is amortized over the writes.
+    *
+    * @param require this is the number of bytes required
+    */
+   private void grow(int require) {
+      int size = Math.max(require, buffer.length * 2);
+      buffer = Arrays.copyOf(buffer, size);
+   }
+
+   /**
+    * This is used to acquire the array that the XML was collected in.
+    * The array may be larger than the number of bytes written, it is
+    * used to return the array to the pool it was taken from.
+    *
+    * @return this returns the array the XML was collected in
+    */
+   public byte[] getBuffer() {
+      return buffer;
+   }
+
+   /**
+    * This provides the number of bytes that have been written to the
+    * output, which is the size of the XML that was collected.
+    *
+    * @return this returns the number of bytes written
+    */
+   public int size() {
+      return count;
+   }
+
+   /**
+    * This is used to copy the bytes written to a new array. The new
+    * array is exactly the size of the XML that was collected.
+    *
+    * @return this returns a copy of the bytes written
+    */
+   public byte[] toByteArray() {
+      return Arrays.copyOf(buffer, count);
+   }
+
+   /**
+    * This is used to decode the bytes written as a string. The bytes
+    * are decoded directly from the array, no intermediate copy of the
+    * bytes is made.
+    *
+    * @param charset this is the character set used to decode
+    *
+    * @return this returns the XML collected as a string
+    */
+   public String toString(String charset) throws Exception {
+      return new String(buffer, 0, count, charset);
+   }
+}
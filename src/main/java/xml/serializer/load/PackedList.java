@@ -0,0 +1,246 @@
+/*
+ * PackedList.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import xml.serializer.load.exceptions.ElementException;
+
+import java.lang.reflect.Array;
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * The <code>PackedList</code> object is a list of primitive values 
+ * that are held within a primitive array rather than as objects. It
+ * is created when an element list of numbers is deserialized in to
+ * a field declared as a <code>List</code> or <code>Collection</code>,
+ * so a list of a hundred thousand integers is held as a single array
+ * rather than as a hundred thousand separate objects.
+ * <p>
+ * Values are boxed only when they are taken from the list, and any
+ * value added must be of the wrapper type for the array. The list 
+ * can be modified, in which case the array is grown as required.
+ * 
+ * @see xml.serializer.load.PrimitiveList
+ */
+final class PackedList extends AbstractList<Object> implements RandomAccess {
+
+   /**
+    * This is the primitive array that contains the values.
+    */
+   private Object array;
+
+   /**
+    * This is the number of values within the list.
+    */
+   private int size;
+
+   /**
+    * Constructor for the <code>PackedList</code> object. This is given
+    * the primitive array that holds the values. The array is used as
+    * is, so it should not be modified once the list is created.
+    * 
+    * @param array this is the primitive array holding the values
+    */
+   public PackedList(Object array) {
+      this.size = Array.getLength(array);
+      this.array = array;
+   }
+
+   /**
+    * This is used to acquire the value at the given index. The value
+    * is boxed in to the wrapper type of the primitive array.
+    * 
+    * @param index this is the index of the value to acquire
+    * 
+    * @return this returns the value at the given index
+    */
+   public Object get(int index) {
+      if(index < 0 || index >= size) {
+         throw new IndexOutOfBoundsException("Index " + index + " out of bounds for " + size);
+      }
+      return Array.get(array, index);
+   }
+
+   /**
+    * This is used to replace the value at the given index. The value
+    * given must be the wrapper type of the primitive array, or a type
+    * that can be widened to it, otherwise an exception is thrown.
+    * 
+    * @param index this is the index of the value to replace
+    * @param value this is the value to be set at the index
+    * 
+    * @return this returns the value that was replaced
+    * 
+    * @throws NullPointerException if the value given is null
+    * @throws ClassCastException if the value can not be held
+    */
+   public Object set(int index, Object value) {
+      Object previous = get(index);
+
+      store(index, value);
+      return previous;
+   }
+
+   /**
+    * This is used to insert a value at the given index. If the array 
+    * is full it is replaced with one that is twice the size, so that
+    * a series of additions takes amortized constant time. The value
+    * is stored in the free slot at the end of the array before any
+    * values are moved, so a value that can not be held leaves the
+    * list unchanged.
+    * 
+    * @param index this is the index the value is inserted at
+    * @param value this is the value to be inserted
+    * 
+    * @throws NullPointerException if the value given is null
+    * @throws ClassCastException if the value can not be held
+    */
+   public void add(int index, Object value) {
+      int capacity = Array.getLength(array);
+
+      if(index < 0 || index > size) {
+         throw new IndexOutOfBoundsException("Index " + index + " out of bounds for " + size);
+      }
+      if(size == capacity) {
+         array = getArray(Math.max(capacity * 2, 8));
+      }
+      store(size, value);
+      System.arraycopy(array, index, array, index + 1, size - index);
+      Array.set(array, index, value);
+      modCount++;
+      size++;
+   }
+
+   /**
+    * This is used to remove the value at the given index. The values
+    * after the index are moved down so that the array is contiguous.
+    * 
+    * @param index this is the index of the value to remove
+    * 
+    * @return this returns the value that was removed
+    */
+   public Object remove(int index) {
+      Object previous = get(index);
+
+      System.arraycopy(array, index + 1, array, index, size - index - 1);
+      modCount++;
+      size--;
+      return previous;
+   }
+
+   /**
+    * This is used to store a value within the primitive array. As a
+    * primitive can not be null, a null value is rejected as the list
+    * contract requires, and a value that is not of the wrapper type
+    * and can not be widened to the primitive type is rejected with a
+    * <code>ClassCastException</code> rather than the exception of the
+    * reflective array access.
+    * 
+    * @param index this is the index within the array to store to
+    * @param value this is the value to be stored at the index
+    */
+   private void store(int index, Object value) {
+      Class type = array.getClass().getComponentType();
+
+      if(value == null) {
+         throw new NullPointerException("List of " + type + " can not hold null");
+      }
+      try {
+         Array.set(array, index, value);
+      } catch(IllegalArgumentException e) {
+         throw new ClassCastException(value.getClass().getName() + " can not be held by a list of " + type);
+      }
+   }
+
+   /**
+    * This is used to determine the number of values in the list.
+    * 
+    * @return this returns the number of values in the list
+    */
+   public int size() {
+      return size;
+   }
+
+   /**
+    * This is used to acquire the values as a primitive array. If the
+    * array is exactly the size of the list then it is returned as is,
+    * otherwise a copy of the values is returned. The array returned
+    * must not be modified.
+    * 
+    * @return this returns the values as a primitive array
+    */
+   public Object getValues() {
+      if(size != Array.getLength(array)) {
+         return getArray(size);
+      }
+      return array;
+   }
+
+   /**
+    * This is used to copy the values to a new primitive array of the
+    * given size, which must be able to hold all of the values.
+    * 
+    * @param capacity this is the size of the array to create
+    * 
+    * @return this returns a new array containing the values
+    */
+   private Object getArray(int capacity) {
+      Class type = array.getClass().getComponentType();
+      Object copy = Array.newInstance(type, capacity);
+
+      System.arraycopy(array, 0, copy, 0, size);
+      return copy;
+   }
+
+   /**
+    * This is used to convert a collection of wrapper objects to an
+    * array of the given primitive type. If the collection is a packed
+    * list of the same type then its values are used directly. As a
+    * primitive can not be null the collection must not contain null.
+    * 
+    * @param list this is the collection of values to convert
+    * @param type this is the primitive type of the array
+    * 
+    * @return this returns the values as a primitive array
+    * 
+    * @throws Exception thrown if a value within the list is null
+    */
+   public static Object getArray(Collection list, Class type) throws Exception {
+      if(list instanceof PackedList) {
+         Object values = ((PackedList) list).getValues();
+
+         if(values.getClass().getComponentType() == type) {
+            return values;
+         }
+      }
+      Object array = Array.newInstance(type, list.size());
+      int index = 0;
+
+      for(Object value : list) {
+         if(value == null) {
+            throw new ElementException("List of %s contains a null value", type);
+         }
+         Array.set(array, index++, value);
+      }
+      return array;
+   }
+}
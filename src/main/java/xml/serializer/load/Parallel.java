@@ -0,0 +1,155 @@
+/*
+ * Parallel.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The <code>Parallel</code> object is used to describe how large
+ * element lists are processed using multiple threads. The entries
+ * within an element list are independent of each other, so once a
+ * list is larger than the threshold its entries are split in to
+ * chunks that are processed on a <code>ForkJoinPool</code>. The
+ * results are always merged back in document order.
+ * <p>
+ * Lists smaller than the threshold are processed on the calling
+ * thread, as the cost of distributing a small list over a number of
+ * threads would outweigh the benefit. A parallel configuration is an
+ * immutable value and can be shared by any number of persisters.
+ * <p>
+ * When writing, the entries of a large list are printed directly to 
+ * the output and are not held within the DOM document. As there is
+ * no complete document, a <code>write</code> method that writes to
+ * an output returns null rather than the DOM document.
+ * 
+ * @see Persister
+ */
+public class Parallel {
+
+   /**
+    * This is the pool that is used to process the list chunks.
+    */
+   private ForkJoinPool pool;
+
+   /**
+    * This is the number of entries before a list is processed.
+    */
+   private int threshold;
+
+   /**
+    * This is the number of entries processed within each chunk.
+    */
+   private int chunk;
+
+   /**
+    * Constructor for the <code>Parallel</code> object. This creates
+    * a configuration that will process lists with one thousand or 
+    * more entries on the common pool in chunks of 256 entries.
+    */
+   public Parallel() {
+      this(1000);
+   }
+
+   /**
+    * Constructor for the <code>Parallel</code> object. This creates
+    * a configuration that will process lists with at least the given
+    * number of entries on the common pool in chunks of 256 entries.
+    * 
+    * @param threshold this is the number of entries required
+    */
+   public Parallel(int threshold) {
+      this(threshold, 256);
+   }
+
+   /**
+    * Constructor for the <code>Parallel</code> object. This creates
+    * a configuration that will process lists with at least the given
+    * number of entries on the common pool in chunks of the size given.
+    * 
+    * @param threshold this is the number of entries required
+    * @param chunk this is the number of entries within each chunk
+    */
+   public Parallel(int threshold, int chunk) {
+      this(threshold, chunk, ForkJoinPool.commonPool());
+   }
+
+   /**
+    * Constructor for the <code>Parallel</code> object. This creates
+    * a configuration that will process lists with at least the given
+    * number of entries on the pool in chunks of the size given.
+    * 
+    * @param threshold this is the number of entries required
+    * @param chunk this is the number of entries within each chunk
+    * @param pool this is the pool used to process the chunks
+    */
+   public Parallel(int threshold, int chunk, ForkJoinPool pool) {
+      if(chunk < 1) {
+         throw new IllegalArgumentException("Chunk size must be positive");
+      }
+      this.threshold = threshold;
+      this.chunk = chunk;
+      this.pool = pool;
+   }
+
+   /**
+    * This is used to acquire the pool that is used to process the
+    * chunks of a large element list. By default this is the common
+    * pool, which is shared with parallel streams.
+    * 
+    * @return this returns the pool used to process the chunks
+    */
+   public ForkJoinPool getPool() {
+      return pool;
+   }
+
+   /**
+    * This is used to acquire the minimum number of entries a list
+    * must have before it is processed using multiple threads.
+    * 
+    * @return this returns the number of entries that is required
+    */
+   public int getThreshold() {
+      return threshold;
+   }
+
+   /**
+    * This is used to acquire the maximum number of entries that are
+    * processed as a single unit of work by one of the threads.
+    * 
+    * @return this returns the number of entries within each chunk
+    */
+   public int getChunk() {
+      return chunk;
+   }
+
+   /**
+    * This is used to determine whether a list of the given size is
+    * to be processed using multiple threads. Only lists that are at
+    * least as large as the threshold are processed in parallel.
+    * 
+    * @param size this is the number of entries within the list
+    * 
+    * @return true if the list is to be processed in parallel
+    */
+   public boolean isParallel(int size) {
+      return size >= threshold && size > chunk;
+   }
+}
@@ -22,6 +22,8 @@ package xml.serializer.load;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
 import org.xml.sax.InputSource;
 import xml.serializer.Serializer;
 
@@ -30,8 +32,28 @@ import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.transform.Result;
 import javax.xml.transform.stream.StreamResult;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow.Publisher;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 
 /**
  * The <code>Persister</code> object is used to provide an implementation
@@ -51,27 +73,114 @@ import java.util.Map;
  * @see Serializer
  */ 
 public class Persister implements Serializer {
+
+   /**
+    * This is the parser feature used to defer DOM node expansion.
+    */
+   private static final String EXPANSION = "http://apache.org/xml/features/dom/defer-node-expansion";
+
+   /**
+    * This is the number of documents a batch processes at once.
+    */
+   private static final int LIMIT = 128;
            
    /**
-    * This is used to create a document builder for this persister.
+    * This is used to recycle the document builders used to parse and
+    * create documents, which allows the persister to be shared.
     * 
     * @see DocumentBuilder
     */
-   private static DocumentBuilderFactory factory;
+   private static BuilderPool pool;
+
+   /**
+    * This is used to recycle the arrays that XML is collected in.
+    */
+   private static BufferPool buffers;
+
+   /**
+    * This is used to predict the size of the XML for each class.
+    */
+   private static Estimate estimate;
+
+   /**
+    * This is used to convert documents to and from binary infosets.
+    */
+   private static Infoset infoset;
 
    static {
-      factory = DocumentBuilderFactory.newInstance();
+      pool = new BuilderPool(getFactory());
+      buffers = new BufferPool(4096, 1 << 20, 8 << 20);
+      estimate = new Estimate();
+      infoset = new Infoset();
    }
 
    /**
-    * This is used to create documents and parse XML sources.
+    * This describes how XML written to streams is compressed.
     */
-   private DocumentBuilder builder;
+   private Compression compression;
 
    /**
-    * Constructor for the <code>Persister</code> object.
+    * This describes how large element lists are to be processed.
+    */
+   private Parallel parallel;
+
+   /**
+    * This is used to describe how the generated XML is formatted.
+    */
+   private Format format;
+
+   /**
+    * This enables references between composites, if it is not null.
+    */
+   private Cycle cycle;
+
+   /**
+    * This is used to resolve repeated strings, if it is not null.
+    */
+   private Intern intern;
+
+   /**
+    * Constructor for the <code>Persister</code> object. A persister
+    * holds no state between operations, so a single instance can be
+    * shared by any number of threads reading and writing at once.
+    * The XML generated by this persister will be compact.
     */
    public Persister() {
+      this(new Format());
+   }
+
+   /**
+    * Constructor for the <code>Persister</code> object. This is given
+    * the format that describes how the generated XML is laid out. The
+    * format can be used to indent the XML or to omit the declaration.
+    * 
+    * @param format this is used to format the generated XML
+    */
+   public Persister(Format format) {
+      this(format, new Options());
+   }
+
+   /**
+    * Constructor for the <code>Persister</code> object. This is given
+    * the format used to lay out the XML and the options describing
+    * the other configurations used, the options are copied so they
+    * can be changed later without affecting this persister. As the
+    * references enabled by a cycle configuration depend on the order
+    * composites are visited, a cycle can not be used in parallel.
+    * 
+    * @param format this is used to format the generated XML
+    * @param options this describes the optional configurations used
+    */
+   public Persister(Format format, Options options) {
+      this.compression = options.getCompression();
+      this.parallel = options.getParallel();
+      this.intern = options.getIntern();
+      this.cycle = options.getCycle();
+      this.format = format;
+      
+      if(cycle != null && parallel != null) {
+         throw new IllegalArgumentException("References can not be used with parallel lists");
+      }
    }
 
    /**
@@ -98,6 +207,11 @@ public class Persister implements Serializer {
     * of the specified type. If the XML source cannot be deserialized
     * or there is a problem building the object graph an exception
     * is thrown. The instance deserialized is returned.
+    * <p>
+    * The character set is detected from the byte order mark or from
+    * the XML declaration, and is UTF-8 if neither is present. UTF-8
+    * and US-ASCII documents are given to the parser as bytes, only
+    * other character sets are decoded with a reader.
     * 
     * @param type this is the class type to be deserialized from XML
     * @param source this provides the source of the XML document
@@ -107,7 +221,9 @@ public class Persister implements Serializer {
     * @throws Exception if the object cannot be fully deserialized
     */
    public Object read(Class type, InputStream source) throws Exception {
-      return read(type, source, "utf-8");           
+      InputStream stream = Decompressor.open(source);
+      
+      return read(type, Detector.open(stream));           
    }
    
    /**
@@ -116,6 +232,12 @@ public class Persister implements Serializer {
     * of the specified type. If the XML source cannot be deserialized
     * or there is a problem building the object graph an exception
     * is thrown. The instance deserialized is returned.
+    * <p>
+    * If the stream begins with a gzip or zlib header then it is
+    * decompressed as it is read, so XML written by a persister with
+    * compression enabled can be read without any configuration.
+    * The character set given overrides any encoding declared by the
+    * document itself.
     * 
     * @param type this is the class type to be deserialized from XML
     * @param source this provides the source of the XML document
@@ -126,7 +248,9 @@ public class Persister implements Serializer {
     * @throws Exception if the object cannot be fully deserialized
     */   
    public Object read(Class type, InputStream source, String charset) throws Exception {
-      return read(type, new InputStreamReader(source, charset));           
+      InputStream stream = Decompressor.open(source);
+      
+      return read(type, Detector.open(stream, charset));           
    }
    
    /**
@@ -146,6 +270,103 @@ public class Persister implements Serializer {
    public Object read(Class type, Reader source) throws Exception {
       return read(type, new InputSource(source));           
    }
+
+   /**
+    * This <code>read</code> method will read the contents of the XML
+    * document from the provided channel and convert it into an object
+    * of the specified type. The bytes read from the channel are given
+    * directly to the parser, the channel is not closed once read. 
+    * 
+    * @param type this is the class type to be deserialized from XML
+    * @param source this provides the source of the XML document
+    * 
+    * @return the object deserialized from the XML document 
+    * 
+    * @throws Exception if the object cannot be fully deserialized
+    */
+   public Object read(Class type, ReadableByteChannel source) throws Exception {
+      return read(type, new ChannelInputStream(source));
+   }
+
+   /**
+    * This <code>read</code> method will read the contents of the XML
+    * document from the remaining bytes of the buffer and convert it
+    * into an object of the specified type. Both heap and direct
+    * buffers can be read, and the position of the buffer is not 
+    * changed by reading the document from it.
+    * 
+    * @param type this is the class type to be deserialized from XML
+    * @param source this provides the source of the XML document
+    * 
+    * @return the object deserialized from the XML document 
+    * 
+    * @throws Exception if the object cannot be fully deserialized
+    */
+   public Object read(Class type, ByteBuffer source) throws Exception {
+      return read(type, new BufferInputStream(source));
+   }
+
+   /**
+    * This <code>read</code> method will read the contents of the XML
+    * document from the provided array and convert it in to an object
+    * of the specified type. The character set of the document is
+    * detected from the array and the parser reads the bytes from the
+    * array directly, without copying it or any synchronization.
+    * 
+    * @param type this is the class type to be deserialized from XML
+    * @param source this provides the source of the XML document
+    * 
+    * @return the object deserialized from the XML document 
+    * 
+    * @throws Exception if the object cannot be fully deserialized
+    */
+   public Object read(Class type, byte[] source) throws Exception {
+      return read(type, source, 0, source.length);
+   }
+
+   /**
+    * This <code>read</code> method will read the contents of the XML
+    * document from the region of the provided array and convert it in
+    * to an object of the specified type. The character set of the 
+    * document is detected from the array and the parser reads the 
+    * bytes from the array directly, without copying it or any 
+    * synchronization. Compressed documents are also accepted.
+    * 
+    * @param type this is the class type to be deserialized from XML
+    * @param source this provides the source of the XML document
+    * @param off this is the offset of the document within the array
+    * @param len this is the length of the document within the array
+    * 
+    * @return the object deserialized from the XML document 
+    * 
+    * @throws Exception if the object cannot be fully deserialized
+    */
+   public Object read(Class type, byte[] source, int off, int len) throws Exception {
+      if(Decompressor.isCompressed(source, off, len)) {
+         ByteBuffer buffer = ByteBuffer.wrap(source, off, len);
+         
+         return read(type, new BufferInputStream(buffer));
+      }
+      return read(type, Detector.open(source, off, len));
+   }
+
+   /**
+    * This <code>read</code> method will read the contents of the XML
+    * document from the provided character sequence and convert it in
+    * to an object of the specified type. The characters are read from
+    * the sequence directly, so builders and other sequences do not 
+    * need to be converted to a string before they can be read.
+    * 
+    * @param type this is the class type to be deserialized from XML
+    * @param source this provides the source of the XML document
+    * 
+    * @return the object deserialized from the XML document 
+    * 
+    * @throws Exception if the object cannot be fully deserialized
+    */
+   public Object read(Class type, CharSequence source) throws Exception {
+      return read(type, new InputSource(new SequenceReader(source)));
+   }
    
    /**
     * This <code>read</code> method will read the contents of the XML
@@ -162,10 +383,15 @@ public class Persister implements Serializer {
     * @throws Exception if the object cannot be fully deserialized
     */
    public Object read(Class type, InputSource source) throws Exception {
-      if(builder == null) {           
-         builder = factory.newDocumentBuilder();
-      }         
-      return read(type, builder.parse(source));    
+      DocumentBuilder builder = pool.take();
+      Document document;
+      
+      try {
+         document = builder.parse(source);
+      } finally {
+         pool.offer(builder);
+      }
+      return read(type, document, parallel);    
    }
    
    /**
@@ -183,11 +409,59 @@ public class Persister implements Serializer {
     * @throws Exception if the object cannot be fully deserialized
     */
    public Object read(Class type, Document source) throws Exception {
-      Traverser traverser = new Traverser(source);
+      Element node = source.getDocumentElement();
+      
+      if(parallel != null) {
+         expand(node);
+      }
+      return read(type, source, parallel);
+   }
+
+   /**
+    * This <code>read</code> method will read the contents of the DOM
+    * document provided and convert it to an object of the specified
+    * type. The parallel configuration given is used to bind large
+    * element lists using multiple threads, if it is null then the
+    * entire document is bound on the calling thread.
+    * 
+    * @param type this is the XML schema class to be deserialized
+    * @param source the document the object is deserialized from
+    * @param parallel this describes how large lists are processed
+    * 
+    * @return the object deserialized from the DOM document given
+    * 
+    * @throws Exception if the object cannot be fully deserialized
+    */
+   private Object read(Class type, Document source, Parallel parallel) throws Exception {
+      Traverser traverser = new Traverser(new Source(source, parallel, false, cycle, intern));
       Element node = source.getDocumentElement();
       
       return traverser.read(node, type);
    }
+
+   /**
+    * This is used to fully expand a DOM document that has not been
+    * built by this persister. Some DOM implementations defer the
+    * creation of nodes until they are first accessed, which is not
+    * safe when the nodes are visited by multiple threads. Visiting 
+    * each node once on the calling thread ensures it is expanded.
+    * 
+    * @param node this is the node that is to be fully expanded
+    */
+   private void expand(Node node) {
+      NamedNodeMap list = node.getAttributes();
+      
+      if(list != null) {
+         for(int i = 0; i < list.getLength(); i++) {
+            list.item(i).getNodeValue();
+         }
+      }
+      node.getNodeValue();
+      
+      for(Node next = node.getFirstChild(); next != null; next = next.getNextSibling()) {
+         expand(next);
+      }
+   }
    
    /**
     * This <code>write</code> method will traverse the provided object
@@ -205,10 +479,26 @@ public class Persister implements Serializer {
     * @throws Exception if the schema for the object is not valid
     */  
    public Document write(Object source) throws Exception {
-      if(builder == null) {
-         builder = factory.newDocumentBuilder();
-      }         
-      return write(source, builder.newDocument());          
+      return write(source, getDocument());          
+   }
+
+   /**
+    * This is used to create an empty DOM document that the XML for
+    * an object can be written to. The document is created using a
+    * document builder taken from the pool shared by all persisters.
+    * 
+    * @return this returns an empty document to write XML to
+    * 
+    * @throws Exception if the document could not be created
+    */
+   private Document getDocument() throws Exception {
+      DocumentBuilder builder = pool.take();
+      
+      try {
+         return builder.newDocument();
+      } finally {
+         pool.offer(builder);
+      }
    }
    
    /**
@@ -228,9 +518,14 @@ public class Persister implements Serializer {
     * @throws Exception if the schema for the object is not valid
     */
    public Document write(Object source, Document root) throws Exception {
-      Traverser traverser = new Traverser(root);
+      Source context = new Source(root, null, false, cycle);
+      Traverser traverser = new Traverser(context);
       Element node = traverser.write(source);
+      Graph graph = context.getGraph();
 
+      if(graph != null) {
+         graph.clear();
+      }
       if(node != null) {
          root.appendChild(node);
       }
@@ -254,7 +549,13 @@ public class Persister implements Serializer {
     * @throws Exception if the schema for the object is not valid
     */  
    public Document write(Object source, File out) throws Exception {
-      return write(source, new FileOutputStream(out));
+      OutputStream file = new FileOutputStream(out);
+      
+      try {
+         return write(source, file);
+      } finally {
+         file.close();
+      }
    }
    
    /**
@@ -286,16 +587,107 @@ public class Persister implements Serializer {
     * this will throw an exception. The root annotation is the only
     * annotation required for an object to be serialized.  
     * 
+    * <p>
+    * The XML is encoded directly in to the stream by a printer rather
+    * than through a writer and transformer. If this persister has a
+    * parallel configuration then large element lists are serialized
+    * by multiple threads as the XML is written to the stream. In this
+    * case the complete document is never built, so null is returned.
+    * If this persister has a compression configuration the XML is
+    * written as a gzip stream.
+    * 
     * @param source this is the object that is to be serialized
     * @param out this is where the serialized XML is written to
     * @param charset this is the character encoding to be used
     * 
-    * @return this returns the DOM containing the serialized XML
+    * @return this returns the DOM containing the serialized XML, or
+    * null if large lists were written in parallel
     * 
     * @throws Exception if the schema for the object is not valid
     */  
    public Document write(Object source, OutputStream out, String charset) throws Exception {
-	   return write(source, new OutputStreamWriter(out, charset));
+      if(compression != null) {
+         DeflaterPool primed = compression.getPool();
+         
+         if(primed != null) {
+            return write(source, out, charset, primed);
+         }
+         BlockCompressor zip = new BlockCompressor(out, compression);
+         Document document = write(source, zip, charset, parallel);
+         
+         zip.finish();
+         return document;
+      }
+      return write(source, out, charset, parallel);
+   }
+
+   /**
+    * This <code>write</code> method will traverse the provided object
+    * and print the resulting XML to the given stream as a zlib stream.
+    * The deflater is taken from the pool primed with the dictionary,
+    * and is offered back once the document has been written.
+    * 
+    * @param source this is the object that is to be serialized
+    * @param out this is where the compressed XML is written to
+    * @param charset this is the character encoding to be used
+    * @param primed this provides deflaters primed with a dictionary
+    * 
+    * @return this returns the DOM containing the serialized XML
+    * 
+    * @throws Exception if the schema for the object is not valid
+    */
+   private Document write(Object source, OutputStream out, String charset, DeflaterPool primed) throws Exception {
+      Deflater deflater = primed.take();
+      DeflaterOutputStream zip = new DeflaterOutputStream(out, deflater, 8192);
+      
+      try {
+         Document document = write(source, zip, charset, parallel);
+         
+         zip.finish();
+         zip.flush();
+         return document;
+      } finally {
+         primed.offer(deflater);
+      }
+   }
+
+   /**
+    * This <code>write</code> method will traverse the provided object
+    * and print the resulting XML to the given stream. If a parallel
+    * configuration is given then large element lists are deferred as
+    * segments while the document is built, and these are serialized
+    * in parallel and written in order as the printer reaches them.
+    * As the document then lacks the entries of such lists, it is not
+    * returned and null is returned in its place.
+    * 
+    * @param source this is the object that is to be serialized
+    * @param out this is where the serialized XML is written to
+    * @param charset this is the character encoding to be used
+    * @param parallel this describes how large lists are processed
+    * 
+    * @return this returns the DOM containing the serialized XML, or
+    * null if large lists were written in parallel
+    * 
+    * @throws Exception if the schema for the object is not valid
+    */
+   private Document write(Object source, OutputStream out, String charset, Parallel parallel) throws Exception {
+      Document root = getDocument();
+      Source context = new Source(root, parallel, parallel != null, cycle);
+      Traverser traverser = new Traverser(context);
+      Element node = traverser.write(source);
+      Graph graph = context.getGraph();
+
+      if(graph != null) {
+         graph.clear();
+      }
+      if(node != null) {
+         root.appendChild(node);
+         new Printer(out, charset, format, context).print(root);
+      }
+      if(parallel != null) {
+         return null;
+      }
+      return root;
    }
    
    /**
@@ -317,6 +709,286 @@ public class Persister implements Serializer {
    public Document write(Object source, Writer out) throws Exception {
 	   return write(source, new StreamResult(out));
    }
+
+   /**
+    * This <code>write</code> method will traverse the provided object
+    * checking for field annotations in order to compose the XML data.
+    * The encoded XML is written directly to the channel provided, the
+    * channel is not closed once the object has been written.
+    * 
+    * @param source this is the object that is to be serialized
+    * @param out this is where the serialized XML is written to
+    * 
+    * @return this returns the DOM containing the serialized XML
+    * 
+    * @throws Exception if the schema for the object is not valid
+    */
+   public Document write(Object source, WritableByteChannel out) throws Exception {
+      return write(source, new ChannelOutputStream(out));
+   }
+
+   /**
+    * This <code>write</code> method will traverse the provided object
+    * checking for field annotations in order to compose the XML data.
+    * The encoded XML is written in to the buffer from its position,
+    * which is advanced past the XML written. If the buffer does not
+    * have enough space remaining the write fails with an overflow.
+    * 
+    * @param source this is the object that is to be serialized
+    * @param out this is where the serialized XML is written to
+    * 
+    * @return this returns the DOM containing the serialized XML
+    * 
+    * @throws Exception if the schema for the object is not valid
+    */
+   public Document write(Object source, ByteBuffer out) throws Exception {
+      return write(source, new BufferOutputStream(out));
+   }
+
+   /**
+    * This <code>writeBytes</code> method will serialize the provided
+    * object to an array of UTF-8 encoded bytes. The XML is collected
+    * in a pooled array that is sized from the XML previously written
+    * for the same class, so the array is rarely grown. The array 
+    * returned is exactly the size of the XML that was written, and
+    * is never compressed regardless of the persister configuration.
+    * 
+    * @param source this is the object that is to be serialized
+    * 
+    * @return this returns the UTF-8 encoded XML for the object
+    * 
+    * @throws Exception if the schema for the object is not valid
+    */
+   public byte[] writeBytes(Object source) throws Exception {
+      Output out = write(source, getOutput(source));
+      
+      try {
+         return out.toByteArray();
+      } finally {
+         buffers.offer(out.getBuffer());
+      }
+   }
+
+   /**
+    * This <code>writeString</code> method will serialize the provided
+    * object to a string. The XML is encoded in to a pooled array that
+    * is sized from the XML previously written for the same class and
+    * the string is decoded directly from that array.
+    * 
+    * @param source this is the object that is to be serialized
+    * 
+    * @return this returns the XML for the object as a string
+    * 
+    * @throws Exception if the schema for the object is not valid
+    */
+   public String writeString(Object source) throws Exception {
+      Output out = write(source, getOutput(source));
+      
+      try {
+         return out.toString("UTF-8");
+      } finally {
+         buffers.offer(out.getBuffer());
+      }
+   }
+
+   /**
+    * This <code>writeInfoset</code> method will serialize the provided
+    * object as a binary infoset. The DOM document is built exactly as
+    * it is for XML and is then encoded with a vocabulary table, so
+    * each name and repeated value is written only once.
+    * 
+    * @param source this is the object that is to be serialized
+    * 
+    * @return this returns the binary infoset for the object
+    * 
+    * @throws Exception if the schema for the object is not valid
+    */
+   public byte[] writeInfoset(Object source) throws Exception {
+      return infoset.encode(write(source));
+   }
+
+   /**
+    * This <code>writeInfoset</code> method will serialize the provided
+    * object as a binary infoset to the stream given. The stream is
+    * flushed once the infoset is written but it is not closed.
+    * 
+    * @param source this is the object that is to be serialized
+    * @param out this is the stream the infoset is written to
+    * 
+    * @throws Exception if the schema for the object is not valid
+    */
+   public void writeInfoset(Object source, OutputStream out) throws Exception {
+      infoset.encode(write(source), out);
+   }
+
+   /**
+    * This <code>readInfoset</code> method will read an object of the
+    * specified type from a binary infoset. The infoset is decoded in
+    * to a DOM document without parsing any text, and the document is
+    * then bound exactly as a document parsed from XML would be.
+    * 
+    * @param type this is the class type to be deserialized
+    * @param source this is the array containing the infoset
+    * 
+    * @return the object deserialized from the binary infoset
+    * 
+    * @throws Exception if the object cannot be fully deserialized
+    */
+   public Object readInfoset(Class type, byte[] source) throws Exception {
+      return read(type, infoset.decode(source), parallel);
+   }
+
+   /**
+    * This <code>readInfoset</code> method will read an object of the
+    * specified type from a binary infoset within the stream. The 
+    * stream is read to its end but is not closed.
+    * 
+    * @param type this is the class type to be deserialized
+    * @param source this is the stream containing the infoset
+    * 
+    * @return the object deserialized from the binary infoset
+    * 
+    * @throws Exception if the object cannot be fully deserialized
+    */
+   public Object readInfoset(Class type, InputStream source) throws Exception {
+      return read(type, infoset.decode(source), parallel);
+   }
+
+   /**
+    * This <code>writeDelta</code> method will compare the objects given
+    * using the schema of their class and build a DOM document holding
+    * only the attributes, elements and list entries that differ. Lists
+    * and composites of the same class are compared entry by entry, so
+    * the document is proportional to the change rather than the size
+    * of the objects. If the objects do not differ the root is empty.
+    * 
+    * @param baseline this is the object the delta is applied to
+    * @param current this is the object the delta produces
+    * 
+    * @return this returns the DOM containing the delta
+    * 
+    * @throws Exception if the objects can not be compared
+    */
+   public Document writeDelta(Object baseline, Object current) throws Exception {
+      Document root = getDocument();
+      Delta delta = new Delta(new Source(root, null, false, cycle));
+      
+      root.appendChild(delta.write(baseline, current));
+      return root;
+   }
+
+   /**
+    * This <code>writeDelta</code> method will compare the objects given
+    * and print the XML describing how they differ to the stream. The
+    * XML is laid out using the format of this persister and encoded
+    * as UTF-8. The delta can be applied with <code>applyDelta</code>.
+    * 
+    * @param baseline this is the object the delta is applied to
+    * @param current this is the object the delta produces
+    * @param out this is the stream the delta is written to
+    * 
+    * @return this returns the DOM containing the delta
+    * 
+    * @throws Exception if the objects can not be compared
+    */
+   public Document writeDelta(Object baseline, Object current, OutputStream out) throws Exception {
+      Document root = writeDelta(baseline, current);
+      
+      new Printer(out, "UTF-8", format, null).print(root);
+      return root;
+   }
+
+   /**
+    * This <code>applyDelta</code> method will read a delta from the
+    * stream and apply it to the baseline given. The stream is read in
+    * the same way as a stream given to <code>read</code>, so both the
+    * character set and any compression are detected. The baseline is
+    * not modified, a copy of it with the changes applied is returned.
+    * 
+    * @param baseline this is the object the delta is applied to
+    * @param source this is the stream containing the delta
+    * 
+    * @return this returns the object produced by the delta
+    * 
+    * @throws Exception if the delta can not be applied
+    */
+   public Object applyDelta(Object baseline, InputStream source) throws Exception {
+      InputSource input = Detector.open(Decompressor.open(source));
+      DocumentBuilder builder = pool.take();
+      Document document;
+      
+      try {
+         document = builder.parse(input);
+      } finally {
+         pool.offer(builder);
+      }
+      return applyDelta(baseline, document);
+   }
+
+   /**
+    * This <code>applyDelta</code> method will apply the delta within
+    * the DOM document to the baseline given. Only the objects along
+    * the path to each change are copied, all values that have not
+    * changed are shared between the baseline and the result. 
+    * 
+    * @param baseline this is the object the delta is applied to
+    * @param source this is the document containing the delta
+    * 
+    * @return this returns the object produced by the delta
+    * 
+    * @throws Exception if the delta can not be applied
+    */
+   public Object applyDelta(Object baseline, Document source) throws Exception {
+      Delta delta = new Delta(new Source(source, null, false, cycle, intern));
+      Element node = source.getDocumentElement();
+      
+      return delta.read(baseline, node);
+   }
+
+   /**
+    * This is used to serialize the object to the output provided. Once
+    * the object has been written the size of the XML is recorded, so
+    * that the next object of the same class is given an output that
+    * is large enough to hold its XML without growing.
+    * 
+    * @param source this is the object that is to be serialized
+    * @param out this is the output the XML is collected in
+    * 
+    * @return this returns the output containing the XML
+    * 
+    * @throws Exception if the schema for the object is not valid
+    */
+   private Output write(Object source, Output out) throws Exception {
+      Class type = source.getClass();
+      
+      try {
+         write(source, out, "UTF-8", parallel);
+      } catch(Exception e) {
+         buffers.offer(out.getBuffer());
+         throw e;
+      }
+      estimate.update(type, out.size());
+      return out;
+   }
+
+   /**
+    * This is used to acquire an output to collect the XML for the
+    * provided object in. The array for the output is taken from the
+    * pool, and is at least as large as the estimated size of the XML
+    * for objects of the same class as the one provided.
+    * 
+    * @param source this is the object that is to be serialized
+    * 
+    * @return this returns an output sized for the object
+    * 
+    * @throws Exception if an array could not be acquired
+    */
+   private Output getOutput(Object source) throws Exception {
+      Class type = source.getClass();
+      int size = estimate.getSize(type);
+      
+      return new Output(buffers.take(size));
+   }
    
    /**
     * This <code>write</code> method will traverse the provided object
@@ -335,7 +1007,7 @@ public class Persister implements Serializer {
     * @throws Exception if the schema for the object is not valid
     */   
    public Document write(Object source, Result out) throws Exception {
-      return write(source, new Formatter(out));           
+      return write(source, new Formatter(out, format));           
    }
    
    /**
@@ -362,4 +1034,495 @@ public class Persister implements Serializer {
       }
       return data;
    }
+
+   /**
+    * This <code>readAsync</code> method will read the contents of the
+    * XML file at the given path without blocking the calling thread.
+    * The file is read using asynchronous I/O, once it has been read
+    * the object is deserialized on the common fork join pool. If the
+    * file can not be read or deserialized the future fails.
+    * 
+    * @param type this is the class type to be deserialized from XML
+    * @param source this is the path of the XML file to be read
+    * 
+    * @return a future for the object deserialized from the file
+    */
+   public CompletableFuture<Object> readAsync(Class type, Path source) {
+      return readAsync(type, source, ForkJoinPool.commonPool());
+   }
+
+   /**
+    * This <code>readAsync</code> method will read the contents of the
+    * XML file at the given path without blocking the calling thread.
+    * The file is read using asynchronous I/O, once it has been read
+    * the object is deserialized using the executor provided. If the
+    * file can not be read or deserialized the future fails.
+    * 
+    * @param type this is the class type to be deserialized from XML
+    * @param source this is the path of the XML file to be read
+    * @param executor this is used to deserialize the object
+    * 
+    * @return a future for the object deserialized from the file
+    */
+   public CompletableFuture<Object> readAsync(Class type, Path source, Executor executor) {
+      AsyncFile file = new AsyncFile(source);
+      ReadAsync task = new ReadAsync(type);
+      
+      return file.read().thenApplyAsync(task, executor);
+   }
+
+   /**
+    * This <code>writeAsync</code> method will serialize the provided
+    * object and write it to the file at the given path without
+    * blocking the calling thread. The object is serialized on the
+    * common fork join pool and the XML is written to the file using
+    * asynchronous I/O. The future completes once the file is closed.
+    * 
+    * @param source this is the object that is to be serialized
+    * @param out this is the path of the file to write to
+    * 
+    * @return a future for the DOM containing the serialized XML
+    */
+   public CompletableFuture<Document> writeAsync(Object source, Path out) {
+      return writeAsync(source, out, ForkJoinPool.commonPool());
+   }
+
+   /**
+    * This <code>writeAsync</code> method will serialize the provided
+    * object and write it to the file at the given path without
+    * blocking the calling thread. The object is serialized using the
+    * executor provided and the XML is written to the file using
+    * asynchronous I/O. The future completes once the file is closed.
+    * 
+    * @param source this is the object that is to be serialized
+    * @param out this is the path of the file to write to
+    * @param executor this is used to serialize the object
+    * 
+    * @return a future for the DOM containing the serialized XML
+    */
+   public CompletableFuture<Document> writeAsync(Object source, Path out, Executor executor) {
+      WriteAsync task = new WriteAsync(source, out);
+      
+      return CompletableFuture.supplyAsync(task, executor).thenCompose(task);
+   }
+
+   /**
+    * This <code>publish</code> method will publish the entries of an
+    * element list as the XML document is read. The list is named by
+    * the <code>ElementList</code> annotation declared within the root
+    * schema class, each entry is bound as it is parsed. Entries are
+    * parsed on the common fork join pool as the subscriber requests.
+    * 
+    * @param type this is the XML schema class for the root element
+    * @param list this is the name of the list to be published
+    * @param source this provides the source of the XML document
+    * 
+    * @return this returns a publisher for the entries of the list
+    * 
+    * @throws Exception if a document could not be created
+    */
+   public Publisher<Object> publish(Class type, String list, InputStream source) throws Exception {
+      return publish(type, list, source, ForkJoinPool.commonPool());
+   }
+
+   /**
+    * This <code>publish</code> method will publish the entries of an
+    * element list as the XML document is read. Parsing of the XML is
+    * driven by the demand of the subscriber, so the document is read
+    * only as far as is required to provide the entries requested. The
+    * entries are parsed and bound using the executor provided, with
+    * the cycle configuration and intern cache of this persister.
+    * 
+    * @param type this is the XML schema class for the root element
+    * @param list this is the name of the list to be published
+    * @param source this provides the source of the XML document
+    * @param executor this is used to parse and bind the entries
+    * 
+    * @return this returns a publisher for the entries of the list
+    * 
+    * @throws Exception if a document could not be created
+    */
+   public Publisher<Object> publish(Class type, String list, InputStream source, Executor executor) throws Exception {
+      return new EntryPublisher(type, list, source, getDocument(), cycle, intern, executor);
+   }
+
+   /**
+    * This <code>readAll</code> method will read each of the provided
+    * documents and convert them in to objects of the specified type.
+    * Each source can be an <code>InputStream</code>, a reader, a byte
+    * array, a character sequence, a file or a <code>Path</code>. The
+    * documents are read concurrently, and a document that can not be
+    * read does not affect the others.
+    * 
+    * @param type this is the class type to be deserialized from XML
+    * @param sources these provide the source of each XML document
+    * 
+    * @return this returns the outcome for each document in order
+    * 
+    * @throws Exception thrown if the batch is interrupted
+    */
+   public List<Outcome> readAll(Class type, Collection<?> sources) throws Exception {
+      return readAll(type, sources, LIMIT);
+   }
+
+   /**
+    * This <code>readAll</code> method will read each of the provided
+    * documents and convert them in to objects of the specified type.
+    * Each document is read on its own thread, using virtual threads
+    * if they are available, and no more than the given number of
+    * documents are read at once. Outcomes are in the source order.
+    * 
+    * @param type this is the class type to be deserialized from XML
+    * @param sources these provide the source of each XML document
+    * @param limit this is the number of documents read at once
+    * 
+    * @return this returns the outcome for each document in order
+    * 
+    * @throws Exception thrown if the batch is interrupted
+    */
+   public List<Outcome> readAll(Class type, Collection<?> sources, int limit) throws Exception {
+      List<Callable> tasks = new ArrayList<Callable>(sources.size());
+      Batch batch = new Batch(limit);
+      
+      for(Object source : sources) {
+         tasks.add(new ReadTask(type, source));
+      }
+      return batch.execute(tasks);
+   }
+
+   /**
+    * This <code>writeAll</code> method will write each of the provided
+    * objects to the target at the same index. Each target can be an
+    * <code>OutputStream</code>, a writer, a file or a path. Objects
+    * are written concurrently, and an object that can not be written
+    * does not affect the others. Files created are always closed.
+    * 
+    * @param sources these are the objects that are to be serialized
+    * @param targets this is where each of the objects is written to
+    * 
+    * @return this returns the outcome for each object in order
+    * 
+    * @throws Exception thrown if the batch is interrupted
+    */
+   public List<Outcome> writeAll(Collection<?> sources, Collection<?> targets) throws Exception {
+      return writeAll(sources, targets, LIMIT);
+   }
+
+   /**
+    * This <code>writeAll</code> method will write each of the provided
+    * objects to the target at the same index. Each object is written
+    * on its own thread, using virtual threads if they are available,
+    * and no more than the given number of objects are written at once.
+    * The value of each successful outcome is the document written.
+    * 
+    * @param sources these are the objects that are to be serialized
+    * @param targets this is where each of the objects is written to
+    * @param limit this is the number of objects written at once
+    * 
+    * @return this returns the outcome for each object in order
+    * 
+    * @throws Exception thrown if the batch is interrupted
+    */
+   public List<Outcome> writeAll(Collection<?> sources, Collection<?> targets, int limit) throws Exception {
+      List<Callable> tasks = new ArrayList<Callable>(sources.size());
+      Iterator<?> iterator = targets.iterator();
+      Batch batch = new Batch(limit);
+      
+      if(sources.size() != targets.size()) {
+         throw new IllegalArgumentException("Each source requires a target");
+      }
+      for(Object source : sources) {
+         tasks.add(new WriteTask(source, iterator.next()));
+      }
+      return batch.execute(tasks);
+   }
+
+   /**
+    * This is used to read an object from a source within a batch. If
+    * the source is a file or a path then the stream opened for it is
+    * closed once the object has been read, streams and readers given
+    * as sources are left open as they belong to the caller.
+    * 
+    * @param type this is the class type to be deserialized from XML
+    * @param source this provides the source of the XML document
+    * 
+    * @return the object deserialized from the XML document 
+    * 
+    * @throws Exception if the object cannot be fully deserialized
+    */
+   private Object readSource(Class type, Object source) throws Exception {
+      if(source instanceof InputStream) {
+         return read(type, (InputStream) source);
+      }
+      if(source instanceof Reader) {
+         return read(type, (Reader) source);
+      }
+      if(source instanceof byte[]) {
+         return read(type, (byte[]) source);
+      }
+      if(source instanceof CharSequence) {
+         return read(type, (CharSequence) source);
+      }
+      if(source instanceof File) {
+         source = ((File) source).toPath();
+      }
+      if(source instanceof Path) {
+         InputStream in = Files.newInputStream((Path) source);
+         
+         try {
+            return read(type, in);
+         } finally {
+            in.close();
+         }
+      }
+      throw new IllegalArgumentException("Unsupported source " + source);
+   }
+
+   /**
+    * This is used to write an object to a target within a batch. If
+    * the target is a file or a path then the stream opened for it is
+    * closed once the object has been written, streams and writers
+    * given as targets are flushed but are left open.
+    * 
+    * @param source this is the object that is to be serialized
+    * @param target this is where the serialized XML is written to
+    * 
+    * @return this returns the DOM containing the serialized XML
+    * 
+    * @throws Exception if the schema for the object is not valid
+    */
+   private Document writeTarget(Object source, Object target) throws Exception {
+      if(target instanceof OutputStream) {
+         return write(source, (OutputStream) target);
+      }
+      if(target instanceof Writer) {
+         return write(source, (Writer) target);
+      }
+      if(target instanceof File) {
+         target = ((File) target).toPath();
+      }
+      if(target instanceof Path) {
+         OutputStream out = Files.newOutputStream((Path) target);
+         
+         try {
+            return write(source, out);
+         } finally {
+            out.close();
+         }
+      }
+      throw new IllegalArgumentException("Unsupported target " + target);
+   }
+
+   /**
+    * The <code>ReadTask</code> is used to read a single document in
+    * a batch. Each task reads its document independently using the
+    * pooled parsers and cached schemas shared by all persisters.
+    */
+   private class ReadTask implements Callable {
+
+      /**
+       * This is the source that the XML document is read from.
+       */
+      private Object source;
+
+      /**
+       * This is the class type to be deserialized from the XML.
+       */
+      private Class type;
+
+      /**
+       * Constructor for the <code>ReadTask</code> object. This is
+       * given the type that the document is to be converted to and
+       * the source that the document is to be read from.
+       * 
+       * @param type this is the class type to be deserialized
+       * @param source this provides the source of the XML document
+       */
+      public ReadTask(Class type, Object source) {
+         this.source = source;
+         this.type = type;
+      }
+
+      /**
+       * This is used to read the document and convert it in to an
+       * object of the type specified. Any exception thrown becomes 
+       * the outcome of the document within the batch.
+       * 
+       * @return the object deserialized from the XML document
+       * 
+       * @throws Exception if the object cannot be deserialized
+       */
+      public Object call() throws Exception {
+         return readSource(type, source);
+      }
+   }
+
+   /**
+    * The <code>WriteTask</code> is used to write a single object in
+    * a batch. Each task writes its object independently using the
+    * pooled builders and cached schemas shared by all persisters.
+    */
+   private class WriteTask implements Callable {
+
+      /**
+       * This is the object that is to be serialized to the target.
+       */
+      private Object source;
+
+      /**
+       * This is the target that the XML document is written to.
+       */
+      private Object target;
+
+      /**
+       * Constructor for the <code>WriteTask</code> object. This is
+       * given the object that is to be serialized and the target that
+       * the resulting XML document is to be written to.
+       * 
+       * @param source this is the object that is to be serialized
+       * @param target this is where the serialized XML is written
+       */
+      public WriteTask(Object source, Object target) {
+         this.source = source;
+         this.target = target;
+      }
+
+      /**
+       * This is used to write the object to the target. Any exception
+       * thrown becomes the outcome of the object within the batch.
+       * 
+       * @return this returns the DOM containing the serialized XML
+       * 
+       * @throws Exception if the schema for the object is not valid
+       */
+      public Object call() throws Exception {
+         return writeTarget(source, target);
+      }
+   }
+
+   /**
+    * The <code>ReadAsync</code> is used to deserialize the contents of
+    * a file once it has been read asynchronously. This is run by the
+    * executor given so that no I/O threads are used for parsing.
+    */
+   private class ReadAsync implements Function<byte[], Object> {
+
+      /**
+       * This is the class type to be deserialized from the XML.
+       */
+      private Class type;
+
+      /**
+       * Constructor for the <code>ReadAsync</code> object. This is
+       * given the type that the contents of the file are to be
+       * deserialized to once the file has been read.
+       * 
+       * @param type this is the class type to be deserialized
+       */
+      public ReadAsync(Class type) {
+         this.type = type;
+      }
+
+      /**
+       * This is used to deserialize the contents of the file. Any
+       * exception thrown is wrapped so that it fails the future.
+       * 
+       * @param data this is the contents of the file that was read
+       * 
+       * @return the object deserialized from the XML document
+       */
+      public Object apply(byte[] data) {
+         try {
+            return read(type, new ByteArrayInputStream(data));
+         } catch(Exception e) {
+            throw new CompletionException(e);
+         }
+      }
+   }
+
+   /**
+    * The <code>WriteAsync</code> is used to serialize an object and
+    * then write the resulting XML to a file asynchronously. The XML
+    * is serialized to memory by the executor given, then the file is
+    * written without blocking any thread while the I/O completes.
+    */
+   private class WriteAsync implements Supplier<byte[]>, Function<byte[], CompletionStage<Document>> {
+
+      /**
+       * This is the document that was created for the object.
+       */
+      private Document document;
+
+      /**
+       * This is the object that is to be serialized to the file.
+       */
+      private Object source;
+
+      /**
+       * This is the path of the file the XML is written to.
+       */
+      private Path path;
+
+      /**
+       * Constructor for the <code>WriteAsync</code> object. This is
+       * given the object that is to be serialized and the path of 
+       * the file the resulting XML document is to be written to.
+       * 
+       * @param source this is the object that is to be serialized
+       * @param path this is the path of the file to write to
+       */
+      public WriteAsync(Object source, Path path) {
+         this.source = source;
+         this.path = path;
+      }
+
+      /**
+       * This is used to serialize the object to memory. Any exception
+       * thrown is wrapped so that it fails the future.
+       * 
+       * @return this returns the encoded XML for the object
+       */
+      public byte[] get() {
+         ByteArrayOutputStream out = new ByteArrayOutputStream();
+         
+         try {
+            document = write(source, out);
+         } catch(Exception e) {
+            throw new CompletionException(e);
+         }
+         return out.toByteArray();
+      }
+
+      /**
+       * This is used to write the encoded XML to the file. The stage
+       * returned completes with the document once the file is closed.
+       * 
+       * @param data this is the encoded XML to write to the file
+       * 
+       * @return this returns a stage that completes once written
+       */
+      public CompletionStage<Document> apply(byte[] data) {
+         AsyncFile file = new AsyncFile(path);
+         return file.write(data, document);
+      }
+   }
+
+   /**
+    * This is used to create the factory for the document builders
+    * used by all persisters. Deferred node expansion is disabled as
+    * every node is visited during deserialization, and because a DOM
+    * with deferred nodes can not be safely read by multiple threads.
+    * 
+    * @return this returns the factory used to create builders
+    */
+   private static DocumentBuilderFactory getFactory() {
+      DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+      
+      try {
+         factory.setAttribute(EXPANSION, Boolean.FALSE);
+      } catch(IllegalArgumentException e) {
+         return factory;
+      }
+      return factory;
+   }
 }
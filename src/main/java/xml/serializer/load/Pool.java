@@ -0,0 +1,176 @@
+/*
+ * Pool.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The <code>Pool</code> object is used to recycle objects that are
+ * expensive to create and can not be used by more than one thread
+ * at a time, such as XML parsers and transformers. Objects are taken
+ * from the pool for the duration of a single operation and are then
+ * offered back so that they can be used by the next operation.
+ * <p>
+ * The pool is bounded and lock free. Each slot within the pool is
+ * claimed with an atomic swap, so threads never block on the pool
+ * and no thread local storage is used, which means that objects are
+ * shared evenly regardless of how many threads are created. If the
+ * pool is empty a new object is created, and if it is full then any
+ * object offered is discarded. Objects holding resources that the
+ * garbage collector does not manage can release them on discard.
+ *
+ * @see java.util.concurrent.atomic.AtomicReferenceArray
+ */
+abstract class Pool<T> {
+
+   /**
+    * This contains the idle objects that are available for use.
+    */
+   private AtomicReferenceArray<T> slots;
+
+   /**
+    * This is the maximum number of idle objects that are retained.
+    */
+   private int capacity;
+
+   /**
+    * Constructor for the <code>Pool</code> object. This will create
+    * a pool that retains two idle objects for every processor that
+    * is available, which is enough to ensure that objects are rarely
+    * created once the pool has warmed up.
+    */
+   protected Pool() {
+      this(Runtime.getRuntime().availableProcessors() * 2);
+   }
+
+   /**
+    * Constructor for the <code>Pool</code> object. This will create
+    * a pool that retains at most the specified number of objects.
+    * Objects are created on demand so an unused pool costs nothing.
+    *
+    * @param capacity this is the number of idle objects retained
+    */
+   protected Pool(int capacity) {
+      this.slots = new AtomicReferenceArray<T>(capacity);
+      this.capacity = capacity;
+   }
+
+   /**
+    * This is used to take an object from the pool. If there are no
+    * idle objects within the pool then a new one is created. Every
+    * object taken must be offered back once it has been used, if it
+    * is not then it is simply collected by the garbage collector.
+    *
+    * @return this returns an object for the exclusive use of a caller
+    *
+    * @throws Exception thrown if an object could not be created
+    */
+   public T take() throws Exception {
+      int start = getStart();
+
+      for(int i = 0; i < capacity; i++) {
+         int index = (start + i) % capacity;
+
+         if(slots.get(index) != null) {
+            T value = slots.getAndSet(index, null);
+
+            if(value != null) {
+               return value;
+            }
+         }
+      }
+      return create();
+   }
+
+   /**
+    * This is used to offer an object back to the pool once it has
+    * been used. The object is reset before it becomes available to
+    * any other thread. If the object can not be reset, or if there
+    * are no free slots within the pool, then it is discarded.
+    *
+    * @param value this is the object that is to be offered back
+    */
+   public void offer(T value) {
+      int start = getStart();
+
+      if(reset(value)) {
+         for(int i = 0; i < capacity; i++) {
+            int index = (start + i) % capacity;
+
+            if(slots.get(index) == null) {
+               if(slots.compareAndSet(index, null, value)) {
+                  return;
+               }
+            }
+         }
+      }
+      discard(value);
+   }
+
+   /**
+    * This is used to determine the slot a search should start from.
+    * Starting from a slot derived from the current thread spreads the
+    * threads over the pool, which reduces the number of failed swaps
+    * when many threads are taking and offering at the same time.
+    *
+    * @return this returns the slot that the search starts from
+    */
+   private int getStart() {
+      long id = Thread.currentThread().getId();
+      int hash = (int)(id ^ (id >>> 32)) * 0x9E3779B9;
+
+      return (hash >>> 1) % capacity;
+   }
+
+   /**
+    * This is used to create a new object when the pool is empty. The
+    * object created is not shared with any other thread until it has
+    * been offered back to the pool by the thread that took it.
+    *
+    * @return this returns a new object to be used by the caller
+    *
+    * @throws Exception thrown if the object could not be created
+    */
+   protected abstract T create() throws Exception;
+
+   /**
+    * This is used to reset the object before it is made available to
+    * other threads. If the object can not be reused then this should
+    * return false, in which case the object will be discarded.
+    *
+    * @param value this is the object that is to be reset
+    *
+    * @return true if the object was reset and can be reused
+    */
+   protected abstract boolean reset(T value);
+
+   /**
+    * This is used to release an object that is not retained by the
+    * pool, either because it could not be reset or because the pool
+    * was full. By default nothing is done and the object is left for
+    * the garbage collector, objects holding native resources should
+    * release them here.
+    *
+    * @param value this is the object that is being discarded
+    */
+   protected void discard(T value) {
+   }
+}
@@ -27,7 +27,8 @@ import org.w3c.dom.Node;
  * The <code>Primitive</code> object is used to provide serialization
  * for primitive objects. This can serialize and deserialize any
  * primitive object and enumerations. Primitive values are converted
- * to text using the <code>String.valueOf</code> method. Enumerated
+ * to text using the <code>Digits</code> object, which creates no
+ * intermediate strings for numbers or booleans. Enumerated
  * types are converted using the <code>Enum.valueOf</code> method.
  * <p>
  *
@@ -39,6 +40,11 @@ final class Primitive implements Converter {
     */
    private PrimitiveFactory factory;
 
+   /**
+    * This is used to resolve repeated strings, this may be null.
+    */
+   private Intern intern;
+
     /**
     * Constructor for the <code>Primitive</code> object. This is used
     * to convert a DOM node to a primitive object and vice versa. To
@@ -49,14 +55,33 @@ final class Primitive implements Converter {
     * @param type this is the type of primitive this represents
     */
    public Primitive(Source root, Class type) {
+      this(root, type, false);
+   }
+
+   /**
+    * Constructor for the <code>Primitive</code> object. This is used
+    * to convert a DOM node to a primitive object and vice versa. If
+    * the type is a string then the text read can be interned, so that
+    * repeated values are resolved to a single string instance.
+    *
+    * @param root the source object used for the serialization
+    * @param type this is the type of primitive this represents
+    * @param intern determines if the field requests interning
+    */
+   public Primitive(Source root, Class type, boolean intern) {
       this.factory = new PrimitiveFactory(type);
+
+      if(type == String.class) {
+         this.intern = root.getIntern(intern);
+      }
    }
 
    /**
     * This <code>read</code> methos will extract the text value from
     * the node and converting it to a primitive value. This uses
     * the <code>Source</code> object used for this instance of
-    * serialization.
+    * serialization. Strings are resolved from the intern cache if
+    * one is used for the field.
     *
     * @param node this is the node to be converted to a primitive
     *
@@ -66,13 +91,16 @@ final class Primitive implements Converter {
       Node child = node.getFirstChild();
       String text = child.getNodeValue();
 
+      if(intern != null) {
+         return intern.intern(text);
+      }
       return factory.getInstance(text);
    }
 
    /**
     * This <code>write</code> method will serialize the contents of
     * the provided object to the given DOM element. This will use
-    * the <code>String.valueOf</code> method to convert the object to
+    * the <code>Digits</code> object to convert the object to
     * a string if the object represents a primitive, if however the
     * object represents an enumerated type then the text value is
     * created using <code>Enum.name</code>.
@@ -100,7 +128,7 @@ final class Primitive implements Converter {
     */
    private String getText(Object source, Class type) {
       if(!type.isEnum()) {
-         return String.valueOf(source);
+         return Digits.getText(source);
       }
       Enum value = (Enum)source;
       return value.name();
@@ -0,0 +1,284 @@
+/*
+ * PrimitiveArray.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import xml.serializer.load.exceptions.ElementException;
+
+/**
+ * The <code>PrimitiveArray</code> object is used to serialize fields
+ * that are arrays of a primitive type, such as <code>int[]</code> or
+ * <code>double[]</code>. The array is written as a single text value
+ * in which the values are separated by a space, and each value is 
+ * appended to the text without being boxed.
+ * <p>
+ * When reading the values can be given either in the compact text 
+ * form or as a series of child elements, each of which contains one
+ * value. In both cases the values are counted first so that they are
+ * read directly in to an array of the required size.
+ * 
+ * @see xml.serializer.load.Scanner
+ */
+final class PrimitiveArray implements Converter {
+
+   /**
+    * This is the primitive component type of the array.
+    */
+   private Class type;
+
+   /**
+    * Constructor for the <code>PrimitiveArray</code> object. This is
+    * given the array type of the field that is to be serialized, the
+    * values are read and written according to its component type.
+    *
+    * @param root the source object used for the serialization
+    * @param type this is the array type of the field
+    */
+   public PrimitiveArray(Source root, Class type) {
+      this.type = type.getComponentType();
+   }
+
+   /**
+    * This is used to determine if the type given can be serialized
+    * by this converter. This is the case for arrays of any primitive
+    * type other than <code>char</code>, as a character array is text
+    * rather than a series of values.
+    * 
+    * @param type this is the type that is to be examined
+    * 
+    * @return this returns true if the type is a primitive array
+    */
+   public static boolean isArray(Class type) {
+      Class entry = type.getComponentType();
+
+      if(entry != null && entry.isPrimitive()) {
+         return entry != char.class;
+      }
+      return false;
+   }
+
+   /**
+    * This <code>read</code> method will read the values from the node
+    * in to a primitive array. If the node has child elements each of
+    * them provides one value, otherwise the text of the node contains
+    * the values separated by whitespace.
+    *
+    * @param node this is the node to be converted to an array
+    *
+    * @return this returns the array that has been deserialized
+    */
+   public Object read(Node node) throws Exception {
+      NodeList list = node.getChildNodes();
+      int length = list.getLength();
+      int count = 0;
+
+      for(int i = 0; i < length; i++) {
+         if(list.item(i) instanceof Element) {
+            count++;
+         }
+      }
+      if(count > 0) {
+         return read(list, count);
+      }
+      return read(node.getTextContent());
+   }
+
+   /**
+    * This is used to read the values from a series of child elements.
+    * Each element must contain exactly one value, text that is not
+    * within a child element is ignored.
+    * 
+    * @param list this is the list of child nodes of the element
+    * @param count this is the number of child elements 
+    * 
+    * @return this returns the array that has been deserialized
+    */
+   private Object read(NodeList list, int count) throws Exception {
+      Object array = getArray(count);
+      int length = list.getLength();
+
+      for(int i = 0, j = 0; i < length; i++) {
+         Node node = list.item(i);
+
+         if(node instanceof Element) {
+            Scanner scanner = new Scanner(node.getTextContent());
+
+            if(!scanner.next()) {
+               throw new ElementException("Element %s has no value", node.getNodeName());
+            }
+            read(scanner, array, j++);
+         }
+      }
+      return array;
+   }
+
+   /**
+    * This is used to read the values from text in which the values 
+    * are separated by whitespace. The values are counted before they
+    * are read so that the array is allocated only once.
+    * 
+    * @param text this is the text containing the values
+    * 
+    * @return this returns the array that has been deserialized
+    */
+   private Object read(String text) throws Exception {
+      Scanner scanner = new Scanner(text);
+      Object array = getArray(scanner.count());
+
+      for(int i = 0; scanner.next(); i++) {
+         read(scanner, array, i);
+      }
+      return array;
+   }
+
+   /**
+    * This is used to read the current value of the scanner in to the
+    * array at the given index. The value is converted according to 
+    * the component type of the array and is never boxed.
+    * 
+    * @param scanner this is the scanner positioned at the value
+    * @param array this is the array the value is read in to
+    * @param index this is the index within the array to set
+    */
+   private void read(Scanner scanner, Object array, int index) {
+      if(type == int.class) {
+         ((int[]) array)[index] = scanner.getInt();
+      } else if(type == long.class) {
+         ((long[]) array)[index] = scanner.getLong();
+      } else if(type == double.class) {
+         ((double[]) array)[index] = scanner.getDouble();
+      } else if(type == float.class) {
+         ((float[]) array)[index] = scanner.getFloat();
+      } else if(type == short.class) {
+         ((short[]) array)[index] = scanner.getShort();
+      } else if(type == byte.class) {
+         ((byte[]) array)[index] = scanner.getByte();
+      } else {
+         ((boolean[]) array)[index] = scanner.getBoolean();
+      }
+   }
+
+   /**
+    * This is used to create an array of the component type that is
+    * able to hold the given number of values.
+    * 
+    * @param size this is the number of values to be read
+    * 
+    * @return this returns an array of the required size
+    */
+   private Object getArray(int size) {
+      if(type == int.class) {
+         return new int[size];
+      }
+      if(type == long.class) {
+         return new long[size];
+      }
+      if(type == double.class) {
+         return new double[size];
+      }
+      if(type == float.class) {
+         return new float[size];
+      }
+      if(type == short.class) {
+         return new short[size];
+      }
+      if(type == byte.class) {
+         return new byte[size];
+      }
+      return new boolean[size];
+   }
+
+   /**
+    * This <code>write</code> method will serialize the values of the
+    * array as the text of the element. The values are separated by a
+    * single space so that the array is written compactly.
+    *
+    * @param source this is the array to be serialized
+    * @param node this is the DOM element to have its text set
+    */
+   public void write(Object source, Element node) throws Exception {
+      String text = getText(source);
+
+      node.setTextContent(text);
+   }
+
+   /**
+    * This is used to convert a primitive array to text. Each value is
+    * appended to the text as a primitive, so no wrapper object is 
+    * created for any of the values within the array.
+    * 
+    * @param source this is the primitive array to be converted
+    * 
+    * @return this returns the values separated by a space
+    */
+   public static String getText(Object source) {
+      StringBuilder text = new StringBuilder();
+
+      if(source instanceof int[]) {
+         for(int value : (int[]) source) {
+            getSeparator(text).append(value);
+         }
+      } else if(source instanceof long[]) {
+         for(long value : (long[]) source) {
+            getSeparator(text).append(value);
+         }
+      } else if(source instanceof double[]) {
+         for(double value : (double[]) source) {
+            Digits.append(getSeparator(text), value);
+         }
+      } else if(source instanceof float[]) {
+         for(float value : (float[]) source) {
+            Digits.append(getSeparator(text), value);
+         }
+      } else if(source instanceof short[]) {
+         for(short value : (short[]) source) {
+            getSeparator(text).append(value);
+         }
+      } else if(source instanceof byte[]) {
+         for(byte value : (byte[]) source) {
+            getSeparator(text).append(value);
+         }
+      } else {
+         for(boolean value : (boolean[]) source) {
+            getSeparator(text).append(value);
+         }
+      }
+      return text.toString();
+   }
+
+   /**
+    * This is used to append a separator to the text if a value has
+    * already been appended to it. 
+    * 
+    * @param text this is the text that the values are appended to
+    * 
+    * @return this returns the text so a value can be appended
+    */
+   private static StringBuilder getSeparator(StringBuilder text) {
+      if(text.length() > 0) {
+         text.append(' ');
+      }
+      return text;
+   }
+}
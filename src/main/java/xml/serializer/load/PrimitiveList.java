@@ -0,0 +1,421 @@
+/*
+ * PrimitiveList.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import xml.serializer.ElementList;
+
+import xml.serializer.load.exceptions.ElementException;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+
+/**
+ * The <code>PrimitiveList</code> object is used to convert an element
+ * list whose entries are primitive values, strings, or enumerations.
+ * Such entries have no schema class, so each value is written either
+ * as the text of a bare element or, if the list is inline, as part of
+ * the text of the list element with the values separated by spaces.
+ * <pre>
+ *
+ *    &lt;list&gt;
+ *       &lt;entry&gt;1&lt;/entry&gt;
+ *       &lt;entry&gt;2&lt;/entry&gt;
+ *    &lt;/list&gt;
+ *    &lt;list&gt;1 2&lt;/list&gt;
+ * 
+ * </pre>
+ * Both of the above forms are accepted when reading. Numeric values
+ * are scanned directly in to a primitive array, and if the field is
+ * declared as a <code>List</code> or a <code>Collection</code> then 
+ * the array is used as the storage for the list, so the values are
+ * never held as separate objects.
+ *
+ * @see xml.serializer.load.PackedList
+ */
+final class PrimitiveList implements Converter {
+
+   /**
+    * This factory is used to create a suitable collection list.
+    */
+   private CollectionFactory factory;
+
+   /**
+    * This is used to convert values that are not numeric.
+    */
+   private PrimitiveFactory primitive;
+
+   /**
+    * This is used to read numeric values, this may be null.
+    */
+   private PrimitiveArray array;
+
+   /**
+    * This is used to resolve repeated strings, this may be null.
+    */
+   private Intern intern;
+
+   /**
+    * This is the source object used for the serialization.
+    */
+   private Source source;
+
+   /**
+    * This is the entry type for values within the list.
+    */
+   private Class entry;
+
+   /**
+    * This is the name of the element written for each value.
+    */
+   private String name;
+
+   /**
+    * Determines if numeric values can be read as a packed list.
+    */
+   private boolean packed;
+
+   /**
+    * Determines if the values are written as a single text.
+    */
+   private boolean inline;
+
+   /**
+    * Constructor for the <code>PrimitiveList</code> object. This is
+    * given the list type and entry type to be used as well as the
+    * annotation, which names the element written for each value. If
+    * the entry type has a primitive form then values are read as 
+    * primitives, and if it is a string values may be interned.
+    *
+    * @param root this is the source object used for serialization
+    * @param type this is the collection type for the list used
+    * @param entry the entry type to be stored within the list
+    * @param label this is the annotation declared for the list
+    */
+   public PrimitiveList(Source root, Class type, Class entry, ElementList label) {
+      this.factory = new CollectionFactory(type);
+      this.primitive = new PrimitiveFactory(entry);
+      this.intern = getIntern(root, entry, label);
+      this.packed = isPacked(type, entry);
+      this.array = getArray(root, entry);
+      this.inline = label.inline();
+      this.name = label.entry();
+      this.source = root;
+      this.entry = entry;
+   }
+
+   /**
+    * This is used to acquire the cache used to resolve the values of
+    * the list. Only lists of strings are interned, as other values 
+    * are converted to objects that do not retain the text.
+    * 
+    * @param root this is the source object used for serialization
+    * @param entry the entry type to be stored within the list
+    * @param label this is the annotation declared for the list
+    * 
+    * @return this returns the cache used to resolve strings
+    */
+   private Intern getIntern(Source root, Class entry, ElementList label) {
+      if(entry == String.class) {
+         return root.getIntern(label.intern());
+      }
+      return null;
+   }
+
+   /**
+    * This is used to create the converter used to read numeric values
+    * in to an array of the primitive type for the entry. If the entry
+    * type has no primitive form then this will return null.
+    * 
+    * @param root this is the source object used for serialization
+    * @param entry the entry type to be stored within the list
+    * 
+    * @return this returns a converter for a primitive array
+    */
+   private PrimitiveArray getArray(Source root, Class entry) {
+      Class type = getPrimitive(entry);
+
+      if(type != null) {
+         Object empty = Array.newInstance(type, 0);
+         return new PrimitiveArray(root, empty.getClass());
+      }
+      return null;
+   }
+
+   /**
+    * This is used to determine whether a packed list can be assigned
+    * to the field. This is the case if the field is declared with a
+    * type that can not be instantiated and that a list can be assigned 
+    * to, and the entry type has a primitive form.
+    * 
+    * @param type this is the collection type for the list used
+    * @param entry the entry type to be stored within the list
+    * 
+    * @return true if values can be read in to a packed list
+    */
+   private boolean isPacked(Class type, Class entry) {
+      if(getPrimitive(entry) != null) {
+         if(!factory.isInstantiable(type)) {
+            return type.isAssignableFrom(PackedList.class);
+         }
+      }
+      return false;
+   }
+
+   /**
+    * This is used to determine whether an element list with the given
+    * entry type is a list of primitives. This is true for the wrappers
+    * of the numeric and boolean types, strings, and enumerations.
+    * 
+    * @param entry this is the entry type of the element list
+    * 
+    * @return true if the entries are converted to and from text
+    */
+   public static boolean isPrimitive(Class entry) {
+      if(getPrimitive(entry) != null) {
+         return true;
+      }
+      if(entry == String.class) {
+         return true;
+      }
+      return entry.isEnum();
+   }
+
+   /**
+    * This is used to acquire the primitive type for a wrapper type.
+    * If the entry type is not the wrapper for a numeric or boolean
+    * type then this returns null.
+    * 
+    * @param entry this is the entry type of the element list
+    * 
+    * @return this returns the primitive type for the entry type
+    */
+   public static Class getPrimitive(Class entry) {
+      if(entry == Integer.class) {
+         return int.class;
+      }
+      if(entry == Long.class) {
+         return long.class;
+      }
+      if(entry == Double.class) {
+         return double.class;
+      }
+      if(entry == Float.class) {
+         return float.class;
+      }
+      if(entry == Short.class) {
+         return short.class;
+      }
+      if(entry == Byte.class) {
+         return byte.class;
+      }
+      if(entry == Boolean.class) {
+         return boolean.class;
+      }
+      return null;
+   }
+
+   /**
+    * This <code>read</code> method will read the values of the list
+    * from the provided node. If the node has child elements then each
+    * of them provides one value, otherwise the text of the node holds
+    * the values separated by whitespace.
+    * 
+    * @param node this is the DOM element that is to be deserialized
+    * 
+    * @return this returns the item to attach to the object field
+    */
+   public Object read(Node node) throws Exception {
+      Class type = factory.getOverride(node);
+
+      if(array != null) {
+         Object values = array.read(node);
+
+         if(type == null && packed) {
+            return new PackedList(values);
+         }
+         Collection list = getInstance(node, type);
+
+         list.addAll(new PackedList(values));
+         return list;
+      }
+      return read(node, getInstance(node, type));
+   }
+
+   /**
+    * This is used to read values that have no primitive form, such as
+    * strings and enumerations. The text of each child element is a 
+    * single value, and if there are no child elements the text of
+    * the list element is split on whitespace.
+    * 
+    * @param node this is the DOM element that is to be deserialized
+    * @param list this is the collection the values are added to
+    * 
+    * @return this returns the item to attach to the object field
+    */
+   private Object read(Node node, Collection list) throws Exception {
+      for(Node next = node.getFirstChild(); next != null; next = next.getNextSibling()) {
+         if(next instanceof Element) {
+            list.add(getInstance(next.getTextContent()));
+         }
+      }
+      if(list.isEmpty()) {
+         Scanner scanner = new Scanner(node.getTextContent());
+
+         while(scanner.next()) {
+            list.add(getInstance(scanner.getText()));
+         }
+      }
+      return list;
+   }
+
+   /**
+    * This is used to convert the text of a single value. If the list
+    * is a list of strings that are interned then the text is resolved
+    * from the cache, otherwise it is converted by the factory.
+    * 
+    * @param text this is the text of the value to convert
+    * 
+    * @return this returns the value for the text given
+    */
+   private Object getInstance(String text) throws Exception {
+      if(intern != null) {
+         return intern.intern(text);
+      }
+      return primitive.getInstance(text);
+   }
+
+   /**
+    * This is used to create the collection that values are added to.
+    * If an override was given for the list then that type is used,
+    * otherwise the collection is created from the field type.
+    * 
+    * @param node this is the DOM element that is to be deserialized
+    * @param type this is the override type, this may be null
+    * 
+    * @return this returns the collection to add the values to
+    */
+   private Collection getInstance(Node node, Class type) throws Exception {
+      if(type != null) {
+         return factory.getInstance(type);
+      }
+      return factory.getInstance(node);
+   }
+
+   /**
+    * This <code>write</code> method will write the values of the list
+    * to the given DOM element. If the list is inline the values form
+    * the text of the element, otherwise an element is added for each
+    * value. A packed list needs no override, as it is the list that 
+    * would be created for the field when it is read.
+    * 
+    * @param source this is the source collection to be serialized 
+    * @param node this is the DOM element container to be populated
+    */
+   public void write(Object source, Element node) throws Exception {
+      Collection list = (Collection) source;
+
+      if(source instanceof PackedList) {
+         factory.clearOverride(node);
+      }
+      if(inline) {
+         node.setTextContent(getText(list));
+      } else {
+         for(Object item : list) {
+            Element next = this.source.getElement(name);
+
+            next.setTextContent(getText(item));
+            node.appendChild(next);
+         }
+      }
+   }
+
+   /**
+    * This is used to convert the list to a single text value with the
+    * values separated by a space. The values of a packed list are
+    * converted from the primitive array without being boxed.
+    * 
+    * @param list this is the list that is to be converted
+    * 
+    * @return this returns the values separated by a space
+    */
+   private String getText(Collection list) throws Exception {
+      StringBuilder text = new StringBuilder();
+
+      if(list instanceof PackedList) {
+         return PrimitiveArray.getText(((PackedList) list).getValues());
+      }
+      for(Object item : list) {
+         String value = getText(item);
+
+         if(!isInline(value)) {
+            throw new ElementException("Value '%s' of %s can not be written inline", value, entry);
+         }
+         if(text.length() > 0) {
+            text.append(' ');
+         }
+         text.append(value);
+      }
+      return text.toString();
+   }
+
+   /**
+    * This is used to convert a single value to text. Enumerations are
+    * written by name and all other values by their string value. The
+    * value must be an instance of the entry type of the list.
+    * 
+    * @param item this is the value that is to be converted
+    * 
+    * @return this returns the text for the value
+    */
+   private String getText(Object item) throws Exception {
+      if(!entry.isInstance(item)) {
+         throw new ElementException("Value %s does not match list entry %s", item, entry);
+      }
+      if(item instanceof Enum) {
+         return ((Enum) item).name();
+      }
+      return Digits.getText(item);
+   }
+
+   /**
+    * This is used to determine if a value can be written inline. If
+    * the text is empty or contains whitespace then it would not be
+    * read as a single value, so it can not be written inline.
+    * 
+    * @param text this is the text of the value to be written
+    * 
+    * @return true if the value can be written as part of the text
+    */
+   private boolean isInline(String text) {
+      int length = text.length();
+
+      for(int i = 0; i < length; i++) {
+         char next = text.charAt(i);
+
+         if(next == ' ' || next == '\n' || next == '\r' || next == '\t') {
+            return false;
+         }
+      }
+      return length > 0;
+   }
+}
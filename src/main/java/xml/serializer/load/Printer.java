@@ -0,0 +1,317 @@
+/*
+ * Printer.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.ProcessingInstruction;
+
+import java.io.OutputStream;
+
+/**
+ * The <code>Printer</code> object is used to write a DOM document to
+ * an output stream as XML text. Unlike the <code>Formatter</code> the
+ * printer is able to splice segments of XML that have been generated
+ * independently in to the document it writes. Large element lists
+ * can then be serialized in chunks by a number of threads, with each
+ * chunk written to a byte buffer that is copied to the output in the
+ * order the entries appear within the list.
+ * <p>
+ * The layout of the XML is described by a <code>Format</code> so the
+ * printed XML is the same as the XML generated by a formatter. The
+ * text is escaped and encoded in a single pass by an <code>Encoder</code>
+ * which writes to the stream in large blocks. Any character that can
+ * not be encoded in the requested character set is written as a
+ * numeric character reference.
+ * 
+ * @see Segment
+ */
+final class Printer {
+
+   /**
+    * This is the target of the instructions used for segments.
+    */
+   public static final String SEGMENT = "segment";
+
+   /**
+    * This is the stream the encoded XML text is written to.
+    */
+   private OutputStream out;
+
+   /**
+    * This is used to encode the XML text written to the stream.
+    */
+   private Encoder encoder;
+
+   /**
+    * This describes how the XML written is to be laid out.
+    */
+   private Format format;
+
+   /**
+    * This contains the segments that are spliced in to the XML.
+    */
+   private Source source;
+
+   /**
+    * Determines if anything has been written to the stream yet.
+    */
+   private boolean start;
+
+   /**
+    * Constructor for the <code>Printer</code> object. This is given
+    * the output stream that the XML is written to as well as the
+    * character set that is used to encode it. The format provided
+    * determines whether the XML is indented.
+    * 
+    * @param out this is the stream the XML is to be written to
+    * @param charset this is the character set used for the XML
+    * @param format this describes how the XML is laid out
+    * @param source this provides the segments to be spliced
+    */
+   public Printer(OutputStream out, String charset, Format format, Source source) throws Exception {
+      this.encoder = new Encoder(out, charset);
+      this.format = format;
+      this.source = source;
+      this.start = true;
+      this.out = out;
+   }
+
+   /**
+    * This is used to print the provided DOM document. If the format
+    * requires the XML declaration then it is written before the root
+    * element of the document. The layout matches the layout produced
+    * by the <code>Formatter</code> so the XML is the same regardless
+    * of how it was written. Finally the XML is flushed to the stream.
+    * 
+    * @param document this is the DOM document that is to be written
+    * 
+    * @throws Exception thrown if the XML could not be written
+    */
+   public void print(Document document) throws Exception {
+      Element root = document.getDocumentElement();
+
+      try {
+         if(format.isProlog()) {
+            encoder.write("<?xml version=\"1.0\" encoding=\"");
+            encoder.write(encoder.getCharset());
+            encoder.write("\"?>");
+         }
+         print(root, 0);
+
+         if(format.isIndent()) {
+            encoder.write('\n');
+         }
+         encoder.finish();
+      } finally {
+         encoder.release();
+      }
+   }
+
+   /**
+    * This is used to print the provided element at the given depth.
+    * The depth is used to indent the element if the format requires
+    * indenting. This allows elements to be printed independently of
+    * the document they belong to, which is how segments are printed.
+    * 
+    * @param node this is the element that is to be written
+    * @param depth this is the depth of the element in the document
+    * 
+    * @throws Exception thrown if the XML could not be written
+    */
+   public void print(Element node, int depth) throws Exception {
+      String name = node.getNodeName();
+
+      indent(depth);
+      encoder.write('<');
+      encoder.write(name);
+      printAttributes(node);
+
+      if(node.getFirstChild() == null) {
+         encoder.write("/>");
+      } else {
+         encoder.write('>');
+
+         if(printChildren(node, depth)) {
+            indent(depth);
+         }
+         encoder.write("</");
+         encoder.write(name);
+         encoder.write('>');
+      }
+   }
+
+   /**
+    * This is used to print the attributes of the provided element.
+    * Each attribute value is escaped so that it can be read back in
+    * exactly the same form, including any whitespace characters.
+    * 
+    * @param node this is the element to write the attributes of
+    * 
+    * @throws Exception thrown if the XML could not be written
+    */
+   private void printAttributes(Element node) throws Exception {
+      NamedNodeMap list = node.getAttributes();
+
+      for(int i = 0; i < list.getLength(); i++) {
+         Node attribute = list.item(i);
+
+         encoder.write(' ');
+         encoder.write(attribute.getNodeName());
+         encoder.write("=\"");
+         encoder.escape(attribute.getNodeValue(), true);
+         encoder.write('"');
+      }
+   }
+
+   /**
+    * This is used to print the children of the provided element. Text
+    * is escaped and written as is, elements are written at the next
+    * depth and segment instructions are replaced with the XML for
+    * the segment they represent.
+    * 
+    * @param node this is the element to write the children of
+    * @param depth this is the depth of the provided element
+    * 
+    * @return true if an element or segment was written as a child
+    * 
+    * @throws Exception thrown if the XML could not be written
+    */
+   private boolean printChildren(Element node, int depth) throws Exception {
+      boolean nested = false;
+
+      for(Node next = node.getFirstChild(); next != null; next = next.getNextSibling()) {
+         if(next instanceof Element) {
+            print((Element) next, depth + 1);
+            nested = true;
+         } else if(next instanceof ProcessingInstruction) {
+            nested |= print((ProcessingInstruction) next, depth + 1);
+         } else if(next.getNodeType() == Node.TEXT_NODE) {
+            encoder.escape(next.getNodeValue(), false);
+         } else if(next.getNodeType() == Node.CDATA_SECTION_NODE) {
+            encoder.escape(next.getNodeValue(), false);
+         } else if(next.getNodeType() == Node.COMMENT_NODE) {
+            encoder.write("<!--");
+            encoder.write(next.getNodeValue());
+            encoder.write("-->");
+         }
+      }
+      return nested;
+   }
+
+   /**
+    * This is used to print a processing instruction. If the target of
+    * the instruction is a segment then the segment it refers to is
+    * written in its place. All other instructions are written as is.
+    * 
+    * @param node this is the processing instruction to be written
+    * @param depth this is the depth of the instruction
+    * 
+    * @return true if the instruction was replaced with a segment
+    * 
+    * @throws Exception thrown if the XML could not be written
+    */
+   private boolean print(ProcessingInstruction node, int depth) throws Exception {
+      String target = node.getTarget();
+      String data = node.getData();
+
+      if(source != null && target.equals(SEGMENT)) {
+         Segment segment = source.getSegment(Integer.parseInt(data));
+
+         flush();
+         segment.print(out, this, depth);
+         return true;
+      }
+      encoder.write("<?");
+      encoder.write(target);
+      encoder.write(' ');
+      encoder.write(data);
+      encoder.write("?>");
+      return false;
+   }
+
+   /**
+    * This is used to create a printer that writes to the stream given
+    * using the same character set and format as this printer. This
+    * is used to print segments independently of this printer, the
+    * printer created does not start with a declaration, and if the
+    * character set writes a byte order mark then the printer created
+    * uses the same byte order without writing another mark.
+    * 
+    * @param out this is the stream the printer is to write to
+    * 
+    * @return this returns a printer that writes to the stream
+    * 
+    * @throws Exception thrown if the printer could not be created
+    */
+   public Printer getPrinter(OutputStream out) throws Exception {
+      String continuation = encoder.getContinuation();
+      Printer printer = new Printer(out, continuation, format, null);
+
+      printer.start = false;
+      return printer;
+   }
+
+   /**
+    * This is used to write the indent for the given depth. The indent
+    * is written only if the format requires the XML to be indented,
+    * and nothing is written before the very first element.
+    * 
+    * @param depth this is the depth to write the indent for
+    * 
+    * @throws Exception thrown if the XML could not be written
+    */
+   private void indent(int depth) throws Exception {
+      int size = format.getIndent() * depth;
+
+      if(format.isIndent()) {
+         if(!start) {
+            encoder.write('\n');
+         }
+         for(int i = 0; i < size; i++) {
+            encoder.write(' ');
+         }
+      }
+      start = false;
+   }
+
+   /**
+    * This is used to write the encoded XML to the output stream. This
+    * is required before any bytes are written directly to the stream
+    * so that the XML written by this printer remains in order.
+    * 
+    * @throws Exception thrown if the XML could not be flushed
+    */
+   public void flush() throws Exception {
+      encoder.flush();
+   }
+
+   /**
+    * This is used to release the resources held by the printer. This
+    * should be used once a printer created for a segment has printed
+    * its elements, the printer can not be used once it is closed.
+    */
+   public void close() {
+      encoder.release();
+   }
+}
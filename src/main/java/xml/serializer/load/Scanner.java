@@ -0,0 +1,217 @@
+/*
+ * Scanner.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+/**
+ * The <code>Scanner</code> object is used to read a series of values
+ * from text in which the values are separated by whitespace. Each
+ * value is converted directly from the characters of the text, so 
+ * integral values are parsed without a substring being created for 
+ * each of them, and a series can be counted before it is read so 
+ * that the array it is read in to is exactly the required size.
+ * 
+ * @see xml.serializer.load.PrimitiveArray
+ */
+final class Scanner {
+
+   /**
+    * This is the text that contains the values to be scanned.
+    */
+   private String text;
+
+   /**
+    * This is the index of the first character of the value.
+    */
+   private int start;
+
+   /**
+    * This is the index after the last character of the value.
+    */
+   private int finish;
+
+   /**
+    * This is the number of characters within the text.
+    */
+   private int length;
+
+   /**
+    * Constructor for the <code>Scanner</code> object. This is given
+    * the text that is to be scanned. The scanner is positioned before
+    * the first value so <code>next</code> must be invoked first.
+    * 
+    * @param text this is the text that contains the values
+    */
+   public Scanner(String text) {
+      this.length = text.length();
+      this.text = text;
+   }
+
+   /**
+    * This is used to count the values within the text. This does not
+    * change the position of the scanner, so it can be used to size an
+    * array before the values are read in to it.
+    * 
+    * @return this returns the number of values within the text
+    */
+   public int count() {
+      int count = 0;
+
+      for(int i = 0; i < length; i++) {
+         if(!isSpace(text.charAt(i))) {
+            if(i == 0 || isSpace(text.charAt(i - 1))) {
+               count++;
+            }
+         }
+      }
+      return count;
+   }
+
+   /**
+    * This is used to move the scanner to the next value within the
+    * text. If there are no more values then this returns false and
+    * the value accessors should no longer be used.
+    * 
+    * @return this returns true if the scanner is at a value
+    */
+   public boolean next() {
+      start = finish;
+
+      while(start < length && isSpace(text.charAt(start))) {
+         start++;
+      }
+      finish = start;
+
+      while(finish < length && !isSpace(text.charAt(finish))) {
+         finish++;
+      }
+      return start < length;
+   }
+
+   /**
+    * This is used to determine if a character separates values. The
+    * characters considered are those treated as whitespace by XML.
+    * 
+    * @param next this is the character that is to be examined
+    * 
+    * @return this returns true if the character is whitespace
+    */
+   private boolean isSpace(char next) {
+      return next == ' ' || next == '\n' || next == '\r' || next == '\t';
+   }
+
+   /**
+    * This is used to read the current value as a boolean. As with the
+    * <code>Boolean.parseBoolean</code> method any value other than 
+    * true, ignoring case, is considered to be false.
+    * 
+    * @return this returns the current value as a boolean
+    */
+   public boolean getBoolean() {
+      if(finish - start == 4) {
+         return text.regionMatches(true, start, "true", 0, 4);
+      }
+      return false;
+   }
+
+   /**
+    * This is used to read the current value as a byte. If the value
+    * is not a decimal integer within range then this will throw a
+    * <code>NumberFormatException</code> as parsing would.
+    * 
+    * @return this returns the current value as a byte
+    */
+   public byte getByte() {
+      int value = getInt();
+
+      if(value < Byte.MIN_VALUE || value > Byte.MAX_VALUE) {
+         throw new NumberFormatException("Value out of range for byte: " + getText());
+      }
+      return (byte) value;
+   }
+
+   /**
+    * This is used to read the current value as a short. If the value
+    * is not a decimal integer within range then this will throw a
+    * <code>NumberFormatException</code> as parsing would.
+    * 
+    * @return this returns the current value as a short
+    */
+   public short getShort() {
+      int value = getInt();
+
+      if(value < Short.MIN_VALUE || value > Short.MAX_VALUE) {
+         throw new NumberFormatException("Value out of range for short: " + getText());
+      }
+      return (short) value;
+   }
+
+   /**
+    * This is used to read the current value as an integer. This is
+    * parsed directly from the characters of the text.
+    * 
+    * @return this returns the current value as an integer
+    */
+   public int getInt() {
+      return Integer.parseInt(text, start, finish, 10);
+   }
+
+   /**
+    * This is used to read the current value as a long. This is parsed
+    * directly from the characters of the text.
+    * 
+    * @return this returns the current value as a long
+    */
+   public long getLong() {
+      return Long.parseLong(text, start, finish, 10);
+   }
+
+   /**
+    * This is used to read the current value as a float. Floating
+    * point values are parsed with <code>Float.parseFloat</code> so 
+    * that the value is rounded exactly as it would be otherwise.
+    * 
+    * @return this returns the current value as a float
+    */
+   public float getFloat() {
+      return Float.parseFloat(getText());
+   }
+
+   /**
+    * This is used to read the current value as a double. Floating
+    * point values are parsed with <code>Double.parseDouble</code> so 
+    * that the value is rounded exactly as it would be otherwise.
+    * 
+    * @return this returns the current value as a double
+    */
+   public double getDouble() {
+      return Double.parseDouble(getText());
+   }
+
+   /**
+    * This is used to acquire the text of the current value. This is
+    * a new string containing only the characters of the value.
+    * 
+    * @return this returns the text of the current value
+    */
+   public String getText() {
+      return text.substring(start, finish);
+   }
+}
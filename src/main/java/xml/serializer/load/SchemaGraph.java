@@ -0,0 +1,164 @@
+/*
+ * SchemaGraph.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The <code>SchemaGraph</code> object is used to collect every XML
+ * schema class that can be reached from a set of root classes. The
+ * graph is built using the same <code>Schema</code> scanning that is
+ * used for serialization, so composite element types and the entry
+ * types declared by <code>ElementList</code> annotations are visited
+ * exactly as the <code>Composite</code> converter would visit them.
+ * <p>
+ * Classes are iterated in the order they were first encountered,
+ * which ensures that anything generated from the graph is stable
+ * for a given set of root classes.
+ *
+ * @see Schema
+ */
+final class SchemaGraph implements Iterable<Class> {
+
+   /**
+    * This contains the schema classes in the order encountered.
+    */
+   private Set<Class> types;
+
+   /**
+    * Constructor for the <code>SchemaGraph</code> object. This is
+    * used to create an empty graph. Root classes are added with the
+    * <code>add</code> method, which will visit all classes that are
+    * reachable through the annotated fields of the root class.
+    */
+   public SchemaGraph() {
+      this.types = new LinkedHashSet<Class>();
+   }
+
+   /**
+    * This is used to add a schema class to the graph. If the class
+    * has not already been visited then its schema is scanned and
+    * each composite element and element list entry type is added.
+    * This is safe to use with self referencing and cyclic schemas.
+    *
+    * @param type this is the schema class to be added to the graph
+    */
+   public void add(Class type) {
+      if(types.add(type)) {
+         Schema schema = getSchema(type);
+
+         add(schema.getAttributes());
+         add(schema.getElements());
+      }
+   }
+
+   /**
+    * This is used to add the dependant classes of the labels within
+    * the provided map. Only labels that result in a composite object
+    * being created are followed, primitives and enumerations are
+    * leaf values and so have no schema to be scanned.
+    *
+    * @param map this is the label map that is to be visited
+    */
+   private void add(LabelMap map) {
+      for(Label label : map) {
+         Class type = label.getDependant();
+
+         if(isComposite(label)) {
+            add(type);
+         }
+      }
+   }
+
+   /**
+    * This is used to acquire the <code>Schema</code> for a class that
+    * exists within the graph. The schema is taken from the shared
+    * cache so that the scanning performed is not repeated.
+    *
+    * @param type this is the schema class to acquire the schema for
+    *
+    * @return this returns the schema for the provided class
+    */
+   public Schema getSchema(Class type) {
+      return Source.getSchema(type);
+   }
+
+   /**
+    * This is used to acquire all of the labels for the provided type.
+    * The attribute labels are provided before the element labels so
+    * that any processing of the labels can be performed in a single
+    * pass over the schema for the class.
+    *
+    * @param type this is the schema class to acquire labels for
+    *
+    * @return this returns the attribute and element labels
+    */
+   public List<Label> getLabels(Class type) {
+      Schema schema = getSchema(type);
+      List<Label> list = new ArrayList<Label>();
+
+      for(Label label : schema.getAttributes()) {
+         list.add(label);
+      }
+      for(Label label : schema.getElements()) {
+         list.add(label);
+      }
+      return list;
+   }
+
+   /**
+    * This determines whether the label provided will result in a
+    * composite object being created by its converter. Element lists
+    * contain composite entries unless the entries are primitives,
+    * elements are composite only when the field type is not a 
+    * primitive or enumerated type.
+    *
+    * @param label this is the label that is to be evaluated
+    *
+    * @return true if the label will produce a composite object
+    */
+   public boolean isComposite(Label label) {
+      Class type = label.getDependant();
+
+      if(label instanceof ElementListLabel) {
+         return !PrimitiveList.isPrimitive(type);
+      }
+      if(label instanceof ElementLabel) {
+         return !ElementLabel.isPrimitive(type);
+      }
+      return false;
+   }
+
+   /**
+    * This allows the schema classes within the graph to be iterated
+    * within for each loops. The classes are provided in the order
+    * that they were first encountered when the graph was built.
+    *
+    * @return this returns an iterator for the schema classes
+    */
+   public Iterator<Class> iterator() {
+      return types.iterator();
+   }
+}
@@ -0,0 +1,218 @@
+/*
+ * Segment.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import org.w3c.dom.DOMImplementation;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * The <code>Segment</code> object represents the entries of a large
+ * element list whose serialization has been deferred until the XML
+ * is printed. Rather than building the entire list within the DOM
+ * document, the list element contains a single instruction that the
+ * <code>Printer</code> replaces with the XML for the segment.
+ * <p>
+ * When a segment is printed its entries are split in to chunks that
+ * are serialized by the threads of a fork join pool. Each chunk is
+ * built within its own DOM document and printed to its own buffer,
+ * the buffers are then copied to the output in order. Only a limited
+ * number of chunks are in progress at once, so the memory required
+ * for the buffers is bounded regardless of the size of the list.
+ *
+ * @see xml.serializer.load.Printer
+ */
+final class Segment {
+
+   /**
+    * This is used to create the documents each chunk is built in.
+    */
+   private DOMImplementation factory;
+
+   /**
+    * This describes how the entries are split in to chunks.
+    */
+   private Parallel parallel;
+
+   /**
+    * These are the list entries that are to be serialized.
+    */
+   private Object[] items;
+
+   /**
+    * Constructor for the <code>Segment</code> object. This is given
+    * the entries of the list that is to be serialized as well as the
+    * document the list element belongs to. Each chunk is built in a
+    * new document created from the same DOM implementation.
+    *
+    * @param root this is the document the list element belongs to
+    * @param parallel this describes how the entries are chunked
+    * @param items these are the list entries to be serialized
+    */
+   public Segment(Document root, Parallel parallel, Object[] items) {
+      this.factory = root.getImplementation();
+      this.parallel = parallel;
+      this.items = items;
+   }
+
+   /**
+    * This is used to print the entries of the segment to the output.
+    * Chunks are submitted to the pool in order, and as soon as the
+    * first outstanding chunk has completed its buffer is copied to
+    * the output and another chunk is submitted. If any entry can not
+    * be serialized the remaining chunks are cancelled.
+    *
+    * @param out this is the output stream the XML is written to
+    * @param printer this is the printer used to write the document
+    * @param depth this is the depth at which the entries are written
+    *
+    * @throws Exception thrown if an entry can not be serialized
+    */
+   public void print(OutputStream out, Printer printer, int depth) throws Exception {
+      LinkedList<Future<ByteArrayOutputStream>> queue = new LinkedList<Future<ByteArrayOutputStream>>();
+      ForkJoinPool pool = parallel.getPool();
+      int window = pool.getParallelism() * 2;
+      int chunk = parallel.getChunk();
+
+      try {
+         for(int i = 0; i < items.length || !queue.isEmpty();) {
+            while(i < items.length && queue.size() < window) {
+               int next = Math.min(i + chunk, items.length);
+
+               queue.add(pool.submit(new Chunk(printer, i, next, depth)));
+               i = next;
+            }
+            ByteArrayOutputStream buffer = getBuffer(queue.removeFirst());
+            buffer.writeTo(out);
+         }
+      } finally {
+         for(Future<ByteArrayOutputStream> task : queue) {
+            task.cancel(true);
+         }
+      }
+   }
+
+   /**
+    * This is used to wait for a chunk to complete and acquire the
+    * buffer it has written to. If the chunk failed then the error it
+    * failed with is thrown so that the original cause is reported.
+    *
+    * @param task this is the chunk that is to be waited for
+    *
+    * @return this returns the buffer the chunk was printed to
+    *
+    * @throws Exception thrown if the chunk could not be serialized
+    */
+   private ByteArrayOutputStream getBuffer(Future<ByteArrayOutputStream> task) throws Exception {
+      try {
+         return task.get();
+      } catch(ExecutionException e) {
+         Throwable cause = e.getCause();
+
+         if(cause instanceof Exception) {
+            throw (Exception) cause;
+         }
+         throw e;
+      }
+   }
+
+   /**
+    * The <code>Chunk</code> object is used to serialize a range of
+    * the entries within the segment. The chunk builds each entry in
+    * a document of its own and prints it with a single printer, so
+    * that the character encoder is reused for the whole chunk.
+    */
+   private class Chunk implements Callable<ByteArrayOutputStream> {
+
+      /**
+       * This is the printer that is used to print the document.
+       */
+      private Printer printer;
+
+      /**
+       * This is the index of the first entry within this chunk.
+       */
+      private int start;
+
+      /**
+       * This is the index after the last entry within this chunk.
+       */
+      private int finish;
+
+      /**
+       * This is the depth at which the entries are to be printed.
+       */
+      private int depth;
+
+      /**
+       * Constructor for the <code>Chunk</code> object. This is given
+       * the range of entries that is to be serialized as well as the
+       * printer whose format and character set are to be used.
+       *
+       * @param printer this is the printer used for the document
+       * @param start this is the index of the first entry
+       * @param finish this is the index after the last entry
+       * @param depth this is the depth the entries are printed at
+       */
+      public Chunk(Printer printer, int start, int finish, int depth) {
+         this.printer = printer;
+         this.finish = finish;
+         this.start = start;
+         this.depth = depth;
+      }
+
+      /**
+       * This is used to serialize the entries within the range to a
+       * buffer. Each entry is serialized as a root element and then
+       * printed at the depth of the segment, once printed the element
+       * is discarded so that only one entry is held at a time.
+       *
+       * @return this returns the buffer the entries are printed to
+       *
+       * @throws Exception thrown if an entry can not be serialized
+       */
+      public ByteArrayOutputStream call() throws Exception {
+         Document root = factory.createDocument(null, null, null);
+         Traverser traverser = new Traverser(root);
+         ByteArrayOutputStream buffer = new ByteArrayOutputStream(8192);
+         Printer out = printer.getPrinter(buffer);
+
+         try {
+            for(int i = start; i < finish; i++) {
+               Element next = traverser.write(items[i]);
+               out.print(next, depth);
+            }
+            out.flush();
+         } finally {
+            out.close();
+         }
+         return buffer;
+      }
+   }
+}
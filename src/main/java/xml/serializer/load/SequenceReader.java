@@ -0,0 +1,143 @@
+/*
+ * SequenceReader.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import java.io.Reader;
+
+/**
+ * The <code>SequenceReader</code> is used to read the characters of
+ * a character sequence. Unlike a <code>StringReader</code> this does
+ * not acquire a lock for each read, and it reads from any sequence,
+ * such as a <code>StringBuilder</code>, without creating a string.
+ * When the sequence is a string its characters are copied in bulk.
+ * <p>
+ * A reader is only ever used by the thread parsing the document, so
+ * there is no need for the synchronization a shared reader requires.
+ * 
+ * @see xml.serializer.load.Persister
+ */
+final class SequenceReader extends Reader {
+
+   /**
+    * This is the sequence of characters that is to be read.
+    */
+   private CharSequence source;
+
+   /**
+    * This is the string being read, if the sequence is a string.
+    */
+   private String text;
+
+   /**
+    * This is the index of the next character to be read.
+    */
+   private int index;
+
+   /**
+    * Constructor for the <code>SequenceReader</code> object. This is
+    * given the sequence of characters that is to be read, which must
+    * not be modified while it is being read.
+    * 
+    * @param source this is the sequence of characters to be read
+    */
+   public SequenceReader(CharSequence source) {
+      if(source instanceof String) {
+         this.text = (String) source;
+      }
+      this.source = source;
+   }
+
+   /**
+    * This is used to read a single character from the sequence. If
+    * all of the characters have been read this returns minus one.
+    * 
+    * @return this returns the next character from the sequence
+    */
+   public int read() {
+      if(index >= source.length()) {
+         return -1;
+      }
+      return source.charAt(index++);
+   }
+
+   /**
+    * This is used to read characters from the sequence in to the 
+    * array. Characters are copied in bulk from strings, for other
+    * sequences each character is copied individually.
+    * 
+    * @param data this is the array the characters are read in to
+    * @param off this is the offset to read the characters to
+    * @param len this is the maximum number of characters to read
+    * 
+    * @return this returns the number of characters that were read
+    */
+   public int read(char[] data, int off, int len) {
+      int count = Math.min(len, source.length() - index);
+
+      if(len == 0) {
+         return 0;
+      }
+      if(count <= 0) {
+         return -1;
+      }
+      if(text != null) {
+         text.getChars(index, index + count, data, off);
+      } else {
+         for(int i = 0; i < count; i++) {
+            data[off + i] = source.charAt(index + i);
+         }
+      }
+      index += count;
+      return count;
+   }
+
+   /**
+    * This is used to skip characters within the sequence. This will
+    * skip no more than the number of characters that remain.
+    * 
+    * @param count this is the number of characters to skip
+    * 
+    * @return this returns the number of characters skipped
+    */
+   public long skip(long count) {
+      long size = Math.max(0, Math.min(count, source.length() - index));
+
+      index += size;
+      return size;
+   }
+
+   /**
+    * This is used to determine if the reader can be read without
+    * blocking. As the characters are in memory this is always true.
+    * 
+    * @return this always returns true for a sequence reader
+    */
+   public boolean ready() {
+      return true;
+   }
+
+   /**
+    * This is used to close the reader. As the reader holds no other
+    * resources than the sequence this does nothing.
+    */
+   public void close() {
+   }
+}
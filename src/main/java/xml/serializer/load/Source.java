@@ -22,8 +22,11 @@ package xml.serializer.load;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -61,6 +64,26 @@ final class Source {
       cache = new SchemaCache();           
    }
 
+   /**
+    * This contains the segments deferred until the XML is printed.
+    */
+   private List<Segment> segments;
+
+   /**
+    * This describes how large element lists are to be processed.
+    */
+   private Parallel parallel;
+
+   /**
+    * This is used to resolve repeated strings, this may be null.
+    */
+   private Intern intern;
+
+   /**
+    * This tracks the composites written and read, if enabled.
+    */
+   private Graph graph;
+
    /**
     * This is used as a factory for creating DOM element objects.
     */
@@ -76,9 +99,154 @@ final class Source {
     * @param root this is the document object used in serialization
     */
    public Source(Document root) {
+      this(root, null);
+   }
+
+   /**
+    * Constructor for the <code>Source</code> object. This is used to
+    * maintain a context during the serialization process. It holds 
+    * the <code>Document</code> used in the serialization process as
+    * well as the configuration used to process large element lists
+    * with multiple threads, which may be null if not required.
+    * 
+    * @param root this is the document object used in serialization
+    * @param parallel this describes how large lists are processed
+    */
+   public Source(Document root, Parallel parallel) {
+      this(root, parallel, false);
+   }
+
+   /**
+    * Constructor for the <code>Source</code> object. This is used to
+    * maintain a context during the serialization process. If this is
+    * segmented then large element lists are not written to the DOM
+    * document, instead they are deferred as a <code>Segment</code>
+    * which is serialized in parallel when the XML is printed.
+    * 
+    * @param root this is the document object used in serialization
+    * @param parallel this describes how large lists are processed
+    * @param segmented determines if large lists are deferred
+    */
+   public Source(Document root, Parallel parallel, boolean segmented) {
+      this(root, parallel, segmented, null);
+   }
+
+   /**
+    * Constructor for the <code>Source</code> object. This is used to
+    * maintain a context during the serialization process. If a cycle
+    * configuration is given then composites are tracked as they are
+    * written and read, so that each composite is written only once.
+    * 
+    * @param root this is the document object used in serialization
+    * @param parallel this describes how large lists are processed
+    * @param segmented determines if large lists are deferred
+    * @param cycle this enables references between composites
+    */
+   public Source(Document root, Parallel parallel, boolean segmented, Cycle cycle) {
+      this(root, parallel, segmented, cycle, null);
+   }
+
+   /**
+    * Constructor for the <code>Source</code> object. This is used to
+    * maintain a context during the serialization process. If an intern
+    * cache is given then the string values read for every field are
+    * resolved using the cache, so repeated values share an instance.
+    * 
+    * @param root this is the document object used in serialization
+    * @param parallel this describes how large lists are processed
+    * @param segmented determines if large lists are deferred
+    * @param cycle this enables references between composites
+    * @param intern this is used to resolve repeated strings
+    */
+   public Source(Document root, Parallel parallel, boolean segmented, Cycle cycle, Intern intern) {
+      this.segments = segmented ? new ArrayList<Segment>() : null;
+      this.graph = cycle != null ? new Graph(cycle) : null;
+      this.parallel = parallel;
+      this.intern = intern;
       this.root = root;
    }
 
+   /**
+    * This is used to acquire the cache used to resolve the strings
+    * read for a field. If the source was given a cache then it is used
+    * for every field, otherwise a shared cache is used only if the 
+    * field requests interning. If neither is the case this is null.
+    * 
+    * @param field determines if the field requests interning
+    * 
+    * @return this returns the cache used to resolve strings
+    */
+   public Intern getIntern(boolean field) {
+      if(intern == null && field) {
+         return Intern.getDefault();
+      }
+      return intern;
+   }
+
+   /**
+    * This is used to acquire the graph that tracks the composites
+    * written and read. If this returns null then references are not
+    * enabled and every composite is written by value.
+    * 
+    * @return this returns the graph used to track composites
+    */
+   public Graph getGraph() {
+      return graph;
+   }
+
+   /**
+    * This is used to acquire the configuration that describes how
+    * large element lists are processed using multiple threads. If
+    * this returns null then all lists are processed sequentially.
+    * 
+    * @return this returns the parallel configuration to be used
+    */
+   public Parallel getParallel() {
+      return parallel;
+   }
+
+   /**
+    * This determines whether large element lists can be deferred as
+    * segments. Segments can only be used when the XML is written by
+    * a <code>Printer</code>, which replaces the instruction for each
+    * segment with the XML for the list entries it contains.
+    * 
+    * @return true if large element lists are to be deferred
+    */
+   public boolean isSegmented() {
+      return segments != null;
+   }
+
+   /**
+    * This is used to register a segment with this source. The node
+    * returned is a processing instruction that refers to the segment
+    * by its index, this is added to the DOM document in place of the
+    * entries so that the printer knows where they are to be written.
+    * 
+    * @param segment this is the segment that is to be registered
+    * 
+    * @return this returns the node that refers to the segment
+    */
+   public Node getSegment(Segment segment) {
+      String index = String.valueOf(segments.size());
+      
+      segments.add(segment);
+      return root.createProcessingInstruction(Printer.SEGMENT, index);
+   }
+
+   /**
+    * This is used to acquire a segment that has been registered with
+    * this source. The index is the data taken from the instruction
+    * that was added to the DOM document when it was registered.
+    * 
+    * @param index this is the index of the segment to acquire
+    * 
+    * @return this returns the segment registered at the index
+    */
+   public Segment getSegment(int index) {
+      return segments.get(index);
+   }
+
    /**
     * This is used to create <code>Element</code> objects that can
     * be used to build a document when serializing an object. The
@@ -120,12 +288,27 @@ final class Source {
     * @return a new visitor that can track visits within the schema
     */   
    public Visitor getVisitor(Class type) {
+      Schema schema = getSchema(type);
+      return new Visitor(schema);
+   }
+
+   /**
+    * This is used to acquire the <code>Schema</code> for the class.
+    * If the schema has not been built for the type before then it is
+    * created and stored within the shared cache, which ensures that
+    * reflective inspection of a given class is done only once.
+    * 
+    * @param type the schema class the schema is to be acquired for
+    * 
+    * @return this returns the cached schema for the given class
+    */
+   public static Schema getSchema(Class type) {
       Schema schema = cache.get(type);
       
       if(schema == null) {
          schema = new Schema(type);
          cache.put(type, schema);
       }
-      return new Visitor(schema);
+      return schema;
    }
 }
@@ -0,0 +1,85 @@
+/*
+ * TransformerPool.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+
+/**
+ * The <code>TransformerPool</code> object is used to recycle the
+ * transformers that are used to generate XML from a DOM document.
+ * Transformers are created from compiled <code>Templates</code>, which
+ * are thread safe and are shared, and a transformer can not be used
+ * by more than one thread at a time, so they are taken from this pool
+ * for each write rather than being created for each write.
+ *
+ * @see javax.xml.transform.Transformer
+ */
+final class TransformerPool extends Pool<Transformer> {
+
+   /**
+    * This is the compiled output configuration for transformers.
+    */
+   private Templates templates;
+
+   /**
+    * Constructor for the <code>TransformerPool</code> object. This
+    * is given the templates that will be used to create transformers.
+    * Every transformer created will share the same compiled templates.
+    *
+    * @param templates this is used to create the transformers
+    */
+   public TransformerPool(Templates templates) {
+      this.templates = templates;
+   }
+
+   /**
+    * This is used to create a new transformer when the pool is empty.
+    * Templates are thread safe, so creating a transformer requires no
+    * synchronization, this only occurs while the pool is growing to
+    * meet the number of concurrent write operations.
+    *
+    * @return this returns a new transformer from the templates
+    *
+    * @throws Exception thrown if the transformer could not be created
+    */
+   protected Transformer create() throws Exception {
+      return templates.newTransformer();
+   }
+
+   /**
+    * This is used to reset the transformer before it is used by
+    * another thread. Resetting the transformer restores the output
+    * properties of the templates and clears any parameters set.
+    *
+    * @param transformer this is the transformer that is to be reset
+    *
+    * @return true if the transformer was reset and can be reused
+    */
+   protected boolean reset(Transformer transformer) {
+      try {
+         transformer.reset();
+      } catch(UnsupportedOperationException e) {
+         return false;
+      }
+      return true;
+   }
+}
@@ -0,0 +1,120 @@
+/*
+ * Vocabulary.java July 2006
+ *
+ * Copyright (C) 2006, Niall Gallagher <niallg@users.sf.net>
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ */
+
+package xml.serializer.load;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The <code>Vocabulary</code> object is a table of the strings that
+ * have been seen within a binary infoset. The first time a string is
+ * written it is written in full and added to the table, after which
+ * it is written as its index within the table. The reader builds an
+ * identical table as it reads, so the tables are never transmitted.
+ * <p>
+ * The table is bounded, once it is full any further strings are
+ * written in full. Both the writer and the reader stop adding to the
+ * table at the same point, so the indexes always agree.
+ * 
+ * @see xml.serializer.load.InfosetWriter
+ */
+final class Vocabulary {
+
+   /**
+    * This is used to find the index of a string when writing.
+    * It is created on first use, as a reader does not need it.
+    */
+   private Map<String, Integer> index;
+
+   /**
+    * This contains the strings in the order they were added.
+    */
+   private List<String> list;
+
+   /**
+    * This is the maximum number of strings held by the table.
+    */
+   private int capacity;
+
+   /**
+    * Constructor for the <code>Vocabulary</code> object. This creates
+    * a table that will hold at most the given number of strings.
+    * 
+    * @param capacity this is the maximum number of strings held
+    */
+   public Vocabulary(int capacity) {
+      this.list = new ArrayList<String>();
+      this.capacity = capacity;
+   }
+
+   /**
+    * This is used to acquire the index of the string provided. If the
+    * string has not been added to the table this returns minus one.
+    * 
+    * @param text this is the string to acquire the index of
+    * 
+    * @return this returns the index of the string or minus one
+    */
+   public int getIndex(String text) {
+      if(index == null) {
+         index = new HashMap<String, Integer>();
+      }
+      Integer value = index.get(text);
+
+      if(value == null) {
+         return -1;
+      }
+      return value;
+   }
+
+   /**
+    * This is used to acquire the string at the index provided. This
+    * is used by the reader to resolve a reference to a string.
+    * 
+    * @param value this is the index of the string
+    * 
+    * @return this returns the string at the index or null
+    */
+   public String get(int value) {
+      if(value < 0 || value >= list.size()) {
+         return null;
+      }
+      return list.get(value);
+   }
+
+   /**
+    * This is used to add a string to the table. The string is added
+    * only if the table is not full, in which case it can then be 
+    * referenced by the index it was given.
+    * 
+    * @param text this is the string that is to be added
+    */
+   public void add(String text) {
+      if(list.size() < capacity) {
+         if(index != null) {
+            index.put(text, list.size());
+         }
+         list.add(text);
+      }
+   }
+}
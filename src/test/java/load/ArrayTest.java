@@ -0,0 +1,172 @@
+package load;
+
+import junit.framework.TestCase;
+import xml.serializer.Attribute;
+import xml.serializer.Element;
+import xml.serializer.Root;
+import xml.serializer.load.BinaryPersister;
+import xml.serializer.load.Persister;
+import xml.serializer.load.exceptions.ElementException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+public class ArrayTest extends TestCase {
+
+   @Root(name="series")
+   public static class Series {
+
+      @Attribute(name="flags", required=false)
+      private boolean[] flags;
+
+      @Element(name="times")
+      private long[] times;
+
+      @Element(name="values")
+      private double[] values;
+
+      @Element(name="counts")
+      private int[] counts;
+
+      @Element(name="levels", required=false)
+      private float[] levels;
+
+      @Element(name="codes", required=false)
+      private short[] codes;
+
+      @Element(name="data", required=false)
+      private byte[] data;
+   }
+
+   static Series getSeries(int size) {
+      Series series = new Series();
+
+      series.flags = new boolean[] { true, false, true };
+      series.times = new long[size];
+      series.values = new double[size];
+      series.counts = new int[size];
+      series.levels = new float[] { 0.5f, -1.25f, Float.MAX_VALUE };
+      series.codes = new short[] { Short.MIN_VALUE, 0, Short.MAX_VALUE };
+      series.data = new byte[] { Byte.MIN_VALUE, -1, 0, 1, Byte.MAX_VALUE };
+
+      for(int i = 0; i < size; i++) {
+         series.times[i] = 1600000000000L + i * 1000L;
+         series.values[i] = i * 0.1 - 17.5;
+         series.counts[i] = i % 7 == 0 ? Integer.MIN_VALUE : i * 31;
+      }
+      return series;
+   }
+
+   private static void assertSeries(Series expect, Series actual) {
+      assertTrue(Arrays.equals(expect.flags, actual.flags));
+      assertTrue(Arrays.equals(expect.times, actual.times));
+      assertTrue(Arrays.equals(expect.values, actual.values));
+      assertTrue(Arrays.equals(expect.counts, actual.counts));
+      assertTrue(Arrays.equals(expect.levels, actual.levels));
+      assertTrue(Arrays.equals(expect.codes, actual.codes));
+      assertTrue(Arrays.equals(expect.data, actual.data));
+   }
+
+   public void testRoundTrip() throws Exception {
+      Persister persister = new Persister();
+      Series series = getSeries(100);
+      String text = persister.writeString(series);
+
+      assertTrue(text.contains("<counts>" + Integer.MIN_VALUE + " 31 62 "));
+      assertTrue(text.contains("flags=\"true false true\""));
+      assertSeries(series, (Series) persister.read(Series.class, text));
+   }
+
+   public void testEmpty() throws Exception {
+      Persister persister = new Persister();
+      Series series = getSeries(0);
+      Series result = (Series) persister.read(Series.class, persister.writeString(series));
+
+      assertEquals(result.times.length, 0);
+      assertEquals(result.counts.length, 0);
+      assertSeries(series, result);
+   }
+
+   public void testWhitespace() throws Exception {
+      Persister persister = new Persister();
+      String text = "<series>" +
+                    "  <times>\n  1 \t 2\r\n3   </times>" +
+                    "  <values>1.5e3 -0.25 NaN</values>" +
+                    "  <counts> -2147483648 +7 </counts>" +
+                    "</series>";
+      Series result = (Series) persister.read(Series.class, text);
+
+      assertTrue(Arrays.equals(result.times, new long[] { 1, 2, 3 }));
+      assertTrue(Arrays.equals(result.values, new double[] { 1500.0, -0.25, Double.NaN }));
+      assertTrue(Arrays.equals(result.counts, new int[] { Integer.MIN_VALUE, 7 }));
+      assertNull(result.levels);
+   }
+
+   public void testChildElements() throws Exception {
+      Persister persister = new Persister();
+      String text = "<series>" +
+                    "  <times><time>10</time><time> 20 </time></times>" +
+                    "  <values><v>0.5</v></values>" +
+                    "  <counts></counts>" +
+                    "  <codes><code>-3</code><code>4</code></codes>" +
+                    "</series>";
+      Series result = (Series) persister.read(Series.class, text);
+
+      assertTrue(Arrays.equals(result.times, new long[] { 10, 20 }));
+      assertTrue(Arrays.equals(result.values, new double[] { 0.5 }));
+      assertTrue(Arrays.equals(result.counts, new int[0]));
+      assertTrue(Arrays.equals(result.codes, new short[] { -3, 4 }));
+   }
+
+   public void testInvalid() throws Exception {
+      Persister persister = new Persister();
+
+      try {
+         persister.read(Series.class, "<series><times><t/></times><values/><counts/></series>");
+         fail("Child element without a value should fail");
+      } catch(ElementException e) {
+         assertTrue(e.getMessage().contains("no value"));
+      }
+      try {
+         persister.read(Series.class, "<series><times>1</times><values/><counts>1 x</counts></series>");
+         fail("Value that is not a number should fail");
+      } catch(NumberFormatException e) {
+         assertNotNull(e.getMessage());
+      }
+      try {
+         persister.read(Series.class, "<series><times/><values/><counts/><data>128</data></series>");
+         fail("Value out of range should fail");
+      } catch(NumberFormatException e) {
+         assertNotNull(e.getMessage());
+      }
+   }
+
+   public void testBinary() throws Exception {
+      BinaryPersister persister = new BinaryPersister();
+      BinaryPersister shared = new BinaryPersister(true);
+      Series series = getSeries(100);
+
+      assertSeries(series, (Series) persister.read(Series.class, persister.write(series)));
+      assertSeries(series, (Series) shared.read(Series.class, shared.write(series)));
+   }
+
+   public void testDelta() throws Exception {
+      Persister persister = new Persister();
+      Series baseline = getSeries(100);
+      Series current = getSeries(100);
+
+      current.counts[50] = -1;
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+      persister.writeDelta(baseline, current, out);
+
+      String text = out.toString("UTF-8");
+      Series result = (Series) persister.applyDelta(baseline, new ByteArrayInputStream(out.toByteArray()));
+
+      assertFalse(text.contains("<times>"));
+      assertTrue(text.contains("<counts>"));
+      assertSeries(current, result);
+   }
+}
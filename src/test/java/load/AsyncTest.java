@@ -0,0 +1,126 @@
+package load;
+
+import junit.framework.TestCase;
+import xml.serializer.Attribute;
+import xml.serializer.Element;
+import xml.serializer.Root;
+import xml.serializer.load.Persister;
+import xml.serializer.load.exceptions.AttributeException;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class AsyncTest extends TestCase {
+
+   @Root(name="entry")
+   public static class Entry {
+
+      @Attribute(name="id")
+      private int id;
+
+      @Element(name="text")
+      private String text;
+
+      public Entry() {
+         super();
+      }
+
+      public Entry(int id) {
+         this.text = "entry " + id;
+         this.id = id;
+      }
+   }
+
+   private Path directory;
+
+   public void setUp() throws Exception {
+      directory = Files.createTempDirectory("async");
+   }
+
+   public void tearDown() throws Exception {
+      for(File file : directory.toFile().listFiles()) {
+         file.delete();
+      }
+      Files.delete(directory);
+   }
+
+   public void testReadWrite() throws Exception {
+      List<CompletableFuture> futures = new ArrayList<CompletableFuture>();
+      ExecutorService executor = Executors.newFixedThreadPool(4);
+      Persister persister = new Persister();
+
+      try {
+         for(int i = 0; i < 200; i++) {
+            futures.add(persister.writeAsync(new Entry(i), directory.resolve(i + ".xml"), executor));
+         }
+         for(CompletableFuture future : futures) {
+            assertNotNull(future.get());
+         }
+         futures.clear();
+
+         for(int i = 0; i < 200; i++) {
+            futures.add(persister.readAsync(Entry.class, directory.resolve(i + ".xml"), executor));
+         }
+         for(int i = 0; i < 200; i++) {
+            Entry entry = (Entry) futures.get(i).get();
+
+            assertEquals(entry.id, i);
+            assertEquals(entry.text, "entry " + i);
+         }
+      } finally {
+         executor.shutdown();
+      }
+   }
+
+   public void testLargeFile() throws Exception {
+      Path path = directory.resolve("large.xml");
+      StringBuilder text = new StringBuilder();
+      Persister persister = new Persister();
+
+      for(int i = 0; i < 100000; i++) {
+         text.append("entry ").append(i);
+      }
+      Entry entry = new Entry(1);
+      entry.text = text.toString();
+
+      persister.writeAsync(entry, path).get();
+      Entry result = (Entry) persister.readAsync(Entry.class, path).get();
+
+      assertEquals(result.text, entry.text);
+   }
+
+   public void testMissingFile() throws Exception {
+      Persister persister = new Persister();
+      Throwable cause = null;
+
+      try {
+         persister.readAsync(Entry.class, directory.resolve("missing.xml")).get();
+      } catch(ExecutionException e) {
+         cause = e.getCause();
+      }
+      assertTrue(cause instanceof NoSuchFileException);
+   }
+
+   public void testInvalidFile() throws Exception {
+      Path path = directory.resolve("invalid.xml");
+      Persister persister = new Persister();
+      Throwable cause = null;
+
+      Files.write(path, "<entry id='1' extra='2'><text>text</text></entry>".getBytes("utf-8"));
+
+      try {
+         persister.readAsync(Entry.class, path).get();
+      } catch(ExecutionException e) {
+         cause = e.getCause();
+      }
+      assertTrue(cause instanceof AttributeException);
+   }
+}
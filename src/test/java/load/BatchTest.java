@@ -0,0 +1,151 @@
+package load;
+
+import junit.framework.TestCase;
+import xml.serializer.Attribute;
+import xml.serializer.Element;
+import xml.serializer.Root;
+import xml.serializer.load.Outcome;
+import xml.serializer.load.Persister;
+import xml.serializer.load.exceptions.AttributeException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BatchTest extends TestCase {
+
+   private static final int SIZE = 2000;
+
+   @Root(name="entry")
+   public static class Entry {
+
+      @Attribute(name="id")
+      private int id;
+
+      @Element(name="text")
+      private String text;
+
+      public Entry() {
+         super();
+      }
+
+      public Entry(int id) {
+         this.text = "entry " + id;
+         this.id = id;
+      }
+   }
+
+   public static class Invalid {
+   }
+
+   private static String getEntry(int id) {
+      return "<entry id='" + id + "'><text>entry " + id + "</text></entry>";
+   }
+
+   public void testReadAll() throws Exception {
+      List<Object> sources = new ArrayList<Object>();
+      Persister persister = new Persister();
+
+      for(int i = 0; i < SIZE; i++) {
+         if(i == 700) {
+            sources.add(new StringReader("<entry id='700' extra='true'><text>entry 700</text></entry>"));
+         } else if(i % 2 == 0) {
+            sources.add(new StringReader(getEntry(i)));
+         } else {
+            sources.add(new ByteArrayInputStream(getEntry(i).getBytes("utf-8")));
+         }
+      }
+      List<Outcome> list = persister.readAll(Entry.class, sources, 16);
+
+      assertEquals(list.size(), SIZE);
+
+      for(int i = 0; i < SIZE; i++) {
+         Outcome outcome = list.get(i);
+
+         if(i == 700) {
+            assertFalse(outcome.isSuccess());
+            assertTrue(outcome.getError() instanceof AttributeException);
+         } else {
+            Entry entry = (Entry) outcome.getValue();
+
+            assertTrue(outcome.isSuccess());
+            assertEquals(entry.id, i);
+            assertEquals(entry.text, "entry " + i);
+         }
+      }
+   }
+
+   public void testFiles() throws Exception {
+      Path directory = Files.createTempDirectory("batch");
+      List<Object> sources = new ArrayList<Object>();
+      List<Object> targets = new ArrayList<Object>();
+      Persister persister = new Persister();
+
+      try {
+         for(int i = 0; i < 100; i++) {
+            Path path = directory.resolve("entry" + i + ".xml");
+
+            sources.add(i == 50 ? new Invalid() : new Entry(i));
+            targets.add(i % 2 == 0 ? path : path.toFile());
+         }
+         List<Outcome> written = persister.writeAll(sources, targets);
+         List<Outcome> read = persister.readAll(Entry.class, targets);
+
+         for(int i = 0; i < 100; i++) {
+            if(i == 50) {
+               assertFalse(written.get(i).isSuccess());
+               assertFalse(read.get(i).isSuccess());
+            } else {
+               assertTrue(written.get(i).isSuccess());
+               assertEquals(((Entry) read.get(i).getValue()).id, i);
+            }
+         }
+      } finally {
+         for(File file : directory.toFile().listFiles()) {
+            file.delete();
+         }
+         Files.delete(directory);
+      }
+   }
+
+   public void testWriteAll() throws Exception {
+      List<Object> sources = new ArrayList<Object>();
+      List<Object> targets = new ArrayList<Object>();
+      Persister persister = new Persister();
+
+      for(int i = 0; i < SIZE; i++) {
+         sources.add(new Entry(i));
+         targets.add(i % 2 == 0 ? new StringWriter() : new ByteArrayOutputStream());
+      }
+      List<Outcome> list = persister.writeAll(sources, targets, 32);
+
+      for(int i = 0; i < SIZE; i++) {
+         Object target = targets.get(i);
+         String text = target.toString();
+
+         assertTrue(list.get(i).isSuccess());
+         assertEquals(((Entry) persister.read(Entry.class, new StringReader(text))).id, i);
+      }
+   }
+
+   public void testMismatch() throws Exception {
+      List<Object> sources = new ArrayList<Object>();
+      Persister persister = new Persister();
+      boolean fail = false;
+
+      sources.add(new Entry(1));
+
+      try {
+         persister.writeAll(sources, new ArrayList<Object>());
+      } catch(IllegalArgumentException e) {
+         fail = true;
+      }
+      assertTrue(fail);
+   }
+}
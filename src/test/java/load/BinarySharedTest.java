@@ -0,0 +1,155 @@
+package load;
+
+import junit.framework.TestCase;
+import xml.serializer.Attribute;
+import xml.serializer.Element;
+import xml.serializer.ElementList;
+import xml.serializer.Root;
+import xml.serializer.load.BinaryPersister;
+import xml.serializer.load.exceptions.PersistenceException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BinarySharedTest extends TestCase {
+
+   private static final String[] CURRENCIES = {"EUR", "USD", "GBP", "JPY"};
+
+   private static final String[] STATUSES = {"SETTLED", "PENDING", "REJECTED"};
+
+   @Root(name="ledger")
+   public static class Ledger {
+
+      @Attribute(name="owner")
+      private String owner;
+
+      @ElementList(name="entries", type=Posting.class)
+      private List entries;
+   }
+
+   @Root(name="posting")
+   public static class Posting {
+
+      @Attribute(name="currency")
+      private String currency;
+
+      @Attribute(name="status")
+      private String status;
+
+      @Element(name="memo")
+      private String memo;
+
+      @Element(name="amount")
+      private long amount;
+   }
+
+   @Root(name="ledger")
+   public static class Summary {
+
+      @Attribute(name="owner")
+      private String owner;
+
+      @ElementList(name="entries", type=Total.class)
+      private List entries;
+   }
+
+   @Root(name="posting")
+   public static class Total {
+
+      @Attribute(name="status")
+      private String status;
+
+      @Element(name="amount")
+      private long amount;
+   }
+
+   static Ledger getLedger(int size) {
+      Ledger ledger = new Ledger();
+      StringBuilder builder = new StringBuilder();
+
+      for(int i = 0; i < 100; i++) {
+         builder.append('x');
+      }
+      ledger.owner = "treasury";
+      ledger.entries = new ArrayList();
+
+      for(int i = 0; i < size; i++) {
+         Posting posting = new Posting();
+
+         posting.currency = CURRENCIES[i % CURRENCIES.length];
+         posting.status = STATUSES[i % STATUSES.length];
+         posting.memo = i % 10 == 0 ? builder.toString() : "memo-" + (i % 7);
+         posting.amount = i * 100L;
+         ledger.entries.add(posting);
+      }
+      return ledger;
+   }
+
+   public void testRoundTrip() throws Exception {
+      BinaryPersister persister = new BinaryPersister(true);
+      Ledger ledger = (Ledger) persister.read(Ledger.class, persister.write(getLedger(100)));
+      Ledger expect = getLedger(100);
+
+      assertEquals(ledger.owner, "treasury");
+      assertEquals(ledger.entries.size(), 100);
+
+      for(int i = 0; i < 100; i++) {
+         Posting left = (Posting) expect.entries.get(i);
+         Posting right = (Posting) ledger.entries.get(i);
+
+         assertEquals(left.currency, right.currency);
+         assertEquals(left.status, right.status);
+         assertEquals(left.memo, right.memo);
+         assertEquals(left.amount, right.amount);
+      }
+   }
+
+   public void testSharedInstances() throws Exception {
+      BinaryPersister persister = new BinaryPersister(true);
+      Ledger ledger = (Ledger) persister.read(Ledger.class, persister.write(getLedger(100)));
+      Posting first = (Posting) ledger.entries.get(0);
+      Posting other = (Posting) ledger.entries.get(12);
+
+      assertSame(first.currency, other.currency);
+      assertSame(first.status, other.status);
+      assertNotSame(first.memo, ((Posting) ledger.entries.get(10)).memo);
+   }
+
+   public void testReadEither() throws Exception {
+      BinaryPersister plain = new BinaryPersister();
+      BinaryPersister shared = new BinaryPersister(true);
+      Ledger ledger = getLedger(1000);
+      byte[] full = plain.write(ledger);
+      byte[] table = shared.write(ledger);
+
+      assertTrue(table.length * 3 < full.length * 2);
+      assertEquals(((Ledger) shared.read(Ledger.class, full)).entries.size(), 1000);
+      assertEquals(((Ledger) plain.read(Ledger.class, table)).entries.size(), 1000);
+   }
+
+   public void testSkipShared() throws Exception {
+      BinaryPersister persister = new BinaryPersister(true);
+      Summary summary = (Summary) persister.read(Summary.class, persister.write(getLedger(30)));
+
+      for(int i = 0; i < 30; i++) {
+         Total total = (Total) summary.entries.get(i);
+
+         assertEquals(total.status, STATUSES[i % STATUSES.length]);
+         assertEquals(total.amount, i * 100L);
+      }
+   }
+
+   public void testMissingTable() throws Exception {
+      BinaryPersister persister = new BinaryPersister(true);
+      byte[] data = persister.write(getLedger(10));
+
+      data[4] = 0;
+
+      try {
+         persister.read(Ledger.class, data);
+         fail("Shared strings without a value table");
+      } catch(PersistenceException e) {
+         assertNotNull(e.getMessage());
+      }
+   }
+}
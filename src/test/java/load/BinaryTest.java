@@ -0,0 +1,283 @@
+package load;
+
+import junit.framework.TestCase;
+import xml.serializer.Attribute;
+import xml.serializer.Element;
+import xml.serializer.ElementList;
+import xml.serializer.Root;
+import xml.serializer.load.BinaryPersister;
+import xml.serializer.load.Persister;
+import xml.serializer.load.exceptions.ElementException;
+import xml.serializer.load.exceptions.FieldRequiredException;
+import xml.serializer.load.exceptions.InstantiationException;
+import xml.serializer.load.exceptions.PersistenceException;
+import xml.serializer.load.exceptions.RootException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+
+public class BinaryTest extends TestCase {
+
+   private static boolean loaded;
+
+   public enum Status {
+      ACTIVE,
+      SUSPENDED,
+      CLOSED
+   }
+
+   @Root(name="account")
+   public static class Account {
+
+      @Attribute(name="id")
+      private long id;
+
+      @Attribute(name="enabled")
+      private boolean enabled;
+
+      @Attribute(name="status")
+      private Status status;
+
+      @Element(name="owner")
+      private String owner;
+
+      @Element(name="balance")
+      private float balance;
+
+      @Element(name="level")
+      private int level;
+
+      @Element(name="note", required=false)
+      private String note;
+
+      @Element(name="address")
+      private Address address;
+
+      @ElementList(name="transactions", type=Transaction.class)
+      private List transactions;
+   }
+
+   @Root(name="address")
+   public static class Address {
+
+      @Element(name="street")
+      private String street;
+
+      @Element(name="city")
+      private String city;
+   }
+
+   @Root(name="address")
+   public static class PostalAddress extends Address {
+
+      @Element(name="code")
+      private String code;
+   }
+
+   @Root(name="transaction")
+   public static class Transaction {
+
+      @Attribute(name="amount")
+      private int amount;
+
+      @Attribute(name="reference", required=false)
+      private Long reference;
+
+      @Element(name="memo")
+      private String memo;
+   }
+
+   @Root(name="partial")
+   public static class Partial {
+
+      @Attribute(name="id")
+      private long id;
+   }
+
+   public static class Unrooted {
+
+      @Element(name="value")
+      private String value;
+   }
+
+   public static class Tracked extends ArrayList {
+   }
+
+   public static class Trapped extends HashSet {
+
+      static {
+         loaded = true;
+      }
+   }
+
+   static Account getAccount(int size) {
+      Account account = new Account();
+
+      account.id = -4200000000L;
+      account.enabled = true;
+      account.status = Status.SUSPENDED;
+      account.owner = "J\u00fcrgen \u4e2d \ud83d\ude00";
+      account.balance = -12.5f;
+      account.level = 3;
+      account.address = new Address();
+      account.address.street = "1 Main Street";
+      account.address.city = "Dublin";
+      account.transactions = new ArrayList();
+
+      for(int i = 0; i < size; i++) {
+         Transaction transaction = new Transaction();
+
+         transaction.amount = i * 100 - 5000;
+         transaction.reference = i % 3 == 0 ? null : Long.valueOf(i * 1000003L);
+         transaction.memo = "memo " + i;
+         account.transactions.add(transaction);
+      }
+      return account;
+   }
+
+   private static void assertAccount(Account account, int size) {
+      assertEquals(account.id, -4200000000L);
+      assertTrue(account.enabled);
+      assertEquals(account.status, Status.SUSPENDED);
+      assertEquals(account.owner, "J\u00fcrgen \u4e2d \ud83d\ude00");
+      assertEquals(account.balance, -12.5f);
+      assertEquals(account.level, 3);
+      assertNull(account.note);
+      assertEquals(account.address.city, "Dublin");
+      assertEquals(account.transactions.size(), size);
+
+      for(int i = 0; i < size; i++) {
+         Transaction transaction = (Transaction) account.transactions.get(i);
+
+         assertEquals(transaction.amount, i * 100 - 5000);
+         assertEquals(transaction.reference, i % 3 == 0 ? null : Long.valueOf(i * 1000003L));
+         assertEquals(transaction.memo, "memo " + i);
+      }
+   }
+
+   public void testRoundTrip() throws Exception {
+      BinaryPersister persister = new BinaryPersister();
+      byte[] data = persister.write(getAccount(50));
+
+      assertAccount((Account) persister.read(Account.class, data), 50);
+   }
+
+   public void testStream() throws Exception {
+      BinaryPersister persister = new BinaryPersister();
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+      persister.write(getAccount(5), out);
+      assertAccount((Account) persister.read(Account.class, new ByteArrayInputStream(out.toByteArray())), 5);
+   }
+
+   public void testOverride() throws Exception {
+      BinaryPersister persister = new BinaryPersister();
+      Account account = getAccount(3);
+      PostalAddress address = new PostalAddress();
+
+      ((Address) address).street = "2 High Street";
+      ((Address) address).city = "Cork";
+      address.code = "T12";
+      account.address = address;
+      account.transactions = new LinkedList(account.transactions);
+
+      Account result = (Account) persister.read(Account.class, persister.write(account));
+
+      assertTrue(result.address instanceof PostalAddress);
+      assertEquals(((PostalAddress) result.address).code, "T12");
+      assertTrue(result.transactions instanceof LinkedList);
+      assertEquals(result.transactions.size(), 3);
+   }
+
+   public void testOptional() throws Exception {
+      BinaryPersister persister = new BinaryPersister();
+      Account account = getAccount(0);
+
+      account.note = "note";
+      assertEquals(((Account) persister.read(Account.class, persister.write(account))).note, "note");
+   }
+
+   public void testRequired() throws Exception {
+      BinaryPersister persister = new BinaryPersister();
+      Account account = getAccount(1);
+
+      account.owner = null;
+
+      try {
+         persister.write(account);
+         fail("Null required element should fail");
+      } catch(ElementException e) {
+         assertTrue(e.getMessage().startsWith("Value for"));
+      }
+      Partial partial = new Partial();
+      byte[] data = persister.write(partial);
+
+      try {
+         persister.read(Account.class, data);
+         fail("Missing required fields should fail");
+      } catch(FieldRequiredException e) {
+         assertTrue(e.getMessage().startsWith("Unable to satisfy"));
+      }
+   }
+
+   public void testInvalid() throws Exception {
+      BinaryPersister persister = new BinaryPersister();
+      byte[] data = persister.write(getAccount(10));
+      byte[] truncated = new byte[data.length / 2];
+
+      System.arraycopy(data, 0, truncated, 0, truncated.length);
+
+      try {
+         persister.read(Account.class, truncated);
+         fail("Truncated document should fail");
+      } catch(PersistenceException e) {
+         assertNotNull(e.getMessage());
+      }
+      try {
+         persister.read(Account.class, "<account/>".getBytes("UTF-8"));
+         fail("XML is not a binary document");
+      } catch(PersistenceException e) {
+         assertNotNull(e.getMessage());
+      }
+      try {
+         persister.write(new Unrooted());
+         fail("Root annotation is required");
+      } catch(RootException e) {
+         assertNotNull(e.getMessage());
+      }
+   }
+
+   public void testCollection() throws Exception {
+      BinaryPersister persister = new BinaryPersister();
+      Account account = getAccount(2);
+
+      account.transactions = new Tracked();
+      account.transactions.addAll(getAccount(2).transactions);
+
+      byte[] data = persister.write(account);
+      String text = new String(data, "ISO-8859-1");
+      byte[] trapped = text.replace("Tracked", "Trapped").getBytes("ISO-8859-1");
+
+      assertTrue(((Account) persister.read(Account.class, data)).transactions instanceof Tracked);
+
+      try {
+         persister.read(Account.class, trapped);
+         fail("Collection that is not a list should fail");
+      } catch(InstantiationException e) {
+         assertTrue(e.getMessage().contains("not compatible"));
+      }
+      assertFalse(loaded);
+   }
+
+   public void testSize() throws Exception {
+      Account account = getAccount(100);
+      byte[] data = new BinaryPersister().write(account);
+      byte[] text = new Persister().writeBytes(account);
+
+      assertTrue(data.length * 3 < text.length);
+   }
+}
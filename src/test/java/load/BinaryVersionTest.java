@@ -0,0 +1,236 @@
+package load;
+
+import junit.framework.TestCase;
+import xml.serializer.Attribute;
+import xml.serializer.Element;
+import xml.serializer.ElementList;
+import xml.serializer.Root;
+import xml.serializer.load.BinaryPersister;
+import xml.serializer.load.exceptions.FieldRequiredException;
+import xml.serializer.load.exceptions.PersistenceException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BinaryVersionTest extends TestCase {
+
+   @Root(name="order")
+   public static class OrderOne {
+
+      @Attribute(name="id")
+      private int id;
+
+      @Element(name="name")
+      private String name;
+
+      @Element(name="audit")
+      private Audit audit;
+
+      @Element(name="customer")
+      private CustomerOne customer;
+
+      @ElementList(name="lines", type=LineOne.class)
+      private List lines;
+   }
+
+   @Root(name="order")
+   public static class OrderTwo {
+
+      @Element(name="customer")
+      private CustomerTwo customer;
+
+      @Element(name="comment", required=false)
+      private String comment;
+
+      @ElementList(name="lines", type=LineTwo.class)
+      private List lines;
+
+      @Attribute(name="id")
+      private int id;
+
+      @Attribute(name="channel", required=false)
+      private String channel;
+   }
+
+   @Root(name="order")
+   public static class OrderThree {
+
+      @Attribute(name="id")
+      private int id;
+
+      @Element(name="name")
+      private String name;
+
+      @Element(name="currency")
+      private String currency;
+   }
+
+   @Root(name="audit")
+   public static class Audit {
+
+      @Element(name="user")
+      private String user;
+
+      @ElementList(name="history", type=Audit.class, required=false)
+      private List history;
+   }
+
+   @Root(name="customer")
+   public static class CustomerOne {
+
+      @Attribute(name="code")
+      private String code;
+
+      @Element(name="score")
+      private double score;
+   }
+
+   @Root(name="customer")
+   public static class CustomerTwo {
+
+      @Element(name="score")
+      private double score;
+
+      @Element(name="email", required=false)
+      private String email;
+
+      @Attribute(name="code")
+      private String code;
+   }
+
+   @Root(name="line")
+   public static class LineOne {
+
+      @Attribute(name="sku")
+      private String sku;
+
+      @Element(name="quantity")
+      private long quantity;
+
+      @Element(name="discount", required=false)
+      private Float discount;
+   }
+
+   @Root(name="line")
+   public static class LineTwo {
+
+      @Element(name="quantity")
+      private long quantity;
+
+      @Attribute(name="sku")
+      private String sku;
+
+      @Attribute(name="added", required=false)
+      private String added;
+   }
+
+   static OrderOne getOrder(int size) {
+      OrderOne order = new OrderOne();
+      Audit audit = new Audit();
+      Audit previous = new Audit();
+
+      previous.user = "earlier";
+      audit.user = "auditor";
+      audit.history = new ArrayList();
+      audit.history.add(previous);
+
+      order.id = 7;
+      order.name = "first";
+      order.audit = audit;
+      order.customer = new CustomerOne();
+      order.customer.code = "C-1";
+      order.customer.score = 2.5;
+      order.lines = new ArrayList();
+
+      for(int i = 0; i < size; i++) {
+         LineOne line = new LineOne();
+
+         line.sku = "sku-" + i;
+         line.quantity = i * 1000L;
+         line.discount = i % 2 == 0 ? null : new Float(i);
+         order.lines.add(line);
+      }
+      return order;
+   }
+
+   private static void assertOrder(OrderTwo order, int size) {
+      assertEquals(order.id, 7);
+      assertNull(order.comment);
+      assertNull(order.channel);
+      assertEquals(order.customer.code, "C-1");
+      assertEquals(order.customer.score, 2.5);
+      assertNull(order.customer.email);
+      assertEquals(order.lines.size(), size);
+
+      for(int i = 0; i < size; i++) {
+         LineTwo line = (LineTwo) order.lines.get(i);
+
+         assertEquals(line.sku, "sku-" + i);
+         assertEquals(line.quantity, i * 1000L);
+         assertNull(line.added);
+      }
+   }
+
+   public void testSameVersion() throws Exception {
+      BinaryPersister persister = new BinaryPersister();
+      OrderOne order = (OrderOne) persister.read(OrderOne.class, persister.write(getOrder(10)));
+
+      assertEquals(order.name, "first");
+      assertEquals(order.audit.user, "auditor");
+      assertEquals(((Audit) order.audit.history.get(0)).user, "earlier");
+      assertEquals(order.lines.size(), 10);
+      assertEquals(((LineOne) order.lines.get(3)).discount, new Float(3));
+   }
+
+   public void testEvolved() throws Exception {
+      BinaryPersister persister = new BinaryPersister();
+      byte[] data = persister.write(getOrder(10));
+
+      assertOrder((OrderTwo) persister.read(OrderTwo.class, data), 10);
+      assertOrder((OrderTwo) persister.read(OrderTwo.class, data), 10);
+   }
+
+   public void testEvolvedBack() throws Exception {
+      BinaryPersister persister = new BinaryPersister();
+      OrderTwo order = new OrderTwo();
+
+      order.id = 3;
+      order.channel = "web";
+      order.customer = new CustomerTwo();
+      order.customer.code = "C-2";
+      order.customer.email = "someone@example.com";
+      order.lines = new ArrayList();
+
+      try {
+         persister.read(OrderOne.class, persister.write(order));
+         fail("Required fields added since the document was written");
+      } catch(FieldRequiredException e) {
+         assertTrue(e.getMessage().indexOf("name") != -1);
+      }
+   }
+
+   public void testAddedRequired() throws Exception {
+      BinaryPersister persister = new BinaryPersister();
+
+      try {
+         persister.read(OrderThree.class, persister.write(getOrder(2)));
+         fail("Required field is not in the written schema");
+      } catch(FieldRequiredException e) {
+         assertTrue(e.getMessage().indexOf("currency") != -1);
+      }
+   }
+
+   public void testCorruptDescription() throws Exception {
+      BinaryPersister persister = new BinaryPersister();
+      byte[] data = persister.write(getOrder(2));
+
+      data[6] ^= 1;
+
+      try {
+         persister.read(OrderTwo.class, data);
+         fail("Fingerprint does not match the description");
+      } catch(PersistenceException e) {
+         assertNotNull(e.getMessage());
+      }
+   }
+}
@@ -0,0 +1,120 @@
+package load;
+
+import junit.framework.TestCase;
+import xml.serializer.Attribute;
+import xml.serializer.Element;
+import xml.serializer.ElementList;
+import xml.serializer.Root;
+import xml.serializer.load.Format;
+import xml.serializer.load.Persister;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class BufferTest extends TestCase {
+
+   @Root(name="response")
+   public static class Response {
+
+      @Attribute(name="status")
+      private int status;
+
+      @ElementList(name="items", type=Item.class)
+      private List items;
+   }
+
+   @Root(name="item")
+   public static class Item {
+
+      @Attribute(name="key")
+      private String key;
+
+      @Element(name="value")
+      private String value;
+   }
+
+   static Response getResponse(int size) {
+      Response response = new Response();
+
+      response.status = 200;
+      response.items = new ArrayList();
+
+      for(int i = 0; i < size; i++) {
+         Item item = new Item();
+
+         item.key = "key" + i;
+         item.value = "value \u00e9 & " + i;
+         response.items.add(item);
+      }
+      return response;
+   }
+
+   public void testBytes() throws Exception {
+      Persister persister = new Persister(new Format(2));
+
+      for(int size = 0; size < 2000; size += 97) {
+         Response response = getResponse(size);
+         ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+         persister.write(response, out);
+         assertTrue(Arrays.equals(persister.writeBytes(response), out.toByteArray()));
+      }
+   }
+
+   public void testString() throws Exception {
+      Persister persister = new Persister();
+
+      for(int size = 2000; size > 0; size -= 97) {
+         Response response = getResponse(size);
+         StringWriter out = new StringWriter();
+
+         persister.write(response, out);
+         assertEquals(persister.writeString(response), out.toString());
+      }
+   }
+
+   public void testReadBack() throws Exception {
+      Persister persister = new Persister();
+      String text = persister.writeString(getResponse(50));
+      Response response = (Response) persister.read(Response.class, new StringReader(text));
+
+      assertEquals(response.items.size(), 50);
+      assertEquals(((Item) response.items.get(49)).value, "value \u00e9 & 49");
+   }
+
+   public void testConcurrent() throws Exception {
+      final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+      final Persister persister = new Persister();
+      final String expect = persister.writeString(getResponse(100));
+      Thread[] threads = new Thread[8];
+
+      for(int i = 0; i < threads.length; i++) {
+         threads[i] = new Thread() {
+            public void run() {
+               try {
+                  for(int j = 0; j < 200; j++) {
+                     Response response = getResponse(j % 2 == 0 ? 100 : 10);
+                     String text = persister.writeString(response);
+
+                     if(j % 2 == 0) {
+                        assertEquals(text, expect);
+                     }
+                  }
+               } catch(Throwable e) {
+                  error.set(e);
+               }
+            }
+         };
+         threads[i].start();
+      }
+      for(Thread thread : threads) {
+         thread.join();
+      }
+      assertNull(error.get());
+   }
+}
@@ -0,0 +1,234 @@
+package load;
+
+import junit.framework.TestCase;
+import org.w3c.dom.Document;
+import xml.serializer.Attribute;
+import xml.serializer.Element;
+import xml.serializer.Root;
+import xml.serializer.Serializer;
+import xml.serializer.load.Persister;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.channels.Pipe;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+public class ChannelTest extends TestCase {
+
+   private static final String SOURCE =
+   "<?xml version='1.0' encoding='UTF-8'?>\n"+
+   "<entry id='12'>\n"+
+   "   <text>some example text &amp; more</text>\n"+
+   "</entry>";
+
+   @Root(name="entry")
+   public static class Entry {
+
+      @Attribute(name="id")
+      private int id;
+
+      @Element(name="text")
+      private String text;
+   }
+
+   public static class Delegate implements Serializer {
+
+      private Persister persister = new Persister();
+
+      public Object read(Class type, Document source) throws Exception {
+         return persister.read(type, source);
+      }
+
+      public Object read(Class type, File source) throws Exception {
+         return persister.read(type, source);
+      }
+
+      public Object read(Class type, InputStream source) throws Exception {
+         return persister.read(type, source);
+      }
+
+      public Object read(Class type, InputStream source, String charset) throws Exception {
+         return persister.read(type, source, charset);
+      }
+
+      public Object read(Class type, Reader source) throws Exception {
+         return persister.read(type, source);
+      }
+
+      public Document write(Object source) throws Exception {
+         return persister.write(source);
+      }
+
+      public Document write(Object source, File out) throws Exception {
+         return persister.write(source, out);
+      }
+
+      public Document write(Object source, OutputStream out) throws Exception {
+         return persister.write(source, out);
+      }
+
+      public Document write(Object source, OutputStream out, String charset) throws Exception {
+         return persister.write(source, out, charset);
+      }
+
+      public Document write(Object source, Writer out) throws Exception {
+         return persister.write(source, out);
+      }
+   }
+
+   private static ByteBuffer getDirect(byte[] data) {
+      ByteBuffer buffer = ByteBuffer.allocateDirect(data.length + 10);
+
+      buffer.position(10);
+      buffer.put(data);
+      buffer.position(10);
+      return buffer;
+   }
+
+   private void validate(Entry entry) {
+      assertEquals(entry.id, 12);
+      assertEquals(entry.text, "some example text & more");
+   }
+
+   public void testReadChannel() throws Exception {
+      Persister persister = new Persister();
+      byte[] data = SOURCE.getBytes("utf-8");
+
+      validate((Entry) persister.read(Entry.class, Channels.newChannel(new ByteArrayInputStream(data))));
+   }
+
+   public void testReadBuffer() throws Exception {
+      Persister persister = new Persister();
+      byte[] data = SOURCE.getBytes("utf-8");
+      ByteBuffer direct = getDirect(data);
+
+      validate((Entry) persister.read(Entry.class, ByteBuffer.wrap(data)));
+      validate((Entry) persister.read(Entry.class, direct));
+      assertEquals(direct.position(), 10);
+   }
+
+   public void testWriteBuffer() throws Exception {
+      Persister persister = new Persister();
+      Entry entry = (Entry) persister.read(Entry.class, ByteBuffer.wrap(SOURCE.getBytes("utf-8")));
+      ByteBuffer buffer = ByteBuffer.allocateDirect(4096);
+
+      persister.write(entry, buffer);
+      assertTrue(buffer.position() > 0);
+      buffer.flip();
+
+      validate((Entry) persister.read(Entry.class, buffer));
+   }
+
+   public void testWriteChannel() throws Exception {
+      Path path = Files.createTempFile("channel", ".xml");
+      Persister persister = new Persister();
+      Entry entry = (Entry) persister.read(Entry.class, ByteBuffer.wrap(SOURCE.getBytes("utf-8")));
+
+      try {
+         FileChannel out = FileChannel.open(path, WRITE);
+
+         try {
+            persister.write(entry, out);
+            assertTrue(out.isOpen());
+         } finally {
+            out.close();
+         }
+         FileChannel in = FileChannel.open(path, READ);
+
+         try {
+            validate((Entry) persister.read(Entry.class, in));
+         } finally {
+            in.close();
+         }
+      } finally {
+         Files.delete(path);
+      }
+   }
+
+   public void testOverflow() throws Exception {
+      Persister persister = new Persister();
+      Entry entry = (Entry) persister.read(Entry.class, ByteBuffer.wrap(SOURCE.getBytes("utf-8")));
+      ByteArrayOutputStream expect = new ByteArrayOutputStream();
+      boolean overflow = false;
+
+      persister.write(entry, expect);
+
+      try {
+         persister.write(entry, ByteBuffer.allocate(expect.size() - 1));
+      } catch(Exception e) {
+         for(Throwable cause = e; cause != null; cause = cause.getCause()) {
+            overflow |= cause instanceof BufferOverflowException;
+         }
+      }
+      assertTrue(overflow);
+   }
+
+   public void testNonBlocking() throws Exception {
+      Persister persister = new Persister();
+      Entry entry = (Entry) persister.read(Entry.class, ByteBuffer.wrap(SOURCE.getBytes("utf-8")));
+      Pipe pipe = Pipe.open();
+      boolean rejected = false;
+
+      pipe.sink().configureBlocking(false);
+      pipe.source().configureBlocking(false);
+
+      try {
+         try {
+            persister.write(entry, pipe.sink());
+         } catch(Exception e) {
+            for(Throwable cause = e; cause != null; cause = cause.getCause()) {
+               rejected |= cause instanceof IllegalBlockingModeException;
+            }
+         }
+         assertTrue(rejected);
+         rejected = false;
+
+         try {
+            persister.read(Entry.class, pipe.source());
+         } catch(Exception e) {
+            for(Throwable cause = e; cause != null; cause = cause.getCause()) {
+               rejected |= cause instanceof IllegalBlockingModeException;
+            }
+         }
+         assertTrue(rejected);
+      } finally {
+         pipe.sink().close();
+         pipe.source().close();
+      }
+   }
+
+   public void testDefault() throws Exception {
+      Serializer serializer = new Delegate();
+      byte[] data = SOURCE.getBytes("utf-8");
+      ByteBuffer direct = getDirect(data);
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+      validate((Entry) serializer.read(Entry.class, Channels.newChannel(new ByteArrayInputStream(data))));
+      validate((Entry) serializer.read(Entry.class, direct));
+      assertEquals(direct.position(), 10);
+
+      Entry entry = (Entry) serializer.read(Entry.class, ByteBuffer.wrap(data));
+      ByteBuffer buffer = ByteBuffer.allocate(4096);
+
+      serializer.write(entry, Channels.newChannel(out));
+      serializer.write(entry, buffer);
+      buffer.flip();
+
+      validate((Entry) serializer.read(Entry.class, new ByteArrayInputStream(out.toByteArray())));
+      validate((Entry) serializer.read(Entry.class, buffer));
+   }
+}
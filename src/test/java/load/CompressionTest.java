@@ -0,0 +1,182 @@
+package load;
+
+import junit.framework.TestCase;
+import xml.serializer.Attribute;
+import xml.serializer.Element;
+import xml.serializer.ElementList;
+import xml.serializer.Root;
+import xml.serializer.load.Compression;
+import xml.serializer.load.Format;
+import xml.serializer.load.Options;
+import xml.serializer.load.Persister;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class CompressionTest extends TestCase {
+
+   @Root(name="catalog")
+   public static class Catalog {
+
+      @Attribute(name="name")
+      private String name;
+
+      @ElementList(name="products", type=Product.class)
+      private List products;
+   }
+
+   @Root(name="product")
+   public static class Product {
+
+      @Attribute(name="id")
+      private int id;
+
+      @Element(name="title")
+      private String title;
+
+      @Element(name="price")
+      private double price;
+   }
+
+   static Catalog getCatalog(int size) {
+      Catalog catalog = new Catalog();
+
+      catalog.name = "catalog \u00e9";
+      catalog.products = new ArrayList();
+
+      for(int i = 0; i < size; i++) {
+         Product product = new Product();
+
+         product.id = i;
+         product.title = "product & " + (i * 7919 % 1000);
+         product.price = i * 1.25;
+         catalog.products.add(product);
+      }
+      return catalog;
+   }
+
+   private static byte[] getPlain(Object value) throws Exception {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+      new Persister(new Format(3)).write(value, out);
+      return out.toByteArray();
+   }
+
+   private static byte[] getCompressed(Object value, Compression compression) throws Exception {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+      getPersister(new Format(3), compression).write(value, out);
+      return out.toByteArray();
+   }
+
+   private static byte[] inflate(byte[] data) throws Exception {
+      InputStream in = new GZIPInputStream(new ByteArrayInputStream(data));
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int count;
+
+      while((count = in.read(buffer)) != -1) {
+         out.write(buffer, 0, count);
+      }
+      return out.toByteArray();
+   }
+
+   private static void assertCatalog(Catalog catalog, int size) {
+      assertEquals(catalog.name, "catalog \u00e9");
+      assertEquals(catalog.products.size(), size);
+
+      for(int i = 0; i < size; i++) {
+         Product product = (Product) catalog.products.get(i);
+
+         assertEquals(product.id, i);
+         assertEquals(product.title, "product & " + (i * 7919 % 1000));
+      }
+   }
+
+   private static Persister getPersister(Format format, Compression compression) {
+      Options options = new Options();
+
+      options.setCompression(compression);
+      return new Persister(format, options);
+   }
+
+   public void testSmallDocument() throws Exception {
+      Catalog catalog = getCatalog(3);
+      byte[] data = getCompressed(catalog, new Compression());
+
+      assertEquals(data[0], (byte) 0x1f);
+      assertEquals(data[1], (byte) 0x8b);
+      assertTrue(Arrays.equals(inflate(data), getPlain(catalog)));
+   }
+
+   public void testEmptyBlock() throws Exception {
+      Catalog catalog = getCatalog(0);
+      byte[] plain = getPlain(catalog);
+      byte[] data = getCompressed(catalog, new Compression(6, plain.length < 1024 ? 1024 : plain.length));
+
+      assertTrue(Arrays.equals(inflate(data), plain));
+   }
+
+   public void testMultipleBlocks() throws Exception {
+      Catalog catalog = getCatalog(5000);
+      byte[] plain = getPlain(catalog);
+
+      for(int block = 1024; block < plain.length; block *= 4) {
+         byte[] data = getCompressed(catalog, new Compression(6, block));
+
+         assertTrue(Arrays.equals(inflate(data), plain));
+      }
+   }
+
+   public void testRatio() throws Exception {
+      Catalog catalog = getCatalog(5000);
+      byte[] plain = getPlain(catalog);
+      byte[] single = getCompressed(catalog, new Compression(6, plain.length + 1));
+      byte[] blocks = getCompressed(catalog, new Compression(6, 16384));
+
+      assertTrue(blocks.length < single.length * 1.1);
+      assertTrue(single.length < plain.length / 4);
+   }
+
+   public void testRead() throws Exception {
+      Catalog catalog = getCatalog(5000);
+      byte[] data = getCompressed(catalog, new Compression(6, 4096));
+      Persister persister = new Persister();
+
+      assertCatalog((Catalog) persister.read(Catalog.class, new ByteArrayInputStream(data)), 5000);
+   }
+
+   public void testDetection() throws Exception {
+      Catalog catalog = getCatalog(100);
+      byte[] plain = getPlain(catalog);
+      ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+      ByteArrayOutputStream zlib = new ByteArrayOutputStream();
+      Persister persister = new Persister();
+
+      GZIPOutputStream first = new GZIPOutputStream(gzip);
+      first.write(plain);
+      first.close();
+
+      DeflaterOutputStream second = new DeflaterOutputStream(zlib);
+      second.write(plain);
+      second.close();
+
+      assertCatalog((Catalog) persister.read(Catalog.class, new ByteArrayInputStream(plain)), 100);
+      assertCatalog((Catalog) persister.read(Catalog.class, new ByteArrayInputStream(gzip.toByteArray())), 100);
+      assertCatalog((Catalog) persister.read(Catalog.class, new ByteArrayInputStream(zlib.toByteArray())), 100);
+   }
+
+   public void testUncompressedBytes() throws Exception {
+      Catalog catalog = getCatalog(10);
+      Persister persister = getPersister(new Format(3), new Compression());
+
+      assertTrue(Arrays.equals(persister.writeBytes(catalog), getPlain(catalog)));
+   }
+}
@@ -0,0 +1,134 @@
+package load;
+
+import junit.framework.TestCase;
+import xml.serializer.Attribute;
+import xml.serializer.Element;
+import xml.serializer.ElementList;
+import xml.serializer.Root;
+import xml.serializer.load.Persister;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ContentionTest extends TestCase {
+
+   private static final int ITERATIONS = 6400;
+
+   private static final String ENTRY =
+   "<?xml version=\"1.0\"?>\n"+
+   "<root number='1234' flag='true'>\n"+
+   "   <name>some name</name>  \n\r"+
+   "   <list>\n"+
+   "     <entry key='name.1'>\n"+
+   "        <value>value.1</value>\n"+
+   "     </entry>\n"+
+   "     <entry key='name.2'>\n"+
+   "        <value>value.2</value>\n"+
+   "     </entry>\n"+
+   "     <entry key='name.3'>\n"+
+   "        <value>value.3</value>\n"+
+   "     </entry>\n"+
+   "  </list>\n"+
+   "</root>";
+
+   @Root(name="root")
+   public static class RootEntry {
+
+      @Attribute(name="number")
+      private int number;
+
+      @Attribute(name="flag")
+      private boolean bool;
+
+      @Element(name="name")
+      private String name;
+
+      @ElementList(name="list", type=ElementEntry.class)
+      private List list;
+   }
+
+   @Root(name="entry")
+   public static class ElementEntry {
+
+      @Attribute(name="key")
+      private String name;
+
+      @Element(name="value")
+      private String value;
+   }
+
+   private Persister serializer;
+
+   public void setUp() {
+      serializer = new Persister();
+   }
+
+   public void testContention() throws Exception {
+      run(1);
+
+      for(int threads = 1; threads <= 64; threads *= 2) {
+         long time = run(threads);
+         long rate = ITERATIONS * 1000L / Math.max(1, time);
+
+         System.err.println("TIME ["+time+"] FOR "+ITERATIONS+" ITERATIONS WITH "+threads+" THREADS ("+rate+" OPS/SEC)");
+      }
+   }
+
+   private long run(int threads) throws Exception {
+      final CountDownLatch start = new CountDownLatch(1);
+      final CountDownLatch finish = new CountDownLatch(threads);
+      final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+      final int count = ITERATIONS / threads;
+      List<Thread> list = new ArrayList<Thread>();
+
+      for(int i = 0; i < threads; i++) {
+         Thread thread = new Thread(new Runnable() {
+            public void run() {
+               try {
+                  start.await();
+
+                  for(int j = 0; j < count; j++) {
+                     execute();
+                  }
+               } catch(Throwable e) {
+                  error.compareAndSet(null, e);
+               } finally {
+                  finish.countDown();
+               }
+            }
+         });
+         list.add(thread);
+         thread.start();
+      }
+      long time = System.currentTimeMillis();
+
+      start.countDown();
+      finish.await();
+
+      if(error.get() != null) {
+         throw new Exception("Failure with " + threads + " threads", error.get());
+      }
+      return System.currentTimeMillis() - time;
+   }
+
+   private void execute() throws Exception {
+      RootEntry entry = (RootEntry) serializer.read(RootEntry.class, new StringReader(ENTRY));
+
+      assertEquals(entry.number, 1234);
+      assertEquals(entry.name, "some name");
+      assertEquals(entry.list.size(), 3);
+
+      StringWriter writer = new StringWriter();
+      serializer.write(entry, writer);
+
+      RootEntry copy = (RootEntry) serializer.read(RootEntry.class, new StringReader(writer.toString()));
+
+      assertEquals(copy.number, 1234);
+      assertTrue(copy.bool);
+      assertEquals(((ElementEntry) copy.list.get(2)).value, "value.3");
+   }
+}
@@ -0,0 +1,285 @@
+package load;
+
+import junit.framework.TestCase;
+import org.w3c.dom.Document;
+import xml.serializer.Attribute;
+import xml.serializer.Element;
+import xml.serializer.ElementList;
+import xml.serializer.Root;
+import xml.serializer.load.Cycle;
+import xml.serializer.load.Format;
+import xml.serializer.load.Options;
+import xml.serializer.load.Persister;
+import xml.serializer.load.exceptions.AttributeException;
+import xml.serializer.load.exceptions.ElementException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CycleTest extends TestCase {
+
+   @Root(name="catalog")
+   public static class Catalog {
+
+      @Attribute(name="name")
+      private String name;
+
+      @ElementList(name="products", type=Product.class)
+      private List products;
+   }
+
+   @Root(name="product")
+   public static class Product {
+
+      @Attribute(name="code")
+      private String code;
+
+      @Element(name="vendor")
+      private Vendor vendor;
+   }
+
+   @Root(name="vendor")
+   public static class Vendor {
+
+      @Attribute(name="name")
+      private String name;
+
+      @Element(name="address")
+      private String address;
+
+      @Element(name="contact")
+      private String contact;
+   }
+
+   @Root(name="folder")
+   public static class Folder {
+
+      @Attribute(name="name")
+      private String name;
+
+      @Element(name="parent", required=false)
+      private Folder parent;
+
+      @ElementList(name="children", type=Folder.class, required=false)
+      private List children;
+   }
+
+   @Root(name="keyed")
+   public static class Keyed {
+
+      @Attribute(name="id")
+      private String id;
+   }
+
+   static Catalog getCatalog(int size) {
+      Catalog catalog = new Catalog();
+      Vendor first = new Vendor();
+      Vendor second = new Vendor();
+
+      first.name = "first";
+      first.address = "1 Example Street, Example City";
+      first.contact = "first@example.com";
+      second.name = "second";
+      second.address = "2 Example Street, Example City";
+      second.contact = "second@example.com";
+      catalog.name = "catalog";
+      catalog.products = new ArrayList();
+
+      for(int i = 0; i < size; i++) {
+         Product product = new Product();
+
+         product.code = "product-" + i;
+         product.vendor = i % 2 == 0 ? first : second;
+         catalog.products.add(product);
+      }
+      return catalog;
+   }
+
+   private static Persister getPersister(Cycle cycle) {
+      Options options = new Options();
+
+      options.setCycle(cycle);
+      return new Persister(new Format(), options);
+   }
+
+   public void testShared() throws Exception {
+      Persister persister = getPersister(new Cycle());
+      Catalog catalog = (Catalog) persister.read(Catalog.class, persister.writeBytes(getCatalog(10)));
+
+      assertEquals(catalog.products.size(), 10);
+
+      for(int i = 0; i < 10; i++) {
+         Product product = (Product) catalog.products.get(i);
+         Product other = (Product) catalog.products.get(i % 2);
+
+         assertEquals(product.code, "product-" + i);
+         assertSame(product.vendor, other.vendor);
+      }
+      assertNotSame(((Product) catalog.products.get(0)).vendor, ((Product) catalog.products.get(1)).vendor);
+      assertEquals(((Product) catalog.products.get(1)).vendor.contact, "second@example.com");
+   }
+
+   public void testSize() throws Exception {
+      Catalog catalog = getCatalog(100);
+      byte[] full = new Persister().writeBytes(catalog);
+      byte[] shared = getPersister(new Cycle()).writeBytes(catalog);
+
+      assertTrue(shared.length < full.length);
+   }
+
+   public void testUnreferenced() throws Exception {
+      Document document = getPersister(new Cycle()).write(getCatalog(4));
+      org.w3c.dom.Element product = (org.w3c.dom.Element) document.getElementsByTagName("product").item(0);
+      org.w3c.dom.Element first = (org.w3c.dom.Element) document.getElementsByTagName("vendor").item(0);
+      org.w3c.dom.Element last = (org.w3c.dom.Element) document.getElementsByTagName("vendor").item(3);
+
+      assertFalse(document.getDocumentElement().hasAttribute("id"));
+      assertFalse(product.hasAttribute("id"));
+      assertEquals(first.getAttribute("id"), "3");
+      assertEquals(last.getAttribute("reference"), "5");
+   }
+
+   public void testDocument() throws Exception {
+      Persister persister = getPersister(new Cycle());
+      Document document = persister.write(getCatalog(4));
+      Catalog first = (Catalog) persister.read(Catalog.class, document);
+      Catalog second = (Catalog) persister.read(Catalog.class, document);
+      org.w3c.dom.Element vendor = (org.w3c.dom.Element) document.getElementsByTagName("vendor").item(0);
+
+      assertEquals(vendor.getAttribute("id"), "3");
+      assertSame(((Product) first.products.get(0)).vendor, ((Product) first.products.get(2)).vendor);
+      assertSame(((Product) second.products.get(0)).vendor, ((Product) second.products.get(2)).vendor);
+   }
+
+   public void testByValue() throws Exception {
+      Persister persister = new Persister();
+      Catalog catalog = (Catalog) persister.read(Catalog.class, persister.writeBytes(getCatalog(4)));
+
+      assertNotSame(((Product) catalog.products.get(0)).vendor, ((Product) catalog.products.get(2)).vendor);
+   }
+
+   public void testCycle() throws Exception {
+      Persister persister = getPersister(new Cycle("ref-id", "ref-to"));
+      Folder root = new Folder();
+      Folder child = new Folder();
+
+      root.name = "root";
+      root.children = new ArrayList();
+      root.children.add(child);
+      root.parent = root;
+      child.name = "child";
+      child.parent = root;
+
+      String text = persister.writeString(root);
+      Folder result = (Folder) persister.read(Folder.class, text);
+      Folder next = (Folder) result.children.get(0);
+
+      assertTrue(text.indexOf("ref-to=") != -1);
+      assertSame(result.parent, result);
+      assertSame(next.parent, result);
+      assertEquals(next.name, "child");
+      assertNull(next.children);
+   }
+
+   private static Folder getFolder(String name) {
+      Folder root = new Folder();
+      Folder child = new Folder();
+
+      root.name = "root";
+      root.children = new ArrayList();
+      root.children.add(child);
+      root.parent = root;
+      child.name = name;
+      child.parent = root;
+      return root;
+   }
+
+   public void testDeltaCycle() throws Exception {
+      Persister persister = getPersister(new Cycle());
+      Folder baseline = getFolder("child");
+      Folder current = getFolder("renamed");
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+      persister.writeDelta(baseline, current, out);
+
+      Folder result = (Folder) persister.applyDelta(baseline, new ByteArrayInputStream(out.toByteArray()));
+      Folder next = (Folder) result.children.get(0);
+
+      assertNotSame(result, baseline);
+      assertSame(result.parent, result);
+      assertSame(next.parent, result);
+      assertEquals(next.name, "renamed");
+      assertEquals(((Folder) baseline.children.get(0)).name, "child");
+      assertSame(((Folder) baseline.children.get(0)).parent, baseline);
+   }
+
+   public void testDeltaShared() throws Exception {
+      Persister persister = getPersister(new Cycle());
+      Catalog baseline = getCatalog(100);
+      Catalog current = getCatalog(100);
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+      ((Product) current.products.get(0)).vendor.contact = "changed@example.com";
+      persister.writeDelta(baseline, current, out);
+
+      String text = out.toString("UTF-8");
+      Catalog result = (Catalog) persister.applyDelta(baseline, new ByteArrayInputStream(out.toByteArray()));
+
+      assertEquals(text.split("reference=").length, 50);
+
+      for(int i = 0; i < 100; i++) {
+         Product product = (Product) result.products.get(i);
+         Product other = (Product) result.products.get(i % 2);
+
+         assertSame(product.vendor, other.vendor);
+      }
+      assertEquals(((Product) result.products.get(2)).vendor.contact, "changed@example.com");
+      assertEquals(((Product) result.products.get(3)).vendor.contact, "second@example.com");
+      assertEquals(((Product) baseline.products.get(2)).vendor.contact, "first@example.com");
+   }
+
+   public void testDeltaUnchanged() throws Exception {
+      Persister persister = getPersister(new Cycle());
+      Catalog current = getCatalog(100);
+      Document delta = persister.writeDelta(getCatalog(100), getCatalog(100));
+
+      assertFalse(delta.getDocumentElement().hasChildNodes());
+
+      ((Product) current.products.get(5)).code = "changed";
+      delta = persister.writeDelta(getCatalog(100), current);
+
+      assertEquals(delta.getElementsByTagName("product").getLength(), 1);
+      assertEquals(delta.getElementsByTagName("vendor").getLength(), 0);
+   }
+
+   public void testReserved() throws Exception {
+      Persister persister = getPersister(new Cycle());
+      Keyed keyed = new Keyed();
+
+      keyed.id = "value";
+
+      try {
+         persister.writeString(keyed);
+         fail("Attribute clashes with the identifier");
+      } catch(AttributeException e) {
+         assertNotNull(e.getMessage());
+      }
+      Keyed result = (Keyed) getPersister(new Cycle("uid", "ref")).read(Keyed.class, "<keyed uid='1' id='value'/>");
+
+      assertEquals(result.id, "value");
+   }
+
+   public void testUndefined() throws Exception {
+      Persister persister = getPersister(new Cycle());
+      String text = "<folder id='1' name='root'><parent reference='2'/></folder>";
+
+      try {
+         persister.read(Folder.class, text);
+         fail("Reference is not defined");
+      } catch(ElementException e) {
+         assertNotNull(e.getMessage());
+      }
+   }
+}
@@ -0,0 +1,292 @@
+package load;
+
+import junit.framework.TestCase;
+import org.w3c.dom.Document;
+import xml.serializer.Attribute;
+import xml.serializer.Element;
+import xml.serializer.ElementList;
+import xml.serializer.Root;
+import xml.serializer.load.Persister;
+import xml.serializer.load.exceptions.ElementException;
+import xml.serializer.load.exceptions.RootException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+public class DeltaTest extends TestCase {
+
+   public enum Mode {
+      ACTIVE,
+      STANDBY
+   }
+
+   @Root(name="config")
+   public static class Config {
+
+      @Attribute(name="version")
+      private int version;
+
+      @Attribute(name="mode")
+      private Mode mode;
+
+      @Element(name="owner", required=false)
+      private String owner;
+
+      @Element(name="limits")
+      private Limits limits;
+
+      @Element(name="backup", required=false)
+      private Limits backup;
+
+      @ElementList(name="entries", type=Entry.class)
+      private List entries;
+   }
+
+   @Root(name="limits")
+   public static class Limits {
+
+      @Attribute(name="connections")
+      private int connections;
+
+      @Element(name="timeout")
+      private long timeout;
+   }
+
+   @Root(name="entry")
+   public static class Entry {
+
+      @Attribute(name="key")
+      private String key;
+
+      @Element(name="value")
+      private String value;
+
+      public Entry() {
+         super();
+      }
+
+      public Entry(String key, String value) {
+         this.key = key;
+         this.value = value;
+      }
+   }
+
+   @Root(name="registry")
+   public static class Registry {
+
+      @ElementList(name="entries", type=Entry.class)
+      private Set entries;
+   }
+
+   static Config getConfig(int size) {
+      Config config = new Config();
+
+      config.version = 1;
+      config.mode = Mode.ACTIVE;
+      config.owner = "operations";
+      config.limits = new Limits();
+      config.limits.connections = 100;
+      config.limits.timeout = 30000;
+      config.entries = new LinkedList();
+
+      for(int i = 0; i < size; i++) {
+         config.entries.add(new Entry("key-" + i, "value-" + i));
+      }
+      return config;
+   }
+
+   private static Config getCopy(Config config) {
+      Config copy = new Config();
+
+      copy.version = config.version;
+      copy.mode = config.mode;
+      copy.owner = config.owner;
+      copy.limits = config.limits;
+      copy.backup = config.backup;
+      copy.entries = new LinkedList(config.entries);
+      return copy;
+   }
+
+   private static Config apply(Persister persister, Config baseline, Config current) throws Exception {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+      persister.writeDelta(baseline, current, out);
+      return (Config) persister.applyDelta(baseline, new ByteArrayInputStream(out.toByteArray()));
+   }
+
+   private static void assertConfig(Config expect, Config actual) {
+      assertEquals(expect.version, actual.version);
+      assertEquals(expect.mode, actual.mode);
+      assertEquals(expect.owner, actual.owner);
+      assertEquals(expect.limits.connections, actual.limits.connections);
+      assertEquals(expect.limits.timeout, actual.limits.timeout);
+      assertEquals(expect.backup == null, actual.backup == null);
+      assertEquals(expect.entries.size(), actual.entries.size());
+      assertEquals(expect.entries.getClass(), actual.entries.getClass());
+
+      for(int i = 0; i < expect.entries.size(); i++) {
+         Entry left = (Entry) expect.entries.get(i);
+         Entry right = (Entry) actual.entries.get(i);
+
+         assertEquals(left.key, right.key);
+         assertEquals(left.value, right.value);
+      }
+   }
+
+   public void testNoChange() throws Exception {
+      Persister persister = new Persister();
+      Config baseline = getConfig(10);
+      Document delta = persister.writeDelta(baseline, getCopy(baseline));
+
+      assertNull(delta.getDocumentElement().getFirstChild());
+      assertEquals(delta.getDocumentElement().getAttributes().getLength(), 1);
+      assertConfig(baseline, (Config) persister.applyDelta(baseline, delta));
+   }
+
+   public void testChanges() throws Exception {
+      Persister persister = new Persister();
+      Config baseline = getConfig(10);
+      Config current = getCopy(baseline);
+
+      current.version = 2;
+      current.mode = Mode.STANDBY;
+      current.owner = null;
+      current.limits = new Limits();
+      current.limits.connections = 100;
+      current.limits.timeout = 60000;
+      current.backup = new Limits();
+      current.entries.set(3, new Entry("key-3", "changed"));
+      current.entries.set(5, new Entry("key-5", "value-5"));
+
+      Config result = apply(persister, baseline, current);
+
+      assertConfig(current, result);
+      assertConfig(getConfig(10), baseline);
+      assertSame(result.entries.get(0), baseline.entries.get(0));
+      assertNotSame(result.entries, baseline.entries);
+      assertNotSame(result.limits, baseline.limits);
+   }
+
+   public void testListSize() throws Exception {
+      Persister persister = new Persister();
+      Config baseline = getConfig(10);
+      Config longer = getCopy(baseline);
+      Config shorter = getCopy(baseline);
+
+      longer.entries.add(new Entry("key-10", "value-10"));
+      longer.entries.add(new Entry("key-11", "value-11"));
+      shorter.entries.remove(9);
+      shorter.entries.remove(8);
+      shorter.entries.set(0, new Entry("first", "value"));
+
+      assertConfig(longer, apply(persister, baseline, longer));
+      assertConfig(shorter, apply(persister, baseline, shorter));
+   }
+
+   public void testNullEntry() throws Exception {
+      Persister persister = new Persister();
+      Config baseline = getConfig(10);
+      Config current = getCopy(baseline);
+
+      baseline.entries.set(2, null);
+      current.entries.set(2, new Entry("key-2", "value-2"));
+
+      assertConfig(current, apply(persister, baseline, current));
+
+      current.entries.set(4, null);
+
+      try {
+         persister.writeDelta(baseline, current);
+         fail("Null entries can not be written");
+      } catch(ElementException e) {
+         assertNotNull(e.getMessage());
+      }
+   }
+
+   public void testRepeat() throws Exception {
+      Persister persister = new Persister();
+      Config baseline = getConfig(10);
+      Config current = getCopy(baseline);
+
+      baseline.entries.set(2, null);
+      current.entries.set(2, new Entry("key-2", "changed"));
+
+      Document delta = persister.writeDelta(baseline, current);
+
+      assertConfig(current, (Config) persister.applyDelta(baseline, delta));
+      assertConfig(current, (Config) persister.applyDelta(baseline, delta));
+   }
+
+   public void testSet() throws Exception {
+      Persister persister = new Persister();
+      Registry baseline = new Registry();
+      Registry current = new Registry();
+
+      baseline.entries = new HashSet();
+      current.entries = new HashSet();
+
+      for(int i = 0; i < 10; i++) {
+         Entry entry = new Entry("key-" + i, "value-" + i);
+
+         baseline.entries.add(entry);
+         current.entries.add(entry);
+      }
+      assertNull(persister.writeDelta(baseline, current).getDocumentElement().getFirstChild());
+
+      current.entries.add(new Entry("key-10", "value-10"));
+
+      Document delta = persister.writeDelta(baseline, current);
+      org.w3c.dom.Element list = (org.w3c.dom.Element) delta.getDocumentElement().getFirstChild();
+
+      assertFalse(list.hasAttribute("delta:merge"));
+      assertEquals(list.getElementsByTagName("entry").getLength(), 11);
+
+      Registry result = (Registry) persister.applyDelta(baseline, delta);
+
+      assertEquals(result.entries.size(), 11);
+      assertEquals(result.entries.getClass(), HashSet.class);
+      assertEquals(baseline.entries.size(), 10);
+
+      for(Iterator i = result.entries.iterator(); i.hasNext();) {
+         assertTrue(((Entry) i.next()).key.startsWith("key-"));
+      }
+   }
+
+   public void testUnknownElement() throws Exception {
+      Persister persister = new Persister();
+      String text = "<config xmlns:delta='urn:xml-serializer:delta'><unknown/></config>";
+
+      try {
+         persister.applyDelta(getConfig(1), new ByteArrayInputStream(text.getBytes("UTF-8")));
+         fail("Element does not exist within the schema");
+      } catch(ElementException e) {
+         assertNotNull(e.getMessage());
+      }
+      try {
+         persister.applyDelta(getConfig(1), new ByteArrayInputStream("<other/>".getBytes("UTF-8")));
+         fail("Root element does not match");
+      } catch(RootException e) {
+         assertNotNull(e.getMessage());
+      }
+   }
+
+   public void testSize() throws Exception {
+      Persister persister = new Persister();
+      Config baseline = getConfig(1000);
+      Config current = getCopy(baseline);
+      ByteArrayOutputStream full = new ByteArrayOutputStream();
+      ByteArrayOutputStream delta = new ByteArrayOutputStream();
+
+      current.version = 2;
+      current.entries.set(500, new Entry("key-500", "changed"));
+      persister.write(current, full);
+      persister.writeDelta(baseline, current, delta);
+
+      assertTrue(delta.size() * 100 < full.size());
+   }
+}
@@ -0,0 +1,82 @@
+package load;
+
+import junit.framework.TestCase;
+import xml.serializer.Attribute;
+import xml.serializer.Element;
+import xml.serializer.Root;
+import xml.serializer.load.Persister;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class DetectorTest extends TestCase {
+
+   private static final String TEXT = "caf\u00e9 \u00fcber \u00a3";
+
+   @Root(name="note")
+   public static class Note {
+
+      @Attribute(name="lang")
+      private String lang;
+
+      @Element(name="text")
+      private String text;
+   }
+
+   private static String getDocument(String declaration) {
+      return declaration + "<note lang='fr'><text>" + TEXT + "</text></note>";
+   }
+
+   private static Note read(byte[] data) throws Exception {
+      return (Note) new Persister().read(Note.class, new ByteArrayInputStream(data));
+   }
+
+   private static byte[] join(byte[] first, byte[] second) {
+      byte[] data = new byte[first.length + second.length];
+
+      System.arraycopy(first, 0, data, 0, first.length);
+      System.arraycopy(second, 0, data, first.length, second.length);
+      return data;
+   }
+
+   public void testDefault() throws Exception {
+      assertEquals(read(getDocument("").getBytes("UTF-8")).text, TEXT);
+      assertEquals(read(getDocument("<?xml version=\"1.0\"?>").getBytes("UTF-8")).text, TEXT);
+   }
+
+   public void testDeclaration() throws Exception {
+      assertEquals(read(getDocument("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>").getBytes("ISO-8859-1")).text, TEXT);
+      assertEquals(read(getDocument("<?xml version='1.0' encoding = 'windows-1252' ?>").getBytes("windows-1252")).text, TEXT);
+      assertEquals(read(getDocument("<?xml version=\"1.0\" encoding=\"utf8\"?>").getBytes("UTF-8")).text, TEXT);
+      assertEquals(read(getDocument("<?xml version=\"1.0\" encoding=\"UTF-16LE\"?>").getBytes("UTF-16LE")).text, TEXT);
+      assertEquals(read(getDocument("<?xml version=\"1.0\" encoding=\"UTF-16BE\"?>").getBytes("UTF-16BE")).text, TEXT);
+   }
+
+   public void testByteOrderMark() throws Exception {
+      byte[] mark = new byte[] {(byte) 0xef, (byte) 0xbb, (byte) 0xbf};
+
+      assertEquals(read(join(mark, getDocument("").getBytes("UTF-8"))).text, TEXT);
+      assertEquals(read(join(mark, getDocument("<?xml version=\"1.0\"?>").getBytes("UTF-8"))).text, TEXT);
+      assertEquals(read(getDocument("<?xml version=\"1.0\"?>").getBytes("UTF-16")).text, TEXT);
+      assertEquals(read(join(new byte[] {(byte) 0xff, (byte) 0xfe}, getDocument("").getBytes("UTF-16LE"))).text, TEXT);
+      assertEquals(read(join(new byte[] {0, 0, (byte) 0xfe, (byte) 0xff}, getDocument("").getBytes("UTF-32BE"))).text, TEXT);
+      assertEquals(read(join(new byte[] {(byte) 0xff, (byte) 0xfe, 0, 0}, getDocument("").getBytes("UTF-32LE"))).text, TEXT);
+   }
+
+   public void testExplicitCharset() throws Exception {
+      byte[] data = getDocument("<?xml version=\"1.0\" encoding=\"UTF-8\"?>").getBytes("ISO-8859-1");
+      Note note = (Note) new Persister().read(Note.class, new ByteArrayInputStream(data), "ISO-8859-1");
+
+      assertEquals(note.text, TEXT);
+   }
+
+   public void testCompressed() throws Exception {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      GZIPOutputStream zip = new GZIPOutputStream(out);
+
+      zip.write(getDocument("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>").getBytes("ISO-8859-1"));
+      zip.close();
+      assertEquals(read(out.toByteArray()).text, TEXT);
+   }
+}
@@ -0,0 +1,185 @@
+package load;
+
+import junit.framework.TestCase;
+import xml.serializer.Attribute;
+import xml.serializer.Element;
+import xml.serializer.ElementList;
+import xml.serializer.Root;
+import xml.serializer.load.Compression;
+import xml.serializer.load.Dictionary;
+import xml.serializer.load.Format;
+import xml.serializer.load.Options;
+import xml.serializer.load.Persister;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+public class DictionaryTest extends TestCase {
+
+   @Root(name="order")
+   public static class Order {
+
+      @Attribute(name="reference")
+      private String reference;
+
+      @Element(name="customer")
+      private Customer customer;
+
+      @ElementList(name="lines", type=Line.class)
+      private List lines;
+   }
+
+   @Root(name="customer")
+   public static class Customer {
+
+      @Attribute(name="account")
+      private long account;
+
+      @Element(name="name")
+      private String name;
+
+      @Element(name="email")
+      private String email;
+   }
+
+   @Root(name="line")
+   public static class Line {
+
+      @Attribute(name="quantity")
+      private int quantity;
+
+      @Element(name="description")
+      private String description;
+
+      @Element(name="price")
+      private double price;
+   }
+
+   @Root(name="other")
+   public static class Other {
+
+      @Element(name="value")
+      private String value;
+   }
+
+   static Order getOrder(int seed) {
+      Order order = new Order();
+
+      order.reference = "ref-" + seed;
+      order.customer = new Customer();
+      order.customer.account = 1000 + seed;
+      order.customer.name = "customer " + seed;
+      order.customer.email = "customer" + seed + "@example.com";
+      order.lines = new ArrayList();
+
+      for(int i = 0; i < 5; i++) {
+         Line line = new Line();
+
+         line.quantity = i + 1;
+         line.description = "item " + (seed + i);
+         line.price = 1.5 * i;
+         order.lines.add(line);
+      }
+      return order;
+   }
+
+   static byte[] write(Persister persister, Object value) throws Exception {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+      persister.write(value, out);
+      return out.toByteArray();
+   }
+
+   private static int getGzipSize(byte[] data) throws Exception {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      GZIPOutputStream zip = new GZIPOutputStream(out);
+
+      zip.write(data);
+      zip.close();
+      return out.size();
+   }
+
+   private static Persister getPersister(Compression compression) {
+      Options options = new Options();
+
+      options.setCompression(compression);
+      return new Persister(new Format(), options);
+   }
+
+   public void testRoundTrip() throws Exception {
+      Dictionary dictionary = new Dictionary(Order.class);
+      Persister persister = getPersister(new Compression(dictionary));
+      byte[] data = write(persister, getOrder(7));
+      Order order = (Order) new Persister().read(Order.class, new ByteArrayInputStream(data));
+
+      assertEquals(data[0], (byte) 0x78);
+      assertTrue((data[1] & 0x20) != 0);
+      assertEquals(order.reference, "ref-7");
+      assertEquals(order.customer.email, "customer7@example.com");
+      assertEquals(order.lines.size(), 5);
+   }
+
+   public void testStableIdentifier() throws Exception {
+      Dictionary first = new Dictionary(Order.class);
+      Dictionary second = new Dictionary(Order.class);
+      Dictionary third = new Dictionary(Other.class);
+
+      assertEquals(first.getId(), second.getId());
+      assertFalse(first.getId() == third.getId());
+   }
+
+   public void testRatio() throws Exception {
+      Persister plain = new Persister();
+      byte[] sample = write(plain, getOrder(1));
+      Dictionary names = new Dictionary(Order.class);
+      Dictionary samples = new Dictionary(Arrays.<Class>asList(Order.class), Collections.singletonList(sample));
+      byte[] text = write(plain, getOrder(42));
+      byte[] first = write(getPersister(new Compression(names)), getOrder(42));
+      byte[] second = write(getPersister(new Compression(samples)), getOrder(42));
+      int gzip = getGzipSize(text);
+
+      assertTrue(first.length < gzip);
+      assertTrue(second.length < first.length);
+   }
+
+   public void testUnknownDictionary() throws Exception {
+      Dictionary dictionary = new Dictionary(Arrays.<Class>asList(Other.class), Collections.singletonList("<unregistered/>".getBytes("UTF-8")));
+      Persister persister = getPersister(new Compression(dictionary));
+      Other other = new Other();
+
+      other.value = "text";
+      byte[] data = write(persister, other);
+      data[2] ^= 0x55;
+
+      try {
+         new Persister().read(Other.class, new ByteArrayInputStream(data));
+         fail("Read should fail with an unknown dictionary");
+      } catch(IOException e) {
+         assertTrue(e.getMessage().startsWith("No dictionary"));
+      }
+   }
+
+   public void testCollision() throws Exception {
+      Dictionary first = new Dictionary(Arrays.<Class>asList(Other.class), Collections.singletonList("<collision abc/>".getBytes("UTF-8")));
+      Dictionary second = new Dictionary(Arrays.<Class>asList(Other.class), Collections.singletonList("<collision b`d/>".getBytes("UTF-8")));
+      Dictionary copy = new Dictionary(Arrays.<Class>asList(Other.class), Collections.singletonList("<collision abc/>".getBytes("UTF-8")));
+
+      assertEquals(first.getId(), second.getId());
+
+      new Compression(first);
+      new Compression(copy);
+
+      try {
+         new Compression(second);
+         fail("Dictionary has the identifier of another dictionary");
+      } catch(IllegalArgumentException e) {
+         assertNotNull(e.getMessage());
+      }
+   }
+}
@@ -0,0 +1,162 @@
+package load;
+
+import junit.framework.TestCase;
+import xml.serializer.Attribute;
+import xml.serializer.Element;
+import xml.serializer.Root;
+import xml.serializer.load.Persister;
+
+import java.util.Random;
+
+public class DigitsTest extends TestCase {
+
+   @Root(name="quote")
+   public static class Quote {
+
+      @Attribute(name="id")
+      private long id;
+
+      @Attribute(name="bid")
+      private double bid;
+
+      @Attribute(name="ask")
+      private float ask;
+
+      @Attribute(name="size")
+      private int size;
+
+      @Attribute(name="level")
+      private short level;
+
+      @Attribute(name="firm")
+      private boolean firm;
+
+      @Attribute(name="last", required=false)
+      private Double last;
+
+      @Element(name="mid", required=false)
+      private Long mid;
+
+      @Element(name="spread", required=false)
+      private Float spread;
+   }
+
+   @Root(name="value")
+   public static class Value {
+
+      @Attribute(name="double")
+      private double first;
+
+      @Attribute(name="float")
+      private float second;
+   }
+
+   static Quote getQuote(int index) {
+      Quote quote = new Quote();
+
+      quote.id = 1600000000000L + index;
+      quote.bid = 100 + index / 100.0;
+      quote.ask = 100.25f + index;
+      quote.size = index * 10;
+      quote.level = (short) -index;
+      quote.firm = index % 2 == 0;
+      return quote;
+   }
+
+   private static String getValue(String text, String name) {
+      int start = text.indexOf(" " + name + "=\"") + name.length() + 3;
+      int finish = text.indexOf('"', start);
+
+      return text.substring(start, finish);
+   }
+
+   private static void assertQuote(Quote expect, Quote actual) {
+      assertEquals(expect.id, actual.id);
+      assertEquals(Double.doubleToLongBits(expect.bid), Double.doubleToLongBits(actual.bid));
+      assertEquals(Float.floatToIntBits(expect.ask), Float.floatToIntBits(actual.ask));
+      assertEquals(expect.size, actual.size);
+      assertEquals(expect.level, actual.level);
+      assertEquals(expect.firm, actual.firm);
+      assertEquals(expect.last, actual.last);
+      assertEquals(expect.mid, actual.mid);
+      assertEquals(expect.spread, actual.spread);
+   }
+
+   public void testRoundTrip() throws Exception {
+      Persister persister = new Persister();
+      Quote quote = getQuote(7);
+
+      quote.last = -0.001;
+      quote.mid = -1234567L;
+      quote.spread = 0.1f;
+
+      String text = persister.writeString(quote);
+
+      assertEquals(getValue(text, "id"), "1600000000007");
+      assertEquals(getValue(text, "bid"), "100.07");
+      assertEquals(getValue(text, "ask"), "107.25");
+      assertEquals(getValue(text, "size"), "70");
+      assertEquals(getValue(text, "level"), "-7");
+      assertEquals(getValue(text, "firm"), "false");
+      assertEquals(getValue(text, "last"), "-0.001");
+      assertTrue(text.contains(">-1234567</mid>"));
+      assertTrue(text.contains(">0.1</spread>"));
+      assertQuote(quote, (Quote) persister.read(Quote.class, text));
+   }
+
+   public void testSpecial() throws Exception {
+      Persister persister = new Persister();
+      double[] doubles = { 0.0, -0.0, 1.0, -1.0, 1e7, 9999999.999999998, 1e-3, 0.0009999999999999998, 0.1 + 0.2,
+                           Double.NaN, Double.POSITIVE_INFINITY, Double.MIN_VALUE, Double.MAX_VALUE, 4.35, 2.0 / 3 };
+      float[] floats = { 0.0f, -0.0f, 1.0f, 1e7f, 9999999.0f, 1e-3f, 0.1f + 0.2f, Float.NaN, Float.NEGATIVE_INFINITY,
+                         Float.MIN_VALUE, Float.MAX_VALUE, 16777217.0f, 1.0f / 3, 0.3f };
+
+      for(int i = 0; i < doubles.length; i++) {
+         Value value = new Value();
+
+         value.first = doubles[i];
+         value.second = floats[i % floats.length];
+
+         String text = persister.writeString(value);
+         Value result = (Value) persister.read(Value.class, text);
+
+         assertEquals(Double.doubleToLongBits(value.first), Double.doubleToLongBits(result.first));
+         assertEquals(Float.floatToIntBits(value.second), Float.floatToIntBits(result.second));
+      }
+      Value value = new Value();
+
+      value.first = -0.0;
+      value.second = 1e7f;
+
+      String text = persister.writeString(value);
+
+      assertEquals(getValue(text, "double"), "-0.0");
+      assertEquals(getValue(text, "float"), "1.0E7");
+   }
+
+   public void testShortest() throws Exception {
+      Persister persister = new Persister();
+      Random random = new Random(42);
+
+      for(int i = 0; i < 20000; i++) {
+         Value value = new Value();
+
+         if(i % 2 == 0) {
+            value.first = Double.longBitsToDouble(random.nextLong());
+            value.second = Float.intBitsToFloat(random.nextInt());
+         } else {
+            value.first = (random.nextInt(20000000) - 10000000) / Math.pow(10, random.nextInt(8));
+            value.second = (float) value.first;
+         }
+         String text = persister.writeString(value);
+         Value result = (Value) persister.read(Value.class, text);
+         String first = getValue(text, "double");
+         String second = getValue(text, "float");
+
+         assertEquals(Double.doubleToLongBits(value.first), Double.doubleToLongBits(result.first));
+         assertEquals(Float.floatToIntBits(value.second), Float.floatToIntBits(result.second));
+         assertTrue(first.length() <= Double.toString(value.first).length());
+         assertTrue(second.length() <= Float.toString(value.second).length());
+      }
+   }
+}
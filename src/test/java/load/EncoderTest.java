@@ -0,0 +1,163 @@
+package load;
+
+import junit.framework.TestCase;
+import xml.serializer.Attribute;
+import xml.serializer.Element;
+import xml.serializer.ElementList;
+import xml.serializer.Root;
+import xml.serializer.load.Format;
+import xml.serializer.load.Persister;
+import xml.serializer.load.exceptions.PersistenceException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+public class EncoderTest extends TestCase {
+
+   static final String TEXT = "plain <&> \"quoted\" caf\u00e9 \u4e2d\u6587 \ud83d\ude00 end";
+
+   @Root(name="document")
+   public static class Document {
+
+      @Attribute(name="title")
+      private String title;
+
+      @ElementList(name="list", type=Entry.class)
+      private List list;
+   }
+
+   @Root(name="entry")
+   public static class Entry {
+
+      @Attribute(name="name")
+      private String name;
+
+      @Element(name="text")
+      private String text;
+   }
+
+   @Root(name="caf\u00e9")
+   public static class Cafe {
+
+      @Attribute(name="\u4e2d")
+      private String name;
+   }
+
+   static Document getDocument(int size, String text) {
+      Document document = new Document();
+
+      document.title = text + "\n\ttab";
+      document.list = new ArrayList();
+
+      for(int i = 0; i < size; i++) {
+         Entry entry = new Entry();
+
+         entry.name = "entry " + i;
+         entry.text = text + " " + i;
+         document.list.add(entry);
+      }
+      return document;
+   }
+
+   private void assertRoundTrip(String charset) throws Exception {
+      Persister persister = new Persister(new Format(3));
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      Document document = getDocument(1000, TEXT);
+
+      persister.write(document, out, charset);
+
+      String text = out.toString(charset);
+      Document result = (Document) persister.read(Document.class, new ByteArrayInputStream(out.toByteArray()), charset);
+
+      assertTrue(charset, text.startsWith("<?xml version=\"1.0\" encoding=\""));
+      assertEquals(charset, result.title, document.title);
+      assertEquals(result.list.size(), 1000);
+
+      for(int i = 0; i < 1000; i++) {
+         assertEquals(((Entry) result.list.get(i)).text, TEXT + " " + i);
+      }
+   }
+
+   public void testSameAsFormatter() throws Exception {
+      Persister persister = new Persister(new Format(3));
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      StringWriter writer = new StringWriter();
+      Document document = getDocument(1000, "plain <&> \"quoted\" caf\u00e9 \u4e2d\u6587");
+
+      persister.write(document, out, "utf-8");
+      persister.write(document, writer);
+
+      assertEquals(out.toString("utf-8"), writer.toString());
+   }
+
+   public void testCompact() throws Exception {
+      Persister persister = new Persister();
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      StringWriter writer = new StringWriter();
+      Document document = getDocument(10, "plain <&> \"quoted\" caf\u00e9 \u4e2d\u6587");
+
+      persister.write(document, out);
+      persister.write(document, writer);
+
+      assertEquals(out.toString("utf-8"), writer.toString());
+   }
+
+   public void testLargeText() throws Exception {
+      StringBuilder builder = new StringBuilder();
+
+      for(int i = 0; i < 20000; i++) {
+         builder.append(TEXT);
+      }
+      Persister persister = new Persister();
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      Document document = getDocument(3, builder.toString());
+
+      persister.write(document, out);
+
+      Document result = (Document) persister.read(Document.class, new ByteArrayInputStream(out.toByteArray()));
+
+      assertEquals(((Entry) result.list.get(2)).text, builder + " 2");
+   }
+
+   public void testCharsets() throws Exception {
+      assertRoundTrip("utf-8");
+      assertRoundTrip("iso-8859-1");
+      assertRoundTrip("us-ascii");
+      assertRoundTrip("windows-1252");
+      assertRoundTrip("Shift_JIS");
+      assertRoundTrip("utf-16");
+   }
+
+   public void testReferences() throws Exception {
+      Persister persister = new Persister();
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+      persister.write(getDocument(1, TEXT), out, "us-ascii");
+
+      String text = out.toString("us-ascii");
+
+      assertTrue(text.contains("caf&#233; &#20013;&#25991; &#128512; end"));
+   }
+
+   public void testMarkup() throws Exception {
+      Persister persister = new Persister();
+      Cafe cafe = new Cafe();
+
+      cafe.name = "\u4e2d\u6587";
+      persister.write(cafe, new ByteArrayOutputStream(), "utf-8");
+
+      String[] charsets = {"us-ascii", "iso-8859-1", "windows-1252", "Shift_JIS"};
+
+      for(String charset : charsets) {
+         try {
+            persister.write(cafe, new ByteArrayOutputStream(), charset);
+            fail("Markup can not be encoded in " + charset);
+         } catch(PersistenceException e) {
+            assertNotNull(e.getMessage());
+         }
+      }
+   }
+}
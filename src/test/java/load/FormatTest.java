@@ -0,0 +1,93 @@
+package load;
+
+import junit.framework.TestCase;
+import xml.serializer.Attribute;
+import xml.serializer.Element;
+import xml.serializer.Root;
+import xml.serializer.load.Format;
+import xml.serializer.load.Persister;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+public class FormatTest extends TestCase {
+
+   @Root(name="example")
+   public static class Example {
+
+      @Attribute(name="id")
+      private int id;
+
+      @Element(name="text")
+      private String text;
+
+      @Element(name="detail")
+      private Detail detail;
+   }
+
+   public static class Detail {
+
+      @Element(name="name")
+      private String name;
+   }
+
+   private Example example;
+
+   public void setUp() {
+      example = new Example();
+      example.id = 12;
+      example.text = "example text";
+      example.detail = new Detail();
+      example.detail.name = "some name";
+   }
+
+   private String write(Format format) throws Exception {
+      Persister serializer = new Persister(format);
+      StringWriter writer = new StringWriter();
+
+      serializer.write(example, writer);
+
+      Example copy = (Example) serializer.read(Example.class, new StringReader(writer.toString()));
+
+      assertEquals(copy.id, 12);
+      assertEquals(copy.detail.name, "some name");
+      return writer.toString();
+   }
+
+   public void testCompact() throws Exception {
+      String text = write(new Format());
+
+      assertTrue(text.startsWith("<?xml"));
+      assertTrue(text.indexOf("<example id=\"12\"><text>example text</text>") > 0);
+      assertEquals(-1, text.indexOf('\n'));
+   }
+
+   public void testIndent() throws Exception {
+      String text = write(new Format(3));
+
+      assertTrue(text.startsWith("<?xml"));
+      assertTrue(text.indexOf("\n   <text>example text</text>") > 0);
+      assertTrue(text.indexOf("\n      <name>some name</name>") > 0);
+   }
+
+   public void testNoProlog() throws Exception {
+      String text = write(new Format(0, false));
+
+      assertTrue(text.startsWith("<example id=\"12\">"));
+   }
+
+   public void testIndentNoProlog() throws Exception {
+      String text = write(new Format(2, false));
+
+      assertTrue(text.startsWith("<example id=\"12\">"));
+      assertTrue(text.indexOf("\n  <text>example text</text>") > 0);
+   }
+
+   public void testShared() throws Exception {
+      assertEquals(new Format(3), new Format(3, true));
+      assertEquals(new Format(3).hashCode(), new Format(3, true).hashCode());
+      assertFalse(new Format(3).equals(new Format(3, false)));
+      assertFalse(new Format().equals(new Format(2)));
+      assertEquals(write(new Format(4)), write(new Format(4)));
+   }
+}
@@ -0,0 +1,171 @@
+package load;
+
+import junit.framework.TestCase;
+import org.w3c.dom.Document;
+import xml.serializer.Attribute;
+import xml.serializer.Element;
+import xml.serializer.ElementList;
+import xml.serializer.Root;
+import xml.serializer.load.Infoset;
+import xml.serializer.load.Persister;
+import xml.serializer.load.exceptions.PersistenceException;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
+
+public class InfosetTest extends TestCase {
+
+   private static final String SOURCE =
+      "<?xml version=\"1.0\"?>\n" +
+      "<!-- leading comment -->\n" +
+      "<?style type='text/css'?>\n" +
+      "<ns:catalog xmlns:ns='urn:catalog' version='2'>\n" +
+      "   <ns:item id='1' status='open'>text &amp; more<![CDATA[<raw> & data]]></ns:item>\n" +
+      "   <ns:item id='2' status='open' note='&quot;quoted&quot;'/>\n" +
+      "   <!-- inner comment -->\n" +
+      "   <ns:item id='3' status='closed'>\u00e9\u4e2d</ns:item>\n" +
+      "</ns:catalog>";
+
+   @Root(name="inventory")
+   public static class Inventory {
+
+      @Attribute(name="warehouse")
+      private String warehouse;
+
+      @ElementList(name="stock", type=Stock.class)
+      private List stock;
+   }
+
+   @Root(name="stock")
+   public static class Stock {
+
+      @Attribute(name="sku")
+      private String sku;
+
+      @Attribute(name="status")
+      private String status;
+
+      @Element(name="quantity")
+      private int quantity;
+   }
+
+   static Inventory getInventory(int size) {
+      Inventory inventory = new Inventory();
+
+      inventory.warehouse = "north";
+      inventory.stock = new Vector();
+
+      for(int i = 0; i < size; i++) {
+         Stock stock = new Stock();
+
+         stock.sku = "sku-" + i;
+         stock.status = i % 2 == 0 ? "available" : "reserved";
+         stock.quantity = i % 10;
+         inventory.stock.add(stock);
+      }
+      return inventory;
+   }
+
+   private static Document parse(String text) throws Exception {
+      DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+
+      return factory.newDocumentBuilder().parse(new ByteArrayInputStream(text.getBytes("UTF-8")));
+   }
+
+   private static String print(Document document) throws Exception {
+      StringWriter out = new StringWriter();
+
+      TransformerFactory.newInstance().newTransformer().transform(new DOMSource(document), new StreamResult(out));
+      return out.toString();
+   }
+
+   public void testLossless() throws Exception {
+      Document document = parse(SOURCE);
+      Infoset infoset = new Infoset();
+      Document result = infoset.decode(infoset.encode(document));
+
+      assertTrue(document.isEqualNode(result));
+      assertEquals(print(result), print(document));
+   }
+
+   public void testStream() throws Exception {
+      Document document = parse(SOURCE);
+      Infoset infoset = new Infoset();
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+      infoset.encode(document, out);
+      assertTrue(document.isEqualNode(infoset.decode(new ByteArrayInputStream(out.toByteArray()))));
+   }
+
+   public void testObject() throws Exception {
+      Persister persister = new Persister();
+      byte[] data = persister.writeInfoset(getInventory(100));
+      Inventory inventory = (Inventory) persister.readInfoset(Inventory.class, data);
+
+      assertEquals(inventory.warehouse, "north");
+      assertTrue(inventory.stock instanceof Vector);
+      assertEquals(inventory.stock.size(), 100);
+
+      for(int i = 0; i < 100; i++) {
+         Stock stock = (Stock) inventory.stock.get(i);
+
+         assertEquals(stock.sku, "sku-" + i);
+         assertEquals(stock.status, i % 2 == 0 ? "available" : "reserved");
+         assertEquals(stock.quantity, i % 10);
+      }
+   }
+
+   public void testSameDocument() throws Exception {
+      Persister persister = new Persister();
+      Inventory inventory = getInventory(20);
+      Document document = persister.write(inventory);
+      Document result = new Infoset().decode(persister.writeInfoset(inventory));
+
+      assertTrue(document.isEqualNode(result));
+   }
+
+   public void testSharedValues() throws Exception {
+      Persister persister = new Persister();
+      Document result = new Infoset().decode(persister.writeInfoset(getInventory(10)));
+      org.w3c.dom.Element first = (org.w3c.dom.Element) result.getElementsByTagName("stock").item(1);
+      org.w3c.dom.Element second = (org.w3c.dom.Element) result.getElementsByTagName("stock").item(3);
+
+      assertSame(first.getAttribute("status"), second.getAttribute("status"));
+   }
+
+   public void testSize() throws Exception {
+      Persister persister = new Persister();
+      Inventory inventory = getInventory(1000);
+      byte[] data = persister.writeInfoset(inventory);
+      byte[] text = persister.writeBytes(inventory);
+
+      assertTrue(data.length * 2 < text.length);
+   }
+
+   public void testInvalid() throws Exception {
+      Infoset infoset = new Infoset();
+      byte[] data = infoset.encode(parse(SOURCE));
+      byte[] half = Arrays.copyOf(data, data.length / 2);
+
+      try {
+         infoset.decode(half);
+         fail("Truncated infoset should fail");
+      } catch(PersistenceException e) {
+         assertNotNull(e.getMessage());
+      }
+      try {
+         infoset.decode(SOURCE.getBytes("UTF-8"));
+         fail("XML is not an infoset");
+      } catch(PersistenceException e) {
+         assertNotNull(e.getMessage());
+      }
+   }
+}
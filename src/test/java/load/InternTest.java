@@ -0,0 +1,173 @@
+package load;
+
+import junit.framework.TestCase;
+import xml.serializer.Attribute;
+import xml.serializer.Element;
+import xml.serializer.ElementList;
+import xml.serializer.Root;
+import xml.serializer.load.BinaryPersister;
+import xml.serializer.load.Format;
+import xml.serializer.load.Intern;
+import xml.serializer.load.Options;
+import xml.serializer.load.Persister;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class InternTest extends TestCase {
+
+   @Root(name="trade")
+   public static class Trade {
+
+      @Attribute(name="currency")
+      private String currency;
+
+      @Attribute(name="venue", intern=true)
+      private String venue;
+
+      @Element(name="symbol")
+      private String symbol;
+
+      @Element(name="desk", intern=true)
+      private String desk;
+
+      @ElementList(name="tags", type=String.class, intern=true)
+      private List<String> tags;
+   }
+
+   private static Trade getTrade(int index) {
+      Trade trade = new Trade();
+
+      trade.currency = "EUR";
+      trade.venue = "XLON";
+      trade.symbol = "SYM" + (index % 10);
+      trade.desk = "rates";
+      trade.tags = new ArrayList<String>(Arrays.asList("fx", "J\u00fcrgen"));
+      return trade;
+   }
+
+   public void testPersister() throws Exception {
+      Options options = new Options();
+
+      options.setIntern(new Intern());
+
+      Persister persister = new Persister(new Format(), options);
+      String text = new Persister().writeString(getTrade(1));
+      Trade first = (Trade) persister.read(Trade.class, text);
+      Trade second = (Trade) persister.read(Trade.class, text);
+
+      assertSame(first.currency, second.currency);
+      assertSame(first.venue, second.venue);
+      assertSame(first.symbol, second.symbol);
+      assertSame(first.desk, second.desk);
+      assertSame(first.tags.get(0), second.tags.get(0));
+      assertSame(first.tags.get(1), second.tags.get(1));
+      assertEquals(first.tags.get(1), "J\u00fcrgen");
+   }
+
+   public void testField() throws Exception {
+      Persister persister = new Persister();
+      String text = persister.writeString(getTrade(1));
+      Trade first = (Trade) persister.read(Trade.class, text);
+      Trade second = (Trade) persister.read(Trade.class, text);
+
+      assertSame(first.venue, second.venue);
+      assertSame(first.desk, second.desk);
+      assertSame(first.tags.get(0), second.tags.get(0));
+      assertNotSame(first.currency, second.currency);
+      assertNotSame(first.symbol, second.symbol);
+      assertEquals(first.currency, second.currency);
+   }
+
+   public void testBinary() throws Exception {
+      BinaryPersister writer = new BinaryPersister();
+      byte[] data = writer.write(getTrade(1));
+      Trade first = (Trade) writer.read(Trade.class, data);
+      Trade second = (Trade) writer.read(Trade.class, data);
+
+      assertSame(first.venue, second.venue);
+      assertSame(first.desk, second.desk);
+      assertNotSame(first.symbol, second.symbol);
+
+      BinaryPersister persister = new BinaryPersister(true, new Intern());
+      byte[] shared = persister.write(getTrade(1));
+
+      first = (Trade) persister.read(Trade.class, shared);
+      second = (Trade) persister.read(Trade.class, data);
+
+      assertSame(first.symbol, second.symbol);
+      assertSame(first.currency, second.currency);
+      assertSame(first.tags.get(1), second.tags.get(1));
+      assertEquals(first.tags.get(1), "J\u00fcrgen");
+   }
+
+   public void testBounded() throws Exception {
+      Intern intern = new Intern(16);
+      StringBuilder builder = new StringBuilder();
+
+      for(int i = 0; i < 1000; i++) {
+         String value = "value" + i;
+
+         assertEquals(intern.intern(new String(value)), value);
+      }
+      for(int i = 0; i < 100; i++) {
+         builder.append('x');
+      }
+      String large = builder.toString();
+
+      assertNotSame(intern.intern(new String(large)), intern.intern(new String(large)));
+      assertSame(intern.intern("recent"), intern.intern(new String("recent")));
+   }
+
+   public void testCapacity() throws Exception {
+      Intern intern = new Intern(100);
+
+      assertSame(intern.intern("value"), intern.intern(new String("value")));
+
+      try {
+         new Intern((1 << 30) + 1);
+         fail("Capacity is larger than an array can hold");
+      } catch(IllegalArgumentException e) {
+         assertNotNull(e.getMessage());
+      }
+      try {
+         new Intern(0);
+         fail("Capacity must be positive");
+      } catch(IllegalArgumentException e) {
+         assertNotNull(e.getMessage());
+      }
+   }
+
+   public void testConcurrent() throws Exception {
+      final Intern intern = new Intern(64);
+      ExecutorService executor = Executors.newFixedThreadPool(4);
+      List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+
+      try {
+         for(int i = 0; i < 4; i++) {
+            results.add(executor.submit(new Callable<Boolean>() {
+               public Boolean call() {
+                  for(int j = 0; j < 100000; j++) {
+                     String value = "code" + (j % 200);
+
+                     if(!intern.intern(value).equals(value)) {
+                        return false;
+                     }
+                  }
+                  return true;
+               }
+            }));
+         }
+         for(Future<Boolean> result : results) {
+            assertTrue(result.get());
+         }
+      } finally {
+         executor.shutdown();
+      }
+   }
+}
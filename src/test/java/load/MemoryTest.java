@@ -0,0 +1,113 @@
+package load;
+
+import junit.framework.TestCase;
+import xml.serializer.Attribute;
+import xml.serializer.Element;
+import xml.serializer.ElementList;
+import xml.serializer.Root;
+import xml.serializer.load.Compression;
+import xml.serializer.load.Format;
+import xml.serializer.load.Options;
+import xml.serializer.load.Persister;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class MemoryTest extends TestCase {
+
+   @Root(name="message")
+   public static class Message {
+
+      @Attribute(name="id")
+      private int id;
+
+      @Element(name="body")
+      private String body;
+
+      @ElementList(name="headers", type=Header.class)
+      private List headers;
+   }
+
+   @Root(name="header")
+   public static class Header {
+
+      @Attribute(name="name")
+      private String name;
+
+      @Element(name="value")
+      private String value;
+   }
+
+   static Message getMessage() {
+      Message message = new Message();
+
+      message.id = 12;
+      message.body = "body \u00e9 & \u4e2d";
+      message.headers = new ArrayList();
+
+      for(int i = 0; i < 10; i++) {
+         Header header = new Header();
+
+         header.name = "name" + i;
+         header.value = "value" + i;
+         message.headers.add(header);
+      }
+      return message;
+   }
+
+   private static void assertMessage(Object value) {
+      Message message = (Message) value;
+
+      assertEquals(message.id, 12);
+      assertEquals(message.body, "body \u00e9 & \u4e2d");
+      assertEquals(message.headers.size(), 10);
+   }
+
+   public void testBytes() throws Exception {
+      Persister persister = new Persister();
+      byte[] data = persister.writeBytes(getMessage());
+
+      assertMessage(persister.read(Message.class, data));
+   }
+
+   public void testRegion() throws Exception {
+      Persister persister = new Persister();
+      byte[] data = persister.writeBytes(getMessage());
+      byte[] region = new byte[data.length + 20];
+
+      Arrays.fill(region, (byte) 'x');
+      System.arraycopy(data, 0, region, 7, data.length);
+      assertMessage(persister.read(Message.class, region, 7, data.length));
+   }
+
+   public void testDeclaredCharset() throws Exception {
+      String text = "<?xml version='1.0' encoding='ISO-8859-1'?><message id='12'><body>body \u00e9 &amp; &#20013;</body><headers class='java.util.ArrayList'/></message>";
+      byte[] data = ("  " + text + "  ").getBytes("ISO-8859-1");
+      Message message = (Message) new Persister().read(Message.class, data, 2, data.length - 4);
+
+      assertEquals(message.body, "body \u00e9 & \u4e2d");
+   }
+
+   public void testCompressedRegion() throws Exception {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      Options options = new Options();
+
+      options.setCompression(new Compression());
+      out.write(new byte[] {1, 2, 3});
+      new Persister(new Format(), options).write(getMessage(), out);
+      byte[] data = out.toByteArray();
+
+      assertMessage(new Persister().read(Message.class, data, 3, data.length - 3));
+   }
+
+   public void testSequence() throws Exception {
+      Persister persister = new Persister();
+      String text = persister.writeString(getMessage());
+      StringBuilder builder = new StringBuilder(text);
+
+      assertMessage(persister.read(Message.class, text));
+      assertMessage(persister.read(Message.class, builder));
+   }
+}
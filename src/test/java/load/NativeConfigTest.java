@@ -0,0 +1,160 @@
+package load;
+
+import junit.framework.TestCase;
+import xml.serializer.Attribute;
+import xml.serializer.Element;
+import xml.serializer.ElementList;
+import xml.serializer.Root;
+import xml.serializer.load.NativeConfig;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Queue;
+import java.util.Vector;
+
+public class NativeConfigTest extends TestCase {
+
+   public static enum Status {
+      OPEN,
+      CLOSED
+   }
+
+   public static class Base {
+
+      @Attribute(name="id")
+      private int id;
+   }
+
+   @Root(name="root")
+   public static class Example extends Base {
+
+      @Attribute(name="status")
+      private Status status;
+
+      @Element(name="name")
+      private String name;
+
+      @Element(name="detail")
+      private Detail detail;
+
+      @ElementList(name="list", type=Entry.class)
+      private List list;
+   }
+
+   public static class Detail {
+
+      @Element(name="count")
+      private long count;
+
+      @Element(name="parent", required=false)
+      private Example parent;
+   }
+
+   @Root(name="entry")
+   public static class Entry {
+
+      @Attribute(name="key")
+      private String key;
+   }
+
+   @Root(name="queue")
+   public static class Pending {
+
+      @ElementList(name="list", type=Entry.class)
+      private Queue list;
+   }
+
+   private String generate(Class type, Class... include) throws Exception {
+      NativeConfig config = new NativeConfig();
+      StringWriter writer = new StringWriter();
+
+      config.add(type);
+
+      for(Class extra : include) {
+         config.include(extra);
+      }
+      config.write(writer);
+      return writer.toString();
+   }
+
+   private String getEntry(String text, Class type) {
+      String name = "\"name\" : \"" + type.getName() + "\"";
+      int start = text.indexOf(name);
+
+      assertTrue("No entry for " + type.getName(), start > 0);
+      int end = text.indexOf("\n  }", start);
+
+      return text.substring(start, end);
+   }
+
+   public void testSchemaClasses() throws Exception {
+      String text = generate(Example.class);
+      String example = getEntry(text, Example.class);
+      String base = getEntry(text, Base.class);
+      String detail = getEntry(text, Detail.class);
+      String entry = getEntry(text, Entry.class);
+
+      assertTrue(example.indexOf("\"status\"") > 0);
+      assertTrue(example.indexOf("\"name\" : \"name\"") > 0);
+      assertTrue(example.indexOf("\"detail\"") > 0);
+      assertTrue(example.indexOf("\"list\"") > 0);
+      assertTrue(example.indexOf("\"<init>\", \"parameterTypes\" : []") > 0);
+      assertTrue(base.indexOf("\"id\"") > 0);
+      assertTrue(detail.indexOf("\"count\"") > 0);
+      assertTrue(detail.indexOf("\"parent\"") > 0);
+      assertTrue(entry.indexOf("\"key\"") > 0);
+      assertTrue(entry.indexOf("\"<init>\"") > 0);
+   }
+
+   public void testConvertedTypes() throws Exception {
+      String text = generate(Example.class);
+
+      assertTrue(getEntry(text, java.util.ArrayList.class).indexOf("\"<init>\", \"parameterTypes\" : []") > 0);
+      assertTrue(getEntry(text, Integer.class).indexOf("[\"java.lang.String\"]") > 0);
+      assertTrue(getEntry(text, Long.class).indexOf("[\"java.lang.String\"]") > 0);
+      assertTrue(getEntry(text, String.class).indexOf("[\"java.lang.String\"]") > 0);
+      assertTrue(getEntry(text, Status.class).indexOf("\"values\"") > 0);
+      assertTrue(getEntry(text, Root.class).indexOf("\"allDeclaredMethods\" : true") > 0);
+      assertTrue(getEntry(text, ElementList.class).indexOf("\"allDeclaredMethods\" : true") > 0);
+      assertEquals(-1, text.indexOf("\"name\" : \"int\""));
+      assertEquals(-1, text.indexOf(Vector.class.getName()));
+   }
+
+   public void testUnconvertedList() throws Exception {
+      String text = generate(Pending.class);
+
+      assertTrue(getEntry(text, Pending.class).indexOf("\"list\"") > 0);
+      assertTrue(getEntry(text, Entry.class).indexOf("\"<init>\"") > 0);
+      assertEquals(-1, text.indexOf("\"name\" : \"" + Queue.class.getName() + "\""));
+   }
+
+   public void testInclude() throws Exception {
+      String text = generate(Example.class, Vector.class);
+
+      assertTrue(getEntry(text, Vector.class).indexOf("\"<init>\"") > 0);
+   }
+
+   public void testStable() throws Exception {
+      String first = generate(Example.class);
+      String second = generate(Example.class);
+
+      assertEquals(first, second);
+      assertTrue(first.trim().startsWith("["));
+      assertTrue(first.trim().endsWith("]"));
+   }
+
+   public void testMain() throws Exception {
+      File file = File.createTempFile("reflect-config", ".json");
+
+      try {
+         NativeConfig.main(new String[] { file.getPath(), Example.class.getName() });
+         String text = new String(Files.readAllBytes(file.toPath()), "utf-8");
+
+         assertEquals(generate(Example.class), text);
+      } finally {
+         file.delete();
+      }
+   }
+}
@@ -0,0 +1,121 @@
+package load;
+
+import junit.framework.TestCase;
+import xml.serializer.Attribute;
+import xml.serializer.Element;
+import xml.serializer.ElementList;
+import xml.serializer.Root;
+import xml.serializer.load.Compression;
+import xml.serializer.load.Cycle;
+import xml.serializer.load.Format;
+import xml.serializer.load.Intern;
+import xml.serializer.load.Options;
+import xml.serializer.load.Parallel;
+import xml.serializer.load.Persister;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+public class OptionsTest extends TestCase {
+
+   @Root(name="team")
+   public static class Team {
+
+      @ElementList(name="members", type=Member.class)
+      private List members;
+   }
+
+   @Root(name="member")
+   public static class Member {
+
+      @Attribute(name="name")
+      private String name;
+
+      @Element(name="desk")
+      private Desk desk;
+   }
+
+   @Root(name="desk")
+   public static class Desk {
+
+      @Attribute(name="floor")
+      private int floor;
+   }
+
+   private static Team getTeam(int size) {
+      Team team = new Team();
+      Desk desk = new Desk();
+
+      desk.floor = 3;
+      team.members = new ArrayList();
+
+      for(int i = 0; i < size; i++) {
+         Member member = new Member();
+
+         member.name = "member-" + i;
+         member.desk = desk;
+         team.members.add(member);
+      }
+      return team;
+   }
+
+   public void testDefault() throws Exception {
+      Options options = new Options();
+
+      assertNull(options.getParallel());
+      assertNull(options.getCompression());
+      assertNull(options.getCycle());
+      assertNull(options.getIntern());
+   }
+
+   public void testOptions() throws Exception {
+      Options options = new Options();
+
+      options.setCompression(new Compression());
+      options.setIntern(new Intern());
+      options.setCycle(new Cycle());
+
+      Persister persister = new Persister(new Format(), options);
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+      persister.write(getTeam(10), out);
+
+      Team team = (Team) persister.read(Team.class, new ByteArrayInputStream(out.toByteArray()));
+      Member first = (Member) team.members.get(0);
+      Member last = (Member) team.members.get(9);
+
+      assertEquals(team.members.size(), 10);
+      assertEquals(last.name, "member-9");
+      assertSame(first.desk, last.desk);
+   }
+
+   public void testCopy() throws Exception {
+      Options options = new Options();
+
+      options.setCycle(new Cycle());
+
+      Persister persister = new Persister(new Format(), options);
+
+      options.setCycle(null);
+
+      Team team = (Team) persister.read(Team.class, persister.writeString(getTeam(2)));
+
+      assertSame(((Member) team.members.get(0)).desk, ((Member) team.members.get(1)).desk);
+   }
+
+   public void testParallelReferences() throws Exception {
+      Options options = new Options();
+
+      options.setParallel(new Parallel());
+      options.setCycle(new Cycle());
+
+      try {
+         new Persister(new Format(), options);
+         fail("References can not be used in parallel");
+      } catch(IllegalArgumentException e) {
+         assertNotNull(e.getMessage());
+      }
+   }
+}
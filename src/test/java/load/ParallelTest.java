@@ -0,0 +1,163 @@
+package load;
+
+import junit.framework.TestCase;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+import xml.serializer.Attribute;
+import xml.serializer.Element;
+import xml.serializer.ElementList;
+import xml.serializer.Root;
+import xml.serializer.load.Format;
+import xml.serializer.load.Options;
+import xml.serializer.load.Parallel;
+import xml.serializer.load.Persister;
+import xml.serializer.load.exceptions.AttributeException;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+
+public class ParallelTest extends TestCase {
+
+   private static final int SIZE = 5000;
+
+   @Root(name="export")
+   public static class Export {
+
+      @Attribute(name="name")
+      private String name;
+
+      @ElementList(name="list", type=Row.class)
+      private List list;
+   }
+
+   @Root(name="row")
+   public static class Row {
+
+      @Attribute(name="index")
+      private int index;
+
+      @Element(name="value")
+      private String value;
+
+      @ElementList(name="cells", type=Cell.class, required=false)
+      private List cells;
+   }
+
+   @Root(name="cell")
+   public static class Cell {
+
+      @Attribute(name="column")
+      private int column;
+   }
+
+   static String getExport(int size, String extra) {
+      StringBuilder builder = new StringBuilder();
+
+      builder.append("<?xml version=\"1.0\"?>\n");
+      builder.append("<export name='example'>\n");
+      builder.append("   <list class='java.util.Vector'>\n");
+
+      for(int i = 0; i < size; i++) {
+         builder.append("      <row index='").append(i).append("'");
+
+         if(i == size / 2) {
+            builder.append(extra);
+         }
+         builder.append(">\n");
+         builder.append("         <value>value ").append(i).append("</value>\n");
+         builder.append("         <cells>\n");
+
+         for(int j = 0; j < i % 3; j++) {
+            builder.append("            <cell column='").append(j).append("'/>\n");
+         }
+         builder.append("         </cells>\n");
+         builder.append("      </row>\n");
+      }
+      builder.append("   </list>\n");
+      builder.append("</export>");
+      return builder.toString();
+   }
+
+   private void validate(Export export, int size) {
+      assertEquals(export.name, "example");
+      assertTrue(export.list instanceof Vector);
+      assertEquals(export.list.size(), size);
+
+      for(int i = 0; i < size; i++) {
+         Row row = (Row) export.list.get(i);
+
+         assertEquals(row.index, i);
+         assertEquals(row.value, "value " + i);
+         assertEquals(row.cells.size(), i % 3);
+
+         for(int j = 0; j < i % 3; j++) {
+            assertEquals(((Cell) row.cells.get(j)).column, j);
+         }
+      }
+   }
+
+   private static Persister getPersister(Parallel parallel) {
+      Options options = new Options();
+
+      options.setParallel(parallel);
+      return new Persister(new Format(), options);
+   }
+
+   public void testSequential() throws Exception {
+      Persister serializer = new Persister();
+      Export export = (Export) serializer.read(Export.class, new StringReader(getExport(SIZE, "")));
+
+      validate(export, SIZE);
+   }
+
+   public void testParallel() throws Exception {
+      Persister serializer = getPersister(new Parallel(100, 64));
+      Export export = (Export) serializer.read(Export.class, new StringReader(getExport(SIZE, "")));
+
+      validate(export, SIZE);
+   }
+
+   public void testPool() throws Exception {
+      ForkJoinPool pool = new ForkJoinPool(4);
+
+      try {
+         Persister serializer = getPersister(new Parallel(100, 16, pool));
+         Export export = (Export) serializer.read(Export.class, new StringReader(getExport(SIZE, "")));
+
+         validate(export, SIZE);
+      } finally {
+         pool.shutdown();
+      }
+   }
+
+   public void testBelowThreshold() throws Exception {
+      Persister serializer = getPersister(new Parallel(100, 16));
+      Export export = (Export) serializer.read(Export.class, new StringReader(getExport(50, "")));
+
+      validate(export, 50);
+   }
+
+   public void testDeferredDocument() throws Exception {
+      DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+      Document document = factory.newDocumentBuilder().parse(new InputSource(new StringReader(getExport(SIZE, ""))));
+      Persister serializer = getPersister(new Parallel(100, 64));
+      Export export = (Export) serializer.read(Export.class, document);
+
+      validate(export, SIZE);
+   }
+
+   public void testFailure() throws Exception {
+      Persister serializer = getPersister(new Parallel(100, 64));
+      boolean fail = false;
+
+      try {
+         serializer.read(Export.class, new StringReader(getExport(SIZE, " extra='true'")));
+      } catch(AttributeException e) {
+         fail = true;
+      }
+      assertTrue(fail);
+   }
+}
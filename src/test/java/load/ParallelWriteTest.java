@@ -0,0 +1,187 @@
+package load;
+
+import junit.framework.TestCase;
+import org.w3c.dom.Document;
+import xml.serializer.Attribute;
+import xml.serializer.Element;
+import xml.serializer.ElementList;
+import xml.serializer.Root;
+import xml.serializer.load.Format;
+import xml.serializer.load.Options;
+import xml.serializer.load.Parallel;
+import xml.serializer.load.Persister;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
+
+public class ParallelWriteTest extends TestCase {
+
+   private static final int SIZE = 5000;
+
+   @Root(name="export")
+   public static class Export {
+
+      @Attribute(name="name")
+      private String name;
+
+      @ElementList(name="list", type=Row.class)
+      private List list;
+   }
+
+   @Root(name="row")
+   public static class Row {
+
+      @Attribute(name="index")
+      private int index;
+
+      @Element(name="value")
+      private String value;
+
+      @ElementList(name="cells", type=Cell.class)
+      private List cells;
+   }
+
+   @Root(name="cell")
+   public static class Cell {
+
+      @Attribute(name="column")
+      private int column;
+
+      @Attribute(name="text")
+      private String text;
+   }
+
+   @Root(name="broken")
+   public static class Broken {
+
+      @Attribute(name="value")
+      private String value;
+   }
+
+   static Export getExport(int size) {
+      Export export = new Export();
+
+      export.name = "example";
+      export.list = new Vector();
+
+      for(int i = 0; i < size; i++) {
+         Row row = new Row();
+
+         row.index = i;
+         row.value = "value <" + i + "> & \u00e9\u4e2d";
+         row.cells = new ArrayList();
+
+         for(int j = 0; j < i % 3; j++) {
+            Cell cell = new Cell();
+
+            cell.column = j;
+            cell.text = "\"quoted\"\n\ttext";
+            row.cells.add(cell);
+         }
+         export.list.add(row);
+      }
+      return export;
+   }
+
+   private static String write(Persister persister, Object source, String charset) throws Exception {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+      persister.write(source, out, charset);
+      return out.toString(charset);
+   }
+
+   private void assertSame(Format format, String charset) throws Exception {
+      Export export = getExport(SIZE);
+      String expect = write(new Persister(format), export, charset);
+      String text = write(getPersister(format, new Parallel(100, 64)), export, charset);
+
+      assertEquals(expect, text);
+   }
+
+   private static Persister getPersister(Format format, Parallel parallel) {
+      Options options = new Options();
+
+      options.setParallel(parallel);
+      return new Persister(format, options);
+   }
+
+   public void testCompact() throws Exception {
+      assertSame(new Format(), "utf-8");
+   }
+
+   public void testIndent() throws Exception {
+      assertSame(new Format(3), "utf-8");
+   }
+
+   public void testNoProlog() throws Exception {
+      assertSame(new Format(2, false), "utf-8");
+   }
+
+   public void testCharset() throws Exception {
+      Persister persister = getPersister(new Format(3), new Parallel(100, 64));
+      String text = write(persister, getExport(SIZE), "iso-8859-1");
+
+      assertTrue(text.startsWith("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>"));
+      assertTrue(text.contains("value &lt;0&gt; &amp; \u00e9&#20013;"));
+   }
+
+   public void testByteOrderMark() throws Exception {
+      Export export = getExport(3000);
+
+      for(String charset : new String[] { "UTF-16", "x-UTF-16LE-BOM", "UTF-16BE" }) {
+         ByteArrayOutputStream expect = new ByteArrayOutputStream();
+         ByteArrayOutputStream text = new ByteArrayOutputStream();
+
+         new Persister(new Format(3)).write(export, expect, charset);
+         getPersister(new Format(3), new Parallel(100, 50)).write(export, text, charset);
+
+         assertTrue(Arrays.equals(expect.toByteArray(), text.toByteArray()));
+      }
+   }
+
+   public void testDocument() throws Exception {
+      Persister persister = getPersister(new Format(), new Parallel(100, 64));
+      Export export = getExport(SIZE);
+      Document complete = persister.write(export);
+      Document plain = new Persister().write(export, new ByteArrayOutputStream());
+
+      assertEquals(complete.getElementsByTagName("row").getLength(), SIZE);
+      assertEquals(plain.getElementsByTagName("row").getLength(), SIZE);
+      assertNull(persister.write(export, new ByteArrayOutputStream()));
+   }
+
+   public void testReadBack() throws Exception {
+      Persister persister = getPersister(new Format(3), new Parallel(100, 64));
+      String text = write(persister, getExport(SIZE), "utf-8");
+      Export export = (Export) persister.read(Export.class, new StringReader(text));
+
+      assertEquals(export.list.size(), SIZE);
+
+      for(int i = 0; i < SIZE; i++) {
+         Row row = (Row) export.list.get(i);
+
+         assertEquals(row.index, i);
+         assertEquals(row.value, "value <" + i + "> & \u00e9\u4e2d");
+         assertEquals(row.cells.size(), i % 3);
+      }
+   }
+
+   public void testFailure() throws Exception {
+      Persister persister = getPersister(new Format(), new Parallel(100, 64));
+      Export export = getExport(SIZE);
+      boolean fail = false;
+
+      export.list.set(SIZE / 2, new Broken());
+
+      try {
+         write(persister, export, "utf-8");
+      } catch(Exception e) {
+         fail = true;
+      }
+      assertTrue(fail);
+   }
+}
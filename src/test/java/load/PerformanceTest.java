@@ -5,10 +5,27 @@ import xml.serializer.Attribute;
 import xml.serializer.Element;
 import xml.serializer.ElementList;
 import xml.serializer.Root;
+import xml.serializer.load.BinaryPersister;
+import xml.serializer.load.Compression;
+import xml.serializer.load.Cycle;
+import xml.serializer.load.Dictionary;
+import xml.serializer.load.Format;
+import xml.serializer.load.Intern;
+import xml.serializer.load.Options;
+import xml.serializer.load.Parallel;
 import xml.serializer.load.Persister;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
 import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 public class PerformanceTest extends TestCase {
         
@@ -77,6 +94,87 @@ public class PerformanceTest extends TestCase {
       private String value;                 
    }
 
+   @Root(name="series")
+   public static class BoxedSeries {
+
+      @ElementList(name="samples", type=Sample.class)
+      private List samples;
+   }
+
+   @Root(name="sample")
+   public static class Sample {
+
+      @Attribute(name="time")
+      private Long time;
+
+      @Attribute(name="value")
+      private Double value;
+
+      @Attribute(name="count")
+      private Integer count;
+   }
+
+   private static BoxedSeries getBoxedSeries(int size) {
+      BoxedSeries series = new BoxedSeries();
+
+      series.samples = new ArrayList();
+
+      for(int i = 0; i < size; i++) {
+         Sample sample = new Sample();
+
+         sample.time = 1600000000000L + i * 1000L;
+         sample.value = i * 0.1 - 17.5;
+         sample.count = i * 31;
+         series.samples.add(sample);
+      }
+      return series;
+   }
+
+   @Root(name="notes")
+   public static class Notes {
+
+      @ElementList(name="list", type=DetectorTest.Note.class)
+      private List list;
+   }
+
+   @Root(name="book")
+   public static class Book {
+
+      @ElementList(name="quotes", type=DigitsTest.Quote.class)
+      private List quotes;
+   }
+
+   @Root(name="trade")
+   public static class Trade {
+
+      @Attribute(name="currency")
+      private String currency;
+
+      @Element(name="symbol")
+      private String symbol;
+   }
+
+   @Root(name="readings")
+   public static class Readings {
+
+      @ElementList(name="values", type=Integer.class, inline=true)
+      private List<Integer> values;
+   }
+
+   @Root(name="readings")
+   public static class BoxedReadings {
+
+      @ElementList(name="values", type=Reading.class)
+      private List values;
+   }
+
+   @Root(name="value")
+   public static class Reading {
+
+      @Attribute(name="value")
+      private Integer value;
+   }
+
    static {
       System.setProperty("example.name", "some name");
       System.setProperty("example.path", "/some/path");
@@ -97,4 +195,465 @@ public class PerformanceTest extends TestCase {
       }
       System.err.println("TIME ["+(System.currentTimeMillis() - start)+"] FOR 10,000 ITERATIONS");      
    }
+
+   public void testArray() throws Exception {
+      Persister persister = new Persister();
+      ArrayTest.Series series = ArrayTest.getSeries(5000);
+      BoxedSeries boxed = getBoxedSeries(5000);
+      byte[] text = persister.writeBytes(series);
+      byte[] other = persister.writeBytes(boxed);
+
+      for(int i = 0; i < 200; i++) {
+         persister.read(ArrayTest.Series.class, text);
+         persister.read(BoxedSeries.class, other);
+      }
+      long start = System.currentTimeMillis();
+
+      for(int i = 0; i < 200; i++) {
+         persister.read(BoxedSeries.class, other);
+      }
+      long middle = System.currentTimeMillis();
+
+      for(int i = 0; i < 200; i++) {
+         persister.read(ArrayTest.Series.class, text);
+      }
+      System.err.println("BOXED ["+(middle - start)+"] ARRAY ["+(System.currentTimeMillis() - middle)+"] FOR 200 READS OF 5,000 SAMPLES");
+   }
+
+   public void testBinaryShared() throws Exception {
+      BinaryPersister plain = new BinaryPersister();
+      BinaryPersister shared = new BinaryPersister(true);
+      BinarySharedTest.Ledger ledger = BinarySharedTest.getLedger(200);
+      byte[] full = plain.write(ledger);
+      byte[] table = shared.write(ledger);
+
+      for(int i = 0; i < 10000; i++) {
+         plain.read(BinarySharedTest.Ledger.class, full);
+         shared.read(BinarySharedTest.Ledger.class, table);
+      }
+      long start = System.currentTimeMillis();
+
+      for(int i = 0; i < 10000; i++) {
+         plain.read(BinarySharedTest.Ledger.class, full);
+      }
+      long middle = System.currentTimeMillis();
+
+      for(int i = 0; i < 10000; i++) {
+         shared.read(BinarySharedTest.Ledger.class, table);
+      }
+      System.err.println("PLAIN ["+(middle - start)+"] SHARED ["+(System.currentTimeMillis() - middle)+"] FOR 10,000 READS");
+   }
+
+   public void testBinary() throws Exception {
+      BinaryPersister binary = new BinaryPersister();
+      Persister persister = new Persister();
+      BinaryTest.Account account = BinaryTest.getAccount(20);
+
+      for(int i = 0; i < 10000; i++) {
+         binary.read(BinaryTest.Account.class, binary.write(account));
+         persister.read(BinaryTest.Account.class, persister.writeBytes(account));
+      }
+      long start = System.currentTimeMillis();
+
+      for(int i = 0; i < 10000; i++) {
+         persister.read(BinaryTest.Account.class, persister.writeBytes(account));
+      }
+      long middle = System.currentTimeMillis();
+
+      for(int i = 0; i < 10000; i++) {
+         binary.read(BinaryTest.Account.class, binary.write(account));
+      }
+      System.err.println("XML ["+(middle - start)+"] BINARY ["+(System.currentTimeMillis() - middle)+"] FOR 10,000 ROUND TRIPS");
+   }
+
+   public void testBinaryVersion() throws Exception {
+      BinaryPersister persister = new BinaryPersister();
+      byte[] data = persister.write(BinaryVersionTest.getOrder(50));
+
+      for(int i = 0; i < 10000; i++) {
+         persister.read(BinaryVersionTest.OrderOne.class, data);
+         persister.read(BinaryVersionTest.OrderTwo.class, data);
+      }
+      long start = System.currentTimeMillis();
+
+      for(int i = 0; i < 10000; i++) {
+         persister.read(BinaryVersionTest.OrderOne.class, data);
+      }
+      long middle = System.currentTimeMillis();
+
+      for(int i = 0; i < 10000; i++) {
+         persister.read(BinaryVersionTest.OrderTwo.class, data);
+      }
+      System.err.println("SAME VERSION ["+(middle - start)+"] EVOLVED ["+(System.currentTimeMillis() - middle)+"] FOR 10,000 READS");
+   }
+
+   public void testBuffer() throws Exception {
+      Persister persister = new Persister();
+      BufferTest.Response response = BufferTest.getResponse(20);
+
+      for(int i = 0; i < 3; i++) {
+         long start = System.currentTimeMillis();
+
+         for(int j = 0; j < 10000; j++) {
+            StringWriter out = new StringWriter();
+            persister.write(response, out);
+            out.toString();
+         }
+         long middle = System.currentTimeMillis();
+
+         for(int j = 0; j < 10000; j++) {
+            persister.writeString(response);
+         }
+         System.err.println("WRITER ["+(middle - start)+"] POOLED ["+(System.currentTimeMillis() - middle)+"] FOR 10,000 WRITES");
+      }
+   }
+
+   public void testCompression() throws Exception {
+      CompressionTest.Catalog catalog = CompressionTest.getCatalog(50000);
+      Persister plain = new Persister();
+      Options options = new Options();
+
+      options.setCompression(new Compression());
+
+      Persister compressed = new Persister(new Format(), options);
+
+      for(int i = 0; i < 3; i++) {
+         plain.write(catalog, new GZIPOutputStream(new ByteArrayOutputStream()));
+         compressed.write(catalog, new ByteArrayOutputStream());
+      }
+      long start = System.currentTimeMillis();
+
+      for(int i = 0; i < 20; i++) {
+         GZIPOutputStream zip = new GZIPOutputStream(new ByteArrayOutputStream(), 8192);
+
+         plain.write(catalog, zip);
+         zip.finish();
+      }
+      long middle = System.currentTimeMillis();
+
+      for(int i = 0; i < 20; i++) {
+         compressed.write(catalog, new ByteArrayOutputStream());
+      }
+      System.err.println("GZIP ["+(middle - start)+"] BLOCKS ["+(System.currentTimeMillis() - middle)+"] FOR 20 WRITES OF 50,000 PRODUCTS");
+   }
+
+   public void testCycle() throws Exception {
+      Persister plain = new Persister();
+      Options options = new Options();
+
+      options.setCycle(new Cycle());
+
+      Persister cycle = new Persister(new Format(), options);
+      CycleTest.Catalog catalog = CycleTest.getCatalog(1000);
+      byte[] full = plain.writeBytes(catalog);
+      byte[] shared = cycle.writeBytes(catalog);
+
+      for(int i = 0; i < 200; i++) {
+         plain.read(CycleTest.Catalog.class, full);
+         cycle.read(CycleTest.Catalog.class, shared);
+      }
+      long start = System.currentTimeMillis();
+
+      for(int i = 0; i < 200; i++) {
+         plain.read(CycleTest.Catalog.class, full);
+      }
+      long middle = System.currentTimeMillis();
+
+      for(int i = 0; i < 200; i++) {
+         cycle.read(CycleTest.Catalog.class, shared);
+      }
+      System.err.println("BY VALUE ["+(middle - start)+"] BY REFERENCE ["+(System.currentTimeMillis() - middle)+"] FOR 200 READS");
+   }
+
+   public void testDelta() throws Exception {
+      Persister persister = new Persister();
+      DeltaTest.Config baseline = DeltaTest.getConfig(1000);
+      String text = persister.writeString(baseline).replace(">value-500<", ">changed<");
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+      persister.writeDelta(baseline, persister.read(DeltaTest.Config.class, text), out);
+
+      byte[] delta = out.toByteArray();
+
+      for(int i = 0; i < 1000; i++) {
+         persister.read(DeltaTest.Config.class, text);
+         persister.applyDelta(baseline, new ByteArrayInputStream(delta));
+      }
+      long start = System.currentTimeMillis();
+
+      for(int i = 0; i < 1000; i++) {
+         persister.read(DeltaTest.Config.class, text);
+      }
+      long middle = System.currentTimeMillis();
+
+      for(int i = 0; i < 1000; i++) {
+         persister.applyDelta(baseline, new ByteArrayInputStream(delta));
+      }
+      System.err.println("READ ["+(middle - start)+"] APPLY DELTA ["+(System.currentTimeMillis() - middle)+"] FOR 1,000 ITERATIONS");
+   }
+
+   public void testDetector() throws Exception {
+      Persister persister = new Persister();
+      StringBuilder text = new StringBuilder("<notes><list>");
+
+      for(int i = 0; i < 20; i++) {
+         text.append("<note lang='en'><text>note ").append(i).append("</text></note>");
+      }
+      byte[] data = text.append("</list></notes>").toString().getBytes("UTF-8");
+
+      for(int i = 0; i < 10000; i++) {
+         persister.read(Notes.class, new InputStreamReader(new ByteArrayInputStream(data), "UTF-8"));
+         persister.read(Notes.class, new ByteArrayInputStream(data));
+      }
+      long start = System.currentTimeMillis();
+
+      for(int i = 0; i < 10000; i++) {
+         persister.read(Notes.class, new InputStreamReader(new ByteArrayInputStream(data), "UTF-8"));
+      }
+      long middle = System.currentTimeMillis();
+
+      for(int i = 0; i < 10000; i++) {
+         persister.read(Notes.class, new ByteArrayInputStream(data));
+      }
+      System.err.println("READER ["+(middle - start)+"] BYTES ["+(System.currentTimeMillis() - middle)+"] FOR 10,000 READS");
+   }
+
+   public void testDictionary() throws Exception {
+      Dictionary dictionary = new Dictionary(DictionaryTest.Order.class);
+      Options options = new Options();
+
+      options.setCompression(new Compression(dictionary));
+
+      Persister persister = new Persister(new Format(), options);
+      Persister plain = new Persister();
+      DictionaryTest.Order order = DictionaryTest.getOrder(3);
+
+      for(int i = 0; i < 1000; i++) {
+         DictionaryTest.write(persister, order);
+         plain.write(order, new GZIPOutputStream(new ByteArrayOutputStream()));
+      }
+      long start = System.currentTimeMillis();
+
+      for(int i = 0; i < 20000; i++) {
+         GZIPOutputStream zip = new GZIPOutputStream(new ByteArrayOutputStream());
+
+         plain.write(order, zip);
+         zip.finish();
+      }
+      long middle = System.currentTimeMillis();
+
+      for(int i = 0; i < 20000; i++) {
+         DictionaryTest.write(persister, order);
+      }
+      System.err.println("GZIP ["+(middle - start)+"] DICTIONARY ["+(System.currentTimeMillis() - middle)+"] FOR 20,000 WRITES");
+   }
+
+   public void testDigits() throws Exception {
+      com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+      Persister persister = new Persister();
+      Book book = new Book();
+
+      book.quotes = new ArrayList();
+
+      for(int i = 0; i < 12500; i++) {
+         book.quotes.add(DigitsTest.getQuote(i % 100));
+      }
+      for(int i = 0; i < 10; i++) {
+         persister.writeBytes(book);
+      }
+      long before = bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+      long start = System.currentTimeMillis();
+
+      for(int i = 0; i < 20; i++) {
+         persister.writeBytes(book);
+      }
+      long finish = System.currentTimeMillis();
+      long after = bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+
+      System.err.println("WRITE ["+(finish - start)+"] FOR 2,000,000 PRIMITIVE VALUES ("+(after - before) / 2000000+" BYTES ALLOCATED PER VALUE)");
+   }
+
+   public void testEncoder() throws Exception {
+      Persister persister = new Persister();
+      EncoderTest.Document document = EncoderTest.getDocument(20000, EncoderTest.TEXT);
+
+      for(int i = 0; i < 3; i++) {
+         long start = System.currentTimeMillis();
+         persister.write(document, new StringWriter());
+         long middle = System.currentTimeMillis();
+         persister.write(document, new ByteArrayOutputStream());
+         long finish = System.currentTimeMillis();
+
+         System.err.println("WRITER ["+(middle - start)+"] STREAM ["+(finish - middle)+"] FOR 20,000 ENTRIES");
+      }
+   }
+
+   public void testInfoset() throws Exception {
+      Persister persister = new Persister();
+      InfosetTest.Inventory inventory = InfosetTest.getInventory(50);
+      byte[] data = persister.writeInfoset(inventory);
+      byte[] text = persister.writeBytes(inventory);
+
+      for(int i = 0; i < 10000; i++) {
+         persister.read(InfosetTest.Inventory.class, text);
+         persister.readInfoset(InfosetTest.Inventory.class, data);
+      }
+      long start = System.currentTimeMillis();
+
+      for(int i = 0; i < 10000; i++) {
+         persister.read(InfosetTest.Inventory.class, text);
+      }
+      long middle = System.currentTimeMillis();
+
+      for(int i = 0; i < 10000; i++) {
+         persister.readInfoset(InfosetTest.Inventory.class, data);
+      }
+      System.err.println("XML ["+(middle - start)+"] INFOSET ["+(System.currentTimeMillis() - middle)+"] FOR 10,000 READS");
+   }
+
+   public void testIntern() throws Exception {
+      Persister plain = new Persister();
+      Options options = new Options();
+
+      options.setIntern(new Intern());
+
+      Persister persister = new Persister(new Format(), options);
+      List<String> documents = new ArrayList<String>();
+
+      for(int i = 0; i < 100; i++) {
+         documents.add("<trade currency='EUR'><symbol>SYM" + (i % 10) + "</symbol></trade>");
+      }
+      for(int i = 0; i < 2000; i++) {
+         plain.read(Trade.class, documents.get(i % 100));
+         persister.read(Trade.class, documents.get(i % 100));
+      }
+      IdentityHashMap<String, String> before = new IdentityHashMap<String, String>();
+      IdentityHashMap<String, String> after = new IdentityHashMap<String, String>();
+      long start = System.currentTimeMillis();
+
+      for(int i = 0; i < 2000; i++) {
+         Trade trade = (Trade) plain.read(Trade.class, documents.get(i % 100));
+
+         before.put(trade.symbol, trade.symbol);
+         before.put(trade.currency, trade.currency);
+      }
+      long middle = System.currentTimeMillis();
+
+      for(int i = 0; i < 2000; i++) {
+         Trade trade = (Trade) persister.read(Trade.class, documents.get(i % 100));
+
+         after.put(trade.symbol, trade.symbol);
+         after.put(trade.currency, trade.currency);
+      }
+      System.err.println("PLAIN ["+(middle - start)+"] INTERN ["+(System.currentTimeMillis() - middle)+"] FOR 2,000 READS ("+before.size()+" DISTINCT STRINGS RETAINED, "+after.size()+" INTERNED)");
+   }
+
+   public void testMemory() throws Exception {
+      Persister persister = new Persister();
+      byte[] data = persister.writeBytes(MemoryTest.getMessage());
+      String text = persister.writeString(MemoryTest.getMessage());
+
+      for(int i = 0; i < 10000; i++) {
+         persister.read(MemoryTest.Message.class, new ByteArrayInputStream(data));
+         persister.read(MemoryTest.Message.class, new StringReader(text));
+         persister.read(MemoryTest.Message.class, data);
+         persister.read(MemoryTest.Message.class, text);
+      }
+      long start = System.currentTimeMillis();
+
+      for(int i = 0; i < 10000; i++) {
+         persister.read(MemoryTest.Message.class, new ByteArrayInputStream(data));
+      }
+      long bytes = System.currentTimeMillis();
+
+      for(int i = 0; i < 10000; i++) {
+         persister.read(MemoryTest.Message.class, data);
+      }
+      long array = System.currentTimeMillis();
+
+      for(int i = 0; i < 10000; i++) {
+         persister.read(MemoryTest.Message.class, new StringReader(text));
+      }
+      long reader = System.currentTimeMillis();
+
+      for(int i = 0; i < 10000; i++) {
+         persister.read(MemoryTest.Message.class, text);
+      }
+      System.err.println("STREAM ["+(bytes - start)+"] ARRAY ["+(array - bytes)+"] READER ["+(reader - array)+"] SEQUENCE ["+(System.currentTimeMillis() - reader)+"] FOR 10,000 READS");
+   }
+
+   public void testParallel() throws Exception {
+      String text = ParallelTest.getExport(20000, "");
+      Persister sequential = new Persister();
+      Options options = new Options();
+
+      options.setParallel(new Parallel());
+
+      Persister parallel = new Persister(new Format(), options);
+
+      for(int i = 0; i < 3; i++) {
+         long start = System.currentTimeMillis();
+         sequential.read(ParallelTest.Export.class, new StringReader(text));
+         long middle = System.currentTimeMillis();
+         parallel.read(ParallelTest.Export.class, new StringReader(text));
+         long finish = System.currentTimeMillis();
+
+         System.err.println("SEQUENTIAL ["+(middle - start)+"] PARALLEL ["+(finish - middle)+"] FOR 20,000 ENTRIES READ");
+      }
+   }
+
+   public void testParallelWrite() throws Exception {
+      ParallelWriteTest.Export export = ParallelWriteTest.getExport(20000);
+      Persister sequential = new Persister();
+      Options options = new Options();
+
+      options.setParallel(new Parallel());
+
+      Persister parallel = new Persister(new Format(), options);
+
+      for(int i = 0; i < 3; i++) {
+         long start = System.currentTimeMillis();
+         sequential.write(export, new ByteArrayOutputStream());
+         long middle = System.currentTimeMillis();
+         parallel.write(export, new ByteArrayOutputStream());
+         long finish = System.currentTimeMillis();
+
+         System.err.println("SEQUENTIAL ["+(middle - start)+"] PARALLEL ["+(finish - middle)+"] FOR 20,000 ENTRIES WRITTEN");
+      }
+   }
+
+   public void testPrimitiveList() throws Exception {
+      Persister persister = new Persister();
+      Readings readings = new Readings();
+      BoxedReadings boxed = new BoxedReadings();
+
+      readings.values = new ArrayList<Integer>();
+      boxed.values = new ArrayList();
+
+      for(int i = 0; i < 100000; i++) {
+         Reading reading = new Reading();
+
+         reading.value = i * 7;
+         readings.values.add(reading.value);
+         boxed.values.add(reading);
+      }
+      byte[] text = persister.writeBytes(readings);
+      byte[] other = persister.writeBytes(boxed);
+
+      for(int i = 0; i < 10; i++) {
+         persister.read(Readings.class, text);
+         persister.read(BoxedReadings.class, other);
+      }
+      long start = System.currentTimeMillis();
+
+      for(int i = 0; i < 10; i++) {
+         persister.read(BoxedReadings.class, other);
+      }
+      long middle = System.currentTimeMillis();
+
+      for(int i = 0; i < 10; i++) {
+         persister.read(Readings.class, text);
+      }
+      System.err.println("WRAPPED ["+(middle - start)+"] INLINE ["+(System.currentTimeMillis() - middle)+"] FOR 10 READS OF 100,000 INTEGERS");
+   }
 }
@@ -0,0 +1,224 @@
+package load;
+
+import junit.framework.TestCase;
+import xml.serializer.ElementList;
+import xml.serializer.Root;
+import xml.serializer.load.BinaryPersister;
+import xml.serializer.load.Persister;
+import xml.serializer.load.exceptions.ElementException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+public class PrimitiveListTest extends TestCase {
+
+   public enum Color {
+      RED,
+      GREEN,
+      BLUE
+   }
+
+   @Root(name="readings")
+   public static class Readings {
+
+      @ElementList(name="values", type=Integer.class, inline=true)
+      private List<Integer> values;
+
+      @ElementList(name="times", type=Long.class)
+      private List<Long> times;
+
+      @ElementList(name="scores", type=Double.class, inline=true, required=false)
+      private ArrayList<Double> scores;
+
+      @ElementList(name="names", type=String.class, entry="name", required=false)
+      private List<String> names;
+
+      @ElementList(name="colors", type=Color.class, inline=true, required=false)
+      private Set<Color> colors;
+   }
+
+   @Root(name="words")
+   public static class Words {
+
+      @ElementList(name="list", type=String.class, inline=true)
+      private List<String> list;
+   }
+
+   private static Readings getReadings(int size) {
+      Readings readings = new Readings();
+
+      readings.values = new ArrayList<Integer>();
+      readings.times = new ArrayList<Long>();
+      readings.scores = new ArrayList<Double>();
+      readings.names = new ArrayList<String>(Arrays.asList("first name", "", "J\u00fcrgen"));
+      readings.colors = new HashSet<Color>(Arrays.asList(Color.RED, Color.BLUE));
+
+      for(int i = 0; i < size; i++) {
+         readings.values.add(i * 7 - 100);
+         readings.times.add(1600000000000L + i);
+         readings.scores.add(i / 4.0);
+      }
+      return readings;
+   }
+
+   private static void assertReadings(Readings expect, Readings actual) {
+      assertEquals(expect.values, actual.values);
+      assertEquals(expect.times, actual.times);
+      assertEquals(expect.scores, actual.scores);
+      assertEquals(expect.names, actual.names);
+      assertEquals(expect.colors, actual.colors);
+   }
+
+   public void testRoundTrip() throws Exception {
+      Persister persister = new Persister();
+      Readings readings = getReadings(10);
+      String text = persister.writeString(readings);
+      Readings result = (Readings) persister.read(Readings.class, text);
+
+      assertTrue(text.contains(">-100 -93 -86 "));
+      assertTrue(text.contains("<entry>1600000000000</entry>"));
+      assertTrue(text.contains("<name>first name</name>"));
+      assertReadings(readings, result);
+      assertTrue(result.scores instanceof ArrayList);
+      assertTrue(result.values instanceof ArrayList);
+   }
+
+   public void testPacked() throws Exception {
+      Persister persister = new Persister();
+      Readings result = (Readings) persister.read(Readings.class, "<readings><values>5 6 7</values><times/></readings>");
+      List<Integer> values = result.values;
+
+      values.add(8);
+      values.add(0, 4);
+      values.remove(2);
+      values.set(1, 9);
+
+      assertEquals(values, Arrays.asList(4, 9, 7, 8));
+      assertEquals(result.times.size(), 0);
+
+      try {
+         ((List) values).add(0, "text");
+         fail("Only integers can be added");
+      } catch(ClassCastException e) {
+         assertEquals(values, Arrays.asList(4, 9, 7, 8));
+      }
+      try {
+         ((List) values).set(1, "text");
+         fail("Only integers can be set");
+      } catch(ClassCastException e) {
+         assertEquals(values, Arrays.asList(4, 9, 7, 8));
+      }
+      try {
+         values.add(null);
+         fail("Null can not be added");
+      } catch(NullPointerException e) {
+         assertEquals(values, Arrays.asList(4, 9, 7, 8));
+      }
+      try {
+         values.set(0, null);
+         fail("Null can not be set");
+      } catch(NullPointerException e) {
+         assertEquals(values, Arrays.asList(4, 9, 7, 8));
+      }
+      String text = persister.writeString(result);
+
+      assertTrue(text.contains("<values>4 9 7 8</values>"));
+      assertFalse(text.contains("class="));
+   }
+
+   public void testOverride() throws Exception {
+      Persister persister = new Persister();
+      Readings readings = getReadings(3);
+
+      readings.values = new LinkedList<Integer>(readings.values);
+
+      String text = persister.writeString(readings);
+      Readings result = (Readings) persister.read(Readings.class, text);
+
+      assertTrue(text.contains("class=\"java.util.LinkedList\""));
+      assertTrue(result.values instanceof LinkedList);
+      assertReadings(readings, result);
+   }
+
+   public void testBothForms() throws Exception {
+      Persister persister = new Persister();
+      String text = "<readings>" +
+                    "  <values><v>1</v><v> 2 </v></values>" +
+                    "  <times>\n 3\t4 \r\n</times>" +
+                    "  <names>a b c</names>" +
+                    "  <colors><color>GREEN</color></colors>" +
+                    "</readings>";
+      Readings result = (Readings) persister.read(Readings.class, text);
+
+      assertEquals(result.values, Arrays.asList(1, 2));
+      assertEquals(result.times, Arrays.asList(3L, 4L));
+      assertEquals(result.names, Arrays.asList("a", "b", "c"));
+      assertEquals(result.colors, new HashSet<Color>(Arrays.asList(Color.GREEN)));
+      assertNull(result.scores);
+   }
+
+   public void testInvalid() throws Exception {
+      Persister persister = new Persister();
+      Words words = new Words();
+
+      words.list = Arrays.asList("one", "two three");
+
+      try {
+         persister.writeString(words);
+         fail("String with whitespace can not be inline");
+      } catch(ElementException e) {
+         assertTrue(e.getMessage().contains("inline"));
+      }
+      Readings readings = getReadings(2);
+
+      readings.values.add(null);
+
+      try {
+         persister.writeString(readings);
+         fail("Null value can not be written");
+      } catch(ElementException e) {
+         assertNotNull(e.getMessage());
+      }
+      try {
+         persister.read(Readings.class, "<readings><values>1 two</values><times/></readings>");
+         fail("Value that is not a number should fail");
+      } catch(NumberFormatException e) {
+         assertNotNull(e.getMessage());
+      }
+   }
+
+   public void testBinary() throws Exception {
+      BinaryPersister persister = new BinaryPersister();
+      BinaryPersister shared = new BinaryPersister(true);
+      Readings readings = getReadings(100);
+      Readings result = (Readings) persister.read(Readings.class, persister.write(readings));
+
+      assertReadings(readings, result);
+      assertTrue(result.scores instanceof ArrayList);
+      assertFalse(result.values instanceof ArrayList);
+      assertReadings(readings, (Readings) shared.read(Readings.class, shared.write(readings)));
+   }
+
+   public void testDelta() throws Exception {
+      Persister persister = new Persister();
+      Readings baseline = getReadings(50);
+      Readings current = getReadings(50);
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+      current.values.set(10, -1);
+      persister.writeDelta(baseline, current, out);
+
+      String text = out.toString("UTF-8");
+      Readings result = (Readings) persister.applyDelta(baseline, new ByteArrayInputStream(out.toByteArray()));
+
+      assertTrue(text.contains("<values"));
+      assertFalse(text.contains("<times>"));
+      assertReadings(current, result);
+   }
+}
@@ -0,0 +1,344 @@
+package load;
+
+import junit.framework.TestCase;
+import xml.serializer.Attribute;
+import xml.serializer.Element;
+import xml.serializer.ElementList;
+import xml.serializer.Root;
+import xml.serializer.load.Cycle;
+import xml.serializer.load.Format;
+import xml.serializer.load.Intern;
+import xml.serializer.load.Options;
+import xml.serializer.load.Persister;
+import xml.serializer.load.exceptions.AttributeException;
+import xml.serializer.load.exceptions.ElementException;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow.Publisher;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.concurrent.Flow.Subscription;
+import java.util.concurrent.TimeUnit;
+
+public class PublishTest extends TestCase {
+
+   private static final int SIZE = 10000;
+
+   private static final Executor DIRECT = new Executor() {
+      public void execute(Runnable task) {
+         task.run();
+      }
+   };
+
+   @Root(name="export")
+   public static class Export {
+
+      @Element(name="title")
+      private String title;
+
+      @ElementList(name="list", type=Row.class)
+      private List list;
+   }
+
+   @Root(name="row")
+   public static class Row {
+
+      @Attribute(name="index")
+      private int index;
+
+      @Element(name="value")
+      private String value;
+   }
+
+   private static class Counter extends FilterInputStream {
+
+      private long count;
+
+      private boolean closed;
+
+      public Counter(InputStream source) {
+         super(source);
+      }
+
+      public void close() throws IOException {
+         closed = true;
+         super.close();
+      }
+
+      public int read() throws IOException {
+         count++;
+         return super.read();
+      }
+
+      public int read(byte[] buffer, int off, int len) throws IOException {
+         int size = super.read(buffer, off, len);
+
+         if(size > 0) {
+            count += size;
+         }
+         return size;
+      }
+   }
+
+   private static class Collector implements Subscriber<Object> {
+
+      private List<Object> list = new ArrayList<Object>();
+
+      private CountDownLatch latch = new CountDownLatch(1);
+
+      private Subscription subscription;
+
+      private Throwable error;
+
+      private boolean complete;
+
+      private int batch;
+
+      private int limit;
+
+      public Collector(int batch, int limit) {
+         this.batch = batch;
+         this.limit = limit;
+      }
+
+      public void onSubscribe(Subscription subscription) {
+         this.subscription = subscription;
+         subscription.request(batch);
+      }
+
+      public void onNext(Object item) {
+         list.add(item);
+
+         if(list.size() >= limit) {
+            subscription.cancel();
+            latch.countDown();
+         } else if(list.size() % batch == 0) {
+            subscription.request(batch);
+         }
+      }
+
+      public void onError(Throwable cause) {
+         error = cause;
+         latch.countDown();
+      }
+
+      public void onComplete() {
+         complete = true;
+         latch.countDown();
+      }
+   }
+
+   private static byte[] getExport(int size, String extra) throws Exception {
+      StringBuilder builder = new StringBuilder();
+
+      builder.append("<?xml version=\"1.0\"?>\n");
+      builder.append("<export>\n");
+      builder.append("   <title>example</title>\n");
+      builder.append("   <list class='java.util.Vector'>\n");
+
+      for(int i = 0; i < size; i++) {
+         builder.append("      <row index='").append(i).append("'");
+
+         if(i == size / 2) {
+            builder.append(extra);
+         }
+         builder.append(">\n");
+         builder.append("         <value>value &amp; ").append(i).append("</value>\n");
+         builder.append("      </row>\n");
+      }
+      builder.append("   </list>\n");
+      builder.append("</export>");
+      return builder.toString().getBytes("utf-8");
+   }
+
+   public void testAllEntries() throws Exception {
+      Persister persister = new Persister();
+      Publisher<Object> publisher = persister.publish(Export.class, "list", new ByteArrayInputStream(getExport(SIZE, "")));
+      Collector collector = new Collector(64, Integer.MAX_VALUE);
+
+      publisher.subscribe(collector);
+      assertTrue(collector.latch.await(30, TimeUnit.SECONDS));
+      assertTrue(collector.complete);
+      assertNull(collector.error);
+      assertEquals(collector.list.size(), SIZE);
+
+      for(int i = 0; i < SIZE; i++) {
+         Row row = (Row) collector.list.get(i);
+
+         assertEquals(row.index, i);
+         assertEquals(row.value, "value & " + i);
+      }
+   }
+
+   public void testBackpressure() throws Exception {
+      byte[] data = getExport(SIZE, "");
+      Counter counter = new Counter(new ByteArrayInputStream(data));
+      Persister persister = new Persister();
+      Publisher<Object> publisher = persister.publish(Export.class, "list", counter, DIRECT);
+      Collector collector = new Collector(1, 10);
+
+      publisher.subscribe(collector);
+
+      assertEquals(collector.list.size(), 10);
+      assertFalse(collector.complete);
+      assertTrue(counter.count < data.length / 4);
+   }
+
+   public void testDemand() throws Exception {
+      Persister persister = new Persister();
+      Publisher<Object> publisher = persister.publish(Export.class, "list", new ByteArrayInputStream(getExport(SIZE, "")), DIRECT);
+      Collector collector = new Collector(5, Integer.MAX_VALUE) {
+         public void onNext(Object item) {
+            super.list.add(item);
+         }
+      };
+      publisher.subscribe(collector);
+      assertEquals(collector.list.size(), 5);
+
+      collector.subscription.request(20);
+      assertEquals(collector.list.size(), 25);
+      assertEquals(((Row) collector.list.get(24)).index, 24);
+   }
+
+   public void testFailure() throws Exception {
+      Persister persister = new Persister();
+      Publisher<Object> publisher = persister.publish(Export.class, "list", new ByteArrayInputStream(getExport(SIZE, " extra='true'")), DIRECT);
+      Collector collector = new Collector(100, Integer.MAX_VALUE);
+
+      publisher.subscribe(collector);
+
+      assertEquals(collector.list.size(), SIZE / 2);
+      assertTrue(collector.error instanceof AttributeException);
+      assertFalse(collector.complete);
+   }
+
+   public void testUnknownList() throws Exception {
+      Persister persister = new Persister();
+      Publisher<Object> publisher = persister.publish(Export.class, "title", new ByteArrayInputStream(getExport(10, "")), DIRECT);
+      Collector collector = new Collector(100, Integer.MAX_VALUE);
+
+      publisher.subscribe(collector);
+
+      assertTrue(collector.error instanceof ElementException);
+   }
+
+   public void testSingleSubscriber() throws Exception {
+      Persister persister = new Persister();
+      Publisher<Object> publisher = persister.publish(Export.class, "list", new ByteArrayInputStream(getExport(10, "")), DIRECT);
+      Collector first = new Collector(100, Integer.MAX_VALUE);
+      Collector second = new Collector(100, Integer.MAX_VALUE);
+
+      publisher.subscribe(first);
+      publisher.subscribe(second);
+
+      assertTrue(first.complete);
+      assertEquals(first.list.size(), 10);
+      assertTrue(second.error instanceof IllegalStateException);
+   }
+
+   public void testClose() throws Exception {
+      Persister persister = new Persister();
+      Counter cancelled = new Counter(new ByteArrayInputStream(getExport(10, "")));
+      Counter unknown = new Counter(new ByteArrayInputStream(getExport(10, "")));
+      Counter shared = new Counter(new ByteArrayInputStream(getExport(10, "")));
+      Publisher<Object> publisher = persister.publish(Export.class, "list", shared, DIRECT);
+      Collector first = new Collector(5, Integer.MAX_VALUE) {
+         public void onNext(Object item) {
+            super.list.add(item);
+         }
+      };
+      Collector second = new Collector(5, Integer.MAX_VALUE);
+
+      persister.publish(Export.class, "list", cancelled, DIRECT).subscribe(new Collector(1, Integer.MAX_VALUE) {
+         public void onSubscribe(Subscription subscription) {
+            subscription.cancel();
+         }
+      });
+      persister.publish(Export.class, "title", unknown, DIRECT).subscribe(new Collector(1, Integer.MAX_VALUE));
+
+      assertTrue(cancelled.closed);
+      assertTrue(unknown.closed);
+
+      publisher.subscribe(first);
+      publisher.subscribe(second);
+
+      assertTrue(second.error instanceof IllegalStateException);
+      assertFalse(shared.closed);
+
+      first.subscription.request(10);
+
+      assertEquals(first.list.size(), 10);
+      assertTrue(shared.closed);
+   }
+
+   public void testMissingList() throws Exception {
+      Persister persister = new Persister();
+      byte[] data = "<export><title>example</title></export>".getBytes("utf-8");
+      Publisher<Object> publisher = persister.publish(Export.class, "list", new ByteArrayInputStream(data), DIRECT);
+      Collector collector = new Collector(100, Integer.MAX_VALUE);
+
+      publisher.subscribe(collector);
+
+      assertTrue(collector.error instanceof ElementException);
+      assertFalse(collector.complete);
+   }
+
+   public void testThrowingSubscriber() throws Exception {
+      Persister persister = new Persister();
+      Publisher<Object> publisher = persister.publish(Export.class, "list", new ByteArrayInputStream(getExport(SIZE, "")), DIRECT);
+      Collector collector = new Collector(100, Integer.MAX_VALUE) {
+         public void onNext(Object item) {
+            super.list.add(item);
+
+            if(super.list.size() == 3) {
+               throw new IllegalStateException("Subscriber failed");
+            }
+         }
+      };
+      publisher.subscribe(collector);
+      collector.subscription.request(100);
+
+      assertEquals(collector.list.size(), 3);
+      assertNull(collector.error);
+      assertFalse(collector.complete);
+   }
+
+   public void testConfiguration() throws Exception {
+      byte[] data = ("<export><title>example</title><list>" +
+                     "<row id='1' index='0'><value>shared</value></row>" +
+                     "<row reference='1'/>" +
+                     "<row index='2'><value>shared</value></row>" +
+                     "</list></export>").getBytes("utf-8");
+      Options references = new Options();
+      Options strings = new Options();
+
+      references.setCycle(new Cycle());
+      strings.setIntern(new Intern());
+
+      Persister cycle = new Persister(new Format(), references);
+      Persister intern = new Persister(new Format(), strings);
+      Collector first = new Collector(100, Integer.MAX_VALUE);
+      Collector second = new Collector(100, Integer.MAX_VALUE);
+
+      cycle.publish(Export.class, "list", new ByteArrayInputStream(data), DIRECT).subscribe(first);
+
+      assertTrue(first.complete);
+      assertEquals(first.list.size(), 3);
+      assertSame(first.list.get(0), first.list.get(1));
+
+      data = ("<export><title>example</title><list>" +
+              "<row index='0'><value>shared</value></row>" +
+              "<row index='1'><value>shared</value></row>" +
+              "</list></export>").getBytes("utf-8");
+      intern.publish(Export.class, "list", new ByteArrayInputStream(data), DIRECT).subscribe(second);
+
+      assertTrue(second.complete);
+      assertSame(((Row) second.list.get(0)).value, ((Row) second.list.get(1)).value);
+   }
+}